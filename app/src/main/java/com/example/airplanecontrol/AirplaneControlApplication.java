@@ -5,6 +5,10 @@ import android.util.Log;
 
 import androidx.lifecycle.ProcessLifecycleOwner;
 
+import com.example.airplanecontrol.services.AirplaneModeWatchdog;
+import com.example.airplanecontrol.utils.DirectBootStorage;
+import com.example.airplanecontrol.utils.Tracer;
+
 /**
  * 飞行模式控制应用主类
  * 负责应用的基本初始化工作
@@ -20,6 +24,13 @@ public class AirplaneControlApplication extends Application {
         // 注册应用生命周期观察者
         ProcessLifecycleOwner.get().getLifecycle().addObserver(new AppLifecycleObserver());
 
+        // 将调度配置镜像到设备加密存储（解锁前启动的进程在 BOOT_COMPLETED 时再开始镜像）
+        DirectBootStorage.startMirroring(this);
+        Tracer.configure(this);
+
+        // 飞行模式看门狗：由截止闹钟或开机拉起进程时，在这里发现并恢复被遗留的飞行模式
+        AirplaneModeWatchdog.install(this);
+
         Log.d(TAG, "飞行模式控制应用初始化完成");
     }
 } 
\ No newline at end of file
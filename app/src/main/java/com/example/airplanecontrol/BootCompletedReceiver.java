@@ -6,8 +6,12 @@ import android.content.Intent;
 import android.util.Log;
 import androidx.core.content.ContextCompat;
 
+import com.example.airplanecontrol.utils.DirectBootStorage;
+
 /**
- * 开机自启动接收器：系统启动完成后启动飞行模式自动任务服务
+ * 开机自启动接收器：系统启动完成后启动飞行模式自动任务服务。
+ * 支持直接启动：LOCKED_BOOT_COMPLETED（用户解锁前）即按设备加密存储中的配置镜像恢复调度；
+ * 解锁后的 BOOT_COMPLETED 开始同步镜像，本次开机已恢复过时不再重复启动。
  */
 public class BootCompletedReceiver extends BroadcastReceiver {
 
@@ -15,26 +19,43 @@ public class BootCompletedReceiver extends BroadcastReceiver {
 
     @Override
     public void onReceive(Context context, Intent intent) {
-        if (intent != null && Intent.ACTION_BOOT_COMPLETED.equals(intent.getAction())) {
+        String action = intent != null ? intent.getAction() : null;
+        boolean locked = Intent.ACTION_LOCKED_BOOT_COMPLETED.equals(action);
+        if (locked || Intent.ACTION_BOOT_COMPLETED.equals(action)) {
             try {
-                Log.d(TAG, "接收到 BOOT_COMPLETED，检查飞行模式自动任务设置");
+                Log.d(TAG, "接收到 " + action + "，检查飞行模式自动任务设置");
+                if (!locked) {
+                    DirectBootStorage.startMirroring(context);
+                }
 
-                // 检查飞行模式自动任务设置
-                android.content.SharedPreferences airplanePrefs = context.getSharedPreferences("airplane_mode_prefs", Context.MODE_PRIVATE);
+                // 检查飞行模式自动任务设置（解锁前读取镜像）
+                android.content.SharedPreferences airplanePrefs = DirectBootStorage.prefs(context);
                 boolean autoToggleEnabled = airplanePrefs.getBoolean("auto_toggle_enabled", false);
                 int intervalMinutes = airplanePrefs.getInt("toggle_interval", 15);
 
                 if (autoToggleEnabled) {
+                    if (!DirectBootStorage.markResumed(context, locked)) {
+                        Log.d(TAG, "本次开机已在解锁前恢复调度，跳过启动");
+                        return;
+                    }
                     Intent svc = new Intent(context.getApplicationContext(), com.example.airplanecontrol.services.AutoTaskService.class);
                     svc.putExtra("interval_minutes", intervalMinutes);
+                    svc.putExtra(com.example.airplanecontrol.services.AutoTaskService.EXTRA_BOOT_RESUME, true);
 
                     // Android O+ 使用前台服务启动
                     if (android.os.Build.VERSION.SDK_INT >= android.os.Build.VERSION_CODES.O) {
-                        ContextCompat.startForegroundService(context.getApplicationContext(), svc);
+                        try {
+                            ContextCompat.startForegroundService(context.getApplicationContext(), svc);
+                        } catch (IllegalStateException e) {
+                            // 系统拒绝从开机广播启动前台服务（ForegroundServiceStartNotAllowedException）：改由闹钟拉起
+                            Log.w(TAG, "开机时无法启动前台服务，稍后由唤醒闹钟恢复调度", e);
+                            com.example.airplanecontrol.services.AutoTaskService.resumeLater(context);
+                            return;
+                        }
                     } else {
                         context.getApplicationContext().startService(svc);
                     }
-                    Log.d(TAG, "已在开机后启动自动飞行模式前台服务，间隔=" + intervalMinutes + " 分钟");
+                    Log.d(TAG, "已在开机后启动自动飞行模式前台服务，间隔=" + intervalMinutes + " 分钟, 解锁前=" + locked);
                 } else {
                     Log.d(TAG, "开机后检测到自动飞行模式开关未启用，跳过启动");
                 }
@@ -44,5 +65,3 @@ public class BootCompletedReceiver extends BroadcastReceiver {
         }
     }
 }
-
-
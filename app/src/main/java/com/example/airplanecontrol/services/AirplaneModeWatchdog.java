@@ -0,0 +1,276 @@
+package com.example.airplanecontrol.services;
+
+import android.Manifest;
+import android.app.AlarmManager;
+import android.app.PendingIntent;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.SharedPreferences;
+import android.content.pm.PackageManager;
+import android.database.ContentObserver;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.provider.Settings;
+import android.util.Log;
+
+import androidx.core.content.ContextCompat;
+
+import com.example.airplanecontrol.utils.AirplaneModeUtils;
+import com.example.airplanecontrol.utils.DirectBootStorage;
+import com.example.airplanecontrol.utils.OperationLogStore;
+import com.example.airplanecontrol.utils.ToggleCycle;
+
+/**
+ * 飞行模式看门狗：保证周期开启的飞行模式最终被关闭。
+ * 周期开始开启飞行模式时在设备加密存储中记下开启时间（"已布防"），并设置一个唤醒闹钟，截止时间为周期最长跨度加宽限；
+ * 关闭确认后撤防。不在开/关阶段而飞行模式仍开启且已布防时（周期失败 / 取消、跳板 Activity 提前销毁、
+ * 进程在开启后被杀、开机后仍为开启），通过可用的方式（WRITE_SECURE_SETTINGS，否则助理会话）恢复关闭，
+ * 未恢复时按 {@link #RETRY_MS} 由闹钟重试。检查由周期状态、飞行模式设置的 ContentObserver 与截止闹钟触发。
+ * 每次事故记录离线时长（从开启到确认关闭）。手动开启（turn_on）会撤防，不与用户的意图对抗。
+ * 所有方法都在主线程调用。
+ */
+public final class AirplaneModeWatchdog {
+
+    private static final String TAG = "AirplaneModeWatchdog";
+
+    /** 周期失败 / 取消后等待多久再检查（正在进行的关闭请求可能稍后确认） */
+    public static final long GRACE_MS = 3000L;
+    /** 截止时间在周期最长跨度之外的余量 */
+    public static final long DEADLINE_SLACK_MS = 10_000L;
+    /** 恢复未生效时的重试间隔 */
+    public static final long RETRY_MS = 30_000L;
+
+    private static final String PREFS_NAME = "airplane_watchdog";
+    private static final String KEY_ARMED_SINCE = "armed_since";
+    private static final String KEY_INCIDENT_SINCE = "incident_since";
+    private static final String KEY_INCIDENTS = "incidents";
+    private static final String KEY_OFFLINE_TOTAL_MS = "offline_total_ms";
+    private static final String KEY_OFFLINE_MAX_MS = "offline_max_ms";
+    private static final String KEY_LAST_INCIDENT = "last_incident";
+    private static final int REQUEST_CODE_DEADLINE = 2002;
+
+    private static final Handler HANDLER = new Handler(Looper.getMainLooper());
+    private static Context app;
+    private static ContentObserver observer;
+    private static ToggleCycle.Actuator restoring;
+    private static int attempts;
+
+    private static final ToggleCycle.Listener CYCLE_OBSERVER = (cycle, state) -> {
+        switch (state) {
+            case ENABLING:
+                arm(cycle.maxSpanMs() + DEADLINE_SLACK_MS);
+                break;
+            case RECOVERING:
+            case DONE:
+                // 关闭已确认
+                check("周期 " + state);
+                break;
+            case FAILED:
+            case CANCELLED:
+                HANDLER.postDelayed(() -> check("周期 " + state), GRACE_MS);
+                break;
+            default:
+                break;
+        }
+    };
+
+    private AirplaneModeWatchdog() {}
+
+    /**
+     * 开始观察周期与飞行模式设置，并立即检查一次（进程由截止闹钟或开机拉起时在这里恢复）
+     */
+    public static void install(Context context) {
+        if (app != null) return;
+        app = context.getApplicationContext();
+        ToggleCycle.addObserver(CYCLE_OBSERVER);
+        observer = new ContentObserver(HANDLER) {
+            @Override
+            public void onChange(boolean selfChange) {
+                check("飞行模式设置变化");
+            }
+        };
+        app.getContentResolver().registerContentObserver(
+                Settings.Global.getUriFor(Settings.Global.AIRPLANE_MODE_ON), false, observer);
+        check("启动");
+    }
+
+    /**
+     * 用户明确要求开启飞行模式时撤防
+     */
+    public static void disarm(Context context, String reason) {
+        if (app == null) {
+            app = context.getApplicationContext();
+        }
+        if (prefs().getLong(KEY_ARMED_SINCE, -1L) < 0) return;
+        Log.d(TAG, "撤防: " + reason);
+        clear();
+    }
+
+    private static SharedPreferences prefs() {
+        // 开机后解锁前也要能读到布防状态
+        return DirectBootStorage.deviceProtected(app).getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    private static void arm(long deadlineMs) {
+        SharedPreferences prefs = prefs();
+        if (prefs.getLong(KEY_ARMED_SINCE, -1L) < 0) {
+            // 同步写入：进程随后被杀也不会丢失布防
+            prefs.edit().putLong(KEY_ARMED_SINCE, System.currentTimeMillis()).commit();
+        }
+        setAlarm(deadlineMs);
+    }
+
+    /**
+     * 检查飞行模式是否被遗留为开启，必要时恢复
+     */
+    static void check(String reason) {
+        if (app == null) return;
+        if (ToggleCycle.isBusy()) {
+            // 周期自己负责开/关阶段，截止闹钟仍在
+            return;
+        }
+        SharedPreferences prefs = prefs();
+        long armedSince = prefs.getLong(KEY_ARMED_SINCE, -1L);
+        if (armedSince < 0) return;
+        if (!AirplaneModeUtils.isAirplaneModeOn(app)) {
+            long incidentSince = prefs.getLong(KEY_INCIDENT_SINCE, -1L);
+            if (incidentSince >= 0) {
+                recordIncident(prefs, armedSince, incidentSince);
+            }
+            clear();
+            return;
+        }
+        if (prefs.getLong(KEY_INCIDENT_SINCE, -1L) < 0) {
+            long now = System.currentTimeMillis();
+            prefs.edit().putLong(KEY_INCIDENT_SINCE, now).commit();
+            Log.w(TAG, "飞行模式在周期外仍为开启(" + reason + ")，已开启 " + (now - armedSince) / 1000 + "s，开始恢复");
+            OperationLogStore.append(app, "看门狗: 飞行模式被遗留为开启(" + reason + ")，开始恢复");
+        }
+        restore();
+        // 恢复未生效（或进程被杀）时由闹钟再次检查
+        setAlarm(RETRY_MS);
+    }
+
+    private static void restore() {
+        if (restoring != null) return;
+        final ToggleCycle.Actuator actuator;
+        final String backend;
+        if (ContextCompat.checkSelfPermission(app, Manifest.permission.WRITE_SECURE_SETTINGS)
+                == PackageManager.PERMISSION_GRANTED) {
+            actuator = ToggleCycle.secureActuator(app);
+            backend = "SECURE";
+        } else if (DirectBootStorage.isUserUnlocked(app)) {
+            actuator = new ToggleCycle.ObservedActuator(app,
+                    (enable, delivered) -> AssistantDispatcher.dispatch(app, AssistCommand.setState(enable), delivered));
+            backend = "ASSISTANT";
+        } else {
+            Log.w(TAG, "用户未解锁且未授予 WRITE_SECURE_SETTINGS，等待解锁后恢复");
+            return;
+        }
+        attempts++;
+        restoring = actuator;
+        Log.d(TAG, "通过 " + backend + " 关闭飞行模式, 第 " + attempts + " 次");
+        final Runnable timeout = () -> {
+            if (restoring != actuator) return;
+            actuator.cancel();
+            restoring = null;
+            Log.w(TAG, "恢复请求超时 (" + backend + ")");
+        };
+        HANDLER.postDelayed(timeout, ToggleCycle.STEP_TIMEOUT_MS);
+        actuator.request(false, null, (ok, detail) -> {
+            if (restoring != actuator) return;
+            HANDLER.removeCallbacks(timeout);
+            restoring = null;
+            Log.d(TAG, "恢复请求结果 (" + backend + "): " + ok + ", " + detail);
+            // 失败时等重试闹钟，不在回调里立即重试（执行器可能同步回调）
+            if (ok && !AirplaneModeUtils.isAirplaneModeOn(app)) {
+                check("恢复请求完成");
+            }
+        });
+    }
+
+    private static void recordIncident(SharedPreferences prefs, long armedSince, long incidentSince) {
+        long now = System.currentTimeMillis();
+        long offlineMs = Math.max(0, now - armedSince);
+        String summary = java.text.SimpleDateFormat.getDateTimeInstance().format(new java.util.Date(incidentSince))
+                + " 离线 " + offlineMs / 1000 + "s（发现后 " + Math.max(0, now - incidentSince) / 1000 + "s 恢复, "
+                + attempts + " 次请求）";
+        prefs.edit()
+                .putInt(KEY_INCIDENTS, prefs.getInt(KEY_INCIDENTS, 0) + 1)
+                .putLong(KEY_OFFLINE_TOTAL_MS, prefs.getLong(KEY_OFFLINE_TOTAL_MS, 0L) + offlineMs)
+                .putLong(KEY_OFFLINE_MAX_MS, Math.max(prefs.getLong(KEY_OFFLINE_MAX_MS, 0L), offlineMs))
+                .putString(KEY_LAST_INCIDENT, summary)
+                .apply();
+        Log.w(TAG, "飞行模式已恢复关闭: " + summary);
+        OperationLogStore.append(app, "看门狗: 飞行模式已恢复关闭, " + summary);
+    }
+
+    private static void clear() {
+        prefs().edit().remove(KEY_ARMED_SINCE).remove(KEY_INCIDENT_SINCE).apply();
+        attempts = 0;
+        if (restoring != null) {
+            restoring.cancel();
+            restoring = null;
+        }
+        AlarmManager am = (AlarmManager) app.getSystemService(Context.ALARM_SERVICE);
+        if (am != null) {
+            am.cancel(deadlineIntent());
+        }
+    }
+
+    private static void setAlarm(long delayMs) {
+        AlarmManager am = (AlarmManager) app.getSystemService(Context.ALARM_SERVICE);
+        if (am == null) return;
+        long at = SystemClock.elapsedRealtime() + delayMs;
+        try {
+            PendingIntent pi = deadlineIntent();
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S && !am.canScheduleExactAlarms()) {
+                am.setAndAllowWhileIdle(AlarmManager.ELAPSED_REALTIME_WAKEUP, at, pi);
+            } else {
+                am.setExactAndAllowWhileIdle(AlarmManager.ELAPSED_REALTIME_WAKEUP, at, pi);
+            }
+        } catch (Throwable t) {
+            Log.w(TAG, "设置截止闹钟失败", t);
+        }
+    }
+
+    private static PendingIntent deadlineIntent() {
+        Intent intent = new Intent(app, DeadlineReceiver.class);
+        return PendingIntent.getBroadcast(app, REQUEST_CODE_DEADLINE, intent,
+                PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
+    }
+
+    /**
+     * 事故统计
+     */
+    public static String report(Context context) {
+        if (app == null) {
+            app = context.getApplicationContext();
+        }
+        SharedPreferences prefs = prefs();
+        int incidents = prefs.getInt(KEY_INCIDENTS, 0);
+        StringBuilder sb = new StringBuilder("Airplane mode watchdog\n");
+        sb.append("  ").append(prefs.getLong(KEY_ARMED_SINCE, -1L) >= 0 ? "armed" : "idle")
+                .append(", incidents: ").append(incidents);
+        if (incidents > 0) {
+            sb.append(", offline avg ").append(prefs.getLong(KEY_OFFLINE_TOTAL_MS, 0L) / incidents / 1000)
+                    .append("s, max ").append(prefs.getLong(KEY_OFFLINE_MAX_MS, 0L) / 1000).append('s')
+                    .append("\n  last: ").append(prefs.getString(KEY_LAST_INCIDENT, "-"));
+        }
+        return sb.append('\n').toString();
+    }
+
+    /**
+     * 截止 / 重试闹钟：进程已被杀时由此拉起，Application 中安装看门狗后再检查一次
+     */
+    public static final class DeadlineReceiver extends BroadcastReceiver {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            install(context);
+            check("截止闹钟");
+        }
+    }
+}
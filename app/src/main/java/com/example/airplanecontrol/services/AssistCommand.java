@@ -0,0 +1,86 @@
+package com.example.airplanecontrol.services;
+
+import android.content.Context;
+
+import com.example.airplanecontrol.utils.CycleTiming;
+
+/**
+ * 发往数字助理会话的类型化命令，经 {@link AssistCommandMailbox} 按序号投递
+ */
+public final class AssistCommand {
+
+    public enum Type {
+        /** 开启→保持→关闭 周期 */
+        TIMED_TOGGLE("timed_toggle"),
+        /** 读取当前状态后切换到相反状态 */
+        SMART_TOGGLE("smart_toggle"),
+        TURN_ON("turn_on"),
+        TURN_OFF("turn_off");
+
+        public final String command;
+
+        Type(String command) {
+            this.command = command;
+        }
+
+        public static Type fromCommand(String command) {
+            for (Type t : values()) {
+                if (t.command.equals(command)) {
+                    return t;
+                }
+            }
+            return null;
+        }
+    }
+
+    public final Type type;
+    /** 定时切换的保持时长，小于等于 0 表示按偏好设置 */
+    public final long holdMs;
+    /** 定时切换是否自适应，null 表示按偏好设置 */
+    public final Boolean adaptive;
+
+    private AssistCommand(Type type, long holdMs, Boolean adaptive) {
+        this.type = type;
+        this.holdMs = holdMs;
+        this.adaptive = adaptive;
+    }
+
+    public static AssistCommand of(Type type) {
+        return new AssistCommand(type, 0, null);
+    }
+
+    public static AssistCommand setState(boolean enable) {
+        return of(enable ? Type.TURN_ON : Type.TURN_OFF);
+    }
+
+    /**
+     * @param holdMs 保持时长，小于等于 0 表示按偏好设置
+     * @param adaptive 是否自适应，null 表示按偏好设置
+     */
+    public static AssistCommand timedToggle(long holdMs, Boolean adaptive) {
+        return new AssistCommand(Type.TIMED_TOGGLE, holdMs, adaptive);
+    }
+
+    /**
+     * 定时切换的阶段时间：偏好设置叠加命令参数
+     */
+    public CycleTiming resolveTiming(Context context) {
+        CycleTiming timing = CycleTiming.load(context);
+        if (adaptive != null) {
+            timing = timing.withAdaptive(adaptive);
+        }
+        if (holdMs > 0) {
+            timing = timing.withFixedHold(holdMs);
+        }
+        return timing;
+    }
+
+    @Override
+    public String toString() {
+        if (type != Type.TIMED_TOGGLE) {
+            return type.command;
+        }
+        return type.command + (holdMs > 0 ? "(hold=" + holdMs + "ms" : "(hold=默认")
+                + (adaptive != null ? ", adaptive=" + adaptive : "") + ")";
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.airplanecontrol.services;
+
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.example.airplanecontrol.utils.ToggleCycle;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 助理命令信箱：命令按递增序号存放在进程内，showAssist / showSession / warm 会话只传递序号。
+ * 会话按序号取出命令，同一序号只会被取出一次，重复到达（例如 onShow 与 onHandleAssist 都带参数）不会重复执行；
+ * 超时未被取出的命令以失败结束，调用方不必靠固定延时猜测。所有方法都在主线程调用。
+ */
+final class AssistCommandMailbox {
+
+    private static final String TAG = "AssistCommandMailbox";
+
+    /** 会话参数中的命令序号 */
+    static final String ARG_SEQ = "command_seq";
+    /** 会话参数中的命令名（仅用于日志与兼容） */
+    static final String ARG_COMMAND = "command";
+
+    /**
+     * 一条待投递 / 已投递的命令
+     */
+    static final class Entry {
+        final long seq;
+        final AssistCommand command;
+        final long postedMs = SystemClock.elapsedRealtime();
+        AssistantDispatcher.Path path;
+        private ToggleCycle.Completion completion;
+
+        Entry(long seq, AssistCommand command, ToggleCycle.Completion completion) {
+            this.seq = seq;
+            this.command = command;
+            this.completion = completion;
+        }
+
+        /**
+         * 报告命令结果（只生效一次）
+         */
+        void complete(boolean ok, String detail) {
+            ToggleCycle.Completion c = completion;
+            completion = null;
+            if (c == null) return;
+            Log.d(TAG, "命令 #" + seq + " " + command + " 完成: ok=" + ok + ", " + detail);
+            try {
+                c.onComplete(ok, detail);
+            } catch (Throwable t) {
+                Log.e(TAG, "命令完成回调执行失败", t);
+            }
+        }
+
+        Bundle toArgs() {
+            Bundle args = new Bundle();
+            args.putLong(ARG_SEQ, seq);
+            args.putString(ARG_COMMAND, command.type.command);
+            return args;
+        }
+
+        @Override
+        public String toString() {
+            return "#" + seq + " " + command;
+        }
+    }
+
+    private static final Map<Long, Entry> PENDING = new HashMap<>();
+    private static final Handler HANDLER = new Handler(Looper.getMainLooper());
+    private static long nextSeq = 1;
+
+    private AssistCommandMailbox() {}
+
+    /**
+     * 放入一条命令，超过 deliveryTimeoutMs 仍未被会话取出时以失败结束
+     * @param completion 结果回调，可为 null
+     */
+    static Entry post(AssistCommand command, long deliveryTimeoutMs, ToggleCycle.Completion completion) {
+        final Entry entry = new Entry(nextSeq++, command, completion);
+        PENDING.put(entry.seq, entry);
+        HANDLER.postDelayed(() -> {
+            if (PENDING.remove(entry.seq) != null) {
+                Log.w(TAG, "命令未送达会话: " + entry);
+                entry.complete(false, "未送达会话(" + entry.path + ")");
+            }
+        }, deliveryTimeoutMs);
+        return entry;
+    }
+
+    /**
+     * 按序号取出命令，已取出或已过期返回 null
+     */
+    static Entry take(long seq) {
+        return PENDING.remove(seq);
+    }
+
+    static boolean isPending(long seq) {
+        return PENDING.containsKey(seq);
+    }
+
+    /**
+     * 从会话参数中读取命令序号，没有时返回 -1
+     */
+    static long seqOf(Bundle args) {
+        return args != null ? args.getLong(ARG_SEQ, -1L) : -1L;
+    }
+}
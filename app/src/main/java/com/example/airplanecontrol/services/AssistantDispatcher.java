@@ -0,0 +1,167 @@
+package com.example.airplanecontrol.services;
+
+import android.content.Context;
+import android.content.Intent;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.example.airplanecontrol.ui.TransparentActivity;
+import com.example.airplanecontrol.utils.DirectBootStorage;
+import com.example.airplanecontrol.utils.LatencyHistogram;
+import com.example.airplanecontrol.utils.ToggleCycle;
+import com.example.airplanecontrol.utils.Tracer;
+
+/**
+ * 数字助理命令派发。
+ * 有处于显示状态的会话（warm）时直接在会话中执行命令，不再启动透明 Activity、不再调用 showAssist；
+ * 否则在启用直接启动时由已就绪的 {@link MyInteractionService} 调用 showSession 携带命令启动会话；
+ * 以上都不可用时回退到跳板：启动 TransparentActivity 调用 showAssist，由系统复用已有会话或新建会话。
+ * 命令本身经 {@link AssistCommandMailbox} 按序号投递，执行结果回传给调用方。
+ * 分别统计各路径从派发到会话开始执行命令的延迟。所有方法都在主线程调用。
+ */
+public final class AssistantDispatcher {
+
+    private static final String TAG = "AssistantDispatcher";
+
+    /** 命令送达会话的上限，超过后以失败结束 */
+    static final long DELIVERY_TIMEOUT_MS = 10000L;
+    /** showSession 直接启动后等待送达的时间，超过后改走跳板 */
+    private static final long DIRECT_FALLBACK_MS = 2000L;
+
+    /** 偏好：是否优先由助理服务直接 showSession（默认开启） */
+    public static final String KEY_DIRECT_SESSION = "assist_direct_session";
+
+    public enum Path {
+        /** 会话仍在显示，直接派发 */
+        WARM("warm 直接派发"),
+        /** 助理服务 showSession 直接启动会话 */
+        DIRECT("showSession 直接启动"),
+        /** showAssist 复用了已有会话 */
+        REUSED("showAssist 复用会话"),
+        /** showAssist 新建了会话 */
+        COLD("showAssist 新建会话");
+
+        public final String label;
+
+        Path(String label) {
+            this.label = label;
+        }
+    }
+
+    private static final LatencyHistogram[] HISTOGRAMS = new LatencyHistogram[Path.values().length];
+
+    static {
+        for (int i = 0; i < HISTOGRAMS.length; i++) {
+            HISTOGRAMS[i] = new LatencyHistogram();
+        }
+    }
+
+    private static final Handler HANDLER = new Handler(Looper.getMainLooper());
+
+    private AssistantDispatcher() {}
+
+    /**
+     * 派发一条助理命令。命令放入 {@link AssistCommandMailbox}，各路径只传递序号；
+     * showSession 直接启动在 {@link #DIRECT_FALLBACK_MS} 内未送达时以同一序号改走跳板，会话只会执行一次。
+     * @param completion 会话执行结果（已发出请求或确定失败），可为 null
+     * @return 命令序号
+     */
+    public static long dispatch(Context context, AssistCommand command, ToggleCycle.Completion completion) {
+        final Context app = context.getApplicationContext();
+        final AssistCommandMailbox.Entry entry = AssistCommandMailbox.post(command, DELIVERY_TIMEOUT_MS, completion);
+        Tracer.event(Tracer.Event.ASSIST_DISPATCH, entry.seq);
+        MyInteractionSession session = MyInteractionSession.warmSession();
+        if (session != null) {
+            Log.d(TAG, "warm 会话直接派发: " + entry);
+            entry.path = Path.WARM;
+            session.deliver(entry.seq);
+            return entry.seq;
+        }
+        if (isDirectEnabled(app)) {
+            entry.path = Path.DIRECT;
+            if (MyInteractionService.showSessionDirect(entry.toArgs())) {
+                Log.d(TAG, "助理服务 showSession 直接启动: " + entry);
+                HANDLER.postDelayed(() -> {
+                    if (AssistCommandMailbox.isPending(entry.seq)) {
+                        Log.w(TAG, "showSession 未送达，回退到透明 Activity 跳板: " + entry);
+                        launchTrampoline(app, entry);
+                    }
+                }, DIRECT_FALLBACK_MS);
+                return entry.seq;
+            }
+            Log.d(TAG, "助理服务未就绪，回退到透明 Activity 跳板");
+        }
+        launchTrampoline(app, entry);
+        return entry.seq;
+    }
+
+    private static void launchTrampoline(Context context, AssistCommandMailbox.Entry entry) {
+        entry.path = Path.COLD;
+        Log.d(TAG, "无可用会话，启动透明 Activity 调用 showAssist: " + entry);
+        Intent intent = new Intent(context, TransparentActivity.class);
+        intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_MULTIPLE_TASK | Intent.FLAG_ACTIVITY_NO_ANIMATION);
+        intent.putExtras(entry.toArgs());
+        try {
+            context.startActivity(intent);
+        } catch (Throwable t) {
+            Log.e(TAG, "启动透明 Activity 失败", t);
+            if (AssistCommandMailbox.take(entry.seq) != null) {
+                entry.complete(false, "启动透明 Activity 失败: " + t.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 会话从信箱取出命令，按派发路径记录延迟
+     * @param newSession 是否为本会话收到的第一条命令（区分跳板复用 / 新建会话）
+     */
+    static void onDelivered(AssistCommandMailbox.Entry entry, boolean newSession) {
+        long latency = SystemClock.elapsedRealtime() - entry.postedMs;
+        Path path = entry.path;
+        if (path == Path.COLD && !newSession) {
+            path = Path.REUSED;
+        }
+        if (path != null) {
+            record(path, latency);
+        }
+    }
+
+    public static boolean isDirectEnabled(Context context) {
+        return DirectBootStorage.prefs(context)
+                .getBoolean(KEY_DIRECT_SESSION, true);
+    }
+
+    public static void setDirectEnabled(Context context, boolean enabled) {
+        DirectBootStorage.prefs(context)
+                .edit().putBoolean(KEY_DIRECT_SESSION, enabled).apply();
+        Log.d(TAG, "直接启动会话设置: " + enabled);
+    }
+
+    private static void record(Path path, long latencyMs) {
+        HISTOGRAMS[path.ordinal()].record(latencyMs);
+        Log.d(TAG, path + " 派发延迟 " + latencyMs + "ms");
+    }
+
+    public static LatencyHistogram histogram(Path path) {
+        return HISTOGRAMS[path.ordinal()];
+    }
+
+    public static void reset() {
+        for (LatencyHistogram h : HISTOGRAMS) {
+            h.reset();
+        }
+    }
+
+    /**
+     * 各派发路径的延迟报告（毫秒，派发到会话取出命令）
+     */
+    public static String report() {
+        StringBuilder sb = new StringBuilder("Assistant dispatch (ms)\n");
+        for (Path path : Path.values()) {
+            sb.append("  ").append(path.label).append(": ").append(histogram(path).summary()).append('\n');
+        }
+        return sb.toString();
+    }
+}
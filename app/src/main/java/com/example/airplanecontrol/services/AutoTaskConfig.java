@@ -0,0 +1,136 @@
+package com.example.airplanecontrol.services;
+
+import android.content.Intent;
+import android.content.SharedPreferences;
+
+import com.example.airplanecontrol.utils.CycleTiming;
+import com.example.airplanecontrol.utils.FixedRateSchedule;
+import com.example.airplanecontrol.utils.RotationVerifier;
+
+/**
+ * 自动任务配置的不可变快照。
+ * 服务在偏好变化时整体替换快照（AtomicReference），调度与命令处理只读取当前快照，不在每次触发时读取偏好。
+ * 启动命令的参数覆盖偏好中的同名值，之后某个偏好被修改时只替换对应的字段。
+ */
+final class AutoTaskConfig {
+
+    static final String KEY_TOGGLE_INTERVAL = "toggle_interval";
+    static final String KEY_HIGH_FREQUENCY_SECONDS = "high_frequency_seconds";
+    static final String KEY_CONTROL_MODE_SECURE = "control_mode_secure";
+    static final String KEY_MISSED_RUN_POLICY = "missed_run_policy";
+    static final String KEY_SCHEDULE_SPREAD = "schedule_spread";
+    static final String KEY_SCHEDULE_JITTER_MS = "schedule_jitter_ms";
+
+    static final int DEFAULT_INTERVAL_MINUTES = 15;
+
+    final int intervalMinutes;
+    /** 高频模式的秒级间隔，0 表示按分钟间隔 */
+    final int intervalSeconds;
+    final boolean secure;
+    final CycleTiming timing;
+    final FixedRateSchedule.MissedRunPolicy policy;
+    final RotationScheduler.Spread spread;
+    /** 错峰抖动，小于 0 表示按周期取默认值 */
+    final long jitterMs;
+    final int retryBudget;
+
+    private AutoTaskConfig(int intervalMinutes, int intervalSeconds, boolean secure, CycleTiming timing,
+                           FixedRateSchedule.MissedRunPolicy policy, RotationScheduler.Spread spread,
+                           long jitterMs, int retryBudget) {
+        this.intervalMinutes = intervalMinutes;
+        this.intervalSeconds = intervalSeconds;
+        this.secure = secure;
+        this.timing = timing;
+        this.policy = policy;
+        this.spread = spread;
+        this.jitterMs = jitterMs;
+        this.retryBudget = retryBudget;
+    }
+
+    static AutoTaskConfig load(SharedPreferences prefs) {
+        return new AutoTaskConfig(
+                prefs.getInt(KEY_TOGGLE_INTERVAL, DEFAULT_INTERVAL_MINUTES),
+                prefs.getInt(KEY_HIGH_FREQUENCY_SECONDS, 0),
+                prefs.getBoolean(KEY_CONTROL_MODE_SECURE, false),
+                CycleTiming.load(prefs),
+                FixedRateSchedule.parsePolicy(prefs.getString(KEY_MISSED_RUN_POLICY, null)),
+                RotationScheduler.Spread.parse(prefs.getString(KEY_SCHEDULE_SPREAD, null)),
+                prefs.getLong(KEY_SCHEDULE_JITTER_MS, -1L),
+                RotationVerifier.retryBudget(prefs));
+    }
+
+    /**
+     * 以启动命令参数覆盖（interval_minutes / interval_seconds / missed_run_policy / schedule_spread / schedule_jitter_ms）
+     */
+    AutoTaskConfig withOverrides(Intent intent) {
+        if (intent == null) return this;
+        return new AutoTaskConfig(
+                intent.getIntExtra("interval_minutes", intervalMinutes),
+                intent.getIntExtra("interval_seconds", intervalSeconds),
+                secure,
+                timing,
+                intent.hasExtra(KEY_MISSED_RUN_POLICY)
+                        ? FixedRateSchedule.parsePolicy(intent.getStringExtra(KEY_MISSED_RUN_POLICY)) : policy,
+                intent.hasExtra(KEY_SCHEDULE_SPREAD)
+                        ? RotationScheduler.Spread.parse(intent.getStringExtra(KEY_SCHEDULE_SPREAD)) : spread,
+                intent.getLongExtra(KEY_SCHEDULE_JITTER_MS, jitterMs),
+                retryBudget);
+    }
+
+    /**
+     * 偏好 key 被修改后的快照：只替换 key 对应的字段，其余（包括启动参数的覆盖）保持不变
+     * @param key 为 null（偏好被清空）时整体取 fromPrefs
+     * @return 与当前相同的快照时返回 this
+     */
+    AutoTaskConfig reload(String key, AutoTaskConfig fromPrefs) {
+        if (key == null) return fromPrefs;
+        boolean timingKey = CycleTiming.KEY_ADAPTIVE.equals(key) || CycleTiming.KEY_HOLD_CEILING_MS.equals(key)
+                || CycleTiming.KEY_NETWORK_CEILING_MS.equals(key);
+        AutoTaskConfig next = new AutoTaskConfig(
+                KEY_TOGGLE_INTERVAL.equals(key) ? fromPrefs.intervalMinutes : intervalMinutes,
+                KEY_HIGH_FREQUENCY_SECONDS.equals(key) ? fromPrefs.intervalSeconds : intervalSeconds,
+                KEY_CONTROL_MODE_SECURE.equals(key) ? fromPrefs.secure : secure,
+                timingKey ? fromPrefs.timing : timing,
+                KEY_MISSED_RUN_POLICY.equals(key) ? fromPrefs.policy : policy,
+                KEY_SCHEDULE_SPREAD.equals(key) ? fromPrefs.spread : spread,
+                KEY_SCHEDULE_JITTER_MS.equals(key) ? fromPrefs.jitterMs : jitterMs,
+                RotationVerifier.KEY_RETRY_BUDGET.equals(key) ? fromPrefs.retryBudget : retryBudget);
+        return next.equals(this) ? this : next;
+    }
+
+    long intervalMillis() {
+        return intervalSeconds > 0 ? intervalSeconds * 1000L : intervalMinutes * 60L * 1000L;
+    }
+
+    /**
+     * 调度参数是否相同（相同时无需重新排期）
+     */
+    boolean sameSchedule(AutoTaskConfig other) {
+        return other != null && intervalMillis() == other.intervalMillis() && policy == other.policy
+                && spread == other.spread && jitterMs == other.jitterMs;
+    }
+
+    String describeInterval() {
+        return intervalSeconds > 0 ? intervalSeconds + " 秒(高频)" : intervalMinutes + " 分钟";
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof AutoTaskConfig)) return false;
+        AutoTaskConfig c = (AutoTaskConfig) o;
+        return sameSchedule(c) && intervalMinutes == c.intervalMinutes && intervalSeconds == c.intervalSeconds
+                && secure == c.secure && timing.equals(c.timing) && retryBudget == c.retryBudget;
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) intervalMillis() * 31 + (secure ? 1 : 0);
+    }
+
+    @Override
+    public String toString() {
+        return "间隔 " + describeInterval() + ", 模式 " + (secure ? "SECURE" : "ASSISTANT") + ", 漏跑策略 " + policy
+                + ", 错峰 " + spread + ", " + timing + ", 重试 " + retryBudget;
+    }
+}
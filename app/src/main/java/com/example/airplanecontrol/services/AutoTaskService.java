@@ -6,21 +6,30 @@ import android.app.NotificationManager;
 import android.app.PendingIntent;
 import android.app.Service;
 import android.content.Intent;
+import android.content.pm.ServiceInfo;
 import android.os.Build;
 import android.os.Bundle;
-import android.os.Handler;
 import android.os.IBinder;
-import android.os.Looper;
+import android.os.ResultReceiver;
 import android.util.Log;
 
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
 import androidx.annotation.Nullable;
 import androidx.core.app.NotificationCompat;
 
 import com.example.airplanecontrol.AppLifecycleObserver;
 import com.example.airplanecontrol.R;
 import com.example.airplanecontrol.ui.AirplaneModeActivity;
-import com.example.airplanecontrol.ui.TransparentActivity;
-import com.example.airplanecontrol.utils.AirplaneModeUtils;
+import com.example.airplanecontrol.utils.ControlServer;
+import com.example.airplanecontrol.utils.CycleTiming;
+import com.example.airplanecontrol.utils.CycleTraceExporter;
+import com.example.airplanecontrol.utils.DirectBootStorage;
+import com.example.airplanecontrol.utils.OperationLogStore;
+import com.example.airplanecontrol.utils.RotationVerifier;
+import com.example.airplanecontrol.utils.ToggleCycle;
+import com.example.airplanecontrol.utils.Tracer;
 
 import android.content.SharedPreferences;
 import android.content.Context;
@@ -28,6 +37,7 @@ import android.provider.Settings;
 import android.content.pm.PackageManager;
 import android.Manifest;
 import androidx.core.content.ContextCompat;
+import androidx.core.content.IntentCompat;
 
 public class AutoTaskService extends Service {
 
@@ -35,166 +45,513 @@ public class AutoTaskService extends Service {
     private static final String CHANNEL_ID = "auto_task_channel";
     private static final int NOTIFICATION_ID = 1001;
 
-    private final Handler handler = new Handler(Looper.getMainLooper());
-    private Runnable timedToggleRunnable;
+    private static final String KEY_NEXT_FIRE_AT = "next_fire_at";
+    /** 前台被拒绝后由唤醒闹钟重新拉起服务的延迟 */
+    private static final long RESUME_RETRY_DELAY_MS = 60_000L;
+
+    static final String COMMAND_STOP_SCHEDULE = "stop_schedule";
+    static final String COMMAND_CANCEL_CYCLE = "cancel_cycle";
+    static final String COMMAND_TRACE_LEVEL = "trace_level";
+    static final String COMMAND_EXPORT_TRACE = "export_trace";
+    /** 开机恢复调度时由 BootCompletedReceiver 附带，用于统计开机到第一次周期的耗时 */
+    public static final String EXTRA_BOOT_RESUME = "boot_resume";
+
+    private RotationScheduler scheduler;
+    private ToggleCommandQueue commandQueue;
+    private BurstRunner burstRunner;
+    private ControlBackend controlBackend;
+    private ControlServer controlServer;
+    private boolean inForeground;
     private boolean isTaskRunning = false;
+    private boolean awaitingFirstBootCycle;
+    // 配置快照：偏好变化时整体替换，调度与命令处理只读取快照
+    private final AtomicReference<AutoTaskConfig> config = new AtomicReference<>();
+    private SharedPreferences configPrefs;
 
+    // 下一次定时切换的墙钟时间，供界面与外部查询
+    private static volatile long nextFireWallMs = -1L;
+    // 请求频率与实际频率对比，供界面查询
+    private static volatile String frequencyReport;
+    // 同一时间只进行一次追踪导出
+    private static final AtomicBoolean exporting = new AtomicBoolean();
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        // 所有切换请求（界面、一次性命令、定时调度）都经由同一个命令队列串行执行
+        commandQueue = new ToggleCommandQueue(this, () -> {
+            if (scheduler != null) {
+                scheduler.onCycleSettled();
+                frequencyReport = scheduler.frequencyReport();
+            }
+            publishStatus();
+        });
+        burstRunner = new BurstRunner(this, commandQueue);
+        controlBackend = new ControlBackend(this);
+        ToggleCycle.addObserver(cycleObserver);
+        configPrefs = DirectBootStorage.prefs(this);
+        config.set(AutoTaskConfig.load(configPrefs));
+        configPrefs.registerOnSharedPreferenceChangeListener(configListener);
+    }
 
     @Override
     public int onStartCommand(Intent intent, int flags, int startId) {
         Log.d(TAG, "AutoTaskService启动");
-        // 处理一次性定时切换命令
+        // 处理一次性切换命令
         if (intent != null && intent.hasExtra("command")) {
             String command = intent.getStringExtra("command");
-            if ("timed_toggle".equals(command)) {
-                handleTimedToggleCommand(intent);
+            ToggleCommandQueue.Kind kind = ToggleCommandQueue.Kind.fromCommand(command);
+            if (kind != null) {
+                handleToggleCommand(intent, kind);
                 return START_NOT_STICKY; // 一次性命令，不需要重启
             }
+            if (BurstRunner.COMMAND_BURST.equals(command)) {
+                handleBurstCommand(intent);
+                return START_NOT_STICKY;
+            }
+            if (BurstRunner.COMMAND_CANCEL_BURST.equals(command)) {
+                burstRunner.cancel("用户取消");
+                return START_NOT_STICKY;
+            }
+            if (COMMAND_STOP_SCHEDULE.equals(command)) {
+                stopSchedule();
+                return START_NOT_STICKY;
+            }
+            if (ControlBackend.COMMAND_CONTROL_SERVER.equals(command)) {
+                updateControlServer();
+                return START_NOT_STICKY;
+            }
+            if (COMMAND_TRACE_LEVEL.equals(command)) {
+                // 级别写入偏好，由偏好监听应用并在重启后保持
+                Tracer.Level level = Tracer.Level.parse(intent.getStringExtra(Tracer.KEY_LEVEL));
+                configPrefs.edit().putString(Tracer.KEY_LEVEL, level.name()).apply();
+                return START_NOT_STICKY;
+            }
+            if (COMMAND_EXPORT_TRACE.equals(command)) {
+                handleExportTrace(intent);
+                return START_NOT_STICKY;
+            }
+            if (COMMAND_CANCEL_CYCLE.equals(command)) {
+                cancelCycle("用户取消");
+                return START_NOT_STICKY;
+            }
+            if (RotationScheduler.COMMAND_SCHEDULED_TICK.equals(command) && scheduler != null && scheduler.isRunning()) {
+                // 闹钟以前台服务方式送达，必须再次调用 startForeground
+                if (!enterForeground()) {
+                    onForegroundDenied();
+                    return START_NOT_STICKY;
+                }
+                scheduler.onAlarm();
+                return START_STICKY;
+            }
+            // 进程被回收后由闹钟拉起（前台服务启动）时调度器不存在，按正常启动流程恢复调度并进入前台
         }
 
         if (isTaskRunning) {
             Log.d(TAG, "服务已在运行，忽略新的启动命令，但会更新间隔");
         }
 
-        // 读取偏好：控制方式与间隔
-        SharedPreferences prefs = getSharedPreferences("airplane_mode_prefs", Context.MODE_PRIVATE);
-        final boolean useSecure = prefs.getBoolean("control_mode_secure", false);
-        int intervalMinutes = prefs.getInt("toggle_interval", 15);
-        if (intent != null && intent.hasExtra("interval_minutes")) {
-            intervalMinutes = intent.getIntExtra("interval_minutes", intervalMinutes);
+        if (intent != null && intent.getBooleanExtra(EXTRA_BOOT_RESUME, false)) {
+            awaitingFirstBootCycle = true;
         }
-        final long intervalMillis = intervalMinutes * 60L * 1000L;
 
-        createNotificationChannel();
-        startForeground(NOTIFICATION_ID, createNotification(intervalMinutes));
+        // 读取偏好（解锁前读取设备加密存储中的镜像），启动参数覆盖同名偏好
+        SharedPreferences prefs = DirectBootStorage.prefs(this);
+        AutoTaskConfig cfg = AutoTaskConfig.load(prefs).withOverrides(intent);
+        AutoTaskConfig previous = config.getAndSet(cfg);
+        if (intent != null && (intent.hasExtra(ControlBackend.KEY_ENABLED) || intent.hasExtra(ControlBackend.KEY_PORT))) {
+            // 编排端可在启动服务时开启控制服务器并指定端口
+            SharedPreferences.Editor editor = prefs.edit();
+            if (intent.hasExtra(ControlBackend.KEY_ENABLED)) {
+                editor.putBoolean(ControlBackend.KEY_ENABLED, intent.getBooleanExtra(ControlBackend.KEY_ENABLED, false));
+            }
+            if (intent.hasExtra(ControlBackend.KEY_PORT)) {
+                editor.putInt(ControlBackend.KEY_PORT, intent.getIntExtra(ControlBackend.KEY_PORT, ControlServer.DEFAULT_PORT));
+            }
+            editor.apply();
+        }
+        if (intent != null && intent.hasExtra(RotationVerifier.KEY_RETRY_BUDGET)) {
+            RotationVerifier.setRetryBudget(this, intent.getIntExtra(RotationVerifier.KEY_RETRY_BUDGET,
+                    RotationVerifier.DEFAULT_RETRY_BUDGET));
+        }
 
-        Log.d(TAG, "前台服务启动/更新，切换间隔: " + intervalMinutes + " 分钟");
+        if (!enterForeground()) {
+            onForegroundDenied();
+            return START_NOT_STICKY;
+        }
+
+        Log.d(TAG, "前台服务启动/更新: " + cfg);
+        OperationLogStore.append(this, "自动任务启动，" + cfg);
         isTaskRunning = true;
 
-        final int secureWaitMs = 2000; // Secure方式下开->等待->关
-        // 若已存在旧任务，先移除，保证新间隔立即生效
-        if (timedToggleRunnable != null) {
-            handler.removeCallbacks(timedToggleRunnable);
-        }
-        timedToggleRunnable = new Runnable() {
-            @Override
-            public void run() {
-                // 每次触发时重新读取控制方式，保证切换后立即生效
-                boolean currentUseSecure;
-                try {
-                    SharedPreferences p = getSharedPreferences("airplane_mode_prefs", Context.MODE_PRIVATE);
-                    currentUseSecure = p.getBoolean("control_mode_secure", false);
-                } catch (Throwable t) {
-                    currentUseSecure = useSecure;
+        if (scheduler == null) {
+            scheduler = new RotationScheduler(this, new RotationScheduler.Listener() {
+                @Override
+                public void onScheduledRun() {
+                    runScheduledCycle();
                 }
 
-                Log.d(TAG, "执行一次定时切换, mode=" + (currentUseSecure ? "SECURE" : "ASSISTANT"));
-                if (currentUseSecure) {
-                    try {
-                        boolean before = AirplaneModeUtils.isAirplaneModeOn(AutoTaskService.this);
-                        boolean okOn = AirplaneModeUtils.setAirplaneMode(AutoTaskService.this, true);
-                        Log.d(TAG, "WSS set ON result=" + okOn + ", before=" + before + ", after=" + AirplaneModeUtils.isAirplaneModeOn(AutoTaskService.this));
-                        handler.postDelayed(() -> {
-                            boolean okOff = AirplaneModeUtils.setAirplaneMode(AutoTaskService.this, false);
-                            Log.d(TAG, "WSS set OFF result=" + okOff + ", after=" + AirplaneModeUtils.isAirplaneModeOn(AutoTaskService.this));
-                        }, secureWaitMs);
-                    } catch (Throwable t) {
-                        Log.e(TAG, "Secure Settings 切换失败", t);
-                    }
-                } else {
-                    triggerShowAssist("timed_toggle");
+                @Override
+                public boolean isCycleInFlight() {
+                    return commandQueue.isBusy() || ToggleCycle.isBusy();
                 }
-                handler.postDelayed(this, intervalMillis);
-            }
-        };
 
-        handler.post(timedToggleRunnable);
+                @Override
+                public void onRearmed(long nextFireElapsedMs, long nextWallMs) {
+                    onScheduleRearmed(nextWallMs);
+                }
+            });
+        }
+        if (!scheduler.isRunning()) {
+            // 以当前时刻（或对齐的墙钟时间点）为锚点开始
+            scheduler.start(cfg.intervalMillis(), cfg.policy, cfg.spread, cfg.jitterMs, deviceSeed());
+        } else if (!cfg.sameSchedule(previous)) {
+            // 调度已在运行：只改排期，进行中的周期不受影响
+            scheduler.reschedule(cfg.intervalMillis(), cfg.policy, cfg.spread, cfg.jitterMs, deviceSeed());
+        } else {
+            Log.d(TAG, "调度参数未变化，保持当前排期");
+        }
+        updateControlServer();
         return START_STICKY;
     }
 
     /**
-     * 处理一次性定时切换命令（开启→等待2秒→关闭）
+     * 到达调度时间点，执行一次定时切换
+     */
+    private void runScheduledCycle() {
+        // 控制方式取当前配置快照，偏好修改后下一次触发即生效
+        AutoTaskConfig cfg = config.get();
+        boolean currentUseSecure = cfg.secure;
+        if (!currentUseSecure && !DirectBootStorage.isUserUnlocked(this)) {
+            // 解锁前无法启动助理会话与透明 Activity
+            if (!hasWriteSecureSettingsPermission()) {
+                Log.w(TAG, "用户未解锁且未授予 WRITE_SECURE_SETTINGS，跳过本次定时切换");
+                return;
+            }
+            Log.d(TAG, "用户未解锁，本次使用 SECURE 模式");
+            currentUseSecure = true;
+        }
+        if (awaitingFirstBootCycle) {
+            awaitingFirstBootCycle = false;
+            DirectBootStorage.recordFirstCycle(this);
+        }
+
+        Tracer.event(Tracer.Event.SCHEDULE_TICK, currentUseSecure ? 1 : 0);
+        if (Tracer.isVerbose()) {
+            Log.d(TAG, "执行一次定时切换, mode=" + (currentUseSecure ? "SECURE" : "ASSISTANT"));
+        }
+        OperationLogStore.append(this, "自动定时切换, 模式=" + (currentUseSecure ? "SECURE" : "ASSISTANT"));
+        commandQueue.submit(new ToggleCommandQueue.Command(ToggleCommandQueue.Kind.CYCLE,
+                currentUseSecure, cfg.timing, "schedule", cfg.retryBudget), null);
+        if (scheduler != null) {
+            frequencyReport = scheduler.frequencyReport();
+        }
+    }
+
+    private long deviceSeed() {
+        return RotationScheduler.deviceSeed(Settings.Secure.getString(getContentResolver(), Settings.Secure.ANDROID_ID));
+    }
+
+    /**
+     * 偏好变化：替换配置快照，调度参数变化时对运行中的调度重新排期（不重启服务、不中断进行中的周期）
+     */
+    private final SharedPreferences.OnSharedPreferenceChangeListener configListener = (prefs, key) -> {
+        if (ControlBackend.KEY_ENABLED.equals(key) || ControlBackend.KEY_PORT.equals(key)) {
+            updateControlServer();
+            return;
+        }
+        if (Tracer.KEY_LEVEL.equals(key)) {
+            Tracer.setLevel(Tracer.Level.parse(prefs.getString(key, null)));
+            return;
+        }
+        AutoTaskConfig previous = config.get();
+        AutoTaskConfig next = previous.reload(key, AutoTaskConfig.load(prefs));
+        if (next == previous) return;
+        config.set(next);
+        Log.d(TAG, "配置已更新(" + key + "): " + next);
+        if (scheduler != null && scheduler.isRunning() && !next.sameSchedule(previous)) {
+            OperationLogStore.append(this, "调度参数已热更新，" + next);
+            scheduler.reschedule(next.intervalMillis(), next.policy, next.spread, next.jitterMs, deviceSeed());
+        }
+        publishStatus();
+    };
+
+    /**
+     * 所有周期（含队列外由助理会话启动的）的状态变化：开/关阶段结束时通知调度器开始顺延的执行
+     */
+    private final ToggleCycle.Listener cycleObserver = (cycle, state) -> {
+        if (state == ToggleCycle.State.RECOVERING || state.isTerminal()) {
+            if (scheduler != null) {
+                scheduler.onCycleSettled();
+                frequencyReport = scheduler.frequencyReport();
+            }
+        }
+        publishStatus();
+    };
+
+    /**
+     * 停止定时调度，服务（及控制服务器）保持运行
+     */
+    private void stopSchedule() {
+        if (scheduler != null) {
+            scheduler.stop();
+        }
+        isTaskRunning = false;
+        nextFireWallMs = -1L;
+        frequencyReport = null;
+        OperationLogStore.append(this, "自动任务调度已停止");
+        publishStatus();
+    }
+
+    /**
+     * 按偏好启动 / 停止本机控制服务器。服务器只在前台服务运行期间存在
+     */
+    private void updateControlServer() {
+        SharedPreferences prefs = DirectBootStorage.prefs(this);
+        boolean enabled = inForeground && prefs.getBoolean(ControlBackend.KEY_ENABLED, false);
+        int port = prefs.getInt(ControlBackend.KEY_PORT, ControlServer.DEFAULT_PORT);
+        if (controlServer != null && (!enabled || controlServer.port() != port || !controlServer.isRunning())) {
+            controlServer.stop();
+            controlServer = null;
+        }
+        if (enabled && controlServer == null) {
+            String token = ControlBackend.token(this);
+            ControlServer server = new ControlServer(port, token, controlBackend);
+            try {
+                server.start();
+                controlServer = server;
+                OperationLogStore.append(this, "本机控制服务器已启动, 端口 " + server.port());
+                // 令牌只写入 logcat（其他应用无法读取），供 adb 客户端使用
+                Log.i(TAG, "控制服务器令牌: " + token);
+            } catch (java.io.IOException e) {
+                Log.e(TAG, "控制服务器启动失败", e);
+                OperationLogStore.append(this, "本机控制服务器启动失败: " + e.getMessage());
+            }
+        }
+        publishStatus();
+    }
+
+    /**
+     * 发布状态快照，控制服务器的 status 请求只读取快照，不经过主线程
+     */
+    private void publishStatus() {
+        if (controlBackend == null) return;
+        ToggleCycle cycle = ToggleCycle.current();
+        ControlServer.Response status = new ControlServer.Response()
+                .put("scheduled", scheduler != null && scheduler.isRunning())
+                .put("interval", describeInterval())
+                .put("next_fire_at", nextFireWallMs)
+                .put("frequency", frequencyReport)
+                .put("queue_busy", commandQueue.isBusy())
+                .put("burst_running", burstRunner.isRunning())
+                .put("cycle_state", cycle != null ? cycle.state().name() : null)
+                .put("cycle_summary", cycle != null ? cycle.summary() : null)
+                .put("published_at", System.currentTimeMillis());
+        controlBackend.publishStatus(status.toJson());
+    }
+
+    /**
+     * 下一次触发时间更新：发布给外部并刷新通知
+     */
+    private void onScheduleRearmed(long nextWallMs) {
+        nextFireWallMs = nextWallMs;
+        DirectBootStorage.prefs(this)
+                .edit().putLong(KEY_NEXT_FIRE_AT, nextWallMs).apply();
+        NotificationManager manager = getSystemService(NotificationManager.class);
+        if (manager != null) {
+            manager.notify(NOTIFICATION_ID, createNotification());
+        }
+        if (scheduler != null) {
+            frequencyReport = scheduler.frequencyReport();
+        }
+        publishStatus();
+        if (Tracer.isVerbose()) {
+            Log.d(TAG, "下一次定时切换: " + formatTime(nextWallMs));
+        }
+    }
+
+    /**
+     * 是否有运行中的定时调度（运行中修改间隔与控制方式会直接热更新，无需重启服务）
+     */
+    public static boolean isScheduleRunning() {
+        return nextFireWallMs >= 0;
+    }
+
+    /**
+     * 下一次定时切换的墙钟时间（毫秒），服务未调度时为 -1
      */
-    private void handleTimedToggleCommand(Intent intent) {
-        Log.d(TAG, "处理一次性定时切换命令");
+    public static long getNextFireWallMs() {
+        return nextFireWallMs;
+    }
+
+    /** 是否开启了本机控制服务器 */
+    public static boolean isControlServerEnabled(Context context) {
+        return DirectBootStorage.prefs(context)
+                .getBoolean(ControlBackend.KEY_ENABLED, false);
+    }
+
+    /**
+     * 开启 / 关闭本机控制服务器；服务正在前台运行时立即生效，否则在下次启动自动任务时生效
+     */
+    public static void setControlServerEnabled(Context context, boolean enabled) {
+        DirectBootStorage.prefs(context)
+                .edit().putBoolean(ControlBackend.KEY_ENABLED, enabled).apply();
+        Intent intent = new Intent(context, AutoTaskService.class);
+        intent.putExtra("command", ControlBackend.COMMAND_CONTROL_SERVER);
+        context.startService(intent);
+    }
+
+    /**
+     * 请求频率与实际达到频率的对比，服务未调度时为 null
+     */
+    public static String getFrequencyReport() {
+        return frequencyReport;
+    }
+
+    private String describeInterval() {
+        return config.get().describeInterval();
+    }
+
+    private static String formatTime(long wallMs) {
+        return java.text.DateFormat.getTimeInstance(java.text.DateFormat.MEDIUM).format(new java.util.Date(wallMs));
+    }
+
+    /**
+     * 处理一次性切换命令：定时切换（开启→保持→关闭）、智能切换、开启、关闭。
+     * 命令进入队列串行执行，结果通过 result_receiver 回传。
+     */
+    private void handleToggleCommand(Intent intent, ToggleCommandQueue.Kind kind) {
+        if (Tracer.isVerbose()) {
+            Log.d(TAG, "处理一次性切换命令: " + kind);
+        }
         
-        String mode = intent.getStringExtra("mode");
-        boolean useSecure = "secure".equals(mode);
+        boolean useSecure = resolveSecure(intent);
+        CycleTiming timing = resolveTiming(intent);
         
-        // 如果没有指定模式，从偏好设置读取
-        if (mode == null) {
-            SharedPreferences prefs = getSharedPreferences("airplane_mode_prefs", Context.MODE_PRIVATE);
-            useSecure = prefs.getBoolean("control_mode_secure", false);
+        String source = intent.getStringExtra("source");
+        if (Tracer.isVerbose()) {
+            Log.d(TAG, "切换命令模式: " + (useSecure ? "SECURE" : "ASSISTANT") + ", timing=" + timing);
         }
+        OperationLogStore.append(this, "一次性" + kind.command + ", 模式=" + (useSecure ? "SECURE" : "ASSISTANT")
+                + (kind == ToggleCommandQueue.Kind.CYCLE ? ", " + timing : ""));
         
-        Log.d(TAG, "定时切换模式: " + (useSecure ? "SECURE" : "ASSISTANT"));
-        
-        if (useSecure) {
-            executeSecureTimedToggle();
+        // 一次性周期默认不重试，可通过 retry_budget 参数指定
+        int retryBudget = Math.max(0, Math.min(RotationVerifier.MAX_RETRY_BUDGET, intent.getIntExtra("retry_budget", 0)));
+        ResultReceiver receiver = IntentCompat.getParcelableExtra(intent, ToggleCommandQueue.EXTRA_RESULT_RECEIVER,
+                ResultReceiver.class);
+        commandQueue.submit(new ToggleCommandQueue.Command(kind, useSecure, timing,
+                source != null ? source : "command", retryBudget), receiver);
+    }
+
+    /**
+     * 连发轮换：背靠背执行周期直到满足停止条件（until / count / budget_ms / max_attempts），
+     * 每次尝试与最终结果通过 result_receiver 回传
+     */
+    private void handleBurstCommand(Intent intent) {
+        BurstRunner.Spec spec = new BurstRunner.Spec(
+                BurstRunner.Until.parse(intent.getStringExtra("until")),
+                intent.getIntExtra("count", 1),
+                intent.getLongExtra("budget_ms", BurstRunner.DEFAULT_TIME_BUDGET_MS),
+                intent.getIntExtra("max_attempts", BurstRunner.DEFAULT_MAX_ATTEMPTS),
+                resolveSecure(intent), resolveTiming(intent));
+        ResultReceiver receiver = IntentCompat.getParcelableExtra(intent, ToggleCommandQueue.EXTRA_RESULT_RECEIVER,
+                ResultReceiver.class);
+        burstRunner.start(spec, receiver);
+    }
+
+    /**
+     * 导出最近 cycles 个周期的 Chrome trace JSON，在后台线程写文件，
+     * 结果（path / cycles / events 或 error）通过 result_receiver 回传
+     */
+    private void handleExportTrace(Intent intent) {
+        final int cycles = intent.getIntExtra("cycles", CycleTraceExporter.DEFAULT_CYCLES);
+        final ResultReceiver receiver = IntentCompat.getParcelableExtra(intent,
+                ToggleCommandQueue.EXTRA_RESULT_RECEIVER, ResultReceiver.class);
+        final Context app = getApplicationContext();
+        if (!exporting.compareAndSet(false, true)) {
+            Log.w(TAG, "追踪导出已在进行，忽略本次命令");
+            sendExportResult(receiver, null, "export already running");
+            return;
+        }
+        new Thread(() -> {
+            try {
+                CycleTraceExporter.Result result = CycleTraceExporter.export(app, cycles);
+                OperationLogStore.append(app, "导出周期追踪: " + result);
+                sendExportResult(receiver, result, null);
+            } catch (Throwable t) {
+                Log.e(TAG, "导出周期追踪失败", t);
+                sendExportResult(receiver, null, String.valueOf(t.getMessage()));
+            } finally {
+                exporting.set(false);
+            }
+        }, "trace-export").start();
+    }
+
+    private static void sendExportResult(ResultReceiver receiver, CycleTraceExporter.Result result, String error) {
+        if (receiver == null) return;
+        Bundle data = new Bundle();
+        if (result != null) {
+            data.putString("path", result.file.getAbsolutePath());
+            data.putInt("cycles", result.cycles);
+            data.putInt("events", result.events);
         } else {
-            executeAssistantTimedToggle();
+            data.putString("error", error);
         }
+        receiver.send(result != null ? 0 : 1, data);
     }
-    
+
     /**
-     * 执行Secure模式的定时切换（开启→等待2秒→关闭）
+     * 控制方式：mode 参数优先，未指定时从偏好设置读取
      */
-    private void executeSecureTimedToggle() {
-        try {
-            Log.d(TAG, "开始Secure模式定时切换");
-            
-            // 1. 开启飞行模式
-            boolean before = AirplaneModeUtils.isAirplaneModeOn(this);
-            boolean okOn = AirplaneModeUtils.setAirplaneMode(this, true);
-            
-            Log.d(TAG, "Secure ON result=" + okOn + ", before=" + before);
-            
-            // 2. 等待2秒
-            handler.postDelayed(() -> {
-                try {
-                    // 3. 关闭飞行模式
-                    boolean okOff = AirplaneModeUtils.setAirplaneMode(this, false);
-                    Log.d(TAG, "Secure OFF result=" + okOff + ", after=" + AirplaneModeUtils.isAirplaneModeOn(this));
-                } catch (Throwable t) {
-                    Log.e(TAG, "Secure模式关闭失败", t);
-                }
-            }, 2000L);
-            
-        } catch (Throwable t) {
-            Log.e(TAG, "Secure模式定时切换失败", t);
+    private boolean resolveSecure(Intent intent) {
+        String mode = intent.getStringExtra("mode");
+        if (mode == null) {
+            return config.get().secure;
         }
+        return "secure".equals(mode);
     }
-    
+
     /**
-     * 执行Assistant模式的定时切换（开启→等待2秒→关闭）
+     * 阶段时间：可通过 adaptive / hold_ms 参数覆盖偏好设置
      */
-    private void executeAssistantTimedToggle() {
-        Log.d(TAG, "开始Assistant模式定时切换");
-        
-        // 1. 第一次调用showAssist（开启）
-        triggerShowAssist("smart_toggle");
-        
-        // 2. 等待2秒后第二次调用showAssist（关闭）
-        handler.postDelayed(() -> {
-            Log.d(TAG, "2秒已过，执行第二次切换（关闭）");
-            triggerShowAssist("smart_toggle");
-        }, 2000L);
+    private CycleTiming resolveTiming(Intent intent) {
+        CycleTiming timing = config.get().timing;
+        if (intent.hasExtra("adaptive")) {
+            timing = timing.withAdaptive(intent.getBooleanExtra("adaptive", timing.adaptive));
+        }
+        long holdMs = intent.getLongExtra("hold_ms", 0L);
+        if (holdMs > 0) {
+            timing = timing.withFixedHold(holdMs);
+        }
+        return timing;
     }
 
-    private void triggerShowAssist(String command) {
-        Log.d(TAG, "从自动任务启动activity");
-        Intent intent = new Intent(this, TransparentActivity.class);
-        intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_MULTIPLE_TASK | Intent.FLAG_ACTIVITY_NO_ANIMATION);
-        intent.putExtra("command", command);
-        startActivity(intent);
+    /**
+     * 取消进行中的周期（开启后取消会尽力恢复关闭）
+     */
+    private void cancelCycle(String reason) {
+        ToggleCycle cycle = ToggleCycle.current();
+        if (cycle != null && !cycle.state().isTerminal()) {
+            cycle.cancel(reason);
+        }
     }
 
     @Override
     public void onDestroy() {
         super.onDestroy();
-        if (timedToggleRunnable != null) {
-            handler.removeCallbacks(timedToggleRunnable);
+        if (scheduler != null) {
+            scheduler.stop();
         }
+        if (controlServer != null) {
+            controlServer.stop();
+            controlServer = null;
+        }
+        burstRunner.cancel("服务已停止");
+        commandQueue.clear();
+        ToggleCycle.removeObserver(cycleObserver);
+        configPrefs.unregisterOnSharedPreferenceChangeListener(configListener);
+        nextFireWallMs = -1L;
+        frequencyReport = null;
         isTaskRunning = false;
         Log.d(TAG, "前台服务已销毁");
     }
@@ -205,6 +562,49 @@ public class AutoTaskService extends Service {
         return null;
     }
 
+    /**
+     * 进入（或保持）前台：每次以 startForegroundService 启动后都要调用。
+     * 类型为 specialUse：Android 15 起 dataSync 不能从开机广播启动；系统仍拒绝时返回 false
+     */
+    private boolean enterForeground() {
+        createNotificationChannel();
+        try {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.UPSIDE_DOWN_CAKE) {
+                startForeground(NOTIFICATION_ID, createNotification(),
+                        ServiceInfo.FOREGROUND_SERVICE_TYPE_SPECIAL_USE);
+            } else {
+                startForeground(NOTIFICATION_ID, createNotification());
+            }
+        } catch (IllegalStateException | SecurityException e) {
+            // ForegroundServiceStartNotAllowedException 是 IllegalStateException 的子类
+            Log.e(TAG, "系统拒绝进入前台", e);
+            return false;
+        }
+        inForeground = true;
+        return true;
+    }
+
+    /**
+     * 前台被拒绝：不在后台继续运行，停止服务并用唤醒闹钟稍后按正常流程重新拉起
+     */
+    private void onForegroundDenied() {
+        OperationLogStore.append(this, "系统拒绝前台服务启动，" + (RESUME_RETRY_DELAY_MS / 1000) + " 秒后重试");
+        if (scheduler != null) {
+            // 先停掉调度器，onDestroy 中的 stop() 会取消同一个闹钟
+            scheduler.stop();
+            scheduler = null;
+        }
+        RotationScheduler.armResume(this, RESUME_RETRY_DELAY_MS);
+        stopSelf();
+    }
+
+    /**
+     * 开机广播中无法启动前台服务时，改由唤醒闹钟稍后拉起服务
+     */
+    public static void resumeLater(Context context) {
+        RotationScheduler.armResume(context.getApplicationContext(), RESUME_RETRY_DELAY_MS);
+    }
+
     private void createNotificationChannel() {
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
             NotificationChannel channel = new NotificationChannel(
@@ -220,7 +620,7 @@ public class AutoTaskService extends Service {
         }
     }
 
-    private Notification createNotification(int interval) {
+    private Notification createNotification() {
         boolean secGranted = hasWriteSecureSettingsPermission();
         Intent notificationIntent = new Intent(this, AirplaneModeActivity.class);
         PendingIntent pendingIntent = PendingIntent.getActivity(
@@ -232,10 +632,13 @@ public class AutoTaskService extends Service {
 
         return new NotificationCompat.Builder(this, CHANNEL_ID)
                 .setContentTitle("飞行模式自动任务")
-                .setContentText("每 " + interval + " 分钟切换一次 · WSS权限:" + (secGranted ? "已授权" : "未授权"))
+                .setContentText("每 " + describeInterval() + "切换一次"
+                        + (nextFireWallMs > 0 ? " · 下次 " + formatTime(nextFireWallMs) : "")
+                        + " · WSS权限:" + (secGranted ? "已授权" : "未授权"))
                 .setSmallIcon(R.drawable.ic_developer_mode)
                 .setContentIntent(pendingIntent)
                 .setOngoing(true)
+                .setOnlyAlertOnce(true)
                 .build();
     }
     
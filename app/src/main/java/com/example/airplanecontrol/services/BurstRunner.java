@@ -0,0 +1,271 @@
+package com.example.airplanecontrol.services;
+
+import android.content.Context;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.ResultReceiver;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.example.airplanecontrol.utils.CycleTiming;
+import com.example.airplanecontrol.utils.OperationLogStore;
+import com.example.airplanecontrol.utils.RotationVerifier;
+
+import java.util.Set;
+
+/**
+ * 连发轮换：经命令队列背靠背执行周期，直到满足停止条件。
+ * 每次尝试在周期结束且地址校验有结果后才算完成，随后间隔 {@link #SAFE_SPACING_MS} 开始下一次，
+ * 不靠固定延时猜测。每次尝试的结果与耗时通过 ResultReceiver 逐条回传。所有方法都在主线程调用。
+ */
+final class BurstRunner {
+
+    private static final String TAG = "BurstRunner";
+
+    static final String COMMAND_BURST = "burst";
+    static final String COMMAND_CANCEL_BURST = "cancel_burst";
+
+    /** 两次尝试之间的最短间隔，给基带与网络栈留出收尾时间 */
+    static final long SAFE_SPACING_MS = 1000L;
+    static final int DEFAULT_MAX_ATTEMPTS = 10;
+    static final long DEFAULT_TIME_BUDGET_MS = 5 * 60_000L;
+    /** 地址校验结果迟迟不到（例如被其他周期打断）时的额外等待 */
+    private static final long VERDICT_GRACE_MS = 2000L;
+
+    /** 回传的 resultCode：单次尝试进度 / 连发结束 */
+    static final int RESULT_ATTEMPT = 2;
+    static final int RESULT_FINISHED = 3;
+    static final String RESULT_ATTEMPT_INDEX = "attempt";
+    static final String RESULT_VERDICT = "verdict";
+    static final String RESULT_ELAPSED_MS = "elapsed_ms";
+    static final String RESULT_DETAIL = "detail";
+    static final String RESULT_STOP_REASON = "stop_reason";
+
+    enum Until {
+        /** 地址落在最近一小时未用过的网段 */
+        NEW_RANGE("new_range"),
+        /** 任意新地址（校验为 ROTATED） */
+        NEW_ADDRESS("new_address"),
+        /** 达到指定的成功轮换次数 */
+        SUCCESSES("successes"),
+        /** 只受时间预算与次数上限约束 */
+        BUDGET("budget");
+
+        final String name;
+
+        Until(String name) {
+            this.name = name;
+        }
+
+        static Until parse(String name) {
+            for (Until u : values()) {
+                if (u.name.equalsIgnoreCase(String.valueOf(name))) {
+                    return u;
+                }
+            }
+            return NEW_ADDRESS;
+        }
+    }
+
+    /**
+     * 连发参数
+     */
+    static final class Spec {
+        final Until until;
+        /** SUCCESSES 条件所需的成功次数 */
+        final int successes;
+        final long timeBudgetMs;
+        final int maxAttempts;
+        final boolean secure;
+        final CycleTiming timing;
+
+        Spec(Until until, int successes, long timeBudgetMs, int maxAttempts, boolean secure, CycleTiming timing) {
+            this.until = until;
+            this.successes = Math.max(1, successes);
+            this.timeBudgetMs = timeBudgetMs > 0 ? timeBudgetMs : DEFAULT_TIME_BUDGET_MS;
+            this.maxAttempts = maxAttempts > 0 ? maxAttempts : DEFAULT_MAX_ATTEMPTS;
+            this.secure = secure;
+            this.timing = timing;
+        }
+
+        @Override
+        public String toString() {
+            return "until=" + until.name + (until == Until.SUCCESSES ? "(" + successes + ")" : "")
+                    + ", budget=" + timeBudgetMs + "ms, maxAttempts=" + maxAttempts
+                    + ", mode=" + (secure ? "SECURE" : "ASSISTANT");
+        }
+    }
+
+    private final Context context;
+    private final ToggleCommandQueue queue;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+
+    private Spec spec;
+    private ResultReceiver receiver;
+    private long startMs;
+    private int attempts;
+    private int rotations;
+    // 当前尝试
+    private long attemptStartMs;
+    private boolean cycleFinished;
+    private boolean verdictReceived;
+    private int attemptToken;
+
+    BurstRunner(Context context, ToggleCommandQueue queue) {
+        this.context = context.getApplicationContext();
+        this.queue = queue;
+    }
+
+    boolean isRunning() {
+        return spec != null;
+    }
+
+    /**
+     * 开始连发；已有连发进行中时拒绝
+     */
+    boolean start(Spec spec, ResultReceiver receiver) {
+        if (this.spec != null) {
+            Log.w(TAG, "已有连发进行中，拒绝新的连发");
+            send(receiver, RESULT_FINISHED, finishedData("REJECTED", "已有连发进行中"));
+            return false;
+        }
+        this.spec = spec;
+        this.receiver = receiver;
+        startMs = SystemClock.elapsedRealtime();
+        attempts = 0;
+        rotations = 0;
+        // 当前网段算作已使用，新网段条件不会被当前地址满足
+        RotationVerifier.noteInUse(RotationVerifier.snapshot(context));
+        Log.d(TAG, "开始连发: " + spec);
+        OperationLogStore.append(context, "开始连发轮换: " + spec);
+        nextAttempt();
+        return true;
+    }
+
+    void cancel(String reason) {
+        if (spec == null) return;
+        finish("CANCELLED", reason);
+    }
+
+    private void nextAttempt() {
+        if (spec == null) return;
+        long elapsed = SystemClock.elapsedRealtime() - startMs;
+        if (elapsed >= spec.timeBudgetMs) {
+            finish("BUDGET_EXHAUSTED", "时间预算用完");
+            return;
+        }
+        if (attempts >= spec.maxAttempts) {
+            finish("MAX_ATTEMPTS", "达到次数上限 " + spec.maxAttempts);
+            return;
+        }
+        attempts++;
+        attemptStartMs = SystemClock.elapsedRealtime();
+        cycleFinished = false;
+        verdictReceived = false;
+        final int token = ++attemptToken;
+        queue.submit(new ToggleCommandQueue.Command(ToggleCommandQueue.Kind.CYCLE, spec.secure, spec.timing,
+                "burst", 0, new ToggleCommandQueue.CycleListener() {
+                    @Override
+                    public void onCycleFinished(ToggleCommandQueue.Ticket ticket, boolean ok) {
+                        if (token != attemptToken) return;
+                        cycleFinished = true;
+                        if (!ok) {
+                            endAttempt(null, ticket.status + ": " + ticket.detail);
+                        } else if (!verdictReceived) {
+                            // 校验通常与周期收尾并行完成，这里只兜底等待结果
+                            handler.postDelayed(() -> {
+                                if (token == attemptToken && !verdictReceived) {
+                                    endAttempt(null, "未取得地址校验结果");
+                                }
+                            }, RotationVerifier.verifyCeilingMs(context) + VERDICT_GRACE_MS);
+                        }
+                    }
+
+                    @Override
+                    public void onVerdict(RotationVerifier.Verdict verdict, Set<String> after, long elapsedMs) {
+                        if (token != attemptToken) return;
+                        verdictReceived = true;
+                        onAttemptVerdict(verdict, after);
+                    }
+                }), null);
+    }
+
+    private void onAttemptVerdict(RotationVerifier.Verdict verdict, Set<String> after) {
+        boolean rotated = verdict == RotationVerifier.Verdict.ROTATED;
+        if (rotated) {
+            rotations++;
+        }
+        boolean satisfied;
+        switch (spec.until) {
+            case NEW_RANGE:
+                satisfied = rotated && RotationVerifier.hasUnusedRange(after, RotationVerifier.RANGE_RETENTION_MS);
+                break;
+            case NEW_ADDRESS:
+                satisfied = rotated;
+                break;
+            case SUCCESSES:
+                satisfied = rotations >= spec.successes;
+                break;
+            default:
+                satisfied = false;
+                break;
+        }
+        String detail = verdict + " " + after + (satisfied ? "，满足停止条件" : "");
+        if (!cycleFinished) {
+            // 地址先于周期结束到达（自适应模式仍在等网络验证）：结果已确定，周期照常收尾
+            Log.d(TAG, "地址校验先于周期结束到达");
+        }
+        endAttempt(verdict, detail);
+        if (satisfied && spec != null) {
+            finish("SATISFIED", detail);
+        }
+    }
+
+    private void endAttempt(RotationVerifier.Verdict verdict, String detail) {
+        if (spec == null) return;
+        attemptToken++;
+        long took = SystemClock.elapsedRealtime() - attemptStartMs;
+        Log.d(TAG, "连发第 " + attempts + " 次: " + detail + ", " + took + "ms");
+        OperationLogStore.append(context, "连发第 " + attempts + " 次: " + detail + ", " + took + "ms");
+        Bundle data = new Bundle();
+        data.putInt(RESULT_ATTEMPT_INDEX, attempts);
+        data.putString(RESULT_VERDICT, verdict != null ? verdict.name() : "FAILED");
+        data.putLong(RESULT_ELAPSED_MS, took);
+        data.putString(RESULT_DETAIL, detail);
+        send(receiver, RESULT_ATTEMPT, data);
+        handler.removeCallbacksAndMessages(null);
+        handler.postDelayed(this::nextAttempt, SAFE_SPACING_MS);
+    }
+
+    private void finish(String stopReason, String detail) {
+        attemptToken++;
+        handler.removeCallbacksAndMessages(null);
+        long took = SystemClock.elapsedRealtime() - startMs;
+        String summary = "连发结束(" + stopReason + "): " + attempts + " 次尝试, 轮换成功 " + rotations
+                + " 次, 耗时 " + took + "ms" + (detail != null ? ", " + detail : "");
+        Log.d(TAG, summary);
+        OperationLogStore.append(context, summary);
+        send(receiver, RESULT_FINISHED, finishedData(stopReason, summary));
+        spec = null;
+        receiver = null;
+    }
+
+    private Bundle finishedData(String stopReason, String detail) {
+        Bundle data = new Bundle();
+        data.putString(RESULT_STOP_REASON, stopReason);
+        data.putInt(RESULT_ATTEMPT_INDEX, attempts);
+        data.putLong(RESULT_ELAPSED_MS, SystemClock.elapsedRealtime() - startMs);
+        data.putString(RESULT_DETAIL, detail);
+        return data;
+    }
+
+    private static void send(ResultReceiver receiver, int code, Bundle data) {
+        if (receiver == null) return;
+        try {
+            receiver.send(code, data);
+        } catch (Throwable t) {
+            Log.w(TAG, "回传连发进度失败", t);
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package com.example.airplanecontrol.services;
+
+import android.content.Context;
+import android.content.Intent;
+import android.content.SharedPreferences;
+import android.os.Bundle;
+import android.os.ResultReceiver;
+import android.util.Log;
+
+import com.example.airplanecontrol.utils.ControlServer;
+import com.example.airplanecontrol.utils.DirectBootStorage;
+
+import java.security.SecureRandom;
+import java.util.Map;
+
+/**
+ * 本机控制服务器的服务端实现。
+ * 命令转换为与 adb / 界面相同的服务命令 Intent，结果经 ResultReceiver（不指定 Handler，
+ * 在 Binder 线程回调）直接写回连接；status 读取服务发布的快照。全程不经过主线程。
+ */
+final class ControlBackend implements ControlServer.Backend {
+
+    private static final String TAG = "ControlBackend";
+
+    static final String KEY_ENABLED = "control_server_enabled";
+    static final String KEY_PORT = "control_server_port";
+    static final String COMMAND_CONTROL_SERVER = "control_server";
+    static final String TOKEN_PREFS_NAME = "control_server";
+    static final String KEY_TOKEN = "control_server_token";
+
+    private final Context context;
+    private volatile String statusJson = "{}";
+
+    ControlBackend(Context context) {
+        this.context = context.getApplicationContext();
+    }
+
+    /**
+     * 访问令牌：首次使用时随机生成并存入设备加密存储（解锁前也可读取，不参与备份），每次安装各不相同
+     */
+    static synchronized String token(Context context) {
+        SharedPreferences prefs = DirectBootStorage.deviceProtected(context)
+                .getSharedPreferences(TOKEN_PREFS_NAME, Context.MODE_PRIVATE);
+        String token = prefs.getString(KEY_TOKEN, null);
+        if (token == null) {
+            byte[] bytes = new byte[16];
+            new SecureRandom().nextBytes(bytes);
+            StringBuilder sb = new StringBuilder(bytes.length * 2);
+            for (byte b : bytes) {
+                sb.append(String.format("%02x", b & 0xff));
+            }
+            token = sb.toString();
+            prefs.edit().putString(KEY_TOKEN, token).commit();
+        }
+        return token;
+    }
+
+    /**
+     * 发布状态快照（服务在主线程上调用），status 请求只读取该快照
+     */
+    void publishStatus(String json) {
+        statusJson = json;
+    }
+
+    @Override
+    public String status() {
+        return statusJson;
+    }
+
+    @Override
+    public void onServerEvent(String message, Throwable error) {
+        if (error != null) {
+            Log.e(TAG, message, error);
+        } else {
+            Log.d(TAG, message);
+        }
+    }
+
+    @Override
+    public void handle(Map<String, String> request, ControlServer.Reply reply) {
+        String cmd = request.get("cmd");
+        switch (cmd) {
+            case "toggle":
+                toggle(request, reply);
+                break;
+            case "burst":
+                burst(request, reply);
+                break;
+            case "schedule":
+                schedule(request, reply);
+                break;
+            case "cancel":
+                send(new Intent().putExtra("command", "burst".equals(request.get("what"))
+                        ? BurstRunner.COMMAND_CANCEL_BURST : AutoTaskService.COMMAND_CANCEL_CYCLE));
+                reply.send(reply.create().put("ok", true));
+                break;
+            default:
+                reply.send(reply.create().put("ok", false).put("error", "unknown cmd: " + cmd));
+                break;
+        }
+    }
+
+    /**
+     * {"cmd":"toggle","kind":"timed_toggle|smart_toggle|turn_on|turn_off","mode":"secure|assistant",
+     * "adaptive":true,"hold_ms":2000,"retry_budget":1}，票据完成时回复
+     */
+    private void toggle(Map<String, String> request, final ControlServer.Reply reply) {
+        String kind = request.containsKey("kind") ? request.get("kind") : ToggleCommandQueue.Kind.CYCLE.command;
+        if (ToggleCommandQueue.Kind.fromCommand(kind) == null) {
+            reply.send(reply.create().put("ok", false).put("error", "unknown kind: " + kind));
+            return;
+        }
+        Intent intent = new Intent().putExtra("command", kind).putExtra("source", "control_server");
+        copyCycleExtras(request, intent);
+        putInt(request, intent, "retry_budget");
+        intent.putExtra(ToggleCommandQueue.EXTRA_RESULT_RECEIVER, new ResultReceiver(null) {
+            @Override
+            protected void onReceiveResult(int resultCode, Bundle data) {
+                reply.send(reply.create()
+                        .put("ok", resultCode == ToggleCommandQueue.RESULT_OK)
+                        .put("ticket", data.getLong(ToggleCommandQueue.RESULT_TICKET))
+                        .put("status", data.getString(ToggleCommandQueue.RESULT_STATUS))
+                        .put("detail", data.getString(ToggleCommandQueue.RESULT_DETAIL)));
+            }
+        });
+        send(intent);
+    }
+
+    /**
+     * {"cmd":"burst","until":"new_range|new_address|successes|budget","count":2,"budget_ms":60000,
+     * "max_attempts":5}，每次尝试回复一条 event=attempt，结束时回复 event=finished
+     */
+    private void burst(Map<String, String> request, final ControlServer.Reply reply) {
+        Intent intent = new Intent().putExtra("command", BurstRunner.COMMAND_BURST);
+        if (request.containsKey("until")) intent.putExtra("until", request.get("until"));
+        putInt(request, intent, "count");
+        putInt(request, intent, "max_attempts");
+        putLong(request, intent, "budget_ms");
+        copyCycleExtras(request, intent);
+        intent.putExtra(ToggleCommandQueue.EXTRA_RESULT_RECEIVER, new ResultReceiver(null) {
+            @Override
+            protected void onReceiveResult(int resultCode, Bundle data) {
+                boolean finished = resultCode == BurstRunner.RESULT_FINISHED;
+                ControlServer.Response r = reply.create()
+                        .put("event", finished ? "finished" : "attempt")
+                        .put("attempt", data.getInt(BurstRunner.RESULT_ATTEMPT_INDEX))
+                        .put("elapsed_ms", data.getLong(BurstRunner.RESULT_ELAPSED_MS))
+                        .put("detail", data.getString(BurstRunner.RESULT_DETAIL));
+                if (finished) {
+                    String reason = data.getString(BurstRunner.RESULT_STOP_REASON);
+                    r.put("ok", "SATISFIED".equals(reason)).put("stop_reason", reason);
+                } else {
+                    r.put("verdict", data.getString(BurstRunner.RESULT_VERDICT));
+                }
+                reply.send(r);
+            }
+        });
+        send(intent);
+    }
+
+    /**
+     * {"cmd":"schedule","action":"start","interval_seconds":30} / {"action":"start","interval_minutes":15}
+     * （可带 "missed_run_policy"、"schedule_spread":"off|phase|aligned"、"schedule_jitter_ms"）
+     * / {"action":"stop"}，立即回复，下一次触发时间见 status
+     */
+    private void schedule(Map<String, String> request, ControlServer.Reply reply) {
+        String action = request.get("action");
+        if ("stop".equals(action)) {
+            send(new Intent().putExtra("command", AutoTaskService.COMMAND_STOP_SCHEDULE));
+        } else if ("start".equals(action)) {
+            Intent intent = new Intent();
+            // 未指定秒级间隔时回到分钟间隔
+            intent.putExtra("interval_seconds", 0);
+            putInt(request, intent, "interval_seconds");
+            putInt(request, intent, "interval_minutes");
+            if (request.containsKey("schedule_spread")) {
+                intent.putExtra("schedule_spread", request.get("schedule_spread"));
+            }
+            putLong(request, intent, "schedule_jitter_ms");
+            if (request.containsKey("missed_run_policy")) {
+                intent.putExtra("missed_run_policy", request.get("missed_run_policy"));
+            }
+            send(intent);
+        } else {
+            reply.send(reply.create().put("ok", false).put("error", "action must be start or stop"));
+            return;
+        }
+        reply.send(reply.create().put("ok", true).put("action", action));
+    }
+
+    private static void copyCycleExtras(Map<String, String> request, Intent intent) {
+        if (request.containsKey("mode")) intent.putExtra("mode", request.get("mode"));
+        if (request.containsKey("adaptive")) intent.putExtra("adaptive", Boolean.parseBoolean(request.get("adaptive")));
+        putLong(request, intent, "hold_ms");
+    }
+
+    private static void putInt(Map<String, String> request, Intent intent, String key) {
+        String value = request.get(key);
+        if (value != null) intent.putExtra(key, Integer.parseInt(value));
+    }
+
+    private static void putLong(Map<String, String> request, Intent intent, String key) {
+        String value = request.get(key);
+        if (value != null) intent.putExtra(key, Long.parseLong(value));
+    }
+
+    private void send(Intent intent) {
+        intent.setClass(context, AutoTaskService.class);
+        context.startService(intent);
+    }
+}
@@ -7,11 +7,36 @@ import android.os.Bundle;
 
 /**
  * 数字助理交互服务
- * 用于获取系统级权限以控制飞行模式
+ * 用于获取系统级权限以控制飞行模式。
+ * 就绪后可由应用内直接调用 {@link #showSession} 启动会话，免去透明 Activity 跳板。
  */
 public class MyInteractionService extends VoiceInteractionService {
     
     private static final String TAG = "MyInteractionService";
+    // 已就绪的服务实例（本应用是当前数字助理且系统已绑定时存在）
+    private static MyInteractionService ready;
+    
+    /**
+     * 通过已就绪的服务直接启动会话并携带命令参数
+     * @return 是否已发起；服务未就绪或调用失败时返回 false，调用方应回退到跳板
+     */
+    static boolean showSessionDirect(Bundle args) {
+        MyInteractionService service = ready;
+        if (service == null) {
+            return false;
+        }
+        try {
+            service.showSession(args, 0);
+            return true;
+        } catch (Throwable t) {
+            Log.w(TAG, "showSession 调用失败", t);
+            return false;
+        }
+    }
+    
+    static boolean isReady() {
+        return ready != null;
+    }
     
     @Override
     public void onCreate() {
@@ -22,15 +47,28 @@ public class MyInteractionService extends VoiceInteractionService {
     @Override
     public void onReady() {
         super.onReady();
+        ready = this;
         Log.d(TAG, "VoiceInteractionService 已就绪");
     }
     
     // VoiceInteractionService 不需要重写onNewSession方法
     // 会话由系统自动管理，通过interaction_service.xml配置
     
+    @Override
+    public void onShutdown() {
+        super.onShutdown();
+        if (ready == this) {
+            ready = null;
+        }
+        Log.d(TAG, "VoiceInteractionService 已关闭");
+    }
+    
     @Override
     public void onDestroy() {
         super.onDestroy();
+        if (ready == this) {
+            ready = null;
+        }
         Log.d(TAG, "VoiceInteractionService 已销毁");
     }
 }
\ No newline at end of file
@@ -3,22 +3,31 @@ package com.example.airplanecontrol.services;
 import android.content.Context;
 import android.content.Intent;
 import android.os.Bundle;
-import android.os.Handler;
-import android.os.Looper;
 import android.provider.Settings;
 import android.service.voice.VoiceInteractionSession;
 import android.util.Log;
 import androidx.annotation.NonNull;
 
+import com.example.airplanecontrol.utils.CycleMetrics;
+import com.example.airplanecontrol.utils.CycleTiming;
+import com.example.airplanecontrol.utils.OperationLogStore;
+import com.example.airplanecontrol.utils.ToggleCycle;
+import com.example.airplanecontrol.utils.Tracer;
+
 /**
  * 数字助理交互会话
- * 处理飞行模式控制命令
+ * 处理飞行模式控制命令。会话显示期间保持为 warm 会话，
+ * 后续命令由 {@link AssistantDispatcher} 直接派发，不再经过透明 Activity 与 showAssist。
+ * 命令按序号从 {@link AssistCommandMailbox} 取出，没有序号时不执行任何切换。
  */
 public class MyInteractionSession extends VoiceInteractionSession {
     
     private static final String TAG = "MyInteractionSession";
-    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    // 当前存活的会话（系统在 showAssist 时复用，直到会话被销毁）
+    private static MyInteractionSession current;
     private Bundle lastSessionArgs; // 存储最后的session参数
+    private boolean shown;
+    private int handledCommands;
     
     public MyInteractionSession(Context context) {
         super(context);
@@ -31,89 +40,135 @@ public class MyInteractionSession extends VoiceInteractionSession {
     public void setSessionArgs(Bundle args) {
         this.lastSessionArgs = args;
         if (args != null) {
-            String command = args.getString("command");
-            Log.d(TAG, "设置Session参数，命令: " + command);
+            Log.d(TAG, "设置Session参数，命令: " + args.getString(AssistCommandMailbox.ARG_COMMAND)
+                    + " #" + AssistCommandMailbox.seqOf(args));
         } else {
             Log.d(TAG, "设置Session参数为null");
         }
     }
     
+    /**
+     * 处于显示状态、可直接执行命令的会话，没有时返回 null
+     */
+    static MyInteractionSession warmSession() {
+        MyInteractionSession s = current;
+        return s != null && s.shown ? s : null;
+    }
+    
+    @Override
+    public void onShow(Bundle args, int showFlags) {
+        super.onShow(args, showFlags);
+        shown = true;
+        // showSession / showAssist 携带的序号随参数到达；onHandleAssist 再次到达同一序号时不会重复执行
+        long seq = AssistCommandMailbox.seqOf(args);
+        Tracer.event(Tracer.Event.ASSIST_SESSION_SHOW, seq > 0 ? seq : -1);
+        if (Tracer.isVerbose()) {
+            Log.d(TAG, "会话显示, flags=" + showFlags);
+        }
+        if (seq > 0) {
+            deliver(seq);
+        }
+    }
+    
+    @Override
+    public void onHide() {
+        super.onHide();
+        shown = false;
+        Log.d(TAG, "会话隐藏");
+    }
+    
     @Override
     public void onHandleAssist(@NonNull AssistState state) {
         super.onHandleAssist(state);
         Log.d(TAG, "onHandleAssist 被调用！");
         
-        // 尝试从多个来源获取Bundle参数
-        Bundle args = state.getAssistData();
-        String command = null;
-        
-        if (args != null) {
-            command = args.getString("command");
-            Log.d(TAG, "从AssistData获取到命令: " + command);
+        // 尝试从多个来源获取命令序号
+        long seq = AssistCommandMailbox.seqOf(state.getAssistData());
+        if (seq <= 0) {
+            seq = AssistCommandMailbox.seqOf(lastSessionArgs);
         }
-        
-        // 如果AssistData为空，尝试其他方式
-        if (command == null) {
-            // 检查是否有其他Bundle来源
-            if (lastSessionArgs != null) {
-                command = lastSessionArgs.getString("command");
-                Log.d(TAG, "从SessionArgs获取到命令: " + command);
-            }
+        if (seq <= 0) {
+            // 用户手动唤起助理等情况，没有命令就不做任何切换
+            Log.d(TAG, "未携带命令序号，忽略");
+            return;
         }
-        Log.d(TAG,"session 中的 command："+ command);
-        // 如果仍然没有命令，默认执行智能切换
-        if (command == null) {
-            Log.w(TAG, "未获取到命令参数，默认执行智能切换");
-            command = "timed_toggle";
+        deliver(seq);
+    }
+    
+    /**
+     * 按序号从信箱取出命令并执行，同一序号只执行一次
+     * @return 是否取到命令
+     */
+    boolean deliver(long seq) {
+        AssistCommandMailbox.Entry entry = AssistCommandMailbox.take(seq);
+        if (entry == null) {
+            Log.d(TAG, "命令 #" + seq + " 已执行或已过期");
+            return false;
         }
-        
-        Log.d(TAG, "最终执行命令: " + command);
+        AssistantDispatcher.onDelivered(entry, handledCommands == 0);
+        Tracer.event(Tracer.Event.ASSIST_EXECUTE, seq);
+        executeCommand(entry);
+        return true;
+    }
+    
+    /**
+     * 执行一条命令，结果回传给派发者
+     */
+    private void executeCommand(AssistCommandMailbox.Entry entry) {
+        handledCommands++;
+        OperationLogStore.append(getContext(), "助理会话执行命令: " + entry);
         
         // 根据命令分发任务
-        switch (command) {
-            case "timed_toggle":
-                // 定时切换: 开启 -> 等待2秒 -> 关闭
-                executeTimedToggle();
+        switch (entry.command.type) {
+            case TIMED_TOGGLE:
+                // 定时切换: 开启 -> 保持 -> 关闭
+                executeTimedToggle(entry);
                 break;
-            case "smart_toggle":
+            case SMART_TOGGLE:
                 // 智能切换: 检查状态，开->关，关->开
-                executeSmartToggle();
+                executeSmartToggle(entry);
                 break;
-            case "turn_on":
+            case TURN_ON:
                 // 直接开启飞行模式
-                sendAirplaneModeIntent(true);
+                completeSend(entry, true);
                 break;
-            case "turn_off":
+            case TURN_OFF:
                 // 直接关闭飞行模式
-                sendAirplaneModeIntent(false);
-                break;
-            default:
-                Log.w(TAG, "未知命令: " + command);
+                completeSend(entry, false);
                 break;
         }
     }
     
     /**
-     * 执行定时切换任务: 开启 -> 等待2秒 -> 关闭
+     * 执行定时切换任务: 开启 -> 保持 -> 关闭
+     * 由 ToggleCycle 状态机驱动，每一步在会话中发出飞行模式 Intent，以设置变化确认；
+     * 已有周期进行中时（例如自动任务正在切换）不再重复执行。周期结束时回传结果
      */
-    private void executeTimedToggle() {
-        Log.d(TAG, "执行定时切换任务...");
-        
-        // 1. 立即开启飞行模式
-        sendAirplaneModeIntent(true);
-        Log.d(TAG, "飞行模式已开启");
-        
-        // 2. 使用 Handler 延迟2秒后执行关闭操作
-        mainHandler.postDelayed(() -> {
-            Log.d(TAG, "2秒已过，关闭飞行模式...");
-            sendAirplaneModeIntent(false);
-        }, 2000); // 2000毫秒 = 2秒
+    private void executeTimedToggle(final AssistCommandMailbox.Entry entry) {
+        CycleTiming timing = entry.command.resolveTiming(getContext());
+        Log.d(TAG, "执行定时切换任务..., timing=" + timing);
+        ToggleCycle cycle = ToggleCycle.start(getContext(), CycleMetrics.Path.ASSISTANT, timing,
+                new ToggleCycle.ObservedActuator(getContext(),
+                        (enable, delivered) -> {
+                            boolean sent = sendAirplaneModeIntent(enable);
+                            delivered.onComplete(sent, sent ? "已发送" : "发送Intent失败");
+                        }),
+                (c, state) -> {
+                    if (state.isTerminal()) {
+                        OperationLogStore.append(getContext(), c.summary());
+                        entry.complete(state == ToggleCycle.State.DONE, c.summary());
+                    }
+                });
+        if (cycle == null) {
+            OperationLogStore.append(getContext(), "已有周期进行中，忽略助理定时切换");
+            entry.complete(false, "已有周期进行中");
+        }
     }
     
     /**
      * 执行智能切换任务: 检查当前状态并执行相反操作
      */
-    private void executeSmartToggle() {
+    private void executeSmartToggle(AssistCommandMailbox.Entry entry) {
         Log.d(TAG, "执行智能切换任务...");
         
         // 1. 检查当前飞行模式状态
@@ -121,24 +176,35 @@ public class MyInteractionSession extends VoiceInteractionSession {
         Log.d(TAG, "当前飞行模式状态: " + (isCurrentlyOn ? "开启" : "关闭"));
         
         // 2. 执行相反的操作
-        sendAirplaneModeIntent(!isCurrentlyOn);
+        completeSend(entry, !isCurrentlyOn);
         Log.d(TAG, "切换飞行模式到: " + (!isCurrentlyOn ? "开启" : "关闭"));
-//        finish();
+    }
+    
+    /**
+     * 发出单步切换并回传是否已发出（状态确认由派发者负责）
+     */
+    private void completeSend(AssistCommandMailbox.Entry entry, boolean enable) {
+        boolean sent = sendAirplaneModeIntent(enable);
+        entry.complete(sent, (sent ? "已发送 " : "发送失败 ") + (enable ? "开启" : "关闭"));
     }
     
     /**
      * 发送控制飞行模式的Intent
      * @param enable true 开启，false 关闭
+     * @return 是否已发出
      */
-    private void sendAirplaneModeIntent(boolean enable) {
+    private boolean sendAirplaneModeIntent(boolean enable) {
         try {
             Intent intent = new Intent("android.settings.VOICE_CONTROL_AIRPLANE_MODE");
             intent.putExtra("airplane_mode_enabled", enable);
             intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
             startVoiceActivity(intent);
             Log.i(TAG, "已发送飞行模式控制Intent: " + (enable ? "开启" : "关闭"));
+            return true;
         } catch (Exception e) {
             Log.e(TAG, "发送飞行模式控制Intent失败", e);
+            OperationLogStore.append(getContext(), "助理发送飞行模式Intent失败: " + e.getMessage());
+            return false;
         }
     }
     
@@ -162,12 +228,17 @@ public class MyInteractionSession extends VoiceInteractionSession {
     @Override
     public void onCreate() {
         super.onCreate();
+        current = this;
         Log.d(TAG, "VoiceInteractionSession onCreate");
     }
     
     @Override
     public void onDestroy() {
         super.onDestroy();
-        Log.d(TAG, "VoiceInteractionSession onDestroy");
+        if (current == this) {
+            current = null;
+        }
+        shown = false;
+        Log.d(TAG, "VoiceInteractionSession onDestroy, 共执行命令 " + handledCommands + " 条");
     }
 }
@@ -0,0 +1,392 @@
+package com.example.airplanecontrol.services;
+
+import android.app.AlarmManager;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.example.airplanecontrol.utils.CycleWakeLock;
+import com.example.airplanecontrol.utils.FixedRateSchedule;
+import com.example.airplanecontrol.utils.Tracer;
+
+/**
+ * 自动切换的调度引擎：固定频率、以 elapsedRealtime 为时间轴，不随执行耗时漂移。
+ * 同时挂两个定时器：主线程 Handler（设备唤醒时精确）和 AlarmManager 唤醒闹钟（休眠 / Doze 下兜底）。
+ * 两者谁先到都走同一个 {@link #onTimer()}，重复唤醒由时间表过滤。
+ * 错峰（{@link Spread}）：按设备固定的相位偏移与可预测的抖动分散时间点，可选对齐墙钟的周期整数倍，
+ * 同一间隔的大量设备同时启动时不会在同一时刻切换。
+ * 背压：仍有周期处于开/关阶段时不会开始新周期，到期的执行顺延到该周期结束
+ * （{@link #onCycleSettled()}）后立即开始，并统计实际达到的频率。
+ */
+final class RotationScheduler {
+
+    private static final String TAG = "RotationScheduler";
+
+    static final String COMMAND_SCHEDULED_TICK = "scheduled_tick";
+    private static final int REQUEST_CODE_TICK = 2001;
+    /** CATCH_UP 补跑时两次执行之间的间隔 */
+    private static final long CATCH_UP_SPACING_MS = 15000L;
+
+    enum Spread {
+        /** 以启动时刻为锚点，第一次立即执行 */
+        OFF,
+        /** 以启动时刻为锚点，加设备相位偏移与抖动，第一次在下一个时间点执行 */
+        PHASE,
+        /** 时间点对齐墙钟的周期整数倍，再加设备相位偏移与抖动 */
+        ALIGNED;
+
+        static Spread parse(String name) {
+            if (name != null) {
+                for (Spread s : values()) {
+                    if (s.name().equalsIgnoreCase(name)) {
+                        return s;
+                    }
+                }
+            }
+            return OFF;
+        }
+    }
+
+    /** 默认抖动：周期的 1/10，最多 30 秒 */
+    static final long MAX_DEFAULT_JITTER_MS = 30000L;
+
+    interface Listener {
+        /** 到达时间点，执行一次周期 */
+        void onScheduledRun();
+
+        /** 是否有周期处于开/关阶段；为 true 时本次执行顺延，周期结束后须调用 {@link #onCycleSettled()} */
+        boolean isCycleInFlight();
+
+        /** 下一次触发时间已更新 */
+        void onRearmed(long nextFireElapsedMs, long nextFireWallMs);
+    }
+
+    private final Context context;
+    private final Listener listener;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Runnable timerRunnable = this::onTimer;
+    private final Runnable runRunnable = this::dispatchRun;
+
+    private FixedRateSchedule schedule;
+    private int pendingRuns;
+    private long dueSinceMs = -1L;
+
+    private final RunStats stats = new RunStats();
+
+    RotationScheduler(Context context, Listener listener) {
+        this.context = context.getApplicationContext();
+        this.listener = listener;
+    }
+
+    /**
+     * 以当前时刻为锚点开始调度，第一次立即执行
+     */
+    void start(long periodMs, FixedRateSchedule.MissedRunPolicy policy) {
+        start(periodMs, policy, Spread.OFF, 0L, 0L);
+    }
+
+    /**
+     * 开始调度。错峰时第一次在 now 之后的第一个时间点执行
+     * @param jitterMs 最大抖动，小于 0 表示默认值
+     * @param deviceSeed 设备种子，决定相位偏移与抖动序列
+     */
+    void start(long periodMs, FixedRateSchedule.MissedRunPolicy policy, Spread spread, long jitterMs, long deviceSeed) {
+        stop();
+        long now = SystemClock.elapsedRealtime();
+        schedule = buildSchedule(now, now, periodMs, policy, spread, jitterMs, deviceSeed);
+        stats.clear();
+        Log.d(TAG, "开始调度, period=" + periodMs + "ms, policy=" + policy + ", spread=" + spread
+                + ", offset=" + schedule.offsetMs() + "ms, jitter=±" + schedule.jitterMs() + "ms");
+        onTimer();
+    }
+
+    /**
+     * 运行中修改调度参数：不停止服务、不影响进行中的周期。
+     * 不错峰时以上一次执行为锚点，下一次在上一次执行后一个新周期执行（已超过则立即执行）；
+     * 错峰时按新参数重新计算时间点，跳过已过去的时间点。未调度时不做任何事
+     */
+    void reschedule(long periodMs, FixedRateSchedule.MissedRunPolicy policy, Spread spread, long jitterMs, long deviceSeed) {
+        if (schedule == null) return;
+        long now = SystemClock.elapsedRealtime();
+        handler.removeCallbacks(timerRunnable);
+        // 顺延中的执行保留
+        schedule = rebuildSchedule(stats, now, periodMs, policy, spread, jitterMs, deviceSeed);
+        Log.d(TAG, "调度参数已更新, period=" + periodMs + "ms, policy=" + policy + ", spread=" + spread
+                + ", next in " + schedule.delayUntilNext(now) + "ms");
+        onTimer();
+    }
+
+    /**
+     * 修改参数时的新时间表：以上一次执行（或 now）为锚点按新参数建表，频率统计按新周期重新开始；
+     * 上一次执行时间保留，连续修改时锚点不变
+     */
+    static FixedRateSchedule rebuildSchedule(RunStats stats, long now, long periodMs,
+                                             FixedRateSchedule.MissedRunPolicy policy, Spread spread,
+                                             long jitterMs, long deviceSeed) {
+        long anchor = stats.rescheduleAnchor(periodMs, now);
+        FixedRateSchedule s = buildSchedule(anchor, now, periodMs, policy, spread, jitterMs, deviceSeed);
+        stats.restart();
+        return s;
+    }
+
+    static FixedRateSchedule buildSchedule(long anchor, long now, long periodMs,
+                                          FixedRateSchedule.MissedRunPolicy policy, Spread spread,
+                                          long jitterMs, long deviceSeed) {
+        FixedRateSchedule s;
+        if (spread == Spread.OFF) {
+            s = new FixedRateSchedule(anchor, periodMs, policy);
+            if (anchor < now) {
+                s.skipTo(now);
+            }
+            return s;
+        }
+        if (spread == Spread.ALIGNED) {
+            // 第 0 个时间点为最近一个墙钟周期整数倍
+            anchor = now - Math.floorMod(System.currentTimeMillis(), periodMs);
+        }
+        long jitter = jitterMs >= 0 ? jitterMs : Math.min(periodMs / 10, MAX_DEFAULT_JITTER_MS);
+        s = new FixedRateSchedule(anchor, periodMs, policy, deviceSeed, jitter, deviceSeed);
+        s.skipTo(now);
+        return s;
+    }
+
+    /**
+     * 执行记录：频率统计（本次 start / reschedule 以来）与上一次执行时间（本次 start 以来，作为修改参数时的锚点）
+     */
+    static final class RunStats {
+        long firstRunAtMs = -1L;
+        long lastRunAtMs = -1L;
+        int runCount;
+        int deferredCount;
+        long deferredTotalMs;
+
+        void onRun(long now) {
+            if (runCount == 0) {
+                firstRunAtMs = now;
+            }
+            runCount++;
+            lastRunAtMs = now;
+        }
+
+        /**
+         * 修改参数的锚点：上一次执行在新周期内时沿用它，否则为 now（立即到期）
+         */
+        long rescheduleAnchor(long periodMs, long now) {
+            return lastRunAtMs >= 0 && lastRunAtMs + periodMs > now ? lastRunAtMs : now;
+        }
+
+        /**
+         * 频率统计重新开始，保留上一次执行时间
+         */
+        void restart() {
+            firstRunAtMs = -1L;
+            runCount = 0;
+            deferredCount = 0;
+            deferredTotalMs = 0;
+        }
+
+        void clear() {
+            restart();
+            lastRunAtMs = -1L;
+        }
+    }
+
+    /**
+     * 设备种子：由设备标识混合得到，同一设备重启后不变，不同设备均匀分布
+     */
+    static long deviceSeed(String deviceId) {
+        long z = 0L;
+        for (int i = 0; deviceId != null && i < deviceId.length(); i++) {
+            z = z * 31 + deviceId.charAt(i);
+        }
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return (z ^ (z >>> 31)) & Long.MAX_VALUE;
+    }
+
+    void stop() {
+        handler.removeCallbacks(timerRunnable);
+        handler.removeCallbacks(runRunnable);
+        pendingRuns = 0;
+        dueSinceMs = -1L;
+        AlarmManager am = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+        if (am != null) {
+            am.cancel(tickIntent(context));
+        }
+        schedule = null;
+    }
+
+    boolean isRunning() {
+        return schedule != null;
+    }
+
+    /**
+     * 下一次触发的 elapsedRealtime，未调度时为 -1
+     */
+    long nextFireElapsedMs() {
+        return schedule != null ? schedule.nextFireTime() : -1L;
+    }
+
+    /**
+     * 下一次触发对应的墙钟时间，未调度时为 -1
+     */
+    long nextFireWallMs() {
+        if (schedule == null) return -1L;
+        return System.currentTimeMillis() + schedule.delayUntilNext(SystemClock.elapsedRealtime());
+    }
+
+    /**
+     * 周期的开/关阶段已结束，若有顺延的执行则立即开始
+     */
+    void onCycleSettled() {
+        if (schedule != null && pendingRuns > 0) {
+            handler.removeCallbacks(runRunnable);
+            handler.post(runRunnable);
+        }
+    }
+
+    /**
+     * 请求频率与实际达到频率（次/分钟）的对比，未调度时为 null
+     */
+    String frequencyReport() {
+        if (schedule == null) return null;
+        double requested = 60000.0 / schedule.periodMs();
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format(java.util.Locale.US, "请求 %.2f 次/分钟", requested));
+        if (stats.runCount >= 2) {
+            // 以首末两次开始之间的间隔计算，不受统计窗口起止位置影响
+            double achieved = (stats.runCount - 1) * 60000.0 / Math.max(1, stats.lastRunAtMs - stats.firstRunAtMs);
+            sb.append(String.format(java.util.Locale.US, ", 实际 %.2f 次/分钟 (%.0f%%)", achieved, achieved * 100 / requested));
+        } else {
+            sb.append(", 实际 -");
+        }
+        sb.append(", 已执行 ").append(stats.runCount).append(" 次");
+        if (schedule.offsetMs() != 0 || schedule.jitterMs() != 0) {
+            sb.append(", 相位偏移 ").append(schedule.offsetMs()).append("ms/抖动 ±")
+                    .append(schedule.jitterMs()).append("ms");
+        }
+        if (stats.deferredCount > 0) {
+            sb.append(", 顺延 ").append(stats.deferredCount).append(" 次/平均 ")
+                    .append(stats.deferredTotalMs / stats.deferredCount).append("ms");
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 闹钟唤醒（服务收到 scheduled_tick 命令）
+     */
+    void onAlarm() {
+        Log.d(TAG, "闹钟唤醒");
+        // 闹钟只保证送达，之后到周期开始前由 tick 唤醒锁防止休眠
+        CycleWakeLock.acquireForTick(context);
+        onTimer();
+    }
+
+    private void onTimer() {
+        if (schedule == null) return;
+        long now = SystemClock.elapsedRealtime();
+        int runs = schedule.onFire(now);
+        if (runs > 0) {
+            // 周期进行中时多个到期只保留策略允许的数量，不无限堆积
+            int cap = schedule.policy() == FixedRateSchedule.MissedRunPolicy.CATCH_UP
+                    ? FixedRateSchedule.MAX_CATCH_UP_RUNS : 1;
+            pendingRuns = Math.min(pendingRuns + runs, cap);
+            if (runs > 1) {
+                Log.w(TAG, "错过 " + (runs - 1) + " 个时间点，按策略补跑");
+            }
+            handler.removeCallbacks(runRunnable);
+            handler.post(runRunnable);
+        } else {
+            Tracer.event(Tracer.Event.SCHEDULE_SKIP, schedule.nextFireTime());
+            if (Tracer.isVerbose()) {
+                Log.d(TAG, "未到时间点或按策略跳过, next=" + schedule.nextFireTime() + ", now=" + now);
+            }
+            CycleWakeLock.releaseTick();
+        }
+        arm();
+    }
+
+    private void dispatchRun() {
+        if (pendingRuns <= 0) return;
+        long now = SystemClock.elapsedRealtime();
+        if (listener.isCycleInFlight()) {
+            // 背压：上一个周期还在开/关阶段，顺延到它结束
+            if (dueSinceMs < 0) {
+                dueSinceMs = now;
+                stats.deferredCount++;
+                Tracer.event(Tracer.Event.SCHEDULE_DEFER, 0);
+                Log.d(TAG, "上一个周期仍在进行，顺延本次执行");
+            }
+            return;
+        }
+        if (dueSinceMs >= 0) {
+            stats.deferredTotalMs += now - dueSinceMs;
+            dueSinceMs = -1L;
+        }
+        pendingRuns--;
+        stats.onRun(now);
+        listener.onScheduledRun();
+        if (pendingRuns > 0 && !listener.isCycleInFlight()) {
+            handler.postDelayed(runRunnable, Math.min(CATCH_UP_SPACING_MS, schedule.periodMs()));
+        }
+    }
+
+    private void arm() {
+        long now = SystemClock.elapsedRealtime();
+        long next = schedule.nextFireTime();
+        handler.removeCallbacks(timerRunnable);
+        handler.postDelayed(timerRunnable, next - now);
+
+        try {
+            setWakeAlarm(context, next);
+        } catch (Throwable t) {
+            Log.w(TAG, "设置唤醒闹钟失败，仅依赖 Handler", t);
+        }
+        listener.onRearmed(next, System.currentTimeMillis() + (next - now));
+    }
+
+    /**
+     * 服务未能进入前台而停止时单独挂一次唤醒闹钟，送达时按正常启动流程恢复调度。
+     * 闹钟送达的前台服务启动不受开机广播对前台服务类型的限制
+     */
+    static void armResume(Context context, long delayMs) {
+        try {
+            setWakeAlarm(context, SystemClock.elapsedRealtime() + delayMs);
+        } catch (Throwable t) {
+            Log.w(TAG, "设置恢复闹钟失败", t);
+        }
+    }
+
+    private static void setWakeAlarm(Context context, long atElapsedMs) {
+        AlarmManager am = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+        if (am == null) return;
+        PendingIntent pi = tickIntent(context);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S && !am.canScheduleExactAlarms()) {
+            // 未授予精确闹钟权限时退化为非精确闹钟，设备唤醒时仍由 Handler 精确触发
+            am.setAndAllowWhileIdle(AlarmManager.ELAPSED_REALTIME_WAKEUP, atElapsedMs, pi);
+        } else if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+            am.setExactAndAllowWhileIdle(AlarmManager.ELAPSED_REALTIME_WAKEUP, atElapsedMs, pi);
+        } else {
+            am.setExact(AlarmManager.ELAPSED_REALTIME_WAKEUP, atElapsedMs, pi);
+        }
+    }
+
+    private static PendingIntent tickIntent(Context context) {
+        Intent intent = new Intent(context, AutoTaskService.class);
+        intent.putExtra("command", COMMAND_SCHEDULED_TICK);
+        int flags = PendingIntent.FLAG_UPDATE_CURRENT;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+            flags |= PendingIntent.FLAG_IMMUTABLE;
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            // 进程被杀后后台 startService 不被允许，闹钟须以前台服务方式拉起服务
+            return PendingIntent.getForegroundService(context, REQUEST_CODE_TICK, intent, flags);
+        }
+        return PendingIntent.getService(context, REQUEST_CODE_TICK, intent, flags);
+    }
+}
@@ -0,0 +1,364 @@
+package com.example.airplanecontrol.services;
+
+import android.content.Context;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.ResultReceiver;
+import android.util.Log;
+
+import com.example.airplanecontrol.utils.AirplaneModeUtils;
+import com.example.airplanecontrol.utils.CycleMetrics;
+import com.example.airplanecontrol.utils.CycleTiming;
+import com.example.airplanecontrol.utils.OperationLogStore;
+import com.example.airplanecontrol.utils.RadioSignalMonitor;
+import com.example.airplanecontrol.utils.RotationVerifier;
+import com.example.airplanecontrol.utils.ToggleCycle;
+import com.example.airplanecontrol.utils.Tracer;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 服务持有的单写者切换命令队列。
+ * 界面、一次性命令、定时调度等所有切换请求都在这里排队，同一时刻只执行一条；
+ * 等价的待执行命令合并为同一张票据，开启 / 关闭命令会取代尚未执行的相反命令。
+ * 每张票据在完成时把结果回传给所有提交者（{@link ResultReceiver}）。
+ * 周期进入恢复阶段后校验蜂窝地址是否轮换，未轮换时在命令的重试次数内重新排入周期。
+ * 所有方法都在主线程调用。
+ */
+final class ToggleCommandQueue {
+
+    private static final String TAG = "ToggleCommandQueue";
+
+    /** 结果回传的 ResultReceiver extra */
+    static final String EXTRA_RESULT_RECEIVER = "result_receiver";
+    static final String RESULT_TICKET = "ticket";
+    static final String RESULT_STATUS = "status";
+    static final String RESULT_DETAIL = "detail";
+    static final int RESULT_OK = 0;
+    static final int RESULT_FAILED = 1;
+
+    enum Kind {
+        /** 开启→保持→关闭 周期 */
+        CYCLE("timed_toggle"),
+        /** 读取当前状态后切换到相反状态（执行时才读取） */
+        SMART_TOGGLE("smart_toggle"),
+        TURN_ON("turn_on"),
+        TURN_OFF("turn_off");
+
+        final String command;
+
+        Kind(String command) {
+            this.command = command;
+        }
+
+        static Kind fromCommand(String command) {
+            for (Kind k : values()) {
+                if (k.command.equals(command)) {
+                    return k;
+                }
+            }
+            return null;
+        }
+    }
+
+    enum Status {
+        PENDING, RUNNING, DONE, FAILED, SUPERSEDED, REJECTED
+    }
+
+    /**
+     * 周期命令的进程内进度回调（例如连发），周期结束与地址校验结果分别到达
+     */
+    interface CycleListener {
+        /** 周期命令结束；ok=false（失败 / 被拒绝）时不会再有地址校验 */
+        void onCycleFinished(Ticket ticket, boolean ok);
+
+        /** 地址校验结果，after 为校验时的蜂窝地址 */
+        void onVerdict(RotationVerifier.Verdict verdict, Set<String> after, long elapsedMs);
+    }
+
+    interface IdleListener {
+        /** 队列当前命令已释放（周期进入恢复阶段或单步命令完成） */
+        void onQueueIdle();
+    }
+
+    static final class Command {
+        final Kind kind;
+        final boolean secure;
+        final CycleTiming timing;
+        final String source;
+        /** 周期后地址未轮换时还可重试的次数 */
+        final int retryBudget;
+        /** 进程内进度回调，可为 null */
+        final CycleListener listener;
+
+        Command(Kind kind, boolean secure, CycleTiming timing, String source) {
+            this(kind, secure, timing, source, 0);
+        }
+
+        Command(Kind kind, boolean secure, CycleTiming timing, String source, int retryBudget) {
+            this(kind, secure, timing, source, retryBudget, null);
+        }
+
+        Command(Kind kind, boolean secure, CycleTiming timing, String source, int retryBudget,
+                CycleListener listener) {
+            this.kind = kind;
+            this.secure = secure;
+            this.timing = timing;
+            this.source = source;
+            this.retryBudget = retryBudget;
+            this.listener = listener;
+        }
+
+        /** 等价命令：类型与控制方式相同（周期还要求阶段时间参数相同）；带进度回调的命令不参与合并 */
+        boolean isEquivalent(Command other) {
+            if (listener != null || other.listener != null) return false;
+            if (kind != other.kind || secure != other.secure) return false;
+            return kind != Kind.CYCLE || (timing.adaptive == other.timing.adaptive
+                    && timing.fixedHoldMs == other.timing.fixedHoldMs);
+        }
+
+        @Override
+        public String toString() {
+            return kind.command + "/" + (secure ? "SECURE" : "ASSISTANT") + "/" + source;
+        }
+    }
+
+    static final class Ticket {
+        final long id;
+        final Command command;
+        final List<ResultReceiver> receivers = new ArrayList<>();
+        int coalesced;
+        Status status = Status.PENDING;
+        String detail;
+
+        Ticket(long id, Command command) {
+            this.id = id;
+            this.command = command;
+        }
+
+        @Override
+        public String toString() {
+            return "#" + id + " " + command + " " + status
+                    + (coalesced > 0 ? " (合并 " + coalesced + " 次)" : "")
+                    + (detail != null ? ": " + detail : "");
+        }
+    }
+
+    private final Context context;
+    private final IdleListener idleListener;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final ArrayDeque<Ticket> pending = new ArrayDeque<>();
+
+    private long nextId = 1;
+    private Ticket running;
+    // 上一个周期的地址轮换校验（周期进入恢复阶段后开始，可与下一条命令并行）
+    private RadioSignalMonitor.Wait verifyWait;
+
+    ToggleCommandQueue(Context context, IdleListener idleListener) {
+        this.context = context.getApplicationContext();
+        this.idleListener = idleListener;
+    }
+
+    /**
+     * 提交一条命令。已有等价的待执行命令时并入其票据，不会重复执行
+     * @param receiver 结果回传，可为 null
+     */
+    Ticket submit(Command command, ResultReceiver receiver) {
+        for (Ticket t : pending) {
+            if (t.command.isEquivalent(command)) {
+                t.coalesced++;
+                if (receiver != null) t.receivers.add(receiver);
+                if (Tracer.isVerbose()) {
+                    Log.d(TAG, "合并到待执行票据 " + t + "，来源 " + command.source);
+                }
+                return t;
+            }
+        }
+        if (command.kind == Kind.TURN_ON || command.kind == Kind.TURN_OFF) {
+            // 最新的开启 / 关闭意图取代尚未执行的相反命令
+            Kind opposite = command.kind == Kind.TURN_ON ? Kind.TURN_OFF : Kind.TURN_ON;
+            Iterator<Ticket> it = pending.iterator();
+            while (it.hasNext()) {
+                Ticket t = it.next();
+                if (t.command.kind == opposite) {
+                    it.remove();
+                    complete(t, Status.SUPERSEDED, "被 " + command.kind.command + " 取代");
+                }
+            }
+        }
+        Ticket ticket = new Ticket(nextId++, command);
+        if (receiver != null) ticket.receivers.add(receiver);
+        pending.add(ticket);
+        if (Tracer.isVerbose()) {
+            Log.d(TAG, "入队 " + ticket + "，待执行 " + pending.size());
+        }
+        pump();
+        return ticket;
+    }
+
+    /**
+     * 队列是否有正在执行或待执行的命令
+     */
+    boolean isBusy() {
+        return running != null || !pending.isEmpty();
+    }
+
+    /**
+     * 放弃所有待执行命令（服务销毁时），正在执行的周期不受影响
+     */
+    void clear() {
+        while (!pending.isEmpty()) {
+            complete(pending.poll(), Status.REJECTED, "服务已停止");
+        }
+        cancelVerification();
+        handler.removeCallbacksAndMessages(null);
+    }
+
+    private void pump() {
+        if (running != null || pending.isEmpty()) return;
+        Ticket ticket = pending.poll();
+        running = ticket;
+        ticket.status = Status.RUNNING;
+        if (Tracer.isVerbose()) {
+            Log.d(TAG, "执行 " + ticket);
+        }
+        if (ticket.command.kind == Kind.CYCLE) {
+            runCycle(ticket);
+        } else {
+            runStep(ticket);
+        }
+    }
+
+    private void runCycle(final Ticket ticket) {
+        final Command c = ticket.command;
+        cancelVerification();
+        final Set<String> before = RotationVerifier.snapshot(context);
+        ToggleCycle.Actuator actuator = actuatorFor(c.secure);
+        ToggleCycle cycle = ToggleCycle.start(context,
+                c.secure ? CycleMetrics.Path.WSS : CycleMetrics.Path.ASSISTANT, c.timing, actuator,
+                (cyc, state) -> {
+                    if (state == ToggleCycle.State.RECOVERING) {
+                        // 开/关阶段已结束，后续命令不必等网络恢复；从此刻开始监听新地址分配
+                        verify(c, before);
+                        release(ticket);
+                    } else if (state.isTerminal()) {
+                        if (state != ToggleCycle.State.DONE) {
+                            // 周期失败 / 取消时不再校验
+                            cancelVerification();
+                        }
+                        complete(ticket, state == ToggleCycle.State.DONE ? Status.DONE : Status.FAILED, cyc.summary());
+                        release(ticket);
+                    }
+                });
+        if (cycle == null) {
+            complete(ticket, Status.REJECTED, "已有周期进行中");
+            release(ticket);
+        }
+    }
+
+    /**
+     * 校验周期是否换到了新的蜂窝地址，未换到且还有重试次数时重新排入一个周期
+     */
+    private void verify(final Command c, Set<String> before) {
+        verifyWait = RotationVerifier.awaitRotation(context, before, RotationVerifier.verifyCeilingMs(context),
+                (verdict, b, after, elapsedMs) -> {
+                    verifyWait = null;
+                    boolean retry = verdict != RotationVerifier.Verdict.ROTATED && c.retryBudget > 0;
+                    if (c.listener != null) {
+                        c.listener.onVerdict(verdict, after, elapsedMs);
+                    }
+                    // 在回调之后才记入最近使用的网段，回调可判断本次地址是否在新网段
+                    RotationVerifier.record(verdict, retry, after);
+                    OperationLogStore.append(context, "地址校验 " + verdict + " (" + elapsedMs + "ms)"
+                            + (retry ? "，重试剩余 " + (c.retryBudget - 1) : ""));
+                    if (retry) {
+                        submit(new Command(Kind.CYCLE, c.secure, c.timing, "rotation_retry", c.retryBudget - 1), null);
+                    }
+                });
+    }
+
+    private void cancelVerification() {
+        if (verifyWait != null) {
+            verifyWait.cancel();
+            verifyWait = null;
+        }
+    }
+
+    private void runStep(final Ticket ticket) {
+        if (ToggleCycle.isBusy()) {
+            // 队列外启动的周期（例如助理会话）仍在开/关阶段，不与之交错
+            complete(ticket, Status.REJECTED, "已有周期进行中");
+            release(ticket);
+            return;
+        }
+        Command c = ticket.command;
+        final boolean target = c.kind == Kind.TURN_ON
+                || (c.kind == Kind.SMART_TOGGLE && !AirplaneModeUtils.isAirplaneModeOn(context));
+        if (target) {
+            // 明确要求开启，看门狗不应再把它关掉
+            AirplaneModeWatchdog.disarm(context, "命令 " + c.kind);
+        }
+        CycleMetrics.Trace trace = CycleMetrics.begin(context,
+                c.secure ? CycleMetrics.Path.WSS : CycleMetrics.Path.ASSISTANT);
+        final ToggleCycle.Actuator actuator = actuatorFor(c.secure);
+        handler.postDelayed(() -> {
+            if (running != ticket) return;
+            actuator.cancel();
+            complete(ticket, Status.FAILED, "切换到 " + target + " 超时");
+            release(ticket);
+        }, ToggleCycle.STEP_TIMEOUT_MS);
+        actuator.request(target, trace, (ok, detail) -> {
+            if (running != ticket) return;
+            complete(ticket, ok ? Status.DONE : Status.FAILED, "目标 " + target + ", " + detail);
+            release(ticket);
+        });
+    }
+
+    private ToggleCycle.Actuator actuatorFor(boolean secure) {
+        return secure
+                ? ToggleCycle.secureActuator(context)
+                : new ToggleCycle.ObservedActuator(context,
+                        (enable, delivered) -> AssistantDispatcher.dispatch(context,
+                                AssistCommand.setState(enable), delivered));
+    }
+
+    private void release(Ticket ticket) {
+        if (running != ticket) return;
+        running = null;
+        handler.removeCallbacksAndMessages(null);
+        if (pending.isEmpty()) {
+            idleListener.onQueueIdle();
+        }
+        // 推迟到下一轮消息，避免在周期回调中嵌套启动下一条命令
+        handler.post(this::pump);
+    }
+
+    private void complete(Ticket ticket, Status status, String detail) {
+        if (ticket.status != Status.PENDING && ticket.status != Status.RUNNING) return;
+        ticket.status = status;
+        ticket.detail = detail;
+        if (Tracer.isVerbose()) {
+            Log.d(TAG, "票据完成 " + ticket);
+        }
+        OperationLogStore.append(context, "命令 " + ticket);
+        if (ticket.command.listener != null) {
+            ticket.command.listener.onCycleFinished(ticket, status == Status.DONE);
+        }
+        Bundle data = new Bundle();
+        data.putLong(RESULT_TICKET, ticket.id);
+        data.putString(RESULT_STATUS, status.name());
+        data.putString(RESULT_DETAIL, detail);
+        for (ResultReceiver receiver : ticket.receivers) {
+            try {
+                receiver.send(status == Status.DONE ? RESULT_OK : RESULT_FAILED, data);
+            } catch (Throwable t) {
+                Log.w(TAG, "回传票据结果失败", t);
+            }
+        }
+    }
+}
@@ -7,6 +7,7 @@ import android.Manifest;
 import android.content.pm.PackageManager;
 import android.os.Handler;
 import android.os.Looper;
+import android.os.ResultReceiver;
 import android.provider.Settings;
 import android.text.InputType;
 import android.util.Log;
@@ -38,7 +39,11 @@ import com.example.airplanecontrol.ui.AirplaneModeViewModel;
 import com.google.android.material.card.MaterialCardView;
 import com.google.android.material.dialog.MaterialAlertDialogBuilder;
 import com.google.android.material.switchmaterial.SwitchMaterial;
+import com.example.airplanecontrol.services.AirplaneModeWatchdog;
+import com.example.airplanecontrol.services.AssistantDispatcher;
 import com.example.airplanecontrol.services.AutoTaskService;
+import com.example.airplanecontrol.utils.RotationVerifier;
+
 
 /**
  * 飞行模式控制界面
@@ -165,8 +170,29 @@ public class AirplaneModeActivity extends AppCompatActivity {
         
         // 观察切换间隔
         viewModel.getToggleInterval().observe(this, interval -> {
-            tvIntervalStatus.setText("Toggle Interval: Every " + interval + " minutes");
+            updateIntervalStatus();
+            // 状态在后台加载，首次到达时同步到输入框（不覆盖用户正在输入的内容）
+            if (etInterval.getText() == null || etInterval.getText().length() == 0) {
+                etInterval.setText(currentIntervalText());
+            }
+        });
+        viewModel.getHighFrequencySeconds().observe(this, seconds -> {
+            updateIntervalStatus();
+            if (seconds != null && seconds > 0
+                    && (etInterval.getText() == null || etInterval.getText().length() == 0)) {
+                etInterval.setText(currentIntervalText());
+            }
+        });
+        
+        // 控制方式与自适应周期在后台加载，到达时同步单选框与菜单勾选
+        viewModel.getControlModeSecure().observe(this, secure -> {
+            int checkedId = Boolean.TRUE.equals(secure) ? R.id.rb_mode_secure : R.id.rb_mode_assistant;
+            if (rgControlMode.getCheckedRadioButtonId() != checkedId) {
+                rgControlMode.check(checkedId);
+            }
+            updateControlsEnabled(Boolean.TRUE.equals(viewModel.getPermissionStatus().getValue()));
         });
+        viewModel.getAdaptiveCycle().observe(this, adaptive -> invalidateOptionsMenu());
         
         // 观察权限状态
         viewModel.getPermissionStatus().observe(this, hasPermission -> {
@@ -207,6 +233,11 @@ public class AirplaneModeActivity extends AppCompatActivity {
         // 控制方式选择与持久化
         rgControlMode.setOnCheckedChangeListener((group, checkedId) -> {
             boolean secure = checkedId == R.id.rb_mode_secure;
+            if (secure == viewModel.isControlModeSecure()
+                    && viewModel.getControlModeSecure().getValue() != null) {
+                // 观察者同步已加载的设置，无需回写
+                return;
+            }
             viewModel.setControlModeSecure(secure);
             // 切换模式时根据权限刷新控件可用状态
             Boolean hasAssistant = viewModel.getPermissionStatus().getValue();
@@ -220,14 +251,31 @@ public class AirplaneModeActivity extends AppCompatActivity {
                 Toast.makeText(this, "Please enter interval (1-60)", Toast.LENGTH_SHORT).show();
                 return;
             }
+            // 以 s 结尾表示秒级间隔（高频模式），例如 30s
+            if (input.endsWith("s") || input.endsWith("S")) {
+                try {
+                    int seconds = Integer.parseInt(input.substring(0, input.length() - 1).trim());
+                    if (viewModel.isValidIntervalSeconds(seconds)) {
+                        viewModel.setHighFrequencyInterval(seconds);
+                        Toast.makeText(this, "High-frequency mode: every " + seconds + " seconds", Toast.LENGTH_SHORT).show();
+                        Log.d(TAG, "用户确认设置高频间隔: " + seconds + " 秒");
+                        applyIntervalChange();
+                    } else {
+                        Toast.makeText(this, "Seconds range " + AirplaneModeViewModel.MIN_INTERVAL_SECONDS
+                                + "-" + AirplaneModeViewModel.MAX_INTERVAL_SECONDS, Toast.LENGTH_SHORT).show();
+                    }
+                } catch (NumberFormatException e) {
+                    Toast.makeText(this, "Please enter a valid number", Toast.LENGTH_SHORT).show();
+                }
+                return;
+            }
             try {
                 int val = Integer.parseInt(input);
                 if (viewModel.isValidInterval(val)) {
                     viewModel.setToggleInterval(val);
                     Toast.makeText(this, "Interval set to " + val + " minutes", Toast.LENGTH_SHORT).show();
-                    Log.d(TAG, "用户确认设置间隔: " + val + " 分钟, 尝试启动AutoTaskService");
-                    // 立即启动/重启前台服务，使新的间隔立刻生效
-                    startAutoTaskService();
+                    Log.d(TAG, "用户确认设置间隔: " + val + " 分钟");
+                    applyIntervalChange();
                 } else {
                     Toast.makeText(this, "Interval range 1-60", Toast.LENGTH_SHORT).show();
                 }
@@ -471,24 +519,102 @@ public class AirplaneModeActivity extends AppCompatActivity {
     }
     
     /**
-     * 显示操作日志对话框
+     * 显示操作日志对话框（分页，最新在前）
      */
     private void showOperationLogsDialog() {
-        String logs = viewModel.getOperationLogs();
+        showOperationLogsDialog(0);
+    }
+    
+    private void showOperationLogsDialog(int page) {
+        viewModel.loadOperationLogPage(page, (entries, total) -> {
+            if (isFinishing() || isDestroyed()) return;
+            showOperationLogsDialog(page, entries, total);
+        });
+    }
+    
+    private void showOperationLogsDialog(int page, java.util.List<com.example.airplanecontrol.utils.OperationLogStore.Entry> entries,
+                                         int total) {
+        StringBuilder logs = new StringBuilder();
+        for (com.example.airplanecontrol.utils.OperationLogStore.Entry entry : entries) {
+            logs.append(entry).append("\n");
+        }
+        int pageCount = Math.max(1, (total + AirplaneModeViewModel.LOG_PAGE_SIZE - 1) / AirplaneModeViewModel.LOG_PAGE_SIZE);
         
-        new MaterialAlertDialogBuilder(this)
-                .setTitle("Operation Logs")
-                .setMessage(logs.isEmpty() ? "No operation records" : logs)
+        MaterialAlertDialogBuilder builder = new MaterialAlertDialogBuilder(this)
+                .setTitle("Operation Logs (" + (page + 1) + "/" + pageCount + ")")
+                .setMessage(logs.length() == 0 ? "No operation records" : logs.toString())
                 .setPositiveButton("OK", null)
                 .setNeutralButton("Clear Logs", (dialog, which) -> {
                     viewModel.clearOperationLogs();
                     Toast.makeText(this, "Logs cleared", Toast.LENGTH_SHORT).show();
+                });
+        if (page + 1 < pageCount) {
+            builder.setNegativeButton("Older", (dialog, which) -> showOperationLogsDialog(page + 1));
+        }
+        builder.show();
+    }
+    
+    /**
+     * 显示各阶段延迟统计（自命令发出起累计，p50/p90/p99/max）
+     */
+    private String latencyStatsText() {
+        String frequency = AutoTaskService.getFrequencyReport();
+        String report = com.example.airplanecontrol.utils.CycleMetrics.report()
+                + AssistantDispatcher.report() + '\n' + RotationVerifier.report()
+                + '\n' + com.example.airplanecontrol.utils.CycleWakeLock.report()
+                + '\n' + com.example.airplanecontrol.utils.DirectBootStorage.report(this)
+                + '\n' + AirplaneModeWatchdog.report(this);
+        return frequency != null ? "Auto task frequency\n  " + frequency + "\n\n" + report : report;
+    }
+
+    private void showLatencyStatsDialog() {
+        new MaterialAlertDialogBuilder(this)
+                .setTitle("Cycle Phase Latency")
+                .setMessage(latencyStatsText())
+                .setPositiveButton("OK", null)
+                .setNeutralButton("Reset", (dialog, which) -> {
+                    com.example.airplanecontrol.utils.CycleMetrics.reset();
+                    AssistantDispatcher.reset();
+                    RotationVerifier.reset();
+                    com.example.airplanecontrol.utils.CycleWakeLock.reset();
+                    Toast.makeText(this, "Latency stats reset", Toast.LENGTH_SHORT).show();
                 })
                 .show();
     }
     
+    /**
+     * 周期历史对话框：内容在 ViewModel 的后台线程读取（首次需要打开并映射历史文件）
+     */
+    private void showCycleHistoryDialog() {
+        viewModel.loadCycleHistoryText(text -> {
+            if (isFinishing() || isDestroyed()) return;
+            new MaterialAlertDialogBuilder(this)
+                    .setTitle("Cycle History")
+                    .setMessage(text)
+                    .setPositiveButton("OK", null)
+                    .setNeutralButton("Clear", (dialog, which) -> {
+                        viewModel.clearCycleHistory();
+                        Toast.makeText(this, "Cycle history cleared", Toast.LENGTH_SHORT).show();
+                    })
+                    .show();
+        });
+    }
+    
     @Override
     public boolean onCreateOptionsMenu(Menu menu) {
+        getMenuInflater().inflate(R.menu.menu_airplane_mode, menu);
+        MenuItem adaptive = menu.findItem(R.id.action_adaptive_cycle);
+        if (adaptive != null) {
+            adaptive.setChecked(viewModel.isAdaptiveCycle());
+        }
+        MenuItem server = menu.findItem(R.id.action_control_server);
+        if (server != null) {
+            server.setChecked(AutoTaskService.isControlServerEnabled(this));
+        }
+        MenuItem direct = menu.findItem(R.id.action_direct_session);
+        if (direct != null) {
+            direct.setChecked(AssistantDispatcher.isDirectEnabled(this));
+        }
         return true;
     }
     
@@ -501,6 +627,56 @@ public class AirplaneModeActivity extends AppCompatActivity {
             return true;
         }
         
+        if (id == R.id.action_latency_stats) {
+            showLatencyStatsDialog();
+            return true;
+        }
+        
+        if (id == R.id.action_burst_rotation) {
+            startBurstRotation();
+            return true;
+        }
+        
+        if (id == R.id.action_cycle_history) {
+            showCycleHistoryDialog();
+            return true;
+        }
+        
+        if (id == R.id.action_export_trace) {
+            exportCycleTrace();
+            return true;
+        }
+        
+        if (id == R.id.action_control_server) {
+            boolean enabled = !item.isChecked();
+            item.setChecked(enabled);
+            AutoTaskService.setControlServerEnabled(this, enabled);
+            Toast.makeText(this, enabled
+                    ? "Control server listens on 127.0.0.1 while auto task runs"
+                    : "Control server disabled", Toast.LENGTH_SHORT).show();
+            return true;
+        }
+        
+        if (id == R.id.action_direct_session) {
+            boolean direct = !item.isChecked();
+            item.setChecked(direct);
+            AssistantDispatcher.setDirectEnabled(this, direct);
+            Toast.makeText(this, direct
+                    ? "Assistant sessions start via showSession (trampoline as fallback)"
+                    : "Assistant sessions start via TransparentActivity trampoline", Toast.LENGTH_SHORT).show();
+            return true;
+        }
+        
+        if (id == R.id.action_adaptive_cycle) {
+            boolean adaptive = !item.isChecked();
+            item.setChecked(adaptive);
+            viewModel.setAdaptiveCycle(adaptive);
+            Toast.makeText(this, adaptive
+                    ? "Adaptive timing: hold until radio off, done when cellular validated"
+                    : "Fixed timing: ON → 2s → OFF", Toast.LENGTH_SHORT).show();
+            return true;
+        }
+        
         return super.onOptionsItemSelected(item);
     }
     
@@ -514,24 +690,13 @@ public class AirplaneModeActivity extends AppCompatActivity {
     // 服务方案移除了 handleAutoCommand()
     
     /**
-     * 执行智能切换（使用showAssist）
+     * 执行智能切换（委托给后台服务的命令队列，由服务调用showAssist）
      */
     private void executeSmartToggleWithAssist() {
         Log.d(TAG, "执行智能切换");
+        viewModel.executeSmartToggle();
         Log.d(TAG, "生命周期检查-isAppInForeground：" + AppLifecycleObserver.isAppInForeground);
-        progressBar.setVisibility(View.VISIBLE);
-        btnTestToggle.setEnabled(false);
-        
-        Bundle args = new Bundle();
-        args.putString("command", "smart_toggle");
-        showAssist(args);
-        
-        // 延迟刷新状态和重新启用按钮
-        new Handler(Looper.getMainLooper()).postDelayed(() -> {
-            viewModel.refreshStatus();
-            progressBar.setVisibility(View.GONE);
-            btnTestToggle.setEnabled(true);
-        }, 1000);
+        sendToggleCommand("smart_toggle", "assistant");
     }
     
     /**
@@ -539,66 +704,98 @@ public class AirplaneModeActivity extends AppCompatActivity {
      */
     private void executeTimedToggleWithAssist() {
         Log.d(TAG, "执行定时切换 - 委托给后台服务");
-        progressBar.setVisibility(View.VISIBLE);
-        btnTestToggle.setEnabled(false);
-        
+        viewModel.executeTimedToggle();
         Toast.makeText(this, "Starting timed toggle: ON → 2s → OFF", Toast.LENGTH_SHORT).show();
-
-        // 发送命令给后台服务，由服务处理复杂的定时逻辑
-        Intent serviceIntent = new Intent(this, AutoTaskService.class);
-        serviceIntent.putExtra("command", "timed_toggle");
-        serviceIntent.putExtra("mode", "assistant");
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
-            startForegroundService(serviceIntent);
-        } else {
-            startService(serviceIntent);
-        }
-
-        // 延迟恢复UI状态
-        new Handler(Looper.getMainLooper()).postDelayed(() -> {
-            viewModel.refreshStatus();
-            progressBar.setVisibility(View.GONE);
-            btnTestToggle.setEnabled(true);
-            Toast.makeText(this, "Timed toggle command sent", Toast.LENGTH_SHORT).show();
-        }, 1000);
+        sendToggleCommand("timed_toggle", "assistant");
     }
     
     /**
-     * 强制开启飞行模式（使用showAssist）
+     * 强制开启飞行模式（委托给后台服务的命令队列）
      */
     private void executeTurnOnWithAssist() {
         Log.d(TAG, "强制开启飞行模式");
-        progressBar.setVisibility(View.VISIBLE);
-        btnTestToggle.setEnabled(false);
-        
-        Bundle args = new Bundle();
-        args.putString("command", "turn_on");
-        showAssist(args);
-        
-        new Handler(Looper.getMainLooper()).postDelayed(() -> {
-            viewModel.refreshStatus();
-            progressBar.setVisibility(View.GONE);
-            btnTestToggle.setEnabled(true);
-        }, 1000);
+        viewModel.executeTurnOn();
+        sendToggleCommand("turn_on", "assistant");
     }
     
     /**
-     * 强制关闭飞行模式（使用showAssist）
+     * 强制关闭飞行模式（委托给后台服务的命令队列）
      */
     private void executeTurnOffWithAssist() {
         Log.d(TAG, "强制关闭飞行模式");
+        viewModel.executeTurnOff();
+        sendToggleCommand("turn_off", "assistant");
+    }
+
+    /**
+     * 连发轮换直到拿到最近一小时未用过网段的地址，逐次提示每次尝试的结果
+     */
+    private void startBurstRotation() {
+        Intent serviceIntent = new Intent(this, AutoTaskService.class);
+        serviceIntent.putExtra("command", "burst");
+        serviceIntent.putExtra("until", "new_range");
+        serviceIntent.putExtra("source", "ui");
+        serviceIntent.putExtra("result_receiver", new ResultReceiver(new Handler(Looper.getMainLooper())) {
+            @Override
+            protected void onReceiveResult(int resultCode, Bundle resultData) {
+                if (isFinishing() || isDestroyed() || resultData == null) return;
+                viewModel.refreshStatus();
+                String text = resultData.containsKey("stop_reason")
+                        ? "Burst " + resultData.getString("stop_reason") + " after " + resultData.getInt("attempt") + " attempts"
+                        : "Burst #" + resultData.getInt("attempt") + ": " + resultData.getString("verdict")
+                                + " (" + resultData.getLong("elapsed_ms") + "ms)";
+                Toast.makeText(AirplaneModeActivity.this, text, Toast.LENGTH_SHORT).show();
+            }
+        });
+        startService(serviceIntent);
+        Toast.makeText(this, "Burst rotation started", Toast.LENGTH_SHORT).show();
+    }
+
+    /**
+     * 由服务在后台导出最近周期的 Chrome trace JSON，完成后提示文件路径
+     */
+    private void exportCycleTrace() {
+        Intent serviceIntent = new Intent(this, AutoTaskService.class);
+        serviceIntent.putExtra("command", "export_trace");
+        serviceIntent.putExtra("result_receiver", new ResultReceiver(new Handler(Looper.getMainLooper())) {
+            @Override
+            protected void onReceiveResult(int resultCode, Bundle resultData) {
+                if (isFinishing() || isDestroyed() || resultData == null) return;
+                String text = resultData.containsKey("path")
+                        ? "Exported " + resultData.getInt("cycles") + " cycles to " + resultData.getString("path")
+                        : "Trace export failed: " + resultData.getString("error");
+                Toast.makeText(AirplaneModeActivity.this, text, Toast.LENGTH_LONG).show();
+            }
+        });
+        startService(serviceIntent);
+    }
+
+    /**
+     * 把切换命令交给服务排队执行，票据完成时恢复界面并提示结果。
+     * 连续点击产生的等价命令会被服务合并，不会重复切换。
+     */
+    private void sendToggleCommand(String command, String mode) {
         progressBar.setVisibility(View.VISIBLE);
         btnTestToggle.setEnabled(false);
-        
-        Bundle args = new Bundle();
-        args.putString("command", "turn_off");
-        showAssist(args);
-        
-        new Handler(Looper.getMainLooper()).postDelayed(() -> {
-            viewModel.refreshStatus();
-            progressBar.setVisibility(View.GONE);
-            btnTestToggle.setEnabled(true);
-        }, 1000);
+
+        Intent serviceIntent = new Intent(this, AutoTaskService.class);
+        serviceIntent.putExtra("command", command);
+        serviceIntent.putExtra("mode", mode);
+        serviceIntent.putExtra("source", "ui");
+        serviceIntent.putExtra("result_receiver", new ResultReceiver(new Handler(Looper.getMainLooper())) {
+            @Override
+            protected void onReceiveResult(int resultCode, Bundle resultData) {
+                if (isFinishing() || isDestroyed()) return;
+                viewModel.refreshStatus();
+                progressBar.setVisibility(View.GONE);
+                btnTestToggle.setEnabled(true);
+                String status = resultData != null ? resultData.getString("status") : null;
+                long ticket = resultData != null ? resultData.getLong("ticket") : 0;
+                Toast.makeText(AirplaneModeActivity.this, command + " #" + ticket + ": " + status, Toast.LENGTH_SHORT).show();
+            }
+        });
+        // 界面在前台，可直接启动服务；一次性命令不需要前台服务
+        startService(serviceIntent);
     }
 
     private void syncUiFromPrefs() {
@@ -612,7 +809,40 @@ public class AirplaneModeActivity extends AppCompatActivity {
         // 间隔
         Integer currentInterval = viewModel.getToggleInterval().getValue();
         if (currentInterval != null) {
-            etInterval.setText(String.valueOf(currentInterval));
+            etInterval.setText(currentIntervalText());
+        }
+    }
+
+    /**
+     * 当前间隔的输入框文本：高频模式为“30s”，否则为分钟数
+     */
+    private String currentIntervalText() {
+        Integer seconds = viewModel.getHighFrequencySeconds().getValue();
+        if (seconds != null && seconds > 0) {
+            return seconds + "s";
+        }
+        Integer minutes = viewModel.getToggleInterval().getValue();
+        return String.valueOf(minutes != null ? minutes : 15);
+    }
+
+    private void updateIntervalStatus() {
+        Integer seconds = viewModel.getHighFrequencySeconds().getValue();
+        if (seconds != null && seconds > 0) {
+            tvIntervalStatus.setText("Toggle Interval: Every " + seconds + " seconds (high-frequency)");
+        } else {
+            Integer minutes = viewModel.getToggleInterval().getValue();
+            tvIntervalStatus.setText("Toggle Interval: Every " + (minutes != null ? minutes : 15) + " minutes");
+        }
+    }
+
+    /**
+     * 间隔已写入偏好：调度运行中时由服务监听偏好直接重新排期，不重启服务；否则启动服务
+     */
+    private void applyIntervalChange() {
+        if (AutoTaskService.isScheduleRunning()) {
+            Log.d(TAG, "调度运行中，新间隔由服务热更新");
+        } else {
+            startAutoTaskService();
         }
     }
 
@@ -652,6 +882,8 @@ public class AirplaneModeActivity extends AppCompatActivity {
         Intent serviceIntent = new Intent(this, AutoTaskService.class);
         Integer interval = viewModel.getToggleInterval().getValue();
         serviceIntent.putExtra("interval_minutes", interval != null ? interval : 15);
+        Integer seconds = viewModel.getHighFrequencySeconds().getValue();
+        serviceIntent.putExtra("interval_seconds", seconds != null ? seconds : 0);
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
             startForegroundService(serviceIntent);
         } else {
@@ -670,17 +902,12 @@ public class AirplaneModeActivity extends AppCompatActivity {
         Toast.makeText(this, "Background auto task stopped", Toast.LENGTH_SHORT).show();
     }
 
+    /**
+     * WSS 测试切换：与其他切换请求一样经由服务的命令队列执行，状态确认后回传结果
+     */
     private void testSecureToggleOnce() {
-        try {
-            boolean current = com.example.airplanecontrol.utils.AirplaneModeUtils.isAirplaneModeOn(this);
-            boolean target = !current;
-            boolean ok = com.example.airplanecontrol.utils.AirplaneModeUtils.setAirplaneMode(this, target);
-            Toast.makeText(this, ok ? ("Switched to " + (target ? "ON" : "OFF")) : "Toggle failed", Toast.LENGTH_SHORT).show();
-            // 回写状态
-            new Handler(Looper.getMainLooper()).postDelayed(() -> viewModel.refreshStatus(), 800);
-        } catch (Throwable t) {
-            Toast.makeText(this, "Execution failed: " + t.getMessage(), Toast.LENGTH_LONG).show();
-        }
+        com.example.airplanecontrol.utils.OperationLogStore.append(this, "WSS测试切换");
+        sendToggleCommand("smart_toggle", "secure");
     }
 
     /**
@@ -708,6 +935,10 @@ public class AirplaneModeActivity extends AppCompatActivity {
                     com.example.airplanecontrol.utils.AirplaneModeUtils.forceRefreshAirplaneMode(this);
                     Toast.makeText(this, "Force refresh executed", Toast.LENGTH_SHORT).show();
                 })
+                .setNegativeButton("Re-probe Broadcasts", (dialog, which) -> {
+                    com.example.airplanecontrol.utils.AirplaneModeUtils.reprobeBroadcastProfile(this);
+                    Toast.makeText(this, "Broadcast profile refreshed", Toast.LENGTH_SHORT).show();
+                })
                 .show();
     }
 
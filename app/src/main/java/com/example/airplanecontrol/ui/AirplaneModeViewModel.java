@@ -3,6 +3,8 @@ package com.example.airplanecontrol.ui;
 import android.app.Application;
 import android.content.Context;
 import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
 import android.provider.Settings;
 import android.util.Log;
 
@@ -11,6 +13,16 @@ import androidx.lifecycle.AndroidViewModel;
 import androidx.lifecycle.LiveData;
 import androidx.lifecycle.MutableLiveData;
 
+import com.example.airplanecontrol.utils.CycleHistoryStore;
+import com.example.airplanecontrol.utils.CycleTiming;
+import com.example.airplanecontrol.utils.OperationLogStore;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
  * 飞行模式控制界面的ViewModel
  * 简化版本，只包含必要的功能
@@ -22,17 +34,34 @@ public class AirplaneModeViewModel extends AndroidViewModel {
     private static final String KEY_AUTO_TOGGLE_ENABLED = "auto_toggle_enabled";
     private static final String KEY_TOGGLE_INTERVAL = "toggle_interval";
     private static final String KEY_CONTROL_MODE_SECURE = "control_mode_secure";
-    private static final String KEY_OPERATION_LOGS = "operation_logs";
+    private static final String KEY_HIGH_FREQUENCY_SECONDS = "high_frequency_seconds";
+    public static final int MIN_INTERVAL_SECONDS = 10;
+    public static final int MAX_INTERVAL_SECONDS = 300;
+    public static final int LOG_PAGE_SIZE = 50;
     
     private final Context context;
     private final SharedPreferences prefs;
     
+    // 所有 Settings / Binder / SharedPreferences 读取都在后台单线程执行，通过 postValue 发布
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "AirplaneModeViewModel");
+        t.setDaemon(true);
+        return t;
+    });
+    private final AtomicBoolean refreshPending = new AtomicBoolean(false);
+    private final AtomicInteger inFlight = new AtomicInteger(0);
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    
     // LiveData
     private final MutableLiveData<Boolean> airplaneModeStatus = new MutableLiveData<>();
     private final MutableLiveData<Boolean> autoToggleEnabled = new MutableLiveData<>();
     private final MutableLiveData<Integer> toggleInterval = new MutableLiveData<>();
+    // 高频模式的秒级间隔，0 表示未启用
+    private final MutableLiveData<Integer> highFrequencySeconds = new MutableLiveData<>();
+    private final MutableLiveData<Boolean> controlModeSecure = new MutableLiveData<>();
+    private final MutableLiveData<Boolean> adaptiveCycle = new MutableLiveData<>();
     private final MutableLiveData<Boolean> permissionStatus = new MutableLiveData<>();
-    private final MutableLiveData<Boolean> isLoading = new MutableLiveData<>();
+    private final MutableLiveData<Boolean> isLoading = new MutableLiveData<>(false);
     private final MutableLiveData<String> errorMessage = new MutableLiveData<>();
     
     public AirplaneModeViewModel(@NonNull Application application) {
@@ -46,31 +75,73 @@ public class AirplaneModeViewModel extends AndroidViewModel {
         refreshStatus();
     }
     
+    /**
+     * 请求刷新状态。在后台线程执行，尚未开始执行的重复请求会被合并为一次
+     */
     public void refreshStatus() {
-        refreshAirplaneModeStatus();
-        checkPermissionStatus();
-        
-        // 从SharedPreferences加载设置
-        autoToggleEnabled.setValue(prefs.getBoolean(KEY_AUTO_TOGGLE_ENABLED, false));
-        toggleInterval.setValue(prefs.getInt(KEY_TOGGLE_INTERVAL, 15));
+        if (!refreshPending.compareAndSet(false, true)) {
+            Log.d(TAG, "已有待执行的状态刷新，合并本次请求");
+            return;
+        }
+        runInBackground(() -> {
+            // 开始执行后再有新请求，需要再刷新一次以拿到最新状态
+            refreshPending.set(false);
+            refreshAirplaneModeStatus();
+            checkPermissionStatus();
+            
+            // 从SharedPreferences加载设置
+            autoToggleEnabled.postValue(prefs.getBoolean(KEY_AUTO_TOGGLE_ENABLED, false));
+            toggleInterval.postValue(prefs.getInt(KEY_TOGGLE_INTERVAL, 15));
+            highFrequencySeconds.postValue(prefs.getInt(KEY_HIGH_FREQUENCY_SECONDS, 0));
+            controlModeSecure.postValue(prefs.getBoolean(KEY_CONTROL_MODE_SECURE, false));
+            adaptiveCycle.postValue(prefs.getBoolean(CycleTiming.KEY_ADAPTIVE, false));
+        });
+    }
+    
+    /**
+     * 在后台线程执行任务，执行期间 isLoading 为 true
+     */
+    private void runInBackground(Runnable task) {
+        if (inFlight.getAndIncrement() == 0) {
+            isLoading.postValue(true);
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    task.run();
+                } catch (Throwable t) {
+                    Log.e(TAG, "后台任务执行失败", t);
+                    errorMessage.postValue("Refresh failed: " + t.getMessage());
+                } finally {
+                    if (inFlight.decrementAndGet() == 0) {
+                        isLoading.postValue(false);
+                    }
+                }
+            });
+        } catch (java.util.concurrent.RejectedExecutionException e) {
+            // ViewModel 已清理
+            if (inFlight.decrementAndGet() == 0) {
+                isLoading.postValue(false);
+            }
+        }
     }
     
     private void refreshAirplaneModeStatus() {
         try {
             boolean isOn = Settings.Global.getInt(context.getContentResolver(), 
                 Settings.Global.AIRPLANE_MODE_ON, 0) == 1;
-            airplaneModeStatus.setValue(isOn);
+            airplaneModeStatus.postValue(isOn);
             Log.d(TAG, "飞行模式状态: " + (isOn ? "开启" : "关闭"));
         } catch (Exception e) {
             Log.e(TAG, "获取飞行模式状态失败", e);
-            airplaneModeStatus.setValue(false);
+            airplaneModeStatus.postValue(false);
         }
     }
     
     private void checkPermissionStatus() {
         // 简化版本：检查数字助理权限
         boolean hasPermission = isVoiceInteractionServiceEnabled();
-        permissionStatus.setValue(hasPermission);
+        permissionStatus.postValue(hasPermission);
         Log.d(TAG, "数字助理权限状态: " + hasPermission);
     }
     
@@ -91,14 +162,11 @@ public class AirplaneModeViewModel extends AndroidViewModel {
         }
     }
     
+    /**
+     * 最近一次后台刷新得到的飞行模式状态，不在调用线程读取 Settings；需要最新值时先 {@link #refreshStatus()}
+     */
     public boolean isAirplaneModeOn() {
-        try {
-            return Settings.Global.getInt(context.getContentResolver(), 
-                Settings.Global.AIRPLANE_MODE_ON, 0) == 1;
-        } catch (Exception e) {
-            Log.e(TAG, "检查飞行模式状态失败", e);
-            return false;
-        }
+        return Boolean.TRUE.equals(airplaneModeStatus.getValue());
     }
     
     public void setAutoToggleEnabled(boolean enabled) {
@@ -109,24 +177,61 @@ public class AirplaneModeViewModel extends AndroidViewModel {
     
     public void setToggleInterval(int intervalMinutes) {
         if (isValidInterval(intervalMinutes)) {
-            prefs.edit().putInt(KEY_TOGGLE_INTERVAL, intervalMinutes).apply();
+            // 设置分钟间隔即退出高频模式
+            prefs.edit()
+                    .putInt(KEY_TOGGLE_INTERVAL, intervalMinutes)
+                    .putInt(KEY_HIGH_FREQUENCY_SECONDS, 0)
+                    .apply();
             toggleInterval.setValue(intervalMinutes);
+            highFrequencySeconds.setValue(0);
             Log.d(TAG, "切换间隔设置: " + intervalMinutes + " 分钟");
         }
     }
     
+    /**
+     * 启用高频模式（秒级间隔）。上一个周期未结束时下一次执行会顺延，不会重叠
+     */
+    public void setHighFrequencyInterval(int intervalSeconds) {
+        if (isValidIntervalSeconds(intervalSeconds)) {
+            prefs.edit().putInt(KEY_HIGH_FREQUENCY_SECONDS, intervalSeconds).apply();
+            highFrequencySeconds.setValue(intervalSeconds);
+            Log.d(TAG, "高频模式间隔设置: " + intervalSeconds + " 秒");
+        }
+    }
+    
     public void setControlModeSecure(boolean secure) {
         prefs.edit().putBoolean(KEY_CONTROL_MODE_SECURE, secure).apply();
+        controlModeSecure.setValue(secure);
     }
     
+    /**
+     * 最近一次加载或设置的控制方式，不在调用线程读取偏好
+     */
     public boolean isControlModeSecure() {
-        return prefs.getBoolean(KEY_CONTROL_MODE_SECURE, false);
+        return Boolean.TRUE.equals(controlModeSecure.getValue());
+    }
+    
+    public void setAdaptiveCycle(boolean adaptive) {
+        prefs.edit().putBoolean(CycleTiming.KEY_ADAPTIVE, adaptive).apply();
+        adaptiveCycle.setValue(adaptive);
+        Log.d(TAG, "自适应周期设置: " + adaptive);
+    }
+    
+    /**
+     * 最近一次加载或设置的自适应周期开关，不在调用线程读取偏好
+     */
+    public boolean isAdaptiveCycle() {
+        return Boolean.TRUE.equals(adaptiveCycle.getValue());
     }
     
     public boolean isValidInterval(int intervalMinutes) {
         return intervalMinutes >= 1 && intervalMinutes <= 60;
     }
     
+    public boolean isValidIntervalSeconds(int intervalSeconds) {
+        return intervalSeconds >= MIN_INTERVAL_SECONDS && intervalSeconds <= MAX_INTERVAL_SECONDS;
+    }
+    
     public void executeSmartToggle() {
         Log.d(TAG, "执行智能切换");
         addOperationLog("执行智能切换");
@@ -148,24 +253,100 @@ public class AirplaneModeViewModel extends AndroidViewModel {
     }
     
     private void addOperationLog(String operation) {
-        String timestamp = java.text.SimpleDateFormat.getDateTimeInstance().format(new java.util.Date());
-        String log = prefs.getString(KEY_OPERATION_LOGS, "");
-        log = timestamp + ": " + operation + "\n" + log;
-        prefs.edit().putString(KEY_OPERATION_LOGS, log).apply();
+        OperationLogStore.append(context, operation);
+    }
+    
+    /**
+     * 操作日志分页读取结果，在主线程回调
+     */
+    public interface LogPageCallback {
+        void onLoaded(List<OperationLogStore.Entry> entries, int total);
     }
     
-    public String getOperationLogs() {
-        return prefs.getString(KEY_OPERATION_LOGS, "暂无操作记录");
+    /**
+     * 在后台线程分页读取操作日志（最新在前），首次读取需要打开并映射日志文件
+     * @param page 页码，从 0 开始
+     */
+    public void loadOperationLogPage(int page, LogPageCallback callback) {
+        runInBackground(() -> {
+            OperationLogStore store = OperationLogStore.get(context);
+            List<OperationLogStore.Entry> entries = store.readPage(page, LOG_PAGE_SIZE);
+            int total = store.size();
+            mainHandler.post(() -> callback.onLoaded(entries, total));
+        });
     }
     
+    /**
+     * 在后台线程清空操作日志；与读取共用同一线程，之后的读取一定在清空之后
+     */
     public void clearOperationLogs() {
-        prefs.edit().remove(KEY_OPERATION_LOGS).apply();
+        runInBackground(() -> OperationLogStore.get(context).clear());
+    }
+    
+    /**
+     * 文本结果，在主线程回调
+     */
+    public interface TextCallback {
+        void onLoaded(String text);
+    }
+    
+    /**
+     * 在后台线程读取周期历史摘要
+     */
+    public void loadCycleHistoryText(TextCallback callback) {
+        runInBackground(() -> {
+            String text = cycleHistoryText();
+            mainHandler.post(() -> callback.onLoaded(text));
+        });
+    }
+    
+    /**
+     * 在后台线程清空周期历史（原始记录与聚合）
+     */
+    public void clearCycleHistory() {
+        runInBackground(() -> CycleHistoryStore.get(context).clear());
+    }
+    
+    /**
+     * 周期历史：最近 24 小时的小时聚合与最近的原始记录
+     */
+    private String cycleHistoryText() {
+        CycleHistoryStore store = CycleHistoryStore.get(context);
+        long now = System.currentTimeMillis();
+        StringBuilder sb = new StringBuilder("Last 24 hours (hourly)\n");
+        List<CycleHistoryStore.Bucket> hours = store.queryRollup(CycleHistoryStore.Resolution.HOUR,
+                now - 24 * CycleHistoryStore.Resolution.HOUR.bucketMs, now);
+        if (hours.isEmpty()) {
+            sb.append("  -\n");
+        }
+        for (CycleHistoryStore.Bucket b : hours) {
+            sb.append("  ").append(b).append('\n');
+        }
+        sb.append("\nRecent cycles\n");
+        List<CycleHistoryStore.Record> recent = store.latest(20);
+        if (recent.isEmpty()) {
+            sb.append("  -\n");
+        }
+        for (CycleHistoryStore.Record r : recent) {
+            sb.append("  ").append(r).append('\n');
+        }
+        return sb.toString();
+    }
+    
+    @Override
+    protected void onCleared() {
+        super.onCleared();
+        executor.shutdownNow();
+        mainHandler.removeCallbacksAndMessages(null);
     }
     
     // Getters
     public LiveData<Boolean> getAirplaneModeStatus() { return airplaneModeStatus; }
     public LiveData<Boolean> getAutoToggleEnabled() { return autoToggleEnabled; }
     public LiveData<Integer> getToggleInterval() { return toggleInterval; }
+    public LiveData<Integer> getHighFrequencySeconds() { return highFrequencySeconds; }
+    public LiveData<Boolean> getControlModeSecure() { return controlModeSecure; }
+    public LiveData<Boolean> getAdaptiveCycle() { return adaptiveCycle; }
     public LiveData<Boolean> getPermissionStatus() { return permissionStatus; }
     public LiveData<Boolean> getIsLoading() { return isLoading; }
     public LiveData<String> getErrorMessage() { return errorMessage; }
@@ -13,12 +13,10 @@ import com.example.airplanecontrol.AppLifecycleObserver;
 public class TransparentActivity extends Activity {
 
     private static final String TAG = "TransparentActivity";
+    private static final long FINISH_DELAY_MS = 500L;
     private final Handler mainHandler = new Handler(Looper.getMainLooper());
     private boolean assistTriggered = false; // 防止重复触发
 
-    boolean tag_showassist_first = Boolean.FALSE;
-    boolean tag_showassist_second = Boolean.FALSE;
-
     @Override
     protected void onCreate(@Nullable Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -33,49 +31,34 @@ public class TransparentActivity extends Activity {
         Log.d(TAG, "窗口焦点状态改变: " + hasFocus);
 
         // 当窗口获得焦点，并且我们还没有触发过 assist 时，执行操作
+        // 每次启动只发出一次命令，周期的先后顺序与等待由调用方的 ToggleCycle 负责
         if (hasFocus && !assistTriggered) {
             assistTriggered = true;
-            Log.d(TAG, "窗口已获得焦点，准备调用 showAssist...");
+            // 命令本身留在信箱中，这里只原样转发序号等参数；没有参数时不再默认发出定时切换
+            Bundle args = getIntent() != null ? getIntent().getExtras() : null;
+            if (args == null) {
+                Log.w(TAG, "未携带命令参数，直接关闭");
+                finish();
+                return;
+            }
+            Log.d(TAG, "窗口已获得焦点，准备调用 showAssist, command=" + args.getString("command"));
 
             try {
-                Bundle args = new Bundle();
-                args.putString("command", "timed_toggle");
-                tag_showassist_first = showAssist(args);
-                // Log.d(TAG, "Flight mode toggle command sent");
-                Log.d(TAG, "onWindowFocusChanged 调用 showAssist 完成,状态：" + tag_showassist_first);
-
-
-                // 2. 延迟2秒后，执行第二次切换
-                mainHandler.postDelayed(() -> {
-                    // 检查 Activity 是否仍然有效
-                    if (isFinishing() || isDestroyed()) {
-                        Log.w(TAG, "Activity 已被销毁，取消第二次切换。");
-                        return;
-                    }
-
-                    Log.d(TAG, "2秒延迟结束，准备执行第二次飞行模式切换。");
-                    tag_showassist_second = showAssist(args);
-                    // Log.d(TAG, "Flight mode toggle command sent (second)");
-                    Log.d(TAG, "onWindowFocusChanged 调用 showAssist 第二次 完成,状态：" + tag_showassist_second);
-
-                    // 3. 在第二次切换指令发出后，再稍作延迟后关闭 Activity
-                    //    给予系统足够的时间来处理最后一个请求
-                    mainHandler.postDelayed(() -> {
-                        Log.d(TAG, "整个序列执行完毕，销毁 Activity。");
-                        try {
-                            finishAndRemoveTask();
-                        } catch (Throwable t) {
-                            finish();
-                        }
-                    }, 2000); // 延迟 500ms 后销毁
-
-                }, 2000); // 延迟 2000ms
-
-
+                boolean shown = showAssist(args);
+                Log.d(TAG, "onWindowFocusChanged 调用 showAssist 完成,状态：" + shown);
             } catch (Exception e) {
                 Log.e(TAG, "调用 showAssist 失败", e);
-                finish(); // 即使失败也要结束Activity
             }
+
+            // 给予系统足够的时间来处理请求后关闭 Activity
+            mainHandler.postDelayed(() -> {
+                Log.d(TAG, "命令已发出，销毁 Activity。");
+                try {
+                    finishAndRemoveTask();
+                } catch (Throwable t) {
+                    finish();
+                }
+            }, FINISH_DELAY_MS);
         }
     }
 
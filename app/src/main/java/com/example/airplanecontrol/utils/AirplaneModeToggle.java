@@ -0,0 +1,209 @@
+package com.example.airplanecontrol.utils;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.database.ContentObserver;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.provider.Settings;
+import android.util.Log;
+
+import androidx.core.content.ContextCompat;
+
+/**
+ * 一次进行中的飞行模式切换。
+ * 写入设置后通过 AIRPLANE_MODE_ON 的 ContentObserver 与 ACTION_AIRPLANE_MODE_CHANGED 广播
+ * 等待状态确认，确认即回调，不再依赖固定延时；在重试点仍未确认则重写一次，超时后给出结果。
+ * 所有回调都在主线程执行。
+ */
+public final class AirplaneModeToggle {
+
+    private static final String TAG = "AirplaneModeToggle";
+
+    /** 最多写入次数（首次 + 一次重试） */
+    private static final int MAX_ATTEMPTS = 2;
+
+    public interface Callback {
+        void onComplete(ToggleResult result);
+    }
+
+    private final Context context;
+    private final boolean target;
+    private final long timeoutMs;
+    private final Callback callback;
+    private final CycleMetrics.Trace trace;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+
+    private long startMs;
+    private int attempts;
+    private boolean completed;
+    private boolean registered;
+
+    private final ContentObserver observer = new ContentObserver(handler) {
+        @Override
+        public void onChange(boolean selfChange) {
+            onStateEvent("observer");
+        }
+    };
+
+    private final BroadcastReceiver receiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context c, Intent intent) {
+            onStateEvent("broadcast");
+        }
+    };
+
+    private final Runnable retryCheck = this::onRetryPoint;
+    private final Runnable timeoutCheck = this::onTimeout;
+
+    AirplaneModeToggle(Context context, boolean target, long timeoutMs, CycleMetrics.Trace trace, Callback callback) {
+        this.context = context.getApplicationContext();
+        this.target = target;
+        this.timeoutMs = timeoutMs;
+        this.trace = trace;
+        this.callback = callback;
+    }
+
+    /**
+     * 发起切换，必须在主线程调用
+     * @return 首次写入是否成功
+     */
+    boolean start() {
+        startMs = SystemClock.elapsedRealtime();
+        try {
+            // 先注册监听再写入，避免错过变化
+            context.getContentResolver().registerContentObserver(
+                    Settings.Global.getUriFor(Settings.Global.AIRPLANE_MODE_ON), false, observer);
+            ContextCompat.registerReceiver(context, receiver,
+                    new IntentFilter(Intent.ACTION_AIRPLANE_MODE_CHANGED), ContextCompat.RECEIVER_NOT_EXPORTED);
+            registered = true;
+        } catch (Throwable t) {
+            Log.w(TAG, "注册飞行模式监听失败，仅依赖超时检查", t);
+        }
+        if (!write()) {
+            return false;
+        }
+        handler.postDelayed(retryCheck, timeoutMs / 2);
+        handler.postDelayed(timeoutCheck, timeoutMs);
+        return true;
+    }
+
+    /**
+     * 取消等待，不再回调
+     */
+    public void cancel() {
+        if (completed) return;
+        completed = true;
+        cleanup();
+        Log.d(TAG, "切换等待已取消, target=" + target);
+    }
+
+    public boolean isCompleted() {
+        return completed;
+    }
+
+    private boolean write() {
+        attempts++;
+        boolean section = Tracer.beginSection(Tracer.Event.SETTINGS_WRITE);
+        try {
+            boolean ok = AirplaneModeUtils.writer(context).putState(target);
+            Tracer.event(Tracer.Event.SETTINGS_WRITE, target ? 1 : 0);
+            if (Tracer.isVerbose()) {
+                Log.d(TAG, "putInt AIRPLANE_MODE_ON=" + target + ", result=" + ok + ", attempt=" + attempts);
+            }
+            if (!ok) {
+                finish(ToggleResult.Status.FAILED, null);
+                return false;
+            }
+            if (trace != null) {
+                trace.mark(target ? CycleMetrics.Phase.ON_SETTINGS_WRITE : CycleMetrics.Phase.OFF_SETTINGS_WRITE);
+            }
+            Tracer.endSection(section);
+            section = false;
+            boolean broadcasts = Tracer.beginSection(Tracer.Event.BROADCAST);
+            try {
+                AirplaneModeUtils.sendAirplaneModeBroadcasts(context, target);
+            } finally {
+                Tracer.endSection(broadcasts);
+            }
+            if (trace != null) {
+                trace.mark(target ? CycleMetrics.Phase.ON_BROADCASTS_SENT : CycleMetrics.Phase.OFF_BROADCASTS_SENT);
+            }
+            return true;
+        } catch (Throwable t) {
+            Log.e(TAG, "写入飞行模式失败", t);
+            finish(ToggleResult.Status.FAILED, t);
+            return false;
+        } finally {
+            Tracer.endSection(section);
+        }
+    }
+
+    private void onRetryPoint() {
+        if (completed) return;
+        if (AirplaneModeUtils.isAirplaneModeOn(context) == target) {
+            finish(attempts > 1 ? ToggleResult.Status.RETRIED : ToggleResult.Status.CONFIRMED, null);
+        } else {
+            Log.w(TAG, "等待确认超过重试点，重新写入。期望: " + target);
+            write();
+        }
+    }
+
+    private void onTimeout() {
+        if (completed) return;
+        if (AirplaneModeUtils.isAirplaneModeOn(context) == target) {
+            finish(attempts > 1 ? ToggleResult.Status.RETRIED : ToggleResult.Status.CONFIRMED, null);
+        } else {
+            finish(ToggleResult.Status.TIMED_OUT, null);
+        }
+    }
+
+    private void onStateEvent(String source) {
+        if (completed) return;
+        boolean current = AirplaneModeUtils.isAirplaneModeOn(context);
+        if (current == target) {
+            Log.d(TAG, "飞行模式状态已确认(" + source + "): " + target);
+            finish(attempts > 1 ? ToggleResult.Status.RETRIED : ToggleResult.Status.CONFIRMED, null);
+        } else if (attempts < MAX_ATTEMPTS) {
+            Log.w(TAG, "飞行模式状态被改回(" + source + ")，立即重试。期望: " + target + ", 实际: " + current);
+            handler.removeCallbacks(retryCheck);
+            write();
+        }
+    }
+
+    private void finish(ToggleResult.Status status, Throwable error) {
+        if (completed) return;
+        completed = true;
+        cleanup();
+        ToggleResult result = new ToggleResult(target, status,
+                SystemClock.elapsedRealtime() - startMs, attempts, error);
+        if (result.isConfirmed()) {
+            BroadcastProfile.recordConfirmed(context, AirplaneModeUtils.writer(context).getActions());
+        }
+        Log.d(TAG, "切换结果: " + result);
+        if (callback != null) {
+            try {
+                callback.onComplete(result);
+            } catch (Throwable t) {
+                Log.e(TAG, "切换回调执行失败", t);
+            }
+        }
+    }
+
+    private void cleanup() {
+        handler.removeCallbacks(retryCheck);
+        handler.removeCallbacks(timeoutCheck);
+        if (registered) {
+            registered = false;
+            try {
+                context.getContentResolver().unregisterContentObserver(observer);
+                context.unregisterReceiver(receiver);
+            } catch (Throwable t) {
+                Log.w(TAG, "注销飞行模式监听失败", t);
+            }
+        }
+    }
+}
@@ -12,91 +12,103 @@ public final class AirplaneModeUtils {
 
     private AirplaneModeUtils() {}
 
+    /** 默认的状态确认超时 */
+    public static final long DEFAULT_CONFIRM_TIMEOUT_MS = 5000L;
+
     /**
-     * 使用 WRITE_SECURE_SETTINGS 切换飞行模式。
-     * 针对不同设备厂商的兼容性增强版本。
+     * 异步切换飞行模式：写入设置并发送广播后，由 ContentObserver / 系统广播确认目标状态，
+     * 确认、重试确认、超时或失败时回调（主线程）。必须在主线程调用。
+     * @param timeoutMs 确认超时，超过一半时间仍未确认会重写一次
+     * @param callback 结果回调，可为 null
+     * @return 进行中的切换，可用于取消；首次写入失败时返回 null（回调已收到 FAILED）
      */
-    public static boolean setAirplaneMode(Context context, boolean enable) {
-        try {
-            ContentResolver resolver = context.getContentResolver();
-            
-            // 方法1：直接设置系统设置
-            boolean ok = Settings.Global.putInt(resolver, Settings.Global.AIRPLANE_MODE_ON, enable ? 1 : 0);
-            Log.d(TAG, "putInt AIRPLANE_MODE_ON=" + enable + ", result=" + ok);
-
-            if (ok) {
-                // 方法2：发送多种广播通知（针对不同厂商设备）
-                sendAirplaneModeBroadcasts(context, enable);
-                
-                // 方法3：延迟验证并重试（针对某些设备需要时间生效）
-                new android.os.Handler(android.os.Looper.getMainLooper()).postDelayed(() -> {
-                    boolean currentState = isAirplaneModeOn(context);
-                    if (currentState != enable) {
-                        Log.w(TAG, "飞行模式状态不一致，尝试重新设置。期望: " + enable + ", 实际: " + currentState);
-                        // 重试一次
-                        boolean retryOk = Settings.Global.putInt(resolver, Settings.Global.AIRPLANE_MODE_ON, enable ? 1 : 0);
-                        if (retryOk) {
-                            sendAirplaneModeBroadcasts(context, enable);
-                        }
-                        Log.d(TAG, "重试设置飞行模式: " + enable + ", 结果: " + retryOk);
-                    }
-                }, 1500); // 延迟1.5秒验证
-            }
-
-            // Log.d(TAG, "Flight mode set via WSS: " + enable);
+    public static AirplaneModeToggle setAirplaneModeAsync(Context context, boolean enable, long timeoutMs,
+                                                          AirplaneModeToggle.Callback callback) {
+        return setAirplaneModeAsync(context, enable, timeoutMs, null, callback);
+    }
 
-            return ok;
-        } catch (Throwable t) {
-            Log.e(TAG, "setAirplaneMode failed", t);
-            return false;
-        }
+    /**
+     * 同上，并把写入设置、发出广播两个阶段记录到周期追踪中
+     * @param trace 周期追踪，可为 null
+     */
+    public static AirplaneModeToggle setAirplaneModeAsync(Context context, boolean enable, long timeoutMs,
+                                                          CycleMetrics.Trace trace,
+                                                          AirplaneModeToggle.Callback callback) {
+        AirplaneModeToggle toggle = new AirplaneModeToggle(context, enable, timeoutMs, trace, callback);
+        return toggle.start() ? toggle : null;
     }
 
     /**
      * 发送多种飞行模式状态变化广播，兼容不同厂商设备
      */
-    private static void sendAirplaneModeBroadcasts(Context context, boolean enable) {
+    static void sendAirplaneModeBroadcasts(Context context, boolean enable) {
         try {
-            // 标准系统广播
-            Intent standardIntent = new Intent(Intent.ACTION_AIRPLANE_MODE_CHANGED);
-            standardIntent.putExtra("state", enable);
-            context.sendBroadcast(standardIntent);
-            Log.d(TAG, "发送标准飞行模式广播: " + enable);
-
-            // 某些设备需要的额外广播
-            Intent radioIntent = new Intent("android.intent.action.AIRPLANE_MODE");
-            radioIntent.putExtra("state", enable);
-            context.sendBroadcast(radioIntent);
-            Log.d(TAG, "发送额外飞行模式广播: " + enable);
-
-            // 某些厂商设备需要的特定广播
-            Intent vendorIntent = new Intent("com.android.internal.intent.action.AIRPLANE_MODE");
-            vendorIntent.putExtra("state", enable);
-            context.sendBroadcast(vendorIntent);
-            Log.d(TAG, "发送厂商特定广播: " + enable);
-
-            // 针对特定厂商的广播（如小米、华为等）
-            String[] vendorActions = {
-                "com.miui.intent.action.AIRPLANE_MODE",
-                "com.huawei.intent.action.AIRPLANE_MODE",
-                "com.samsung.intent.action.AIRPLANE_MODE",
-                "com.oppo.intent.action.AIRPLANE_MODE",
-                "com.vivo.intent.action.AIRPLANE_MODE"
-            };
-
-            for (String action : vendorActions) {
-                try {
-                    Intent intent = new Intent(action);
-                    intent.putExtra("state", enable);
-                    context.sendBroadcast(intent);
-                    Log.d(TAG, "发送厂商广播 " + action + ": " + enable);
-                } catch (Exception e) {
-                    // 忽略某些厂商广播可能不存在的异常
+            writer(context).sendBroadcasts(enable);
+        } catch (Exception e) {
+            Log.e(TAG, "发送飞行模式广播失败: " + e.getMessage(), e);
+        }
+    }
+
+    private static volatile AirplaneModeWriter writer;
+
+    /**
+     * 进程内共享的写入器（Settings.Global + sendBroadcast 后端），
+     * 只发送本机广播画像中有接收者的广播
+     */
+    static AirplaneModeWriter writer(Context context) {
+        AirplaneModeWriter local = writer;
+        if (local == null) {
+            synchronized (AirplaneModeUtils.class) {
+                local = writer;
+                if (local == null) {
+                    Context app = context.getApplicationContext();
+                    local = new AirplaneModeWriter(new SettingsBackend(app), BroadcastProfile.resolve(app));
+                    writer = local;
                 }
             }
+        }
+        return local;
+    }
 
-        } catch (Exception e) {
-            Log.e(TAG, "发送飞行模式广播失败: " + e.getMessage(), e);
+    /**
+     * 重新探测本机广播画像并立即应用
+     */
+    public static void reprobeBroadcastProfile(Context context) {
+        writer(context).setActions(BroadcastProfile.probe(context.getApplicationContext()));
+    }
+
+    /**
+     * Android 设置与广播后端
+     */
+    private static final class SettingsBackend implements AirplaneModeWriter.Backend {
+        private final Context context;
+
+        SettingsBackend(Context context) {
+            this.context = context;
+        }
+
+        @Override
+        public boolean putAirplaneMode(boolean enable) {
+            return Settings.Global.putInt(context.getContentResolver(), Settings.Global.AIRPLANE_MODE_ON, enable ? 1 : 0);
+        }
+
+        @Override
+        public void sendBroadcast(String action, boolean state) {
+            Intent intent = new Intent(action);
+            intent.putExtra("state", state);
+            context.sendBroadcast(intent);
+            Tracer.event(Tracer.Event.BROADCAST, actionIndex(action));
+            if (Tracer.isVerbose()) {
+                Log.d(TAG, "发送飞行模式广播 " + action + ": " + state);
+            }
+        }
+
+        private static int actionIndex(String action) {
+            String[] all = AirplaneModeWriter.ALL_ACTIONS;
+            for (int i = 0; i < all.length; i++) {
+                if (all[i].equals(action)) return i;
+            }
+            return -1;
         }
     }
 
@@ -127,6 +139,7 @@ public final class AirplaneModeUtils {
             info.append("\n飞行模式状态:\n");
             boolean isOn = isAirplaneModeOn(context);
             info.append("当前状态: ").append(isOn ? "开启" : "关闭").append("\n");
+            info.append(BroadcastProfile.describe(context));
             
             // 检查其他相关设置
             ContentResolver resolver = context.getContentResolver();
@@ -0,0 +1,84 @@
+package com.example.airplanecontrol.utils;
+
+/**
+ * 飞行模式写入与广播扇出的核心逻辑，不依赖 Android 框架。
+ * 设置写入和广播发送通过 {@link Backend} 完成：应用内为 Settings.Global / Context.sendBroadcast，
+ * 基准测试中替换为假实现。
+ */
+public final class AirplaneModeWriter {
+
+    /** 标准系统广播（Intent.ACTION_AIRPLANE_MODE_CHANGED） */
+    public static final String ACTION_AIRPLANE_MODE_CHANGED = "android.intent.action.AIRPLANE_MODE";
+
+    /**
+     * 全部候选广播：标准广播、部分设备需要的额外广播、厂商特定广播
+     */
+    public static final String[] ALL_ACTIONS = {
+            ACTION_AIRPLANE_MODE_CHANGED,
+            "com.android.internal.intent.action.AIRPLANE_MODE",
+            "com.miui.intent.action.AIRPLANE_MODE",
+            "com.huawei.intent.action.AIRPLANE_MODE",
+            "com.samsung.intent.action.AIRPLANE_MODE",
+            "com.oppo.intent.action.AIRPLANE_MODE",
+            "com.vivo.intent.action.AIRPLANE_MODE"
+    };
+
+    /**
+     * 设置与广播层
+     */
+    public interface Backend {
+        /** 写入 AIRPLANE_MODE_ON，返回是否成功 */
+        boolean putAirplaneMode(boolean enable);
+
+        /** 发送一条携带 state 的广播，失败时抛出异常 */
+        void sendBroadcast(String action, boolean state) throws Exception;
+    }
+
+    private final Backend backend;
+    private volatile String[] actions;
+
+    public AirplaneModeWriter(Backend backend) {
+        this(backend, ALL_ACTIONS);
+    }
+
+    public AirplaneModeWriter(Backend backend, String[] actions) {
+        this.backend = backend;
+        this.actions = actions;
+    }
+
+    /**
+     * 当前会发送的广播集合
+     */
+    public String[] getActions() {
+        return actions;
+    }
+
+    public void setActions(String[] actions) {
+        this.actions = actions;
+    }
+
+    /**
+     * 写入飞行模式设置
+     */
+    public boolean putState(boolean enable) {
+        return backend.putAirplaneMode(enable);
+    }
+
+    /**
+     * 逐个发送广播，单个失败不影响其余广播
+     * @return 成功发送的数量
+     */
+    public int sendBroadcasts(boolean enable) {
+        String[] current = actions;
+        int sent = 0;
+        for (String action : current) {
+            try {
+                backend.sendBroadcast(action, enable);
+                sent++;
+            } catch (Exception e) {
+                // 忽略某些广播不允许发送或不存在的异常
+            }
+        }
+        return sent;
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.airplanecontrol.utils;
+
+import android.content.Context;
+import android.content.Intent;
+import android.content.SharedPreferences;
+import android.content.pm.PackageManager;
+import android.content.pm.ResolveInfo;
+import android.os.Build;
+import android.text.TextUtils;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 按设备缓存的广播画像。
+ * 通过 PackageManager 查询每个候选广播在本机是否有接收者，只发送有接收者的广播；
+ * 结果以 Build.FINGERPRINT 为键缓存，系统升级后指纹变化会自动重新探测。
+ * 同时记录最近一次确认状态生效时所用的广播集合。
+ * 画像存于设备加密存储，开机后用户解锁前的周期同样可用。
+ */
+public final class BroadcastProfile {
+
+    private static final String TAG = "BroadcastProfile";
+    private static final String PREFS_NAME = "broadcast_profile";
+    private static final String KEY_FINGERPRINT = "fingerprint";
+    private static final String KEY_ACTIONS = "actions";
+    private static final String KEY_CONFIRMED_ACTIONS = "confirmed_actions";
+    private static final String KEY_CONFIRMED_AT = "confirmed_at";
+    private static final String SEPARATOR = "|";
+
+    private BroadcastProfile() {}
+
+    /**
+     * 返回本机应发送的广播集合；指纹不匹配（首次或系统升级后）时重新探测
+     */
+    public static String[] resolve(Context context) {
+        SharedPreferences prefs = prefs(context);
+        String fingerprint = prefs.getString(KEY_FINGERPRINT, null);
+        String cached = prefs.getString(KEY_ACTIONS, null);
+        if (Build.FINGERPRINT.equals(fingerprint) && cached != null) {
+            return split(cached);
+        }
+        Log.d(TAG, "设备指纹变化或无缓存，重新探测广播接收者。旧指纹: " + fingerprint);
+        return probe(context);
+    }
+
+    /**
+     * 立即重新探测并缓存
+     */
+    public static String[] probe(Context context) {
+        PackageManager pm = context.getPackageManager();
+        List<String> resolved = new ArrayList<>();
+        for (String action : AirplaneModeWriter.ALL_ACTIONS) {
+            try {
+                List<ResolveInfo> receivers = pm.queryBroadcastReceivers(new Intent(action), 0);
+                int count = receivers != null ? receivers.size() : 0;
+                Log.d(TAG, "广播 " + action + " 接收者数量: " + count);
+                if (count > 0) {
+                    resolved.add(action);
+                }
+            } catch (Throwable t) {
+                Log.w(TAG, "查询广播接收者失败: " + action, t);
+            }
+        }
+        if (resolved.isEmpty()) {
+            // 一个接收者都查不到时（例如包可见性受限），至少保留标准广播
+            resolved.add(AirplaneModeWriter.ACTION_AIRPLANE_MODE_CHANGED);
+        }
+        String[] actions = resolved.toArray(new String[0]);
+        prefs(context).edit()
+                .putString(KEY_FINGERPRINT, Build.FINGERPRINT)
+                .putString(KEY_ACTIONS, TextUtils.join(SEPARATOR, actions))
+                .apply();
+        Log.d(TAG, "广播画像: " + Arrays.toString(actions));
+        return actions;
+    }
+
+    /**
+     * 记录确认状态生效时使用的广播集合（集合未变化时不写入）
+     */
+    public static void recordConfirmed(Context context, String[] actions) {
+        String joined = TextUtils.join(SEPARATOR, actions);
+        SharedPreferences prefs = prefs(context);
+        if (joined.equals(prefs.getString(KEY_CONFIRMED_ACTIONS, null))) {
+            return;
+        }
+        prefs.edit()
+                .putString(KEY_CONFIRMED_ACTIONS, joined)
+                .putLong(KEY_CONFIRMED_AT, System.currentTimeMillis())
+                .apply();
+        Log.d(TAG, "记录生效广播集合: " + joined);
+    }
+
+    /**
+     * 画像摘要（用于设备信息调试）
+     */
+    public static String describe(Context context) {
+        SharedPreferences prefs = prefs(context);
+        String actions = prefs.getString(KEY_ACTIONS, "未探测");
+        String confirmed = prefs.getString(KEY_CONFIRMED_ACTIONS, "暂无");
+        return "发送广播: " + actions.replace(SEPARATOR, ", ") + "\n"
+                + "生效广播: " + confirmed.replace(SEPARATOR, ", ") + "\n";
+    }
+
+    private static String[] split(String joined) {
+        return joined.isEmpty() ? new String[0] : TextUtils.split(joined, "\\" + SEPARATOR);
+    }
+
+    private static SharedPreferences prefs(Context context) {
+        return DirectBootStorage.deviceProtected(context).getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+}
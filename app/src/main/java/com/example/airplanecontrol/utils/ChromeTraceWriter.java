@@ -0,0 +1,189 @@
+package com.example.airplanecontrol.utils;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Chrome trace-event JSON（chrome://tracing / Perfetto UI 可直接打开）的流式写出，不依赖 Android 框架。
+ * 事件逐个写入底层 Writer，不在内存中保留已写出的内容；每个事件按
+ * {@link #event} → 可选的 {@link #dur} / {@link #id} / {@link #arg} → {@link #end()} 的顺序写出。
+ * 时间单位为微秒。
+ */
+public final class ChromeTraceWriter {
+
+    /** 完整区段（带 dur） */
+    public static final char PHASE_COMPLETE = 'X';
+    /** 瞬时事件 */
+    public static final char PHASE_INSTANT = 'i';
+    /** 异步区段开始 / 结束（按 cat + id 配对） */
+    public static final char PHASE_ASYNC_BEGIN = 'b';
+    public static final char PHASE_ASYNC_END = 'e';
+
+    private final Writer out;
+    private int events;
+    private boolean inEvent;
+    private boolean inArgs;
+
+    public ChromeTraceWriter(Writer out) {
+        this.out = out;
+    }
+
+    public void begin() throws IOException {
+        out.write("{\"displayTimeUnit\":\"ms\",\"traceEvents\":[");
+    }
+
+    /**
+     * 结束 JSON，不关闭底层 Writer
+     */
+    public void finish() throws IOException {
+        out.write("\n]}\n");
+        out.flush();
+    }
+
+    /**
+     * 已写出的事件数（含元数据）
+     */
+    public int events() {
+        return events;
+    }
+
+    public void processName(int pid, String name) throws IOException {
+        metadata("process_name", pid, 0, name);
+    }
+
+    public void threadName(int pid, int tid, String name) throws IOException {
+        metadata("thread_name", pid, tid, name);
+    }
+
+    private void metadata(String kind, int pid, int tid, String name) throws IOException {
+        open();
+        out.write("{\"name\":\"");
+        out.write(kind);
+        out.write("\",\"ph\":\"M\",\"pid\":");
+        writeLong(pid);
+        out.write(",\"tid\":");
+        writeLong(tid);
+        out.write(",\"args\":{\"name\":");
+        writeString(name);
+        out.write("}}");
+        inEvent = false;
+    }
+
+    /**
+     * 开始一个事件，之后必须调用 {@link #end()}
+     */
+    public ChromeTraceWriter event(char phase, String name, String category, long tsMicros, int pid, int tid)
+            throws IOException {
+        open();
+        out.write("{\"name\":");
+        writeString(name);
+        out.write(",\"cat\":");
+        writeString(category);
+        out.write(",\"ph\":\"");
+        out.write(phase);
+        out.write("\",\"ts\":");
+        writeLong(tsMicros);
+        out.write(",\"pid\":");
+        writeLong(pid);
+        out.write(",\"tid\":");
+        writeLong(tid);
+        if (phase == PHASE_INSTANT) {
+            // 瞬时事件只画在所属线程上
+            out.write(",\"s\":\"t\"");
+        }
+        return this;
+    }
+
+    public ChromeTraceWriter dur(long micros) throws IOException {
+        out.write(",\"dur\":");
+        writeLong(Math.max(0, micros));
+        return this;
+    }
+
+    public ChromeTraceWriter id(long id) throws IOException {
+        out.write(",\"id\":");
+        writeLong(id);
+        return this;
+    }
+
+    public ChromeTraceWriter arg(String key, String value) throws IOException {
+        argKey(key);
+        writeString(value);
+        return this;
+    }
+
+    public ChromeTraceWriter arg(String key, long value) throws IOException {
+        argKey(key);
+        writeLong(value);
+        return this;
+    }
+
+    public void end() throws IOException {
+        if (!inEvent) {
+            throw new IllegalStateException("没有未结束的事件");
+        }
+        if (inArgs) {
+            out.write('}');
+            inArgs = false;
+        }
+        out.write('}');
+        inEvent = false;
+    }
+
+    private void open() throws IOException {
+        if (inEvent) {
+            throw new IllegalStateException("上一个事件未结束");
+        }
+        out.write(events == 0 ? "\n" : ",\n");
+        events++;
+        inEvent = true;
+    }
+
+    private void argKey(String key) throws IOException {
+        out.write(inArgs ? "," : ",\"args\":{");
+        inArgs = true;
+        writeString(key);
+        out.write(':');
+    }
+
+    private void writeLong(long value) throws IOException {
+        // Writer 没有写整数的方法，Long.toString 的临时字符串很短
+        out.write(Long.toString(value));
+    }
+
+    private void writeString(String s) throws IOException {
+        out.write('"');
+        // 不需转义的连续字符整段写出
+        int run = 0;
+        for (int i = 0, n = s.length(); i < n; i++) {
+            char c = s.charAt(i);
+            String escaped;
+            switch (c) {
+                case '"':
+                    escaped = "\\\"";
+                    break;
+                case '\\':
+                    escaped = "\\\\";
+                    break;
+                case '\n':
+                    escaped = "\\n";
+                    break;
+                case '\r':
+                    escaped = "\\r";
+                    break;
+                case '\t':
+                    escaped = "\\t";
+                    break;
+                default:
+                    escaped = c < 0x20 ? String.format("\\u%04x", (int) c) : null;
+            }
+            if (escaped != null) {
+                out.write(s, run, i - run);
+                out.write(escaped);
+                run = i + 1;
+            }
+        }
+        out.write(s, run, s.length() - run);
+        out.write('"');
+    }
+}
@@ -0,0 +1,457 @@
+package com.example.airplanecontrol.utils;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * 本机控制服务器：单线程非阻塞 NIO，只绑定回环地址，不依赖 Android 框架。
+ * 协议为按行分隔的 JSON 对象（只支持一层的字符串 / 数字 / 布尔字段），每个请求可带 id，回复原样带回。
+ * 回环端口对本机所有应用可见，因此除 ping 外的请求都必须带与启动时相同的 token 字段。
+ * status / ping 在服务器线程上直接回复（{@link Backend#status()} 读取发布好的快照，不经过主线程），
+ * 其他命令交给 {@link Backend#handle}，结果可在任意线程、分多条异步回传。
+ */
+public final class ControlServer {
+
+    public static final int DEFAULT_PORT = 8765;
+    private static final int MAX_LINE_BYTES = 4096;
+    private static final int MAX_CONNECTIONS = 64;
+
+    /**
+     * 命令的实际执行者（服务或测试中的假实现）
+     */
+    public interface Backend {
+        /**
+         * 处理一条命令，在服务器线程上调用，必须立即返回
+         */
+        void handle(Map<String, String> request, Reply reply);
+
+        /**
+         * 当前状态（JSON 对象），在服务器线程上调用，不得阻塞
+         */
+        String status();
+
+        /**
+         * 服务器事件（启动、错误），默认忽略
+         */
+        default void onServerEvent(String message, Throwable error) {}
+    }
+
+    /**
+     * 一个请求的回复通道，可在任意线程多次调用
+     */
+    public interface Reply {
+        /** 已填入请求 id 的回复对象 */
+        Response create();
+
+        void send(Response response);
+    }
+
+    /**
+     * 一层 JSON 对象的构造器
+     */
+    public static final class Response {
+        private final StringBuilder sb = new StringBuilder("{");
+
+        public Response put(String key, String value) {
+            return putRaw(key, value == null ? "null" : quote(value));
+        }
+
+        public Response put(String key, long value) {
+            return putRaw(key, Long.toString(value));
+        }
+
+        public Response put(String key, boolean value) {
+            return putRaw(key, value ? "true" : "false");
+        }
+
+        /** 值为已编码的 JSON */
+        public Response putRaw(String key, String json) {
+            if (sb.length() > 1) sb.append(',');
+            sb.append(quote(key)).append(':').append(json);
+            return this;
+        }
+
+        public String toJson() {
+            return sb.toString() + "}";
+        }
+    }
+
+    private final int requestedPort;
+    private final byte[] token;
+    private final Backend backend;
+    private final Queue<Connection> pendingWrites = new ConcurrentLinkedQueue<>();
+
+    private volatile boolean running;
+    private Selector selector;
+    private ServerSocketChannel serverChannel;
+    private Thread thread;
+    private int connections;
+
+    /**
+     * @param port 端口，0 表示由系统分配
+     * @param token 访问令牌，不能为空
+     */
+    public ControlServer(int port, String token, Backend backend) {
+        if (token == null || token.isEmpty()) throw new IllegalArgumentException("token");
+        this.requestedPort = port;
+        this.token = token.getBytes(StandardCharsets.UTF_8);
+        this.backend = backend;
+    }
+
+    /**
+     * 绑定回环地址并启动服务器线程
+     */
+    public synchronized void start() throws IOException {
+        if (running) return;
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        try {
+            serverChannel.configureBlocking(false);
+            serverChannel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), requestedPort), MAX_CONNECTIONS);
+            serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            closeQuietly();
+            throw e;
+        }
+        running = true;
+        thread = new Thread(this::loop, "control-server");
+        thread.setDaemon(true);
+        thread.start();
+        backend.onServerEvent("控制服务器已启动, 127.0.0.1:" + port(), null);
+    }
+
+    public synchronized void stop() {
+        if (!running) return;
+        running = false;
+        selector.wakeup();
+        try {
+            thread.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        thread = null;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * 实际绑定的端口，未启动时为 -1
+     */
+    public int port() {
+        ServerSocketChannel channel = serverChannel;
+        return channel != null && channel.socket().isBound() ? channel.socket().getLocalPort() : -1;
+    }
+
+    private void loop() {
+        try {
+            while (running) {
+                selector.select();
+                Connection c;
+                while ((c = pendingWrites.poll()) != null) {
+                    if (c.key.isValid()) {
+                        c.key.interestOps(c.key.interestOps() | SelectionKey.OP_WRITE);
+                    }
+                }
+                Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                while (it.hasNext()) {
+                    SelectionKey key = it.next();
+                    it.remove();
+                    try {
+                        if (!key.isValid()) continue;
+                        if (key.isAcceptable()) {
+                            accept();
+                        } else {
+                            Connection conn = (Connection) key.attachment();
+                            if (key.isReadable()) conn.onReadable();
+                            if (key.isValid() && key.isWritable()) conn.onWritable();
+                        }
+                    } catch (IOException e) {
+                        Object attachment = key.attachment();
+                        if (attachment instanceof Connection) {
+                            ((Connection) attachment).close();
+                        }
+                    }
+                }
+            }
+        } catch (Throwable t) {
+            backend.onServerEvent("控制服务器异常退出", t);
+        } finally {
+            running = false;
+            for (SelectionKey key : selector.keys()) {
+                if (key.attachment() instanceof Connection) {
+                    ((Connection) key.attachment()).close();
+                }
+            }
+            closeQuietly();
+            backend.onServerEvent("控制服务器已停止", null);
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (channel == null) return;
+        if (connections >= MAX_CONNECTIONS) {
+            channel.close();
+            return;
+        }
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        Connection conn = new Connection(channel);
+        conn.key = channel.register(selector, SelectionKey.OP_READ, conn);
+        connections++;
+    }
+
+    private void closeQuietly() {
+        try {
+            if (serverChannel != null) serverChannel.close();
+        } catch (IOException ignored) {
+        }
+        try {
+            if (selector != null) selector.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    private final class Connection {
+        private final SocketChannel channel;
+        private final ByteBuffer in = ByteBuffer.allocate(MAX_LINE_BYTES);
+        private final Queue<ByteBuffer> outbox = new ConcurrentLinkedQueue<>();
+        private SelectionKey key;
+        private volatile boolean closed;
+        // 超长行的剩余部分丢弃到下一个换行
+        private boolean discarding;
+
+        Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        void onReadable() throws IOException {
+            int n = channel.read(in);
+            if (n < 0) {
+                close();
+                return;
+            }
+            in.flip();
+            int lineStart = 0;
+            for (int i = in.position(); i < in.limit(); i++) {
+                if (in.get(i) == '\n') {
+                    String line = new String(in.array(), lineStart, i - lineStart, StandardCharsets.UTF_8).trim();
+                    lineStart = i + 1;
+                    if (discarding) {
+                        discarding = false;
+                    } else if (!line.isEmpty()) {
+                        onLine(line);
+                    }
+                }
+            }
+            in.position(lineStart);
+            in.compact();
+            if (!in.hasRemaining()) {
+                // 一行超过上限：回复错误，丢弃该行其余部分
+                if (!discarding) {
+                    enqueue(new Response().put("ok", false).put("error", "line too long").toJson());
+                    discarding = true;
+                }
+                in.clear();
+            }
+        }
+
+        private void onLine(String line) {
+            Map<String, String> request;
+            try {
+                request = parseObject(line);
+            } catch (IllegalArgumentException e) {
+                enqueue(new Response().put("ok", false).put("error", "bad json: " + e.getMessage()).toJson());
+                return;
+            }
+            final String id = request.get("id");
+            Reply reply = new Reply() {
+                @Override
+                public Response create() {
+                    Response r = new Response();
+                    if (id != null) r.put("id", id);
+                    return r;
+                }
+
+                @Override
+                public void send(Response response) {
+                    enqueue(response.toJson());
+                }
+            };
+            String cmd = request.get("cmd");
+            if ("ping".equals(cmd)) {
+                reply.send(reply.create().put("ok", true).put("pong", System.currentTimeMillis()));
+            } else if (!authorized(request.get("token"))) {
+                reply.send(reply.create().put("ok", false).put("error", "unauthorized"));
+            } else if ("status".equals(cmd)) {
+                reply.send(reply.create().put("ok", true).putRaw("status", backend.status()));
+            } else if (cmd == null) {
+                reply.send(reply.create().put("ok", false).put("error", "missing cmd"));
+            } else {
+                try {
+                    backend.handle(request, reply);
+                } catch (Throwable t) {
+                    reply.send(reply.create().put("ok", false).put("error", String.valueOf(t.getMessage())));
+                }
+            }
+        }
+
+        /** 任意线程调用 */
+        void enqueue(String json) {
+            if (closed) return;
+            outbox.add(ByteBuffer.wrap((json + "\n").getBytes(StandardCharsets.UTF_8)));
+            if (Thread.currentThread() == thread) {
+                key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+            } else {
+                pendingWrites.add(this);
+                selector.wakeup();
+            }
+        }
+
+        void onWritable() throws IOException {
+            ByteBuffer head;
+            while ((head = outbox.peek()) != null) {
+                channel.write(head);
+                if (head.hasRemaining()) return;
+                outbox.poll();
+            }
+            key.interestOps(SelectionKey.OP_READ);
+        }
+
+        void close() {
+            if (closed) return;
+            closed = true;
+            connections--;
+            key.cancel();
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    /**
+     * 常量时间比较，避免按响应时间逐字节猜出令牌
+     */
+    private boolean authorized(String candidate) {
+        return candidate != null && MessageDigest.isEqual(token, candidate.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static String quote(String s) {
+        StringBuilder sb = new StringBuilder(s.length() + 2).append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char ch = s.charAt(i);
+            switch (ch) {
+                case '"': sb.append("\\\""); break;
+                case '\\': sb.append("\\\\"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                case '\t': sb.append("\\t"); break;
+                default:
+                    if (ch < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) ch));
+                    } else {
+                        sb.append(ch);
+                    }
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    /**
+     * 解析一层 JSON 对象，数字与布尔值按原文返回字符串
+     */
+    public static Map<String, String> parseObject(String json) {
+        Map<String, String> result = new HashMap<>();
+        int[] pos = {skipSpace(json, 0)};
+        expect(json, pos, '{');
+        if (peek(json, pos) == '}') {
+            pos[0]++;
+            return result;
+        }
+        while (true) {
+            String key = parseString(json, pos);
+            expect(json, pos, ':');
+            char ch = peek(json, pos);
+            String value;
+            if (ch == '"') {
+                value = parseString(json, pos);
+            } else {
+                int start = pos[0];
+                while (pos[0] < json.length() && ",} \t".indexOf(json.charAt(pos[0])) < 0) pos[0]++;
+                value = json.substring(start, pos[0]);
+                if (value.isEmpty() || value.startsWith("{") || value.startsWith("[")) {
+                    throw new IllegalArgumentException("unsupported value for " + key);
+                }
+                if ("null".equals(value)) value = null;
+            }
+            result.put(key, value);
+            ch = peek(json, pos);
+            pos[0]++;
+            if (ch == '}') return result;
+            if (ch != ',') throw new IllegalArgumentException("expected , or } at " + (pos[0] - 1));
+        }
+    }
+
+    private static String parseString(String json, int[] pos) {
+        expect(json, pos, '"');
+        StringBuilder sb = new StringBuilder();
+        while (pos[0] < json.length()) {
+            char ch = json.charAt(pos[0]++);
+            if (ch == '"') return sb.toString();
+            if (ch != '\\') {
+                sb.append(ch);
+                continue;
+            }
+            if (pos[0] >= json.length()) break;
+            char esc = json.charAt(pos[0]++);
+            switch (esc) {
+                case 'n': sb.append('\n'); break;
+                case 'r': sb.append('\r'); break;
+                case 't': sb.append('\t'); break;
+                case 'b': sb.append('\b'); break;
+                case 'f': sb.append('\f'); break;
+                case 'u':
+                    if (pos[0] + 4 > json.length()) throw new IllegalArgumentException("bad \\u escape");
+                    sb.append((char) Integer.parseInt(json.substring(pos[0], pos[0] + 4), 16));
+                    pos[0] += 4;
+                    break;
+                default: sb.append(esc); break;
+            }
+        }
+        throw new IllegalArgumentException("unterminated string");
+    }
+
+    private static char peek(String json, int[] pos) {
+        pos[0] = skipSpace(json, pos[0]);
+        if (pos[0] >= json.length()) throw new IllegalArgumentException("unexpected end");
+        return json.charAt(pos[0]);
+    }
+
+    private static void expect(String json, int[] pos, char expected) {
+        if (peek(json, pos) != expected) {
+            throw new IllegalArgumentException("expected " + expected + " at " + pos[0]);
+        }
+        pos[0]++;
+    }
+
+    private static int skipSpace(String json, int i) {
+        while (i < json.length() && Character.isWhitespace(json.charAt(i))) i++;
+        return i;
+    }
+}
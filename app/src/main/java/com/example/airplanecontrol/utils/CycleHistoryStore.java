@@ -0,0 +1,442 @@
+package com.example.airplanecontrol.utils;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 周期历史时间序列存储：基于内存映射文件的定长二进制记录。
+ * 文件分三个区：最近周期的原始记录环（按写入顺序），以及按分钟、按小时的聚合桶环。
+ * 每条记录写入时同时累加到所在分钟 / 小时的桶中，原始记录被覆盖后仍可从聚合中查询，
+ * 三个区容量固定，磁盘与内存占用始终有上限。范围查询只读取命中的槽位，不加载整个历史。
+ */
+public final class CycleHistoryStore {
+
+    private static final String TAG = "CycleHistoryStore";
+    private static final String FILE_NAME = "cycle_history.ts";
+
+    private static final int MAGIC = 0x43594853; // "CYHS"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+    private static final int OFFSET_NEXT_SEQ = 24;
+
+    /** 原始记录：开始时间(8) + 总耗时/开启/保持/关闭/恢复(各 4) + 结果(1) + 标志(1) + 重试(1) + 保留(1) */
+    private static final int RECORD_SIZE = 32;
+    /** 聚合桶：桶开始时间(8) + 次数/成功/失败/重试/总耗时和/最大总耗时(各 4) */
+    private static final int BUCKET_SIZE = 32;
+
+    private static final int FLAG_SECURE = 1;
+    private static final int FLAG_ADAPTIVE = 1 << 1;
+    private static final int FLAG_RADIO_OFF = 1 << 2;
+    private static final int FLAG_NETWORK_VALIDATED = 1 << 3;
+
+    /** 原始记录条数（10 秒高频模式约一天，分钟级间隔可保留数周） */
+    public static final int DEFAULT_RAW_CAPACITY = 8192;
+    /** 分钟桶个数：7 天 */
+    public static final int DEFAULT_MINUTE_CAPACITY = 7 * 24 * 60;
+    /** 小时桶个数：90 天 */
+    public static final int DEFAULT_HOUR_CAPACITY = 90 * 24;
+    /** 遍历时每次在锁内读取的记录数 */
+    private static final int VISIT_BATCH = 64;
+
+    private static volatile CycleHistoryStore instance;
+    // 用户解锁前凭据加密存储不可用，由 DirectBootStorage 按解锁状态设置
+    private static volatile boolean available = true;
+
+    public enum Outcome {
+        DONE, FAILED, CANCELLED
+    }
+
+    public enum Resolution {
+        MINUTE(60_000L),
+        HOUR(3_600_000L);
+
+        public final long bucketMs;
+
+        Resolution(long bucketMs) {
+            this.bucketMs = bucketMs;
+        }
+    }
+
+    /**
+     * 单个周期的原始记录，阶段耗时未到达为 -1
+     */
+    public static final class Record {
+        public final long startWallMs;
+        public final boolean secure;
+        public final boolean adaptive;
+        public final Outcome outcome;
+        public final int retries;
+        public final int totalMs;
+        public final int enableMs;
+        public final int holdMs;
+        public final int disableMs;
+        public final int recoverMs;
+        public final boolean radioOff;
+        public final boolean networkValidated;
+
+        public Record(long startWallMs, boolean secure, boolean adaptive, Outcome outcome, int retries,
+                      int totalMs, int enableMs, int holdMs, int disableMs, int recoverMs,
+                      boolean radioOff, boolean networkValidated) {
+            this.startWallMs = startWallMs;
+            this.secure = secure;
+            this.adaptive = adaptive;
+            this.outcome = outcome;
+            this.retries = retries;
+            this.totalMs = totalMs;
+            this.enableMs = enableMs;
+            this.holdMs = holdMs;
+            this.disableMs = disableMs;
+            this.recoverMs = recoverMs;
+            this.radioOff = radioOff;
+            this.networkValidated = networkValidated;
+        }
+
+        @Override
+        public String toString() {
+            String time = java.text.SimpleDateFormat.getDateTimeInstance().format(new java.util.Date(startWallMs));
+            return time + " " + (secure ? "SECURE" : "ASSISTANT") + (adaptive ? "/adaptive" : "")
+                    + " " + outcome + " " + totalMs + "ms (开启=" + enableMs + ", 保持=" + holdMs
+                    + ", 关闭=" + disableMs + ", 恢复=" + recoverMs + ")"
+                    + (retries > 0 ? " 重试 " + retries : "");
+        }
+    }
+
+    /**
+     * 一个分钟 / 小时的聚合
+     */
+    public static final class Bucket {
+        public final long startMs;
+        public final Resolution resolution;
+        public final int count;
+        public final int done;
+        public final int failed;
+        public final int retries;
+        public final long sumTotalMs;
+        public final int maxTotalMs;
+
+        Bucket(long startMs, Resolution resolution, int count, int done, int failed, int retries,
+               long sumTotalMs, int maxTotalMs) {
+            this.startMs = startMs;
+            this.resolution = resolution;
+            this.count = count;
+            this.done = done;
+            this.failed = failed;
+            this.retries = retries;
+            this.sumTotalMs = sumTotalMs;
+            this.maxTotalMs = maxTotalMs;
+        }
+
+        public long meanTotalMs() {
+            return count > 0 ? sumTotalMs / count : 0;
+        }
+
+        @Override
+        public String toString() {
+            String time = java.text.SimpleDateFormat.getDateTimeInstance().format(new java.util.Date(startMs));
+            return time + " " + resolution + ": " + count + " 次, 成功 " + done + ", 失败 " + failed
+                    + ", 平均 " + meanTotalMs() + "ms, 最大 " + maxTotalMs + "ms"
+                    + (retries > 0 ? ", 重试 " + retries : "");
+        }
+    }
+
+    private final int rawCapacity;
+    private final int minuteCapacity;
+    private final int hourCapacity;
+    private final int minuteBase;
+    private final int hourBase;
+    private final MappedByteBuffer buffer;
+    private long nextSeq;
+
+    /**
+     * 获取进程内共享的历史存储
+     */
+    public static CycleHistoryStore get(Context context) {
+        CycleHistoryStore local = instance;
+        if (local == null) {
+            synchronized (CycleHistoryStore.class) {
+                local = instance;
+                if (local == null) {
+                    try {
+                        local = new CycleHistoryStore(new File(context.getApplicationContext().getFilesDir(), FILE_NAME),
+                                DEFAULT_RAW_CAPACITY, DEFAULT_MINUTE_CAPACITY, DEFAULT_HOUR_CAPACITY);
+                    } catch (IOException e) {
+                        throw new IllegalStateException("无法打开周期历史文件", e);
+                    }
+                    instance = local;
+                }
+            }
+        }
+        return local;
+    }
+
+    /**
+     * 凭据加密存储是否可用；不可用时便捷方法只记录到 logcat
+     */
+    public static void setAvailable(boolean value) {
+        available = value;
+    }
+
+    /**
+     * 便捷方法：追加一条记录，失败时只记录错误不抛出
+     */
+    public static void append(Context context, Record record) {
+        if (!available) {
+            // 解锁前无法访问凭据加密存储中的文件，只记录到 logcat
+            Log.d(TAG, "用户未解锁，跳过写入");
+            return;
+        }
+        try {
+            get(context).append(record);
+        } catch (Throwable t) {
+            Log.e(TAG, "追加周期历史失败", t);
+        }
+    }
+
+    public CycleHistoryStore(File file, int rawCapacity, int minuteCapacity, int hourCapacity) throws IOException {
+        if (rawCapacity <= 0 || minuteCapacity <= 0 || hourCapacity <= 0) {
+            throw new IllegalArgumentException("容量非法: " + rawCapacity + "/" + minuteCapacity + "/" + hourCapacity);
+        }
+        this.rawCapacity = rawCapacity;
+        this.minuteCapacity = minuteCapacity;
+        this.hourCapacity = hourCapacity;
+        this.minuteBase = HEADER_SIZE + rawCapacity * RECORD_SIZE;
+        this.hourBase = minuteBase + minuteCapacity * BUCKET_SIZE;
+        long length = (long) hourBase + (long) hourCapacity * BUCKET_SIZE;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            boolean fresh = raf.length() != length;
+            if (fresh) {
+                raf.setLength(length);
+            }
+            // 映射在通道关闭后依然有效
+            buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, length);
+            if (fresh || !headerMatches()) {
+                initHeader();
+            }
+        }
+        nextSeq = buffer.getLong(OFFSET_NEXT_SEQ);
+    }
+
+    private boolean headerMatches() {
+        return buffer.getInt(0) == MAGIC
+                && buffer.getInt(4) == VERSION
+                && buffer.getInt(8) == rawCapacity
+                && buffer.getInt(12) == minuteCapacity
+                && buffer.getInt(16) == hourCapacity
+                && buffer.getLong(OFFSET_NEXT_SEQ) >= 0;
+    }
+
+    private void initHeader() {
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.putInt(8, rawCapacity);
+        buffer.putInt(12, minuteCapacity);
+        buffer.putInt(16, hourCapacity);
+        buffer.putLong(OFFSET_NEXT_SEQ, 0L);
+        clearBuckets();
+    }
+
+    /**
+     * 追加一条记录并累加到所在分钟 / 小时的聚合桶
+     */
+    public synchronized void append(Record r) {
+        int base = HEADER_SIZE + (int) (nextSeq % rawCapacity) * RECORD_SIZE;
+        buffer.putLong(base, r.startWallMs);
+        buffer.putInt(base + 8, r.totalMs);
+        buffer.putInt(base + 12, r.enableMs);
+        buffer.putInt(base + 16, r.holdMs);
+        buffer.putInt(base + 20, r.disableMs);
+        buffer.putInt(base + 24, r.recoverMs);
+        buffer.put(base + 28, (byte) r.outcome.ordinal());
+        int flags = (r.secure ? FLAG_SECURE : 0) | (r.adaptive ? FLAG_ADAPTIVE : 0)
+                | (r.radioOff ? FLAG_RADIO_OFF : 0) | (r.networkValidated ? FLAG_NETWORK_VALIDATED : 0);
+        buffer.put(base + 29, (byte) flags);
+        buffer.put(base + 30, (byte) Math.min(r.retries, 0xFF));
+        buffer.put(base + 31, (byte) 0);
+        nextSeq++;
+        buffer.putLong(OFFSET_NEXT_SEQ, nextSeq);
+
+        accumulate(minuteBase, minuteCapacity, Resolution.MINUTE, r);
+        accumulate(hourBase, hourCapacity, Resolution.HOUR, r);
+    }
+
+    private void accumulate(int regionBase, int capacity, Resolution resolution, Record r) {
+        long index = Math.floorDiv(r.startWallMs, resolution.bucketMs);
+        long bucketStart = index * resolution.bucketMs;
+        int base = regionBase + (int) Math.floorMod(index, (long) capacity) * BUCKET_SIZE;
+        long stamp = buffer.getLong(base);
+        if (stamp > bucketStart) {
+            // 槽位已被更新的时间段占用（时钟回拨或迟到的记录），该记录已超出聚合窗口
+            return;
+        }
+        if (stamp != bucketStart) {
+            buffer.putLong(base, bucketStart);
+            for (int off = 8; off < BUCKET_SIZE; off += 4) {
+                buffer.putInt(base + off, 0);
+            }
+        }
+        buffer.putInt(base + 8, buffer.getInt(base + 8) + 1);
+        if (r.outcome == Outcome.DONE) {
+            buffer.putInt(base + 12, buffer.getInt(base + 12) + 1);
+        } else if (r.outcome == Outcome.FAILED) {
+            buffer.putInt(base + 16, buffer.getInt(base + 16) + 1);
+        }
+        buffer.putInt(base + 20, buffer.getInt(base + 20) + r.retries);
+        int total = Math.max(0, r.totalMs);
+        buffer.putInt(base + 24, buffer.getInt(base + 24) + total);
+        buffer.putInt(base + 28, Math.max(buffer.getInt(base + 28), total));
+    }
+
+    /**
+     * 当前保存的原始记录数
+     */
+    public synchronized int size() {
+        return (int) Math.min(nextSeq, rawCapacity);
+    }
+
+    /**
+     * 查询开始时间在 [fromMs, toMs] 内的原始记录，按时间正序，最多 limit 条。
+     * 原始记录按写入顺序存放，以二分查找定位起点，只读取命中的槽位
+     */
+    public synchronized List<Record> queryRaw(long fromMs, long toMs, int limit) {
+        long oldest = Math.max(0, nextSeq - rawCapacity);
+        if (limit <= 0 || fromMs > toMs || nextSeq == oldest) {
+            return Collections.emptyList();
+        }
+        long lo = oldest;
+        long hi = nextSeq;
+        while (lo < hi) {
+            long mid = (lo + hi) >>> 1;
+            if (startOf(mid) < fromMs) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        List<Record> result = new ArrayList<>();
+        for (long seq = lo; seq < nextSeq && result.size() < limit; seq++) {
+            if (startOf(seq) > toMs) break;
+            result.add(readRecord(seq));
+        }
+        return result;
+    }
+
+    /**
+     * 最近的 count 条原始记录，最新在前
+     */
+    public synchronized List<Record> latest(int count) {
+        int n = Math.min(count, size());
+        List<Record> result = new ArrayList<>(Math.max(0, n));
+        for (int i = 0; i < n; i++) {
+            result.add(readRecord(nextSeq - 1 - i));
+        }
+        return result;
+    }
+
+    public interface RecordVisitor {
+        void visit(Record record) throws IOException;
+    }
+
+    /**
+     * 从旧到新遍历最近 count 条原始记录，内存占用与 count 无关。
+     * 每次在锁内读取一小批，访问者在锁外执行（可做文件 I/O），不会长时间阻塞主线程的追加；
+     * 遍历期间被覆盖的记录跳过，遍历开始后追加的记录不包含在内
+     * @return 访问的记录数
+     */
+    public int forEachRecent(int count, RecordVisitor visitor) throws IOException {
+        long seq;
+        long end;
+        synchronized (this) {
+            end = nextSeq;
+            seq = Math.max(Math.max(0, end - rawCapacity), end - Math.max(0, count));
+        }
+        Record[] batch = new Record[VISIT_BATCH];
+        int visited = 0;
+        while (seq < end) {
+            int n = 0;
+            synchronized (this) {
+                seq = Math.max(seq, nextSeq - rawCapacity);
+                // clear() 之后 nextSeq 回退，遍历结束
+                while (n < VISIT_BATCH && seq < end && seq < nextSeq) {
+                    batch[n++] = readRecord(seq++);
+                }
+            }
+            if (n == 0) break;
+            for (int i = 0; i < n; i++) {
+                visitor.visit(batch[i]);
+                batch[i] = null;
+            }
+            visited += n;
+        }
+        return visited;
+    }
+
+    /**
+     * 查询 [fromMs, toMs] 内有数据的聚合桶，按时间正序。只遍历该范围对应的槽位，
+     * 超出保留窗口的部分返回为空
+     */
+    public synchronized List<Bucket> queryRollup(Resolution resolution, long fromMs, long toMs) {
+        if (fromMs > toMs) {
+            return Collections.emptyList();
+        }
+        int regionBase = resolution == Resolution.MINUTE ? minuteBase : hourBase;
+        int capacity = resolution == Resolution.MINUTE ? minuteCapacity : hourCapacity;
+        long last = Math.floorDiv(toMs, resolution.bucketMs);
+        long first = Math.max(Math.floorDiv(fromMs, resolution.bucketMs), last - capacity + 1);
+        List<Bucket> result = new ArrayList<>();
+        for (long index = first; index <= last; index++) {
+            int base = regionBase + (int) Math.floorMod(index, (long) capacity) * BUCKET_SIZE;
+            long bucketStart = index * resolution.bucketMs;
+            if (buffer.getLong(base) != bucketStart) continue;
+            result.add(new Bucket(bucketStart, resolution,
+                    buffer.getInt(base + 8), buffer.getInt(base + 12), buffer.getInt(base + 16),
+                    buffer.getInt(base + 20), buffer.getInt(base + 24) & 0xFFFFFFFFL, buffer.getInt(base + 28)));
+        }
+        return result;
+    }
+
+    /**
+     * 清空原始记录与聚合
+     */
+    public synchronized void clear() {
+        nextSeq = 0;
+        buffer.putLong(OFFSET_NEXT_SEQ, 0L);
+        clearBuckets();
+    }
+
+    private void clearBuckets() {
+        // 只需清除时间戳，其余字段在桶重新启用时归零
+        for (int i = 0; i < minuteCapacity; i++) {
+            buffer.putLong(minuteBase + i * BUCKET_SIZE, Long.MIN_VALUE);
+        }
+        for (int i = 0; i < hourCapacity; i++) {
+            buffer.putLong(hourBase + i * BUCKET_SIZE, Long.MIN_VALUE);
+        }
+    }
+
+    private long startOf(long seq) {
+        return buffer.getLong(HEADER_SIZE + (int) (seq % rawCapacity) * RECORD_SIZE);
+    }
+
+    private Record readRecord(long seq) {
+        int base = HEADER_SIZE + (int) (seq % rawCapacity) * RECORD_SIZE;
+        Outcome[] outcomes = Outcome.values();
+        int outcome = buffer.get(base + 28) & 0xFF;
+        int flags = buffer.get(base + 29) & 0xFF;
+        return new Record(buffer.getLong(base),
+                (flags & FLAG_SECURE) != 0, (flags & FLAG_ADAPTIVE) != 0,
+                outcome < outcomes.length ? outcomes[outcome] : Outcome.FAILED,
+                buffer.get(base + 30) & 0xFF,
+                buffer.getInt(base + 8), buffer.getInt(base + 12), buffer.getInt(base + 16),
+                buffer.getInt(base + 20), buffer.getInt(base + 24),
+                (flags & FLAG_RADIO_OFF) != 0, (flags & FLAG_NETWORK_VALIDATED) != 0);
+    }
+}
@@ -0,0 +1,237 @@
+package com.example.airplanecontrol.utils;
+
+import android.content.Context;
+import android.database.ContentObserver;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.provider.Settings;
+import android.util.Log;
+
+/**
+ * 周期各阶段的延迟统计。
+ * 每个周期从“命令发出”起计时，各阶段首次到达时把累计耗时记入对应路径（WSS / 助理）的直方图。
+ * 统计只保存在内存中，按进程会话有效，可随时重置。
+ */
+public final class CycleMetrics {
+
+    private static final String TAG = "CycleMetrics";
+
+    /** 周期追踪的最长存活时间，超过后不再记录后续阶段 */
+    private static final long TRACE_CEILING_MS = 60000L;
+
+    public enum Path {
+        WSS, ASSISTANT
+    }
+
+    public enum Phase {
+        ON_SETTINGS_WRITE("开启-写入设置"),
+        ON_BROADCASTS_SENT("开启-广播发出"),
+        ON_CONFIRMED("开启-状态确认"),
+        RADIO_DOWN("射频关闭"),
+        OFF_SETTINGS_WRITE("关闭-写入设置"),
+        OFF_BROADCASTS_SENT("关闭-广播发出"),
+        OFF_CONFIRMED("关闭-状态确认"),
+        RADIO_UP("射频恢复"),
+        NETWORK_VALIDATED("网络验证");
+
+        public final String label;
+
+        Phase(String label) {
+            this.label = label;
+        }
+    }
+
+    private static final LatencyHistogram[][] HISTOGRAMS =
+            new LatencyHistogram[Path.values().length][Phase.values().length];
+
+    static {
+        for (int p = 0; p < HISTOGRAMS.length; p++) {
+            for (int f = 0; f < HISTOGRAMS[p].length; f++) {
+                HISTOGRAMS[p][f] = new LatencyHistogram();
+            }
+        }
+    }
+
+    private static Trace active;
+
+    private CycleMetrics() {}
+
+    public static LatencyHistogram histogram(Path path, Phase phase) {
+        return HISTOGRAMS[path.ordinal()][phase.ordinal()];
+    }
+
+    /**
+     * 开始追踪一个新周期（命令发出时刻），会结束上一个未完成的追踪。必须在主线程调用。
+     */
+    public static Trace begin(Context context, Path path) {
+        if (active != null) {
+            active.close();
+        }
+        active = new Trace(context.getApplicationContext(), path);
+        active.start();
+        return active;
+    }
+
+    /**
+     * 当前进行中的周期追踪，可能为 null
+     */
+    public static Trace current() {
+        return active;
+    }
+
+    public static void reset() {
+        for (LatencyHistogram[] row : HISTOGRAMS) {
+            for (LatencyHistogram h : row) {
+                h.reset();
+            }
+        }
+        Log.d(TAG, "延迟统计已重置");
+    }
+
+    /**
+     * 各路径各阶段的百分位报告（毫秒，自命令发出起累计）
+     */
+    public static String report() {
+        StringBuilder sb = new StringBuilder();
+        for (Path path : Path.values()) {
+            sb.append(path == Path.WSS ? "WRITE_SECURE_SETTINGS" : "Digital Assistant").append(" (ms)\n");
+            for (Phase phase : Phase.values()) {
+                sb.append("  ").append(phase.label).append(": ")
+                        .append(histogram(path, phase).summary()).append('\n');
+            }
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 单个周期的阶段时间戳。
+     * 自身监听飞行模式设置（状态确认）、射频状态（关闭/恢复）与蜂窝网络验证，
+     * 写入/广播阶段由调用方标记。
+     */
+    public static final class Trace {
+        private final Context context;
+        private final Path path;
+        private final long startMs = SystemClock.elapsedRealtime();
+        // 所属周期的追踪号，周期结束后到达的阶段仍归属该周期
+        private final long traceId = Tracer.currentCycle();
+        private final long[] phaseOffsets = new long[Phase.values().length];
+        private final Handler handler = new Handler(Looper.getMainLooper());
+        private boolean closed;
+        private int retries;
+        private RadioSignalMonitor.Wait radioWait;
+        private RadioSignalMonitor.Wait networkWait;
+
+        private final ContentObserver observer;
+
+        Trace(Context context, Path path) {
+            this.context = context;
+            this.path = path;
+            java.util.Arrays.fill(phaseOffsets, -1L);
+            observer = new ContentObserver(handler) {
+                @Override
+                public void onChange(boolean selfChange) {
+                    onAirplaneModeChanged();
+                }
+            };
+        }
+
+        void start() {
+            try {
+                context.getContentResolver().registerContentObserver(
+                        Settings.Global.getUriFor(Settings.Global.AIRPLANE_MODE_ON), false, observer);
+            } catch (Throwable t) {
+                Log.w(TAG, "注册飞行模式监听失败", t);
+            }
+            radioWait = RadioSignalMonitor.awaitRadioPoweredOff(context, TRACE_CEILING_MS, (down, ms) -> {
+                if (!down) return;
+                mark(Phase.RADIO_DOWN);
+                radioWait = RadioSignalMonitor.awaitRadioInService(context, TRACE_CEILING_MS, (up, ms2) -> {
+                    if (up) mark(Phase.RADIO_UP);
+                });
+            });
+            handler.postDelayed(this::close, TRACE_CEILING_MS);
+        }
+
+        public Path path() {
+            return path;
+        }
+
+        public long startMs() {
+            return startMs;
+        }
+
+        /**
+         * 阶段相对命令发出的耗时，未到达为 -1
+         */
+        public long offsetOf(Phase phase) {
+            return phaseOffsets[phase.ordinal()];
+        }
+
+        /**
+         * 累计执行器的重试次数（写入历史记录）
+         */
+        public void addRetries(int count) {
+            retries += count;
+        }
+
+        public int retries() {
+            return retries;
+        }
+
+        /**
+         * 标记阶段到达，同一周期内每个阶段只记录首次
+         */
+        public void mark(Phase phase) {
+            if (closed || phaseOffsets[phase.ordinal()] >= 0) return;
+            long offset = SystemClock.elapsedRealtime() - startMs;
+            phaseOffsets[phase.ordinal()] = offset;
+            histogram(path, phase).record(offset);
+            Tracer.event(Tracer.Event.PHASE, traceId, phase.ordinal());
+            if (Tracer.isVerbose()) {
+                Log.d(TAG, path + " " + phase + " +" + offset + "ms");
+            }
+            if (phase == Phase.OFF_SETTINGS_WRITE || phase == Phase.OFF_CONFIRMED) {
+                awaitNetwork();
+            } else if (phase == Phase.NETWORK_VALIDATED) {
+                close();
+            }
+        }
+
+        private void awaitNetwork() {
+            if (networkWait != null) return;
+            networkWait = RadioSignalMonitor.awaitCellularValidated(context, TRACE_CEILING_MS, (validated, ms) -> {
+                if (validated) mark(Phase.NETWORK_VALIDATED);
+            });
+        }
+
+        private void onAirplaneModeChanged() {
+            boolean on = AirplaneModeUtils.isAirplaneModeOn(context);
+            if (on) {
+                mark(Phase.ON_CONFIRMED);
+            } else if (offsetOf(Phase.ON_CONFIRMED) >= 0) {
+                mark(Phase.OFF_CONFIRMED);
+            }
+        }
+
+        /**
+         * 结束追踪并注销所有监听（重复调用无副作用）
+         */
+        public void close() {
+            if (closed) return;
+            closed = true;
+            handler.removeCallbacksAndMessages(null);
+            try {
+                context.getContentResolver().unregisterContentObserver(observer);
+            } catch (Throwable t) {
+                Log.w(TAG, "注销飞行模式监听失败", t);
+            }
+            if (radioWait != null) radioWait.cancel();
+            if (networkWait != null) networkWait.cancel();
+            if (active == this) {
+                active = null;
+            }
+        }
+    }
+}
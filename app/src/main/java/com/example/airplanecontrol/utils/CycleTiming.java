@@ -0,0 +1,83 @@
+package com.example.airplanecontrol.utils;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+/**
+ * 一次 开启→保持→关闭 周期的阶段时间参数
+ * 固定模式：开启后保持固定时长；自适应模式：射频关闭即结束保持，蜂窝网络验证通过才算完成，
+ * 每个阶段都有上限超时。
+ */
+public final class CycleTiming {
+
+    public static final String PREFS_NAME = "airplane_mode_prefs";
+    public static final String KEY_ADAPTIVE = "adaptive_cycle_enabled";
+    public static final String KEY_HOLD_CEILING_MS = "hold_ceiling_ms";
+    public static final String KEY_NETWORK_CEILING_MS = "network_ceiling_ms";
+
+    public static final long DEFAULT_FIXED_HOLD_MS = 2000L;
+    public static final long DEFAULT_HOLD_CEILING_MS = 3000L;
+    public static final long DEFAULT_NETWORK_CEILING_MS = 30000L;
+
+    public final boolean adaptive;
+    /** 固定模式下的保持时长 */
+    public final long fixedHoldMs;
+    /** 自适应模式下等待射频关闭的上限 */
+    public final long holdCeilingMs;
+    /** 自适应模式下等待蜂窝网络验证的上限 */
+    public final long networkCeilingMs;
+
+    public CycleTiming(boolean adaptive, long fixedHoldMs, long holdCeilingMs, long networkCeilingMs) {
+        this.adaptive = adaptive;
+        this.fixedHoldMs = fixedHoldMs;
+        this.holdCeilingMs = holdCeilingMs;
+        this.networkCeilingMs = networkCeilingMs;
+    }
+
+    public static CycleTiming load(Context context) {
+        return load(DirectBootStorage.prefs(context));
+    }
+
+    public static CycleTiming load(SharedPreferences prefs) {
+        return new CycleTiming(
+                prefs.getBoolean(KEY_ADAPTIVE, false),
+                DEFAULT_FIXED_HOLD_MS,
+                prefs.getLong(KEY_HOLD_CEILING_MS, DEFAULT_HOLD_CEILING_MS),
+                prefs.getLong(KEY_NETWORK_CEILING_MS, DEFAULT_NETWORK_CEILING_MS));
+    }
+
+    /**
+     * 返回指定是否自适应的副本（用于命令参数覆盖偏好设置）
+     */
+    public CycleTiming withAdaptive(boolean adaptive) {
+        return new CycleTiming(adaptive, fixedHoldMs, holdCeilingMs, networkCeilingMs);
+    }
+
+    /**
+     * 返回指定固定保持时长的副本（用于命令参数覆盖默认值）
+     */
+    public CycleTiming withFixedHold(long holdMs) {
+        return new CycleTiming(adaptive, holdMs, holdCeilingMs, networkCeilingMs);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof CycleTiming)) return false;
+        CycleTiming t = (CycleTiming) o;
+        return adaptive == t.adaptive && fixedHoldMs == t.fixedHoldMs && holdCeilingMs == t.holdCeilingMs
+                && networkCeilingMs == t.networkCeilingMs;
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) (fixedHoldMs * 31 + holdCeilingMs * 17 + networkCeilingMs) + (adaptive ? 1 : 0);
+    }
+
+    @Override
+    public String toString() {
+        return adaptive
+                ? "adaptive(hold<=" + holdCeilingMs + "ms, network<=" + networkCeilingMs + "ms)"
+                : "fixed(hold=" + fixedHoldMs + "ms)";
+    }
+}
@@ -0,0 +1,300 @@
+package com.example.airplanecontrol.utils;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 把最近的周期导出为 Chrome trace-event JSON，可在 Perfetto UI / chrome://tracing 中打开。
+ * 两条轨道：
+ * <ul>
+ *   <li>周期历史（{@link CycleHistoryStore}）：每个周期一个区段，内含开启 / 保持 / 关闭 / 恢复四个阶段</li>
+ *   <li>追踪事件（{@link Tracer} 环形缓冲区）：同一批周期的状态区段，以及写入设置、广播、助理会话、
+ *       状态确认、网络恢复等瞬时事件</li>
+ * </ul>
+ * 两条轨道覆盖同一时间范围：历史中的周期数达到请求数时，早于其中最早一个周期的缓冲区事件不导出；
+ * 历史不足请求数时缓冲区中的事件全部导出。缓冲区容量有限，较早的周期可能只有历史轨道。
+ * 记录逐条经缓冲 Writer 写入文件，内存占用与导出的周期数无关。
+ */
+public final class CycleTraceExporter {
+
+    private static final String TAG = "CycleTraceExporter";
+
+    public static final String FILE_NAME = "cycle_trace.json";
+    public static final int DEFAULT_CYCLES = 200;
+
+    private static final int BUFFER_SIZE = 16 * 1024;
+    private static final int PID = 1;
+    private static final int TID_HISTORY = 1;
+    private static final int TID_EVENTS = 2;
+    /** 历史记录的开始时间（毫秒、墙上时间）与缓冲区中周期开始事件之间允许的偏差 */
+    static final long WINDOW_SLACK_NANOS = 1_000_000_000L;
+
+    private static final ToggleCycle.State[] STATES = ToggleCycle.State.values();
+    private static final CycleMetrics.Phase[] PHASES = CycleMetrics.Phase.values();
+    private static final CycleMetrics.Path[] PATHS = CycleMetrics.Path.values();
+    private static final Tracer.Event[] EVENTS = Tracer.Event.values();
+
+    public static final class Result {
+        public final File file;
+        public final int cycles;
+        public final int events;
+
+        Result(File file, int cycles, int events) {
+            this.file = file;
+            this.cycles = cycles;
+            this.events = events;
+        }
+
+        @Override
+        public String toString() {
+            return file + " (" + cycles + " 个周期, " + events + " 个事件, " + file.length() + " 字节)";
+        }
+    }
+
+    private CycleTraceExporter() {}
+
+    /**
+     * 导出到应用的外部文件目录（adb pull 可取），不可用时为内部文件目录。
+     * 先写临时文件再改名，导出中途失败不会留下半个文件。在后台线程调用
+     * @param cycles 最近的周期数
+     */
+    public static Result export(Context context, int cycles) throws IOException {
+        Context app = context.getApplicationContext();
+        File dir = app.getExternalFilesDir(null);
+        if (dir == null) {
+            dir = app.getFilesDir();
+        }
+        File file = new File(dir, FILE_NAME);
+        File tmp = new File(dir, FILE_NAME + ".tmp");
+        int[] counts;
+        try (Writer out = new BufferedWriter(
+                new OutputStreamWriter(new FileOutputStream(tmp), StandardCharsets.UTF_8), BUFFER_SIZE)) {
+            counts = write(app, out, cycles);
+        } catch (IOException | RuntimeException e) {
+            tmp.delete();
+            throw e;
+        }
+        if (!tmp.renameTo(file)) {
+            tmp.delete();
+            throw new IOException("无法写入 " + file);
+        }
+        Result result = new Result(file, counts[0], counts[1]);
+        Log.d(TAG, "已导出周期追踪: " + result);
+        return result;
+    }
+
+    /**
+     * @return {周期数, 事件数}
+     */
+    private static int[] write(Context context, Writer out, int cycles) throws IOException {
+        final ChromeTraceWriter trace = new ChromeTraceWriter(out);
+        trace.begin();
+        trace.processName(PID, "AirplaneControl");
+        trace.threadName(PID, TID_HISTORY, "Cycle history");
+        trace.threadName(PID, TID_EVENTS, "Trace events");
+        final long[] oldestStartWallMs = {-1L};
+        int written = CycleHistoryStore.get(context).forEachRecent(cycles, r -> {
+            if (oldestStartWallMs[0] < 0) {
+                oldestStartWallMs[0] = r.startWallMs;
+            }
+            writeRecord(trace, r);
+        });
+        // 环形缓冲区的时间为 elapsedRealtimeNanos，换算到与历史记录相同的墙上时间
+        long wallOffsetNanos = System.currentTimeMillis() * 1_000_000L - SystemClock.elapsedRealtimeNanos();
+        long windowStartNanos = windowStart(cycles, written, oldestStartWallMs[0], wallOffsetNanos);
+        writeRing(trace, Tracer.ring(), wallOffsetNanos, windowStartNanos, SystemClock.elapsedRealtimeNanos());
+        trace.finish();
+        return new int[]{written, trace.events()};
+    }
+
+    /**
+     * 缓冲区事件的导出窗口开始时间（elapsedRealtimeNanos）：不导出时为 MAX_VALUE，全部导出时为 MIN_VALUE
+     * @param written 实际写出的历史周期数
+     * @param oldestStartWallMs 写出的最早一个周期的开始时间（墙上时间）
+     */
+    static long windowStart(int cycles, int written, long oldestStartWallMs, long wallOffsetNanos) {
+        if (cycles <= 0) {
+            return Long.MAX_VALUE;
+        } else if (written >= cycles) {
+            return oldestStartWallMs * 1_000_000L - wallOffsetNanos;
+        }
+        return Long.MIN_VALUE;
+    }
+
+    /**
+     * 写出缓冲区中导出窗口内的事件，导出时仍在进行的状态区段在 nowNanos 结束
+     */
+    static void writeRing(ChromeTraceWriter trace, TraceRing ring, long wallOffsetNanos, long windowStartNanos,
+                          long nowNanos) throws IOException {
+        RingVisitor visitor = new RingVisitor(trace, wallOffsetNanos, windowStartNanos,
+                firstCycleFrom(ring, windowStartNanos));
+        try {
+            ring.forEach(ring.capacity(), visitor);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        visitor.closeOpenState(nowNanos);
+    }
+
+    /**
+     * 缓冲区中在窗口开始（含偏差）之后开始的第一个周期号，没有时为 0
+     */
+    static long firstCycleFrom(TraceRing ring, long windowStartNanos) {
+        if (windowStartNanos == Long.MIN_VALUE || windowStartNanos == Long.MAX_VALUE) return 0;
+        final long from = windowStartNanos - WINDOW_SLACK_NANOS;
+        final int begin = Tracer.Event.CYCLE_BEGIN.ordinal();
+        final long[] first = {0L};
+        ring.forEach(ring.capacity(), (seq, timeNanos, event, cycleId, arg) -> {
+            if (event == begin && timeNanos >= from && cycleId != 0 && (first[0] == 0 || cycleId < first[0])) {
+                first[0] = cycleId;
+            }
+        });
+        return first[0];
+    }
+
+    private static void writeRecord(ChromeTraceWriter trace, CycleHistoryStore.Record r) throws IOException {
+        long ts = r.startWallMs * 1000L;
+        trace.event(ChromeTraceWriter.PHASE_COMPLETE, r.secure ? "cycle (secure)" : "cycle (assistant)", "history",
+                        ts, PID, TID_HISTORY)
+                .dur(Math.max(0, r.totalMs) * 1000L)
+                .arg("outcome", r.outcome.name())
+                .arg("retries", r.retries)
+                .arg("adaptive", r.adaptive ? 1 : 0)
+                .arg("radio_off", r.radioOff ? 1 : 0)
+                .arg("network_validated", r.networkValidated ? 1 : 0)
+                .end();
+        ts = stage(trace, "enable", ts, r.enableMs);
+        ts = stage(trace, "hold", ts, r.holdMs);
+        ts = stage(trace, "disable", ts, r.disableMs);
+        stage(trace, "recover", ts, r.recoverMs);
+    }
+
+    /**
+     * 写出周期内的一个阶段，未到达的阶段（-1）跳过
+     * @return 下一个阶段的开始时间
+     */
+    private static long stage(ChromeTraceWriter trace, String name, long tsMicros, int durationMs) throws IOException {
+        if (durationMs < 0) return tsMicros;
+        trace.event(ChromeTraceWriter.PHASE_COMPLETE, name, "history", tsMicros, PID, TID_HISTORY)
+                .dur(durationMs * 1000L)
+                .end();
+        return tsMicros + durationMs * 1000L;
+    }
+
+    /**
+     * 环形缓冲区事件转为 trace 事件。周期与状态用按周期号配对的异步区段表示；
+     * 一次只有一个周期在进行，只需记住当前未结束的状态。
+     * 只写出导出窗口内的事件：属于周期的按周期号（不早于窗口内第一个周期），其余按时间
+     */
+    private static final class RingVisitor implements TraceRing.Visitor {
+
+        private final ChromeTraceWriter trace;
+        private final long wallOffsetNanos;
+        private final long windowStartNanos;
+        private final long firstCycle;
+        private long openCycle;
+        private String openState;
+
+        RingVisitor(ChromeTraceWriter trace, long wallOffsetNanos, long windowStartNanos, long firstCycle) {
+            this.trace = trace;
+            this.wallOffsetNanos = wallOffsetNanos;
+            this.windowStartNanos = windowStartNanos;
+            this.firstCycle = firstCycle;
+        }
+
+        private boolean inWindow(long timeNanos, long cycleId) {
+            if (cycleId != 0 && firstCycle != 0) {
+                return cycleId >= firstCycle;
+            }
+            return timeNanos >= windowStartNanos;
+        }
+
+        @Override
+        public void visit(long seq, long timeNanos, int event, long cycleId, long arg) {
+            try {
+                write(timeNanos, event, cycleId, arg);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private void write(long timeNanos, int event, long cycleId, long arg) throws IOException {
+            if (event < 0 || event >= EVENTS.length || !inWindow(timeNanos, cycleId)) return;
+            long ts = micros(timeNanos);
+            Tracer.Event e = EVENTS[event];
+            switch (e) {
+                case CYCLE_BEGIN:
+                    closeOpenState(timeNanos);
+                    trace.event(ChromeTraceWriter.PHASE_ASYNC_BEGIN, "cycle", "cycle", ts, PID, TID_EVENTS)
+                            .id(cycleId)
+                            .arg("path", arg >= 0 && arg < PATHS.length ? PATHS[(int) arg].name() : "?")
+                            .end();
+                    openCycle = cycleId;
+                    return;
+                case CYCLE_STATE:
+                    if (arg < 0 || arg >= STATES.length) return;
+                    if (openCycle == cycleId) {
+                        closeOpenState(timeNanos);
+                    }
+                    openCycle = cycleId;
+                    openState = STATES[(int) arg].name();
+                    trace.event(ChromeTraceWriter.PHASE_ASYNC_BEGIN, openState, "cycle", ts, PID, TID_EVENTS)
+                            .id(cycleId)
+                            .end();
+                    return;
+                case CYCLE_END:
+                    if (openCycle == cycleId) {
+                        closeOpenState(timeNanos);
+                    }
+                    trace.event(ChromeTraceWriter.PHASE_ASYNC_END, "cycle", "cycle", ts, PID, TID_EVENTS)
+                            .id(cycleId)
+                            .arg("state", arg >= 0 && arg < STATES.length ? STATES[(int) arg].name() : "?")
+                            .end();
+                    return;
+                case PHASE:
+                    if (arg < 0 || arg >= PHASES.length) return;
+                    trace.event(ChromeTraceWriter.PHASE_INSTANT, PHASES[(int) arg].name(), "phase", ts, PID, TID_EVENTS)
+                            .arg("cycle", cycleId)
+                            .end();
+                    return;
+                case BROADCAST:
+                    String[] actions = AirplaneModeWriter.ALL_ACTIONS;
+                    trace.event(ChromeTraceWriter.PHASE_INSTANT, e.label, "toggle", ts, PID, TID_EVENTS)
+                            .arg("cycle", cycleId)
+                            .arg("action", arg >= 0 && arg < actions.length ? actions[(int) arg] : "?")
+                            .end();
+                    return;
+                default:
+                    trace.event(ChromeTraceWriter.PHASE_INSTANT, e.label, "toggle", ts, PID, TID_EVENTS)
+                            .arg("cycle", cycleId)
+                            .arg("arg", arg)
+                            .end();
+            }
+        }
+
+        /**
+         * 结束当前未结束的状态区段（周期结束、下一个状态开始，或导出时仍在进行）
+         */
+        void closeOpenState(long timeNanos) throws IOException {
+            if (openState == null) return;
+            trace.event(ChromeTraceWriter.PHASE_ASYNC_END, openState, "cycle", micros(timeNanos), PID, TID_EVENTS)
+                    .id(openCycle)
+                    .end();
+            openState = null;
+        }
+
+        private long micros(long elapsedNanos) {
+            return (elapsedNanos + wallOffsetNanos) / 1000L;
+        }
+    }
+}
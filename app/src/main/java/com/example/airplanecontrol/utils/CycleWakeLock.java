@@ -0,0 +1,171 @@
+package com.example.airplanecontrol.utils;
+
+import android.content.Context;
+import android.os.PowerManager;
+import android.os.SystemClock;
+import android.util.Log;
+
+/**
+ * 周期范围内的 PARTIAL_WAKE_LOCK 与唤醒统计。
+ * 周期唤醒锁只覆盖周期从开始到结束的区间（开启→保持→关闭→恢复），保证熄屏时保持阶段不会因休眠被拉长；
+ * 获取时带上限超时，即使周期异常也不会长期持有。闹钟唤醒到周期开始之间由短时的 tick 唤醒锁衔接。
+ * 统计最近 24 小时每小时的闹钟唤醒次数、周期持锁次数与时长，以及每个周期的持锁时长分布。
+ * 所有方法都在主线程调用。
+ */
+public final class CycleWakeLock {
+
+    private static final String TAG = "CycleWakeLock";
+
+    public static final String TAG_CYCLE = "AirplaneControl:cycle";
+    public static final String TAG_TICK = "AirplaneControl:tick";
+    /** tick 唤醒锁的上限：闹钟唤醒后周期应在此时间内开始 */
+    public static final long TICK_TIMEOUT_MS = 5000L;
+
+    private static final int HOURS = 24;
+    private static final long HOUR_MS = 3_600_000L;
+
+    private static PowerManager.WakeLock cycleLock;
+    private static PowerManager.WakeLock tickLock;
+    private static long cycleAcquiredMs = -1L;
+
+    private static final LatencyHistogram HELD_PER_CYCLE = new LatencyHistogram();
+    // 按小时的环形统计，HOUR_STAMPS 记录槽位所属的小时，过期槽位在写入前清零
+    private static final long[] HOUR_STAMPS = new long[HOURS];
+    private static final int[] ALARM_WAKEUPS = new int[HOURS];
+    private static final int[] CYCLE_LOCKS = new int[HOURS];
+    private static final long[] HELD_MS = new long[HOURS];
+    private static int expired;
+
+    private CycleWakeLock() {}
+
+    /**
+     * 周期开始时获取；已持有 tick 唤醒锁时交接给周期唤醒锁
+     * @param ceilingMs 周期的最长跨度，超过后唤醒锁自动释放
+     */
+    public static void acquireForCycle(Context context, long ceilingMs) {
+        PowerManager.WakeLock lock = cycleLock(context);
+        if (lock != null) {
+            try {
+                lock.acquire(ceilingMs);
+                cycleAcquiredMs = SystemClock.elapsedRealtime();
+                CYCLE_LOCKS[slot(cycleAcquiredMs)]++;
+            } catch (Throwable t) {
+                Log.w(TAG, "获取周期唤醒锁失败", t);
+            }
+        }
+        releaseTick();
+    }
+
+    /**
+     * 周期结束时释放
+     * @return 本周期持锁时长，未持有为 -1
+     */
+    public static long releaseForCycle() {
+        if (cycleAcquiredMs < 0) return -1L;
+        long now = SystemClock.elapsedRealtime();
+        long held = now - cycleAcquiredMs;
+        cycleAcquiredMs = -1L;
+        if (cycleLock.isHeld()) {
+            cycleLock.release();
+        } else {
+            // 超过上限已自动释放，实际持锁只到上限为止
+            expired++;
+            Log.w(TAG, "周期唤醒锁在周期结束前已超时释放, 周期 " + held + "ms");
+        }
+        HELD_PER_CYCLE.record(held);
+        HELD_MS[slot(now)] += held;
+        return held;
+    }
+
+    /**
+     * 调度闹钟唤醒时获取，周期开始时交接，未开始周期时由 {@link #releaseTick()} 或超时释放
+     */
+    public static void acquireForTick(Context context) {
+        ALARM_WAKEUPS[slot(SystemClock.elapsedRealtime())]++;
+        if (tickLock == null) {
+            tickLock = newLock(context, TAG_TICK);
+        }
+        if (tickLock != null) {
+            try {
+                tickLock.acquire(TICK_TIMEOUT_MS);
+            } catch (Throwable t) {
+                Log.w(TAG, "获取 tick 唤醒锁失败", t);
+            }
+        }
+    }
+
+    public static void releaseTick() {
+        if (tickLock != null && tickLock.isHeld()) {
+            tickLock.release();
+        }
+    }
+
+    private static PowerManager.WakeLock cycleLock(Context context) {
+        if (cycleLock == null) {
+            cycleLock = newLock(context, TAG_CYCLE);
+        }
+        return cycleLock;
+    }
+
+    private static PowerManager.WakeLock newLock(Context context, String tag) {
+        PowerManager pm = (PowerManager) context.getApplicationContext().getSystemService(Context.POWER_SERVICE);
+        if (pm == null) return null;
+        PowerManager.WakeLock lock = pm.newWakeLock(PowerManager.PARTIAL_WAKE_LOCK, tag);
+        // 不计引用：重复获取只刷新超时，一次释放即可
+        lock.setReferenceCounted(false);
+        return lock;
+    }
+
+    private static int slot(long elapsedMs) {
+        long hour = elapsedMs / HOUR_MS;
+        int index = (int) (hour % HOURS);
+        if (HOUR_STAMPS[index] != hour) {
+            HOUR_STAMPS[index] = hour;
+            ALARM_WAKEUPS[index] = 0;
+            CYCLE_LOCKS[index] = 0;
+            HELD_MS[index] = 0;
+        }
+        return index;
+    }
+
+    public static void reset() {
+        HELD_PER_CYCLE.reset();
+        java.util.Arrays.fill(HOUR_STAMPS, 0);
+        java.util.Arrays.fill(ALARM_WAKEUPS, 0);
+        java.util.Arrays.fill(CYCLE_LOCKS, 0);
+        java.util.Arrays.fill(HELD_MS, 0);
+        expired = 0;
+    }
+
+    /**
+     * 唤醒统计：当前小时与最近 24 小时平均
+     */
+    public static String report() {
+        long hour = SystemClock.elapsedRealtime() / HOUR_MS;
+        int current = slot(SystemClock.elapsedRealtime());
+        int hours = 0;
+        long wakeups = 0;
+        long locks = 0;
+        long held = 0;
+        for (int i = 0; i < HOURS; i++) {
+            if (hour - HOUR_STAMPS[i] < HOURS && (ALARM_WAKEUPS[i] > 0 || CYCLE_LOCKS[i] > 0)) {
+                hours++;
+                wakeups += ALARM_WAKEUPS[i];
+                locks += CYCLE_LOCKS[i];
+                held += HELD_MS[i];
+            }
+        }
+        StringBuilder sb = new StringBuilder("Wake locks\n");
+        sb.append("  this hour: ").append(ALARM_WAKEUPS[current]).append(" alarm wakeups, ")
+                .append(CYCLE_LOCKS[current]).append(" cycles, held ").append(HELD_MS[current]).append("ms\n");
+        if (hours > 0) {
+            sb.append("  avg per active hour (").append(hours).append("h): ").append(wakeups / hours).append(" alarm wakeups, ")
+                    .append(locks / hours).append(" cycles, held ").append(held / hours).append("ms\n");
+        }
+        sb.append("  held per cycle (ms): ").append(HELD_PER_CYCLE.summary());
+        if (expired > 0) {
+            sb.append(", expired=").append(expired);
+        }
+        return sb.append('\n').toString();
+    }
+}
@@ -0,0 +1,169 @@
+package com.example.airplanecontrol.utils;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.SystemClock;
+import android.os.UserManager;
+import android.provider.Settings;
+import android.util.Log;
+
+import java.util.Map;
+
+/**
+ * 直接启动（Direct Boot）支持。
+ * 调度与控制方式相关的偏好在凭据加密存储中修改，同时镜像到设备加密存储；用户解锁前只能访问设备加密存储，
+ * 此时 {@link #prefs(Context)} 返回镜像，开机后无需等待解锁即可恢复调度。
+ * 同时记录开机到第一次周期的耗时。
+ */
+public final class DirectBootStorage {
+
+    private static final String TAG = "DirectBootStorage";
+
+    /** 镜像到设备加密存储的偏好（调度、控制方式与周期参数） */
+    private static final String[] MIRRORED_KEYS = {
+            "auto_toggle_enabled", "toggle_interval", "high_frequency_seconds", "control_mode_secure",
+            CycleTiming.KEY_ADAPTIVE, CycleTiming.KEY_HOLD_CEILING_MS, CycleTiming.KEY_NETWORK_CEILING_MS,
+            "missed_run_policy", "schedule_spread", "schedule_jitter_ms",
+            RotationVerifier.KEY_RETRY_BUDGET, RotationVerifier.KEY_VERIFY_CEILING_MS,
+            "control_server_enabled", "control_server_port", "trace_level",
+    };
+
+    // 开机恢复记录，只存于设备加密存储
+    private static final String BOOT_PREFS_NAME = "direct_boot";
+    private static final String KEY_RESUMED_BOOT = "resumed_boot_count";
+    private static final String KEY_RESUMED_LOCKED = "resumed_locked";
+    private static final String KEY_FIRST_CYCLE_MS = "boot_to_first_cycle_ms";
+
+    // SharedPreferences 只弱引用监听器，这里保持强引用
+    private static SharedPreferences.OnSharedPreferenceChangeListener mirror;
+
+    private DirectBootStorage() {}
+
+    public static boolean isUserUnlocked(Context context) {
+        UserManager um = context.getApplicationContext().getSystemService(UserManager.class);
+        return um == null || um.isUserUnlocked();
+    }
+
+    /**
+     * 设备加密存储的 Context，解锁前后都可访问
+     */
+    public static Context deviceProtected(Context context) {
+        Context app = context.getApplicationContext();
+        return app.isDeviceProtectedStorage() ? app : app.createDeviceProtectedStorageContext();
+    }
+
+    /**
+     * 应用偏好：解锁后为凭据加密存储，解锁前为设备加密存储中的镜像
+     */
+    public static SharedPreferences prefs(Context context) {
+        Context storage = isUserUnlocked(context) ? context.getApplicationContext() : deviceProtected(context);
+        return storage.getSharedPreferences(CycleTiming.PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * 全量同步一次镜像并监听后续修改，同时按解锁状态开关日志与历史的文件写入；解锁前调用不同步镜像
+     */
+    public static synchronized void startMirroring(Context context) {
+        boolean unlocked = isUserUnlocked(context);
+        OperationLogStore.setAvailable(unlocked);
+        CycleHistoryStore.setAvailable(unlocked);
+        if (mirror != null || !unlocked) return;
+        final SharedPreferences source = context.getApplicationContext()
+                .getSharedPreferences(CycleTiming.PREFS_NAME, Context.MODE_PRIVATE);
+        final SharedPreferences target = deviceProtected(context)
+                .getSharedPreferences(CycleTiming.PREFS_NAME, Context.MODE_PRIVATE);
+        SharedPreferences.Editor editor = target.edit();
+        for (String key : MIRRORED_KEYS) {
+            copy(source.getAll(), key, editor);
+        }
+        editor.apply();
+        mirror = (prefs, key) -> {
+            SharedPreferences.Editor e = target.edit();
+            if (key == null) {
+                // clear()：全部重新同步
+                for (String k : MIRRORED_KEYS) {
+                    copy(prefs.getAll(), k, e);
+                }
+            } else if (isMirrored(key)) {
+                copy(prefs.getAll(), key, e);
+            } else {
+                return;
+            }
+            e.apply();
+        };
+        source.registerOnSharedPreferenceChangeListener(mirror);
+        Log.d(TAG, "已同步偏好镜像到设备加密存储");
+    }
+
+    private static boolean isMirrored(String key) {
+        for (String k : MIRRORED_KEYS) {
+            if (k.equals(key)) return true;
+        }
+        return false;
+    }
+
+    private static void copy(Map<String, ?> values, String key, SharedPreferences.Editor editor) {
+        Object value = values.get(key);
+        if (value instanceof Boolean) {
+            editor.putBoolean(key, (Boolean) value);
+        } else if (value instanceof Integer) {
+            editor.putInt(key, (Integer) value);
+        } else if (value instanceof Long) {
+            editor.putLong(key, (Long) value);
+        } else if (value instanceof Float) {
+            editor.putFloat(key, (Float) value);
+        } else if (value instanceof String) {
+            editor.putString(key, (String) value);
+        } else {
+            editor.remove(key);
+        }
+    }
+
+    private static SharedPreferences bootPrefs(Context context) {
+        return deviceProtected(context).getSharedPreferences(BOOT_PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    private static int bootCount(Context context) {
+        return Settings.Global.getInt(context.getContentResolver(), Settings.Global.BOOT_COUNT, -1);
+    }
+
+    /**
+     * 标记本次开机已恢复调度
+     * @return false 表示本次开机已恢复过（例如解锁前已经恢复，解锁后的 BOOT_COMPLETED 不必再启动）
+     */
+    public static boolean markResumed(Context context, boolean locked) {
+        int boot = bootCount(context);
+        SharedPreferences prefs = bootPrefs(context);
+        if (boot >= 0 && prefs.getInt(KEY_RESUMED_BOOT, -1) == boot) {
+            return false;
+        }
+        prefs.edit()
+                .putInt(KEY_RESUMED_BOOT, boot)
+                .putBoolean(KEY_RESUMED_LOCKED, locked)
+                .remove(KEY_FIRST_CYCLE_MS)
+                .apply();
+        return true;
+    }
+
+    /**
+     * 记录开机后的第一次周期（elapsedRealtime 即开机以来的时间）
+     */
+    public static void recordFirstCycle(Context context) {
+        long sinceBootMs = SystemClock.elapsedRealtime();
+        bootPrefs(context).edit().putLong(KEY_FIRST_CYCLE_MS, sinceBootMs).apply();
+        Log.d(TAG, "开机到第一次周期: " + sinceBootMs + "ms, 解锁=" + isUserUnlocked(context));
+    }
+
+    /**
+     * 最近一次开机恢复的报告
+     */
+    public static String report(Context context) {
+        SharedPreferences prefs = bootPrefs(context);
+        if (!prefs.contains(KEY_RESUMED_BOOT)) {
+            return "Boot resume\n  no resume recorded\n";
+        }
+        long firstCycleMs = prefs.getLong(KEY_FIRST_CYCLE_MS, -1L);
+        return "Boot resume\n  resumed " + (prefs.getBoolean(KEY_RESUMED_LOCKED, false) ? "before unlock" : "after unlock")
+                + ", boot to first cycle: " + (firstCycleMs >= 0 ? (firstCycleMs / 1000) + "s" : "-") + '\n';
+    }
+}
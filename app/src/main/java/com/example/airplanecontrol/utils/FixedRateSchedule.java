@@ -0,0 +1,184 @@
+package com.example.airplanecontrol.utils;
+
+/**
+ * 无漂移的固定频率时间表，不依赖 Android 框架。
+ * 第 k 次触发固定在 anchor + offset + k * period + jitter(k)（elapsedRealtime 时间轴），
+ * 执行耗时与定时器迟到都不会累积到周期中。迟到超过一个周期时按漏跑策略处理。
+ * offset 为设备固定的相位偏移，jitter(k) 由种子与序号确定（同一设备可预测、不同设备互相错开），
+ * 用于让同一间隔的大量设备在周期内均匀分布，而不是同时触发。
+ */
+public final class FixedRateSchedule {
+
+    /**
+     * 漏跑策略（定时器迟到、设备休眠等导致错过一个或多个时间点）
+     */
+    public enum MissedRunPolicy {
+        /** 丢弃错过的时间点，等待下一个时间点 */
+        SKIP,
+        /** 错过的所有时间点合并为立即执行一次 */
+        COALESCE,
+        /** 补跑错过的时间点（有上限） */
+        CATCH_UP
+    }
+
+    /** CATCH_UP 策略下一次最多补跑的次数 */
+    public static final int MAX_CATCH_UP_RUNS = 3;
+    /** 抖动上限占周期的比例上限，保证相邻时间点不会交错 */
+    public static final int MAX_JITTER_DIVISOR = 4;
+
+    private final long anchorMs;
+    private final long periodMs;
+    private final MissedRunPolicy policy;
+    private final long offsetMs;
+    private final long jitterMs;
+    private final long seed;
+    private long nextSlot;
+
+    /**
+     * @param anchorMs 第 0 次触发时间
+     * @param periodMs 周期，必须大于 0
+     */
+    public FixedRateSchedule(long anchorMs, long periodMs, MissedRunPolicy policy) {
+        this(anchorMs, periodMs, policy, 0L, 0L, 0L);
+    }
+
+    /**
+     * @param offsetMs 相位偏移，按周期取模
+     * @param jitterMs 每个时间点的最大抖动（正负），不超过周期的 1/{@value #MAX_JITTER_DIVISOR}
+     * @param seed 抖动种子，相同种子得到相同的触发时间序列
+     */
+    public FixedRateSchedule(long anchorMs, long periodMs, MissedRunPolicy policy,
+                             long offsetMs, long jitterMs, long seed) {
+        if (periodMs <= 0) {
+            throw new IllegalArgumentException("periodMs 必须大于 0: " + periodMs);
+        }
+        if (jitterMs < 0) {
+            throw new IllegalArgumentException("jitterMs 不能为负: " + jitterMs);
+        }
+        this.anchorMs = anchorMs;
+        this.periodMs = periodMs;
+        this.policy = policy;
+        this.offsetMs = Math.floorMod(offsetMs, periodMs);
+        this.jitterMs = Math.min(jitterMs, periodMs / MAX_JITTER_DIVISOR);
+        this.seed = seed;
+        this.nextSlot = 0;
+    }
+
+    public long anchorMs() {
+        return anchorMs;
+    }
+
+    public long periodMs() {
+        return periodMs;
+    }
+
+    public MissedRunPolicy policy() {
+        return policy;
+    }
+
+    public long offsetMs() {
+        return offsetMs;
+    }
+
+    public long jitterMs() {
+        return jitterMs;
+    }
+
+    /**
+     * 下一次触发时间
+     */
+    public long nextFireTime() {
+        return fireTimeOf(nextSlot);
+    }
+
+    /**
+     * 第 slot 个时间点的触发时间（可预测，只取决于构造参数）
+     */
+    public long fireTimeOf(long slot) {
+        return anchorMs + offsetMs + slot * periodMs + jitterOf(slot);
+    }
+
+    private long jitterOf(long slot) {
+        if (jitterMs == 0) {
+            return 0;
+        }
+        // splitmix64：同一种子与序号得到固定的抖动
+        long z = seed + (slot + 1) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        z = z ^ (z >>> 31);
+        return Math.floorMod(z, 2 * jitterMs + 1) - jitterMs;
+    }
+
+    /**
+     * now 时刻已到达的最后一个时间点序号（可能为 -1）
+     */
+    private long slotAt(long nowMs) {
+        long slot = Math.floorDiv(nowMs - anchorMs - offsetMs, periodMs);
+        // 抖动不超过周期的 1/4，最多偏离一个时间点
+        if (fireTimeOf(slot + 1) <= nowMs) {
+            slot++;
+        } else if (slot >= 0 && fireTimeOf(slot) > nowMs) {
+            slot--;
+        }
+        return slot;
+    }
+
+    /**
+     * 跳过 now 之前的时间点，下一次触发为 now 之后（含）的第一个时间点。
+     * 错峰调度开始时使用，避免同时启动的设备都立即执行
+     */
+    public void skipTo(long nowMs) {
+        long slot = slotAt(nowMs);
+        if (slot >= 0 && fireTimeOf(slot) == nowMs) {
+            nextSlot = slot;
+        } else {
+            nextSlot = Math.max(nextSlot, slot + 1);
+        }
+    }
+
+    /**
+     * 定时器到期时调用：返回此刻应执行的次数，并把下一次触发推进到 now 之后的第一个时间点。
+     * 早到（now 小于下一次触发时间）返回 0 且不推进，可用于过滤重复唤醒。
+     */
+    public int onFire(long nowMs) {
+        long due = nextFireTime();
+        if (nowMs < due) {
+            return 0;
+        }
+        // now 所在的时间点序号；之后第一个时间点即为下一次触发
+        long currentSlot = slotAt(nowMs);
+        long missed = currentSlot - nextSlot;
+        nextSlot = currentSlot + 1;
+        switch (policy) {
+            case SKIP:
+                return missed == 0 ? 1 : 0;
+            case CATCH_UP:
+                return (int) Math.min(missed + 1, MAX_CATCH_UP_RUNS);
+            case COALESCE:
+            default:
+                return 1;
+        }
+    }
+
+    /**
+     * 距下一次触发的时间（已到期为 0）
+     */
+    public long delayUntilNext(long nowMs) {
+        return Math.max(0, nextFireTime() - nowMs);
+    }
+
+    /**
+     * 解析策略名称，无法识别时返回 COALESCE
+     */
+    public static MissedRunPolicy parsePolicy(String name) {
+        if (name != null) {
+            for (MissedRunPolicy p : MissedRunPolicy.values()) {
+                if (p.name().equalsIgnoreCase(name)) {
+                    return p;
+                }
+            }
+        }
+        return MissedRunPolicy.COALESCE;
+    }
+}
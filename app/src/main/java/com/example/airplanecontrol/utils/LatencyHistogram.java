@@ -0,0 +1,112 @@
+package com.example.airplanecontrol.utils;
+
+/**
+ * 定长内存的对数分桶延迟直方图（HdrHistogram 风格）。
+ * 每个 2 的幂区间再线性细分为 16 个子桶，相对误差约 6%；
+ * 小于 16 的值精确记录。记录为常数开销，不分配内存。
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    /** 可记录的最大值为 2^MAX_MAGNITUDE - 1，超出按最大值计 */
+    private static final int MAX_MAGNITUDE = 31;
+    private static final int BUCKET_COUNT = SUB_BUCKET_COUNT + (MAX_MAGNITUDE - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT;
+    private static final long MAX_VALUE = (1L << MAX_MAGNITUDE) - 1;
+
+    private final long[] counts = new long[BUCKET_COUNT];
+    private long totalCount;
+    private long sum;
+    private long min = Long.MAX_VALUE;
+    private long max;
+
+    /**
+     * 记录一个值（负数按 0 计）
+     */
+    public synchronized void record(long value) {
+        long v = value < 0 ? 0 : Math.min(value, MAX_VALUE);
+        counts[indexOf(v)]++;
+        totalCount++;
+        sum += v;
+        if (v < min) min = v;
+        if (v > max) max = v;
+    }
+
+    public synchronized long count() {
+        return totalCount;
+    }
+
+    public synchronized long max() {
+        return max;
+    }
+
+    public synchronized long min() {
+        return totalCount == 0 ? 0 : min;
+    }
+
+    public synchronized double mean() {
+        return totalCount == 0 ? 0 : (double) sum / totalCount;
+    }
+
+    /**
+     * 百分位值，返回所在桶的上界（不超过实际最大值）
+     * @param percentile 0-100
+     */
+    public synchronized long percentile(double percentile) {
+        if (totalCount == 0) {
+            return 0;
+        }
+        double p = Math.max(0, Math.min(100, percentile));
+        long rank = Math.max(1, (long) Math.ceil(p / 100.0 * totalCount));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(highestEquivalentValue(i), max);
+            }
+        }
+        return max;
+    }
+
+    public synchronized void reset() {
+        java.util.Arrays.fill(counts, 0);
+        totalCount = 0;
+        sum = 0;
+        min = Long.MAX_VALUE;
+        max = 0;
+    }
+
+    /**
+     * 摘要：n / p50 / p90 / p99 / max
+     */
+    public synchronized String summary() {
+        if (totalCount == 0) {
+            return "n=0";
+        }
+        return "n=" + totalCount
+                + " p50=" + percentile(50)
+                + " p90=" + percentile(90)
+                + " p99=" + percentile(99)
+                + " max=" + max;
+    }
+
+    static int indexOf(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        int magnitude = 63 - Long.numberOfLeadingZeros(value);
+        int shift = magnitude - SUB_BUCKET_BITS;
+        int sub = (int) (value >>> shift) - SUB_BUCKET_COUNT;
+        return SUB_BUCKET_COUNT + shift * SUB_BUCKET_COUNT + sub;
+    }
+
+    static long highestEquivalentValue(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int shift = (index - SUB_BUCKET_COUNT) / SUB_BUCKET_COUNT;
+        int sub = (index - SUB_BUCKET_COUNT) % SUB_BUCKET_COUNT;
+        long low = (long) (SUB_BUCKET_COUNT + sub) << shift;
+        return low + (1L << shift) - 1;
+    }
+}
@@ -0,0 +1,271 @@
+package com.example.airplanecontrol.utils;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 操作日志存储：基于内存映射文件的定长环形缓冲区。
+ * 每条记录占用一个固定大小的槽位，追加为常数开销，写满后覆盖最旧记录，
+ * 磁盘与内存占用始终有上限。服务、助理会话与界面均可直接追加。
+ */
+public final class OperationLogStore {
+
+    private static final String TAG = "OperationLogStore";
+    private static final String FILE_NAME = "operation_log.ring";
+
+    private static final int MAGIC = 0x4f504c47; // "OPLG"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+    private static final int OFFSET_NEXT_SEQ = 16;
+
+    /** 槽位内部布局：时间戳(8) + 长度(2) + UTF-8 文本 */
+    private static final int SLOT_META_SIZE = 10;
+
+    public static final int DEFAULT_SLOT_SIZE = 256;
+    public static final int DEFAULT_SLOT_COUNT = 1024;
+
+    // 旧版本保存在 SharedPreferences 中的日志，首次打开时迁移
+    private static final String LEGACY_PREFS_NAME = "airplane_mode_prefs";
+    private static final String LEGACY_KEY_OPERATION_LOGS = "operation_logs";
+
+    private static volatile OperationLogStore instance;
+    // 用户解锁前凭据加密存储不可用，由 DirectBootStorage 按解锁状态设置
+    private static volatile boolean available = true;
+
+    private final int slotSize;
+    private final int slotCount;
+    private final MappedByteBuffer buffer;
+    private long nextSeq;
+
+    /**
+     * 单条日志记录
+     */
+    public static final class Entry {
+        /** 记录时间（毫秒），为 0 表示迁移自旧日志，时间已包含在文本中 */
+        public final long timestampMs;
+        public final String message;
+
+        Entry(long timestampMs, String message) {
+            this.timestampMs = timestampMs;
+            this.message = message;
+        }
+
+        @Override
+        public String toString() {
+            if (timestampMs == 0) {
+                return message;
+            }
+            String time = java.text.SimpleDateFormat.getDateTimeInstance().format(new java.util.Date(timestampMs));
+            return time + ": " + message;
+        }
+    }
+
+    /**
+     * 获取进程内共享的日志存储
+     */
+    public static OperationLogStore get(Context context) {
+        OperationLogStore local = instance;
+        if (local == null) {
+            synchronized (OperationLogStore.class) {
+                local = instance;
+                if (local == null) {
+                    Context app = context.getApplicationContext();
+                    try {
+                        local = new OperationLogStore(new File(app.getFilesDir(), FILE_NAME),
+                                DEFAULT_SLOT_SIZE, DEFAULT_SLOT_COUNT);
+                    } catch (IOException e) {
+                        throw new IllegalStateException("无法打开操作日志文件", e);
+                    }
+                    migrateLegacyLogs(app, local);
+                    instance = local;
+                }
+            }
+        }
+        return local;
+    }
+
+    /**
+     * 凭据加密存储是否可用；不可用时便捷方法只记录到 logcat
+     */
+    public static void setAvailable(boolean value) {
+        available = value;
+    }
+
+    /**
+     * 便捷方法：追加一条日志，失败时只记录错误不抛出
+     */
+    public static void append(Context context, String message) {
+        if (!available) {
+            // 解锁前无法访问凭据加密存储中的文件，只记录到 logcat
+            Log.d(TAG, "用户未解锁，跳过写入");
+            return;
+        }
+        try {
+            get(context).append(message);
+        } catch (Throwable t) {
+            Log.e(TAG, "追加操作日志失败", t);
+        }
+    }
+
+    public OperationLogStore(File file, int slotSize, int slotCount) throws IOException {
+        if (slotSize <= SLOT_META_SIZE || slotSize > SLOT_META_SIZE + 0xFFFF || slotCount <= 0) {
+            throw new IllegalArgumentException("slotSize/slotCount 非法: " + slotSize + "/" + slotCount);
+        }
+        this.slotSize = slotSize;
+        this.slotCount = slotCount;
+        long length = HEADER_SIZE + (long) slotSize * slotCount;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            boolean fresh = raf.length() != length;
+            if (fresh) {
+                raf.setLength(length);
+            }
+            // 映射在通道关闭后依然有效
+            buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, length);
+            if (fresh || !headerMatches()) {
+                initHeader();
+            }
+        }
+        nextSeq = buffer.getLong(OFFSET_NEXT_SEQ);
+    }
+
+    private boolean headerMatches() {
+        return buffer.getInt(0) == MAGIC
+                && buffer.getInt(4) == VERSION
+                && buffer.getInt(8) == slotSize
+                && buffer.getInt(12) == slotCount
+                && buffer.getLong(OFFSET_NEXT_SEQ) >= 0;
+    }
+
+    private void initHeader() {
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.putInt(8, slotSize);
+        buffer.putInt(12, slotCount);
+        buffer.putLong(OFFSET_NEXT_SEQ, 0L);
+    }
+
+    /**
+     * 追加一条日志（当前时间）
+     */
+    public void append(String message) {
+        append(System.currentTimeMillis(), message);
+    }
+
+    public synchronized void append(long timestampMs, String message) {
+        byte[] bytes = message.getBytes(StandardCharsets.UTF_8);
+        int len = utf8PrefixLength(bytes, slotSize - SLOT_META_SIZE);
+        int base = slotOffset(nextSeq);
+        buffer.putLong(base, timestampMs);
+        buffer.putShort(base + 8, (short) len);
+        for (int i = 0; i < len; i++) {
+            buffer.put(base + SLOT_META_SIZE + i, bytes[i]);
+        }
+        nextSeq++;
+        buffer.putLong(OFFSET_NEXT_SEQ, nextSeq);
+    }
+
+    /**
+     * 当前保存的记录数
+     */
+    public synchronized int size() {
+        return (int) Math.min(nextSeq, slotCount);
+    }
+
+    /**
+     * 分页读取，按时间倒序（最新在前）
+     * @param page 页码，从 0 开始
+     * @param pageSize 每页条数
+     */
+    public synchronized List<Entry> readPage(int page, int pageSize) {
+        int total = size();
+        int from = page * pageSize;
+        if (page < 0 || pageSize <= 0 || from >= total) {
+            return Collections.emptyList();
+        }
+        int to = Math.min(total, from + pageSize);
+        List<Entry> result = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            result.add(readSlot(nextSeq - 1 - i));
+        }
+        return result;
+    }
+
+    /**
+     * 清空所有记录（只重置写入序号，槽位内容会被后续写入覆盖）
+     */
+    public synchronized void clear() {
+        nextSeq = 0;
+        buffer.putLong(OFFSET_NEXT_SEQ, 0L);
+    }
+
+    private Entry readSlot(long seq) {
+        int base = slotOffset(seq);
+        long ts = buffer.getLong(base);
+        int len = Math.min(buffer.getShort(base + 8) & 0xFFFF, slotSize - SLOT_META_SIZE);
+        byte[] bytes = new byte[len];
+        for (int i = 0; i < len; i++) {
+            bytes[i] = buffer.get(base + SLOT_META_SIZE + i);
+        }
+        return new Entry(ts, new String(bytes, StandardCharsets.UTF_8));
+    }
+
+    private int slotOffset(long seq) {
+        return HEADER_SIZE + (int) (seq % slotCount) * slotSize;
+    }
+
+    /**
+     * 截断到不超过 max 字节，且不拆开多字节字符
+     */
+    private static int utf8PrefixLength(byte[] bytes, int max) {
+        if (bytes.length <= max) {
+            return bytes.length;
+        }
+        int len = max;
+        while (len > 0 && (bytes[len] & 0xC0) == 0x80) {
+            len--;
+        }
+        return len;
+    }
+
+    /**
+     * 将旧版 SharedPreferences 中的日志导入环形缓冲区并删除旧键
+     */
+    private static void migrateLegacyLogs(Context context, OperationLogStore store) {
+        SharedPreferences prefs = context.getSharedPreferences(LEGACY_PREFS_NAME, Context.MODE_PRIVATE);
+        String legacy = prefs.getString(LEGACY_KEY_OPERATION_LOGS, null);
+        if (legacy == null) {
+            return;
+        }
+        int count = importLegacy(store, legacy);
+        prefs.edit().remove(LEGACY_KEY_OPERATION_LOGS).apply();
+        Log.d(TAG, "已迁移旧操作日志 " + count + " 条");
+    }
+
+    /**
+     * 导入旧格式日志文本（每行一条，最新在前），跳过空行
+     * @return 导入的条数
+     */
+    static int importLegacy(OperationLogStore store, String legacy) {
+        // 倒序写入以保持时间顺序
+        String[] lines = legacy.split("\n");
+        int count = 0;
+        for (int i = lines.length - 1; i >= 0; i--) {
+            if (!lines[i].isEmpty()) {
+                store.append(0L, lines[i]);
+                count++;
+            }
+        }
+        return count;
+    }
+}
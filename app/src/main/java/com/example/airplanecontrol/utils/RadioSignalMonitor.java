@@ -0,0 +1,271 @@
+package com.example.airplanecontrol.utils;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+import android.net.NetworkRequest;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.telephony.PhoneStateListener;
+import android.telephony.ServiceState;
+import android.telephony.TelephonyCallback;
+import android.telephony.TelephonyManager;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+/**
+ * 周期阶段信号：射频状态（ServiceState）与蜂窝网络验证（NetworkCallback）。
+ * 每个等待都有上限超时，信号到达或超时时在主线程回调一次。
+ */
+public final class RadioSignalMonitor {
+
+    private static final String TAG = "RadioSignalMonitor";
+
+    private RadioSignalMonitor() {}
+
+    public interface Callback {
+        /**
+         * @param signalled true 表示等到了信号，false 表示到达上限超时
+         * @param elapsedMs 等待耗时
+         */
+        void onPhaseEnd(boolean signalled, long elapsedMs);
+    }
+
+    /**
+     * 一次进行中的等待，可取消
+     */
+    public abstract static class Wait {
+        private final Handler handler = new Handler(Looper.getMainLooper());
+        private final Callback callback;
+        private final long startMs = SystemClock.elapsedRealtime();
+        private boolean completed;
+
+        Wait(Callback callback) {
+            this.callback = callback;
+        }
+
+        final void arm(long ceilingMs) {
+            handler.postDelayed(() -> complete(false), ceilingMs);
+        }
+
+        /** 可在任意线程调用，统一切回主线程完成 */
+        final void signal() {
+            handler.post(() -> complete(true));
+        }
+
+        private void complete(boolean signalled) {
+            if (completed) return;
+            completed = true;
+            handler.removeCallbacksAndMessages(null);
+            unregister();
+            if (callback != null) {
+                callback.onPhaseEnd(signalled, SystemClock.elapsedRealtime() - startMs);
+            }
+        }
+
+        public final void cancel() {
+            if (completed) return;
+            completed = true;
+            handler.removeCallbacksAndMessages(null);
+            unregister();
+        }
+
+        abstract void unregister();
+    }
+
+    /**
+     * 保持阶段：自适应模式等待射频关闭（上限 holdCeilingMs），固定模式等待 fixedHoldMs
+     */
+    public static Wait awaitHoldPhase(Context context, CycleTiming timing, Callback callback) {
+        if (timing.adaptive) {
+            return awaitRadioPoweredOff(context, timing.holdCeilingMs, callback);
+        }
+        return delay(timing.fixedHoldMs, callback);
+    }
+
+    /**
+     * 恢复阶段：自适应模式等待蜂窝网络验证（上限 networkCeilingMs），固定模式立即结束
+     */
+    public static Wait awaitNetworkPhase(Context context, CycleTiming timing, Callback callback) {
+        if (timing.adaptive) {
+            return awaitCellularValidated(context, timing.networkCeilingMs, callback);
+        }
+        return delay(0, callback);
+    }
+
+    /**
+     * 单纯延时，回调中 signalled 恒为 false
+     */
+    public static Wait delay(long delayMs, Callback callback) {
+        Wait wait = new Wait(callback) {
+            @Override
+            void unregister() {}
+        };
+        wait.arm(delayMs);
+        return wait;
+    }
+
+    /**
+     * 等待电话服务报告射频已关闭（ServiceState.STATE_POWER_OFF）
+     */
+    public static Wait awaitRadioPoweredOff(Context context, long ceilingMs, Callback callback) {
+        return awaitServiceState(context, ServiceState.STATE_POWER_OFF, ceilingMs, callback);
+    }
+
+    /**
+     * 等待电话服务报告重新在网（ServiceState.STATE_IN_SERVICE）
+     */
+    public static Wait awaitRadioInService(Context context, long ceilingMs, Callback callback) {
+        return awaitServiceState(context, ServiceState.STATE_IN_SERVICE, ceilingMs, callback);
+    }
+
+    private static Wait awaitServiceState(Context context, int targetState, long ceilingMs, Callback callback) {
+        TelephonyManager tm = (TelephonyManager) context.getApplicationContext().getSystemService(Context.TELEPHONY_SERVICE);
+        if (tm == null) {
+            Log.w(TAG, "无 TelephonyManager，仅按上限等待");
+            return delay(ceilingMs, callback);
+        }
+        Wait wait;
+        try {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S) {
+                wait = ServiceStateWaitS.register(context, tm, targetState, callback);
+            } else {
+                wait = ServiceStateWaitLegacy.register(tm, targetState, callback);
+            }
+        } catch (Throwable t) {
+            Log.w(TAG, "注册射频状态监听失败，仅按上限等待", t);
+            return delay(ceilingMs, callback);
+        }
+        wait.arm(ceilingMs);
+        return wait;
+    }
+
+    private static final class ServiceStateWaitS extends Wait {
+        private final TelephonyManager tm;
+        private TelephonyCallback telephonyCallback;
+
+        private ServiceStateWaitS(TelephonyManager tm, Callback callback) {
+            super(callback);
+            this.tm = tm;
+        }
+
+        static Wait register(Context context, TelephonyManager tm, int targetState, Callback callback) {
+            ServiceStateWaitS wait = new ServiceStateWaitS(tm, callback);
+            wait.telephonyCallback = new ServiceStateCallback(wait, targetState);
+            tm.registerTelephonyCallback(context.getMainExecutor(), wait.telephonyCallback);
+            return wait;
+        }
+
+        @Override
+        void unregister() {
+            try {
+                tm.unregisterTelephonyCallback(telephonyCallback);
+            } catch (Throwable t) {
+                Log.w(TAG, "注销 TelephonyCallback 失败", t);
+            }
+        }
+    }
+
+    private static final class ServiceStateCallback extends TelephonyCallback
+            implements TelephonyCallback.ServiceStateListener {
+        private final Wait wait;
+        private final int targetState;
+
+        ServiceStateCallback(Wait wait, int targetState) {
+            this.wait = wait;
+            this.targetState = targetState;
+        }
+
+        @Override
+        public void onServiceStateChanged(@NonNull ServiceState serviceState) {
+            Log.d(TAG, "ServiceState: " + serviceState.getState());
+            if (serviceState.getState() == targetState) {
+                wait.signal();
+            }
+        }
+    }
+
+    @SuppressWarnings("deprecation")
+    private static final class ServiceStateWaitLegacy extends Wait {
+        private final TelephonyManager tm;
+        private PhoneStateListener listener;
+
+        private ServiceStateWaitLegacy(TelephonyManager tm, Callback callback) {
+            super(callback);
+            this.tm = tm;
+        }
+
+        static Wait register(TelephonyManager tm, int targetState, Callback callback) {
+            ServiceStateWaitLegacy wait = new ServiceStateWaitLegacy(tm, callback);
+            // PhoneStateListener 需要在有 Looper 的线程创建，调用方均在主线程
+            wait.listener = new PhoneStateListener() {
+                @Override
+                public void onServiceStateChanged(ServiceState serviceState) {
+                    Log.d(TAG, "ServiceState: " + serviceState.getState());
+                    if (serviceState.getState() == targetState) {
+                        wait.signal();
+                    }
+                }
+            };
+            tm.listen(wait.listener, PhoneStateListener.LISTEN_SERVICE_STATE);
+            return wait;
+        }
+
+        @Override
+        void unregister() {
+            try {
+                tm.listen(listener, PhoneStateListener.LISTEN_NONE);
+            } catch (Throwable t) {
+                Log.w(TAG, "注销 PhoneStateListener 失败", t);
+            }
+        }
+    }
+
+    /**
+     * 等待出现通过验证的蜂窝网络（NET_CAPABILITY_VALIDATED）
+     */
+    public static Wait awaitCellularValidated(Context context, long ceilingMs, Callback callback) {
+        ConnectivityManager cm = (ConnectivityManager) context.getApplicationContext().getSystemService(Context.CONNECTIVITY_SERVICE);
+        if (cm == null) {
+            Log.w(TAG, "无 ConnectivityManager，仅按上限等待");
+            return delay(ceilingMs, callback);
+        }
+        final ConnectivityManager.NetworkCallback[] holder = new ConnectivityManager.NetworkCallback[1];
+        Wait wait = new Wait(callback) {
+            @Override
+            void unregister() {
+                try {
+                    if (holder[0] != null) cm.unregisterNetworkCallback(holder[0]);
+                } catch (Throwable t) {
+                    Log.w(TAG, "注销 NetworkCallback 失败", t);
+                }
+            }
+        };
+        holder[0] = new ConnectivityManager.NetworkCallback() {
+            @Override
+            public void onCapabilitiesChanged(@NonNull Network network, @NonNull NetworkCapabilities caps) {
+                if (caps.hasTransport(NetworkCapabilities.TRANSPORT_CELLULAR)
+                        && caps.hasCapability(NetworkCapabilities.NET_CAPABILITY_VALIDATED)) {
+                    Log.d(TAG, "蜂窝网络已验证: " + network);
+                    wait.signal();
+                }
+            }
+        };
+        try {
+            NetworkRequest request = new NetworkRequest.Builder()
+                    .addTransportType(NetworkCapabilities.TRANSPORT_CELLULAR)
+                    .addCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET)
+                    .build();
+            cm.registerNetworkCallback(request, holder[0]);
+        } catch (Throwable t) {
+            Log.w(TAG, "注册 NetworkCallback 失败，仅按上限等待", t);
+            holder[0] = null;
+        }
+        wait.arm(ceilingMs);
+        return wait;
+    }
+}
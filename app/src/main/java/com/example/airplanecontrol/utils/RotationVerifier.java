@@ -0,0 +1,320 @@
+package com.example.airplanecontrol.utils;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.net.ConnectivityManager;
+import android.net.LinkAddress;
+import android.net.LinkProperties;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+import android.net.NetworkRequest;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import java.net.InetAddress;
+import java.net.NetworkInterface;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 周期后的蜂窝地址轮换校验。
+ * 周期开始前记录蜂窝网络的地址快照，关闭飞行模式后监听蜂窝网络的 LinkProperties 变化，
+ * 新地址一分配即判定为已轮换，不做轮询；到达上限仍未出现新地址时判定为未轮换（地址未变或没有蜂窝地址）。
+ */
+public final class RotationVerifier {
+
+    private static final String TAG = "RotationVerifier";
+
+    public static final String KEY_RETRY_BUDGET = "rotation_retry_budget";
+    public static final String KEY_VERIFY_CEILING_MS = "rotation_verify_ceiling_ms";
+    public static final int DEFAULT_RETRY_BUDGET = 1;
+    public static final int MAX_RETRY_BUDGET = 5;
+    public static final long DEFAULT_VERIFY_CEILING_MS = 30000L;
+    /** 最近使用网段的保留时长 */
+    public static final long RANGE_RETENTION_MS = 3_600_000L;
+
+    /** 没有 LinkProperties 时按接口名识别蜂窝接口 */
+    private static final String[] CELLULAR_INTERFACE_PREFIXES = {"rmnet", "ccmni", "pdp", "v4-rmnet", "seth", "wwan"};
+
+    public enum Verdict {
+        /** 出现了与周期前完全不同的地址 */
+        ROTATED,
+        /** 仍为周期前的地址 */
+        UNCHANGED,
+        /** 没有蜂窝地址（未恢复连接） */
+        NO_ADDRESS
+    }
+
+    public interface Callback {
+        void onVerdict(Verdict verdict, Set<String> before, Set<String> after, long elapsedMs);
+    }
+
+    private static final int[] COUNTS = new int[Verdict.values().length];
+    private static int retries;
+    // 最近使用过的网段（IPv4 /24、IPv6 /64）及最后出现时间
+    private static final Map<String, Long> RECENT_RANGES = new HashMap<>();
+    // 已注册的蜂窝网络回调报告的网络及其最新 LinkProperties（回调在 ConnectivityThread 上更新）
+    private static final Map<Network, LinkProperties> CELLULAR_NETWORKS = new ConcurrentHashMap<>();
+    private static volatile boolean trackingCellular;
+
+    private RotationVerifier() {}
+
+    /**
+     * 当前所有蜂窝网络的地址（不含链路本地地址）
+     */
+    public static Set<String> snapshot(Context context) {
+        Set<String> addresses = new HashSet<>();
+        ConnectivityManager cm = (ConnectivityManager) context.getApplicationContext().getSystemService(Context.CONNECTIVITY_SERVICE);
+        if (cm != null) {
+            trackCellular(cm);
+            for (LinkProperties lp : CELLULAR_NETWORKS.values()) {
+                collect(lp, addresses);
+            }
+        }
+        if (addresses.isEmpty()) {
+            // 回调尚未报告（首次调用）或没有蜂窝网络时按接口名读取
+            collectFromInterfaces(addresses);
+        }
+        return addresses;
+    }
+
+    /**
+     * 首次调用时注册进程内常驻的蜂窝网络回调，之后快照直接读取回调报告的 LinkProperties
+     */
+    private static void trackCellular(ConnectivityManager cm) {
+        if (trackingCellular) return;
+        synchronized (CELLULAR_NETWORKS) {
+            if (trackingCellular) return;
+            try {
+                NetworkRequest request = new NetworkRequest.Builder()
+                        .addTransportType(NetworkCapabilities.TRANSPORT_CELLULAR)
+                        .build();
+                cm.registerNetworkCallback(request, new ConnectivityManager.NetworkCallback() {
+                    @Override
+                    public void onLinkPropertiesChanged(@NonNull Network network, @NonNull LinkProperties lp) {
+                        CELLULAR_NETWORKS.put(network, lp);
+                    }
+
+                    @Override
+                    public void onLost(@NonNull Network network) {
+                        CELLULAR_NETWORKS.remove(network);
+                    }
+                });
+                trackingCellular = true;
+            } catch (Throwable t) {
+                Log.w(TAG, "注册蜂窝网络回调失败，快照按接口名读取", t);
+            }
+        }
+    }
+
+    private static void collect(LinkProperties lp, Set<String> out) {
+        if (lp == null) return;
+        for (LinkAddress la : lp.getLinkAddresses()) {
+            InetAddress address = la.getAddress();
+            if (isRoutable(address)) {
+                out.add(address.getHostAddress());
+            }
+        }
+    }
+
+    private static void collectFromInterfaces(Set<String> out) {
+        try {
+            Enumeration<NetworkInterface> interfaces = NetworkInterface.getNetworkInterfaces();
+            if (interfaces == null) return;
+            for (NetworkInterface ni : Collections.list(interfaces)) {
+                if (!ni.isUp() || !isCellularInterface(ni.getName())) continue;
+                for (InetAddress address : Collections.list(ni.getInetAddresses())) {
+                    if (isRoutable(address)) {
+                        out.add(address.getHostAddress());
+                    }
+                }
+            }
+        } catch (Throwable t) {
+            Log.w(TAG, "枚举网络接口失败", t);
+        }
+    }
+
+    private static boolean isCellularInterface(String name) {
+        if (name == null) return false;
+        for (String prefix : CELLULAR_INTERFACE_PREFIXES) {
+            if (name.startsWith(prefix)) return true;
+        }
+        return false;
+    }
+
+    private static boolean isRoutable(InetAddress address) {
+        return address != null && !address.isLoopbackAddress() && !address.isLinkLocalAddress()
+                && !address.isAnyLocalAddress();
+    }
+
+    /**
+     * 判定：地址全部不同才算轮换（IPv6 临时地址单独变化不算）
+     */
+    public static Verdict classify(Set<String> before, Set<String> after) {
+        if (after.isEmpty()) {
+            return Verdict.NO_ADDRESS;
+        }
+        for (String address : after) {
+            if (before.contains(address)) {
+                return Verdict.UNCHANGED;
+            }
+        }
+        return Verdict.ROTATED;
+    }
+
+    /**
+     * 等待蜂窝网络出现新地址，出现即回调 ROTATED，到达上限时按当时的快照判定
+     */
+    public static RadioSignalMonitor.Wait awaitRotation(Context context, final Set<String> before, long ceilingMs,
+                                                        final Callback callback) {
+        final Context app = context.getApplicationContext();
+        final ConnectivityManager cm = (ConnectivityManager) app.getSystemService(Context.CONNECTIVITY_SERVICE);
+        final ConnectivityManager.NetworkCallback[] holder = new ConnectivityManager.NetworkCallback[1];
+        RadioSignalMonitor.Callback onEnd = (signalled, elapsedMs) -> {
+            Set<String> after = snapshot(app);
+            Verdict verdict = classify(before, after);
+            Log.d(TAG, "地址校验: " + verdict + ", before=" + before + ", after=" + after + ", " + elapsedMs + "ms");
+            callback.onVerdict(verdict, before, after, elapsedMs);
+        };
+        final RadioSignalMonitor.Wait wait = new RadioSignalMonitor.Wait(onEnd) {
+            @Override
+            void unregister() {
+                try {
+                    if (cm != null && holder[0] != null) cm.unregisterNetworkCallback(holder[0]);
+                } catch (Throwable t) {
+                    Log.w(TAG, "注销 NetworkCallback 失败", t);
+                }
+            }
+        };
+        if (cm != null) {
+            holder[0] = new ConnectivityManager.NetworkCallback() {
+                @Override
+                public void onLinkPropertiesChanged(@NonNull Network network, @NonNull LinkProperties lp) {
+                    Set<String> current = new HashSet<>();
+                    collect(lp, current);
+                    if (classify(before, current) == Verdict.ROTATED) {
+                        Log.d(TAG, "蜂窝网络分配了新地址: " + current);
+                        wait.signal();
+                    }
+                }
+            };
+            try {
+                NetworkRequest request = new NetworkRequest.Builder()
+                        .addTransportType(NetworkCapabilities.TRANSPORT_CELLULAR)
+                        .build();
+                cm.registerNetworkCallback(request, holder[0]);
+            } catch (Throwable t) {
+                Log.w(TAG, "注册 NetworkCallback 失败，仅在上限时判定", t);
+                holder[0] = null;
+            }
+        }
+        wait.arm(ceilingMs);
+        return wait;
+    }
+
+    public static int retryBudget(Context context) {
+        return retryBudget(DirectBootStorage.prefs(context));
+    }
+
+    public static int retryBudget(SharedPreferences prefs) {
+        int budget = prefs.getInt(KEY_RETRY_BUDGET, DEFAULT_RETRY_BUDGET);
+        return Math.max(0, Math.min(MAX_RETRY_BUDGET, budget));
+    }
+
+    public static void setRetryBudget(Context context, int budget) {
+        DirectBootStorage.prefs(context)
+                .edit().putInt(KEY_RETRY_BUDGET, Math.max(0, Math.min(MAX_RETRY_BUDGET, budget))).apply();
+    }
+
+    public static long verifyCeilingMs(Context context) {
+        return DirectBootStorage.prefs(context)
+                .getLong(KEY_VERIFY_CEILING_MS, DEFAULT_VERIFY_CEILING_MS);
+    }
+
+    /**
+     * 统计一次判定并记入本次地址的网段；retried 表示因此发起了重试周期。只在主线程调用
+     */
+    public static void record(Verdict verdict, boolean retried, Set<String> after) {
+        COUNTS[verdict.ordinal()]++;
+        if (retried) {
+            retries++;
+        }
+        noteInUse(after);
+    }
+
+    /**
+     * 地址所在网段：IPv4 取 /24，IPv6 取 /64
+     */
+    public static String rangeOf(String address) {
+        if (address.indexOf(':') < 0) {
+            int dot = address.lastIndexOf('.');
+            return dot > 0 ? address.substring(0, dot) + ".0/24" : address;
+        }
+        try {
+            byte[] bytes = InetAddress.getByName(address).getAddress();
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < 8; i += 2) {
+                sb.append(Integer.toHexString(((bytes[i] & 0xFF) << 8) | (bytes[i + 1] & 0xFF))).append(':');
+            }
+            return sb.append(":/64").toString();
+        } catch (Exception e) {
+            return address;
+        }
+    }
+
+    /**
+     * 是否有地址落在 windowMs 内未使用过的网段
+     */
+    public static boolean hasUnusedRange(Set<String> addresses, long windowMs) {
+        return hasUnusedRange(addresses, windowMs, SystemClock.elapsedRealtime());
+    }
+
+    static boolean hasUnusedRange(Set<String> addresses, long windowMs, long nowMs) {
+        long cutoff = nowMs - windowMs;
+        for (String address : addresses) {
+            Long lastSeen = RECENT_RANGES.get(rangeOf(address));
+            if (lastSeen == null || lastSeen < cutoff) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 记入周期前的地址（开始连发前调用，保证当前网段算作已使用）
+     */
+    public static void noteInUse(Set<String> addresses) {
+        noteInUse(addresses, SystemClock.elapsedRealtime());
+    }
+
+    static void noteInUse(Set<String> addresses, long now) {
+        for (String address : addresses) {
+            RECENT_RANGES.put(rangeOf(address), now);
+        }
+        RECENT_RANGES.values().removeIf(lastSeen -> lastSeen < now - RANGE_RETENTION_MS);
+    }
+
+    public static void reset() {
+        java.util.Arrays.fill(COUNTS, 0);
+        retries = 0;
+    }
+
+    /**
+     * 轮换校验统计
+     */
+    public static String report() {
+        StringBuilder sb = new StringBuilder("Address rotation\n  ");
+        for (Verdict v : Verdict.values()) {
+            sb.append(v).append('=').append(COUNTS[v.ordinal()]).append(", ");
+        }
+        sb.append("retries=").append(retries).append('\n');
+        return sb.toString();
+    }
+}
@@ -0,0 +1,502 @@
+package com.example.airplanecontrol.utils;
+
+import android.content.Context;
+import android.database.ContentObserver;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.provider.Settings;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 开启→保持→关闭 周期的状态机，两种控制方式（WSS / 数字助理）共用。
+ * 状态：IDLE → ENABLING → HELD → DISABLING → RECOVERING → DONE，任一阶段失败进入 FAILED，取消进入 CANCELLED。
+ * 每个状态都有超时；每次状态切换都会作废上一状态的回调与定时器，迟到的回调不会再推动状态。
+ * 同一时刻只允许一个周期处于开/关阶段（ENABLING / HELD / DISABLING），不会出现重叠的定时器或重复切换。
+ * 周期从开始到结束持有 {@link CycleWakeLock}，熄屏休眠不会拉长保持阶段。
+ * 所有方法与回调都在主线程执行。
+ */
+public final class ToggleCycle {
+
+    private static final String TAG = "ToggleCycle";
+
+    /** 开启 / 关闭请求等待确认的上限（WSS 的确认超时之外再留出余量） */
+    public static final long STEP_TIMEOUT_MS = AirplaneModeUtils.DEFAULT_CONFIRM_TIMEOUT_MS + 3000L;
+    /** 保持 / 恢复阶段在自身等待上限之外的余量 */
+    private static final long PHASE_GRACE_MS = 1000L;
+
+    public enum State {
+        IDLE, ENABLING, HELD, DISABLING, RECOVERING, DONE, FAILED, CANCELLED;
+
+        public boolean isTerminal() {
+            return this == DONE || this == FAILED || this == CANCELLED;
+        }
+
+        /** 开/关阶段：飞行模式可能处于开启状态，此时不允许开始新周期 */
+        public boolean isOnOffPhase() {
+            return this == ENABLING || this == HELD || this == DISABLING;
+        }
+    }
+
+    /**
+     * 发出开启 / 关闭请求的执行器
+     */
+    public interface Actuator {
+        /**
+         * 请求切换到目标状态，完成（确认或失败）时回调一次
+         * @param trace 周期追踪，可为 null
+         */
+        void request(boolean enable, CycleMetrics.Trace trace, Completion completion);
+
+        /** 放弃进行中的请求，不再回调 */
+        void cancel();
+    }
+
+    public interface Completion {
+        /**
+         * @param ok false 表示请求失败，周期将进入 FAILED
+         * @param detail 结果描述（用于日志）
+         */
+        void onComplete(boolean ok, String detail);
+    }
+
+    public interface Listener {
+        void onStateChanged(ToggleCycle cycle, State state);
+    }
+
+    private static ToggleCycle active;
+    private static final List<Listener> OBSERVERS = new ArrayList<>();
+
+    private final Context context;
+    private final CycleMetrics.Path path;
+    private final CycleTiming timing;
+    private final Actuator actuator;
+    private final Listener listener;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final long[] stateDurations = new long[State.values().length];
+
+    private State state = State.IDLE;
+    private long stateEnteredMs;
+    private long startMs;
+    private long startWallMs;
+    // 每次状态切换递增，回调与定时器只在所属状态仍有效时生效
+    private int epoch;
+    private CycleMetrics.Trace trace;
+    private RadioSignalMonitor.Wait wait;
+    private boolean radioOff;
+    private boolean networkValidated;
+    private String failure;
+    private long wakeLockMs = -1L;
+    private long traceId;
+
+    private ToggleCycle(Context context, CycleMetrics.Path path, CycleTiming timing,
+                        Actuator actuator, Listener listener) {
+        this.context = context.getApplicationContext();
+        this.path = path;
+        this.timing = timing;
+        this.actuator = actuator;
+        this.listener = listener;
+        java.util.Arrays.fill(stateDurations, -1L);
+    }
+
+    /**
+     * 开始一个周期。已有周期处于开/关阶段时拒绝并返回 null；
+     * 上一个周期只剩恢复阶段时将其结束后开始新周期。
+     * @param listener 本周期的状态回调，可为 null
+     */
+    public static ToggleCycle start(Context context, CycleMetrics.Path path, CycleTiming timing,
+                                    Actuator actuator, Listener listener) {
+        if (active != null && !active.state.isTerminal()) {
+            if (active.state.isOnOffPhase()) {
+                Log.w(TAG, "已有周期处于 " + active.state + "，拒绝开始新周期");
+                return null;
+            }
+            active.finish(State.DONE, null);
+        }
+        ToggleCycle cycle = new ToggleCycle(context, path, timing, actuator, listener);
+        active = cycle;
+        cycle.begin();
+        return cycle;
+    }
+
+    /**
+     * 当前周期（含已结束的最后一个），可能为 null
+     */
+    public static ToggleCycle current() {
+        return active;
+    }
+
+    /**
+     * 是否有周期处于开/关阶段
+     */
+    public static boolean isBusy() {
+        return active != null && active.state.isOnOffPhase();
+    }
+
+    /**
+     * 观察所有周期的状态变化（例如调度器据此决定何时开始下一个周期）
+     */
+    public static void addObserver(Listener observer) {
+        if (!OBSERVERS.contains(observer)) {
+            OBSERVERS.add(observer);
+        }
+    }
+
+    public static void removeObserver(Listener observer) {
+        OBSERVERS.remove(observer);
+    }
+
+    public State state() {
+        return state;
+    }
+
+    public CycleMetrics.Path path() {
+        return path;
+    }
+
+    public CycleMetrics.Trace trace() {
+        return trace;
+    }
+
+    /**
+     * 某状态的停留时长，未经历为 -1
+     */
+    public long durationOf(State s) {
+        return stateDurations[s.ordinal()];
+    }
+
+    /**
+     * 从开始到当前（或结束）的总耗时
+     */
+    public long elapsedMs() {
+        return SystemClock.elapsedRealtime() - startMs;
+    }
+
+    /**
+     * 取消周期。飞行模式可能已开启（ENABLING / HELD）时尽力恢复关闭，不等待确认。
+     */
+    public void cancel(String reason) {
+        if (state.isTerminal()) return;
+        Log.d(TAG, "取消周期(" + state + "): " + reason);
+        finishAndRestore(State.CANCELLED, reason);
+    }
+
+    private void finishAndRestore(State terminal, String reason) {
+        boolean restore = state == State.ENABLING || state == State.HELD;
+        finish(terminal, reason);
+        if (restore) {
+            try {
+                actuator.request(false, null, (ok, detail) -> Log.d(TAG, "取消后恢复关闭: " + detail));
+            } catch (Throwable t) {
+                Log.w(TAG, "取消后恢复关闭失败", t);
+            }
+        }
+    }
+
+    private void begin() {
+        startMs = SystemClock.elapsedRealtime();
+        startWallMs = System.currentTimeMillis();
+        stateEnteredMs = startMs;
+        CycleWakeLock.acquireForCycle(context, maxSpanMs());
+        traceId = Tracer.beginCycle(path.ordinal());
+        trace = CycleMetrics.begin(context, path);
+        if (Tracer.isVerbose()) {
+            Log.d(TAG, path + " 周期开始, timing=" + timing);
+        }
+        enter(State.ENABLING);
+    }
+
+    /**
+     * 各状态超时之和：周期最长跨度，作为唤醒锁与飞行模式看门狗截止时间的上限
+     */
+    public long maxSpanMs() {
+        return 2 * STEP_TIMEOUT_MS + Math.max(timing.fixedHoldMs, timing.holdCeilingMs)
+                + (timing.adaptive ? timing.networkCeilingMs : 0) + 3 * PHASE_GRACE_MS;
+    }
+
+    private void enter(State next) {
+        if (state.isTerminal()) return;
+        leaveState();
+        state = next;
+        final int token = ++epoch;
+        Tracer.cycleState(traceId, next.name(), next.ordinal());
+        if (Tracer.isVerbose()) {
+            Log.d(TAG, path + " -> " + next);
+        }
+        notifyState();
+        switch (next) {
+            case ENABLING:
+                armTimeout(token, STEP_TIMEOUT_MS);
+                request(token, true);
+                break;
+            case HELD:
+                armTimeout(token, Math.max(timing.fixedHoldMs, timing.holdCeilingMs) + PHASE_GRACE_MS);
+                wait = RadioSignalMonitor.awaitHoldPhase(context, timing, (signalled, ms) -> {
+                    if (token != epoch) return;
+                    radioOff = signalled;
+                    enter(State.DISABLING);
+                });
+                break;
+            case DISABLING:
+                armTimeout(token, STEP_TIMEOUT_MS);
+                request(token, false);
+                break;
+            case RECOVERING:
+                armTimeout(token, (timing.adaptive ? timing.networkCeilingMs : 0) + PHASE_GRACE_MS);
+                wait = RadioSignalMonitor.awaitNetworkPhase(context, timing, (signalled, ms) -> {
+                    if (token != epoch) return;
+                    networkValidated = signalled;
+                    finish(State.DONE, null);
+                });
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void request(final int token, final boolean enable) {
+        try {
+            actuator.request(enable, trace, (ok, detail) -> {
+                if (token != epoch) return;
+                if (Tracer.isVerbose()) {
+                    Log.d(TAG, path + " " + (enable ? "开启" : "关闭") + "结果: " + detail);
+                }
+                if (!ok) {
+                    finish(State.FAILED, (enable ? "开启失败: " : "关闭失败: ") + detail);
+                } else {
+                    enter(enable ? State.HELD : State.RECOVERING);
+                }
+            });
+        } catch (Throwable t) {
+            Log.e(TAG, "发出切换请求失败", t);
+            if (token == epoch) {
+                finish(State.FAILED, "请求异常: " + t.getMessage());
+            }
+        }
+    }
+
+    private void armTimeout(final int token, long timeoutMs) {
+        handler.postDelayed(() -> {
+            if (token != epoch) return;
+            onStateTimeout();
+        }, timeoutMs);
+    }
+
+    private void onStateTimeout() {
+        Log.w(TAG, path + " 状态超时: " + state);
+        switch (state) {
+            case ENABLING:
+                // 开启请求可能稍后才生效，尽力恢复关闭
+                finishAndRestore(State.FAILED, "开启超时");
+                break;
+            case HELD:
+                enter(State.DISABLING);
+                break;
+            case DISABLING:
+                finish(State.FAILED, "关闭超时");
+                break;
+            case RECOVERING:
+                finish(State.DONE, null);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void leaveState() {
+        long now = SystemClock.elapsedRealtime();
+        if (state != State.IDLE) {
+            stateDurations[state.ordinal()] = now - stateEnteredMs;
+        }
+        stateEnteredMs = now;
+        handler.removeCallbacksAndMessages(null);
+        if (wait != null) {
+            wait.cancel();
+            wait = null;
+        }
+    }
+
+    private void finish(State terminal, String reason) {
+        if (state.isTerminal()) return;
+        if (state == State.ENABLING || state == State.DISABLING) {
+            actuator.cancel();
+        }
+        leaveState();
+        epoch++;
+        state = terminal;
+        failure = reason;
+        wakeLockMs = CycleWakeLock.releaseForCycle();
+        Tracer.endCycle(traceId, terminal.ordinal());
+        Log.d(TAG, summary());
+        CycleHistoryStore.append(context, historyRecord());
+        notifyState();
+    }
+
+    private CycleHistoryStore.Record historyRecord() {
+        CycleHistoryStore.Outcome outcome = state == State.DONE ? CycleHistoryStore.Outcome.DONE
+                : state == State.CANCELLED ? CycleHistoryStore.Outcome.CANCELLED : CycleHistoryStore.Outcome.FAILED;
+        return new CycleHistoryStore.Record(startWallMs, path == CycleMetrics.Path.WSS, timing.adaptive, outcome,
+                trace != null ? trace.retries() : 0, (int) elapsedMs(),
+                (int) durationOf(State.ENABLING), (int) durationOf(State.HELD),
+                (int) durationOf(State.DISABLING), (int) durationOf(State.RECOVERING),
+                radioOff, networkValidated);
+    }
+
+    private void notifyState() {
+        if (listener != null) {
+            try {
+                listener.onStateChanged(this, state);
+            } catch (Throwable t) {
+                Log.e(TAG, "周期回调执行失败", t);
+            }
+        }
+        for (Listener observer : new ArrayList<>(OBSERVERS)) {
+            try {
+                observer.onStateChanged(this, state);
+            } catch (Throwable t) {
+                Log.e(TAG, "周期观察者执行失败", t);
+            }
+        }
+    }
+
+    /**
+     * 周期摘要：各状态耗时与结果
+     */
+    public String summary() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(path == CycleMetrics.Path.WSS ? "Secure" : "助理").append("周期");
+        switch (state) {
+            case DONE: sb.append("完成"); break;
+            case FAILED: sb.append("失败"); break;
+            case CANCELLED: sb.append("已取消"); break;
+            default: sb.append(state); break;
+        }
+        if (failure != null) {
+            sb.append("(").append(failure).append(")");
+        }
+        appendDuration(sb, "开启", State.ENABLING);
+        appendDuration(sb, "保持", State.HELD);
+        if (timing.adaptive && durationOf(State.HELD) >= 0) {
+            sb.append(radioOff ? "(射频关闭)" : "(达到上限)");
+        }
+        appendDuration(sb, "关闭", State.DISABLING);
+        if (timing.adaptive && durationOf(State.RECOVERING) >= 0) {
+            sb.append(", 网络").append(networkValidated ? "已恢复" : "未恢复")
+                    .append("=").append(durationOf(State.RECOVERING)).append("ms");
+        }
+        sb.append(", 总计=").append(elapsedMs()).append("ms");
+        if (wakeLockMs >= 0) {
+            sb.append(", 唤醒锁=").append(wakeLockMs).append("ms");
+        }
+        return sb.toString();
+    }
+
+    private void appendDuration(StringBuilder sb, String label, State s) {
+        long d = durationOf(s);
+        if (d >= 0) {
+            sb.append(", ").append(label).append("=").append(d).append("ms");
+        }
+    }
+
+    /**
+     * WRITE_SECURE_SETTINGS 执行器：写入设置并发送广播，由 {@link AirplaneModeToggle} 确认（含一次重试）
+     */
+    public static Actuator secureActuator(Context context) {
+        final Context app = context.getApplicationContext();
+        return new Actuator() {
+            private AirplaneModeToggle toggle;
+
+            @Override
+            public void request(boolean enable, CycleMetrics.Trace trace, Completion completion) {
+                toggle = AirplaneModeUtils.setAirplaneModeAsync(app, enable,
+                        AirplaneModeUtils.DEFAULT_CONFIRM_TIMEOUT_MS, trace,
+                        result -> {
+                            if (trace != null && result.attempts > 1) {
+                                trace.addRetries(result.attempts - 1);
+                            }
+                            // 超时未确认也算失败：周期进入 FAILED，看门狗不会把未生效的关闭当作已恢复
+                            completion.onComplete(result.isConfirmed(), result.toString());
+                        });
+            }
+
+            @Override
+            public void cancel() {
+                if (toggle != null) {
+                    toggle.cancel();
+                    toggle = null;
+                }
+            }
+        };
+    }
+
+    /**
+     * 通过外部发送者（数字助理）切换、以 AIRPLANE_MODE_ON 变化确认的执行器。
+     * 已处于目标状态时直接确认，不再发送请求；发送者报告请求未送达时立即以失败结束，不必等到步骤超时。
+     */
+    public static final class ObservedActuator implements Actuator {
+
+        public interface Sender {
+            /**
+             * @param delivered 请求已发出（ok=true）或确定无法送达（ok=false）时回调
+             */
+            void send(boolean enable, Completion delivered);
+        }
+
+        private final Context context;
+        private final Sender sender;
+        private final Handler handler = new Handler(Looper.getMainLooper());
+        private ContentObserver observer;
+
+        public ObservedActuator(Context context, Sender sender) {
+            this.context = context.getApplicationContext();
+            this.sender = sender;
+        }
+
+        @Override
+        public void request(final boolean enable, CycleMetrics.Trace trace, final Completion completion) {
+            cancel();
+            if (AirplaneModeUtils.isAirplaneModeOn(context) == enable) {
+                completion.onComplete(true, "已处于目标状态: " + enable);
+                return;
+            }
+            final long startMs = SystemClock.elapsedRealtime();
+            observer = new ContentObserver(handler) {
+                @Override
+                public void onChange(boolean selfChange) {
+                    if (observer != this) return;
+                    if (AirplaneModeUtils.isAirplaneModeOn(context) == enable) {
+                        cancel();
+                        completion.onComplete(true, "已确认 " + enable + ", "
+                                + (SystemClock.elapsedRealtime() - startMs) + "ms");
+                    }
+                }
+            };
+            try {
+                context.getContentResolver().registerContentObserver(
+                        Settings.Global.getUriFor(Settings.Global.AIRPLANE_MODE_ON), false, observer);
+            } catch (Throwable t) {
+                Log.w(TAG, "注册飞行模式监听失败，只能等待状态超时", t);
+            }
+            final ContentObserver pending = observer;
+            sender.send(enable, (ok, detail) -> {
+                if (ok || observer != pending || pending == null) return;
+                cancel();
+                completion.onComplete(false, "请求未送达: " + detail);
+            });
+        }
+
+        @Override
+        public void cancel() {
+            if (observer == null) return;
+            try {
+                context.getContentResolver().unregisterContentObserver(observer);
+            } catch (Throwable t) {
+                Log.w(TAG, "注销飞行模式监听失败", t);
+            }
+            observer = null;
+        }
+    }
+}
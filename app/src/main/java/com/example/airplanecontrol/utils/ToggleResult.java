@@ -0,0 +1,47 @@
+package com.example.airplanecontrol.utils;
+
+/**
+ * 一次飞行模式切换的结构化结果
+ */
+public final class ToggleResult {
+
+    public enum Status {
+        /** 首次写入后即确认到目标状态 */
+        CONFIRMED,
+        /** 重试后确认到目标状态 */
+        RETRIED,
+        /** 超时仍未确认 */
+        TIMED_OUT,
+        /** 写入失败（无权限或异常） */
+        FAILED
+    }
+
+    public final boolean target;
+    public final Status status;
+    /** 从发起写入到得出结果的耗时 */
+    public final long elapsedMs;
+    /** 写入次数（含首次） */
+    public final int attempts;
+    public final Throwable error;
+
+    ToggleResult(boolean target, Status status, long elapsedMs, int attempts, Throwable error) {
+        this.target = target;
+        this.status = status;
+        this.elapsedMs = elapsedMs;
+        this.attempts = attempts;
+        this.error = error;
+    }
+
+    /**
+     * 是否已确认到达目标状态
+     */
+    public boolean isConfirmed() {
+        return status == Status.CONFIRMED || status == Status.RETRIED;
+    }
+
+    @Override
+    public String toString() {
+        return status + "(target=" + target + ", " + elapsedMs + "ms, attempts=" + attempts
+                + (error != null ? ", error=" + error.getMessage() : "") + ")";
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.airplanecontrol.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 预分配的追踪事件环形缓冲区，不依赖 Android 框架。
+ * 每个事件为 (时间戳, 事件码, 两个 long 参数)，按列存放在定长数组中；记录时无锁、不分配内存，
+ * 写满后覆盖最旧的事件。多个线程可同时记录：先原子地领取序号再写入，最后发布序号；
+ * 读取时按发布序号校验，正在被覆盖的槽位会被跳过。
+ */
+public final class TraceRing {
+
+    public interface Visitor {
+        void visit(long seq, long timeNanos, int event, long arg0, long arg1);
+    }
+
+    private final int mask;
+    private final long[] times;
+    private final int[] events;
+    private final long[] args0;
+    private final long[] args1;
+    // 槽位已发布的序号 + 1（0 表示从未写入）
+    private final AtomicLongArray published;
+    private final AtomicLong cursor = new AtomicLong();
+
+    /**
+     * @param capacity 容量，向上取整为 2 的幂
+     */
+    public TraceRing(int capacity) {
+        if (capacity <= 0 || capacity > (1 << 24)) {
+            throw new IllegalArgumentException("capacity 非法: " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        mask = size - 1;
+        times = new long[size];
+        events = new int[size];
+        args0 = new long[size];
+        args1 = new long[size];
+        published = new AtomicLongArray(size);
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+
+    /**
+     * 已记录的事件总数（含被覆盖的）
+     */
+    public long written() {
+        return cursor.get();
+    }
+
+    public void record(long timeNanos, int event, long arg0, long arg1) {
+        long seq = cursor.getAndIncrement();
+        int i = (int) seq & mask;
+        // 先作废槽位（原子交换兼作屏障），读取方不会把新旧字段拼在一起
+        published.getAndSet(i, 0);
+        times[i] = timeNanos;
+        events[i] = event;
+        args0[i] = arg0;
+        args1[i] = arg1;
+        published.lazySet(i, seq + 1);
+    }
+
+    /**
+     * 从旧到新遍历仍在缓冲区中的最近 max 个事件
+     * @return 实际访问的事件数
+     */
+    public int forEach(int max, Visitor visitor) {
+        long end = cursor.get();
+        long start = Math.max(0, end - Math.min(max, capacity()));
+        int visited = 0;
+        for (long seq = start; seq < end; seq++) {
+            int i = (int) seq & mask;
+            if (published.get(i) != seq + 1) continue;
+            long time = times[i];
+            int event = events[i];
+            long a0 = args0[i];
+            long a1 = args1[i];
+            // 读取期间被覆盖则丢弃
+            if (published.get(i) != seq + 1) continue;
+            visitor.visit(seq, time, event, a0, a1);
+            visited++;
+        }
+        return visited;
+    }
+
+    public void clear() {
+        for (int i = 0; i <= mask; i++) {
+            published.set(i, 0);
+        }
+    }
+}
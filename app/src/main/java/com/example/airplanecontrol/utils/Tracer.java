@@ -0,0 +1,207 @@
+package com.example.airplanecontrol.utils;
+
+import android.content.Context;
+import android.os.Build;
+import android.os.SystemClock;
+import android.os.Trace;
+import android.util.Log;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 周期路径的低开销追踪。
+ * 事件写入预分配的 {@link TraceRing}（事件码 + 周期号 + 一个参数），关闭时只有一次 volatile 读，开启时也不分配内存；
+ * 同时为周期各状态发出 android.os.Trace 异步区段、为写入设置与发送广播发出同步区段，
+ * 系统追踪（Perfetto / systrace）中能与这里的事件对齐。
+ * 级别 VERBOSE 时调用方再额外输出 logcat（会拼接字符串），默认不输出。
+ */
+public final class Tracer {
+
+    private static final String TAG = "Tracer";
+
+    public static final String KEY_LEVEL = "trace_level";
+    public static final int RING_CAPACITY = 4096;
+
+    public enum Level {
+        /** 不记录 */
+        OFF,
+        /** 记录到环形缓冲区并发出系统追踪区段 */
+        RING,
+        /** 同 RING，调用方另外输出 logcat */
+        VERBOSE;
+
+        public static Level parse(String name) {
+            for (Level l : values()) {
+                if (l.name().equalsIgnoreCase(String.valueOf(name))) {
+                    return l;
+                }
+            }
+            return RING;
+        }
+    }
+
+    public enum Event {
+        /** arg：路径（CycleMetrics.Path 序号） */
+        CYCLE_BEGIN("cycle.begin"),
+        /** arg：结束状态（ToggleCycle.State 序号） */
+        CYCLE_END("cycle.end"),
+        /** arg：进入的状态（ToggleCycle.State 序号） */
+        CYCLE_STATE("cycle.state"),
+        /** arg：阶段（CycleMetrics.Phase 序号） */
+        PHASE("cycle.phase"),
+        /** arg：目标状态（1 开启 / 0 关闭） */
+        SETTINGS_WRITE("settings.write"),
+        /** arg：广播在 AirplaneModeWriter.ALL_ACTIONS 中的序号 */
+        BROADCAST("broadcast"),
+        /** arg：命令序号 */
+        ASSIST_DISPATCH("assist.dispatch"),
+        /** arg：命令序号（未携带为 -1） */
+        ASSIST_SESSION_SHOW("assist.show"),
+        /** arg：命令序号 */
+        ASSIST_EXECUTE("assist.execute"),
+        /** arg：1 SECURE / 0 助理 */
+        SCHEDULE_TICK("schedule.tick"),
+        /** arg：下一个时间点（elapsedRealtime） */
+        SCHEDULE_SKIP("schedule.skip"),
+        /** arg：无 */
+        SCHEDULE_DEFER("schedule.defer");
+
+        public final String label;
+
+        Event(String label) {
+            this.label = label;
+        }
+    }
+
+    private static final TraceRing RING = new TraceRing(RING_CAPACITY);
+    private static final AtomicLong CYCLE_IDS = new AtomicLong();
+    private static volatile int level = Level.RING.ordinal();
+    private static volatile long currentCycle;
+    // 当前周期已开启的异步区段（状态名为枚举常量，不拼接字符串）
+    private static String openAsyncSection;
+    private static int openAsyncCookie;
+
+    private Tracer() {}
+
+    /**
+     * 从偏好读取级别（应用启动时调用）
+     */
+    public static void configure(Context context) {
+        setLevel(Level.parse(DirectBootStorage.prefs(context).getString(KEY_LEVEL, null)));
+    }
+
+    public static void setLevel(Level l) {
+        level = l.ordinal();
+        Log.d(TAG, "追踪级别: " + l);
+    }
+
+    public static Level level() {
+        return Level.values()[level];
+    }
+
+    public static boolean isEnabled() {
+        return level != Level.OFF.ordinal();
+    }
+
+    /**
+     * 是否额外输出 logcat；调用方据此决定是否拼接日志字符串
+     */
+    public static boolean isVerbose() {
+        return level == Level.VERBOSE.ordinal();
+    }
+
+    public static TraceRing ring() {
+        return RING;
+    }
+
+    /**
+     * 记录一个事件，归属当前周期
+     */
+    public static void event(Event event, long arg) {
+        if (level == Level.OFF.ordinal()) return;
+        RING.record(SystemClock.elapsedRealtimeNanos(), event.ordinal(), currentCycle, arg);
+    }
+
+    /**
+     * 记录一个归属指定周期的事件（周期结束后才到达的阶段，例如网络恢复）
+     */
+    public static void event(Event event, long cycleId, long arg) {
+        if (level == Level.OFF.ordinal()) return;
+        RING.record(SystemClock.elapsedRealtimeNanos(), event.ordinal(), cycleId, arg);
+    }
+
+    /**
+     * 当前周期号，没有进行中的周期时为 0
+     */
+    public static long currentCycle() {
+        return currentCycle;
+    }
+
+    /**
+     * 周期开始：分配周期号，之后的事件都归属该周期
+     * @return 周期号（关闭时为 0）
+     */
+    public static long beginCycle(int path) {
+        if (level == Level.OFF.ordinal()) return 0;
+        long id = CYCLE_IDS.incrementAndGet();
+        currentCycle = id;
+        RING.record(SystemClock.elapsedRealtimeNanos(), Event.CYCLE_BEGIN.ordinal(), id, path);
+        return id;
+    }
+
+    /**
+     * 周期进入新状态：结束上一个状态的异步区段并开启新区段。只在主线程调用
+     * @param stateName 状态名（枚举常量名）
+     */
+    public static void cycleState(long cycleId, String stateName, int state) {
+        if (cycleId == 0 || level == Level.OFF.ordinal()) return;
+        RING.record(SystemClock.elapsedRealtimeNanos(), Event.CYCLE_STATE.ordinal(), cycleId, state);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            endAsyncSection();
+            Trace.beginAsyncSection(stateName, (int) cycleId);
+            openAsyncSection = stateName;
+            openAsyncCookie = (int) cycleId;
+        }
+    }
+
+    /**
+     * 周期结束。只在主线程调用
+     */
+    public static void endCycle(long cycleId, int terminalState) {
+        if (cycleId == 0) return;
+        RING.record(SystemClock.elapsedRealtimeNanos(), Event.CYCLE_END.ordinal(), cycleId, terminalState);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            endAsyncSection();
+        }
+        if (currentCycle == cycleId) {
+            currentCycle = 0;
+        }
+    }
+
+    private static void endAsyncSection() {
+        if (openAsyncSection != null && Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            Trace.endAsyncSection(openAsyncSection, openAsyncCookie);
+            openAsyncSection = null;
+        }
+    }
+
+    /**
+     * 开启同步区段，必须与 {@link #endSection(boolean)} 成对出现在同一线程
+     * @return 是否已开启，传给 endSection
+     */
+    public static boolean beginSection(Event event) {
+        if (level == Level.OFF.ordinal()) return false;
+        Trace.beginSection(event.label);
+        return true;
+    }
+
+    public static void endSection(boolean begun) {
+        if (begun) {
+            Trace.endSection();
+        }
+    }
+
+    public static void clear() {
+        RING.clear();
+    }
+}
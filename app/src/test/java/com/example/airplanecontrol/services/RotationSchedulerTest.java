@@ -0,0 +1,84 @@
+package com.example.airplanecontrol.services;
+
+import static org.junit.Assert.assertEquals;
+
+import com.example.airplanecontrol.utils.FixedRateSchedule;
+import com.example.airplanecontrol.utils.FixedRateSchedule.MissedRunPolicy;
+
+import org.junit.Test;
+
+public class RotationSchedulerTest {
+
+    private static final long LAST_RUN = 100_000L;
+
+    /**
+     * 不错峰、COALESCE 策略下的 RotationScheduler.rebuildSchedule
+     */
+    private static FixedRateSchedule rebuild(RotationScheduler.RunStats stats, long periodMs, long now) {
+        return RotationScheduler.rebuildSchedule(stats, now, periodMs,
+                MissedRunPolicy.COALESCE, RotationScheduler.Spread.OFF, 0L, 0L);
+    }
+
+    @Test
+    public void rescheduleAnchorsAtLastRun() {
+        RotationScheduler.RunStats stats = new RotationScheduler.RunStats();
+        stats.onRun(LAST_RUN);
+
+        FixedRateSchedule schedule = rebuild(stats, 60_000L, LAST_RUN + 5_000L);
+        assertEquals(0, schedule.onFire(LAST_RUN + 5_000L));
+        assertEquals(LAST_RUN + 60_000L, schedule.nextFireTime());
+    }
+
+    @Test
+    public void twoReschedulesInARowKeepTheLastRunAnchor() {
+        RotationScheduler.RunStats stats = new RotationScheduler.RunStats();
+        stats.onRun(LAST_RUN);
+
+        rebuild(stats, 60_000L, LAST_RUN + 5_000L);
+        // 第二次修改仍以上一次执行为锚点，不会立即触发计划外的周期
+        long now = LAST_RUN + 8_000L;
+        FixedRateSchedule schedule = rebuild(stats, 30_000L, now);
+        assertEquals(LAST_RUN, stats.lastRunAtMs);
+        assertEquals(0, schedule.onFire(now));
+        assertEquals(LAST_RUN + 30_000L, schedule.nextFireTime());
+
+        // 统计已重新开始
+        assertEquals(0, stats.runCount);
+        assertEquals(-1L, stats.firstRunAtMs);
+    }
+
+    @Test
+    public void shorterPeriodAlreadyElapsedRunsImmediately() {
+        RotationScheduler.RunStats stats = new RotationScheduler.RunStats();
+        stats.onRun(LAST_RUN);
+
+        long now = LAST_RUN + 45_000L;
+        FixedRateSchedule schedule = rebuild(stats, 30_000L, now);
+        assertEquals(1, schedule.onFire(now));
+        assertEquals(now + 30_000L, schedule.nextFireTime());
+    }
+
+    @Test
+    public void rescheduleWithoutAnyRunAnchorsAtNow() {
+        RotationScheduler.RunStats stats = new RotationScheduler.RunStats();
+        stats.onRun(LAST_RUN);
+        // start() 清除上一次执行
+        stats.clear();
+
+        long now = LAST_RUN + 1_000L;
+        assertEquals(now, stats.rescheduleAnchor(60_000L, now));
+    }
+
+    @Test
+    public void runsAfterRescheduleUpdateAnchor() {
+        RotationScheduler.RunStats stats = new RotationScheduler.RunStats();
+        stats.onRun(LAST_RUN);
+        rebuild(stats, 60_000L, LAST_RUN + 5_000L);
+        stats.onRun(LAST_RUN + 60_000L);
+        stats.onRun(LAST_RUN + 120_000L);
+
+        assertEquals(2, stats.runCount);
+        assertEquals(LAST_RUN + 60_000L, stats.firstRunAtMs);
+        assertEquals(LAST_RUN + 120_000L, stats.rescheduleAnchor(60_000L, LAST_RUN + 125_000L));
+    }
+}
@@ -0,0 +1,145 @@
+package com.example.airplanecontrol.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.List;
+import java.util.Map;
+
+public class ChromeTraceWriterTest {
+
+    private static List<Object> traceEvents(String json) {
+        Map<String, Object> root = TestJson.object(TestJson.parse(json));
+        assertEquals("ms", root.get("displayTimeUnit"));
+        return TestJson.array(root.get("traceEvents"));
+    }
+
+    private static Map<String, Object> event(List<Object> events, int index) {
+        return TestJson.object(events.get(index));
+    }
+
+    @Test
+    public void emptyTraceIsValidJson() throws IOException {
+        StringWriter out = new StringWriter();
+        ChromeTraceWriter trace = new ChromeTraceWriter(out);
+        trace.begin();
+        trace.finish();
+
+        assertTrue(traceEvents(out.toString()).isEmpty());
+        assertEquals(0, trace.events());
+    }
+
+    @Test
+    public void eventsParseWithAllFields() throws IOException {
+        StringWriter out = new StringWriter();
+        ChromeTraceWriter trace = new ChromeTraceWriter(out);
+        trace.begin();
+        trace.processName(1, "AirplaneControl");
+        trace.threadName(1, 2, "Trace events");
+        trace.event(ChromeTraceWriter.PHASE_COMPLETE, "cycle", "history", 1_000L, 1, 1)
+                .dur(2_500L)
+                .arg("outcome", "DONE")
+                .arg("retries", 3)
+                .end();
+        trace.event(ChromeTraceWriter.PHASE_ASYNC_BEGIN, "HELD", "cycle", 2_000L, 1, 2).id(42).end();
+        trace.event(ChromeTraceWriter.PHASE_INSTANT, "broadcast", "toggle", 3_000L, 1, 2).end();
+        // 负时长按 0 写出
+        trace.event(ChromeTraceWriter.PHASE_COMPLETE, "hold", "history", 4_000L, 1, 1).dur(-5).end();
+        trace.finish();
+
+        List<Object> events = traceEvents(out.toString());
+        assertEquals(6, events.size());
+        assertEquals(6, trace.events());
+
+        Map<String, Object> process = event(events, 0);
+        assertEquals("process_name", process.get("name"));
+        assertEquals("M", process.get("ph"));
+        assertEquals("AirplaneControl", TestJson.object(process.get("args")).get("name"));
+        assertEquals(2L, event(events, 1).get("tid"));
+
+        Map<String, Object> cycle = event(events, 2);
+        assertEquals("X", cycle.get("ph"));
+        assertEquals(1_000L, cycle.get("ts"));
+        assertEquals(2_500L, cycle.get("dur"));
+        Map<String, Object> args = TestJson.object(cycle.get("args"));
+        assertEquals("DONE", args.get("outcome"));
+        assertEquals(3L, args.get("retries"));
+
+        Map<String, Object> async = event(events, 3);
+        assertEquals("b", async.get("ph"));
+        assertEquals(42L, async.get("id"));
+        assertFalse(async.containsKey("args"));
+
+        // 瞬时事件只画在所属线程上
+        assertEquals("t", event(events, 4).get("s"));
+        assertEquals(0L, event(events, 5).get("dur"));
+    }
+
+    @Test
+    public void stringsAreEscaped() throws IOException {
+        String name = "quote\" back\\slash\nline\rret\ttab\u0001ctl\u001f 中文 end";
+        StringWriter out = new StringWriter();
+        ChromeTraceWriter trace = new ChromeTraceWriter(out);
+        trace.begin();
+        trace.event(ChromeTraceWriter.PHASE_INSTANT, name, "c\"at", 0, 1, 1).arg("k\\ey", name).end();
+        trace.finish();
+
+        Map<String, Object> e = event(traceEvents(out.toString()), 0);
+        assertEquals(name, e.get("name"));
+        assertEquals("c\"at", e.get("cat"));
+        assertEquals(name, TestJson.object(e.get("args")).get("k\\ey"));
+        assertTrue(out.toString().contains("\\u0001ctl\\u001f"));
+    }
+
+    @Test
+    public void endWithoutOpenEventIsRejected() throws IOException {
+        ChromeTraceWriter trace = new ChromeTraceWriter(new StringWriter());
+        trace.begin();
+        try {
+            trace.end();
+            fail("end() without event");
+        } catch (IllegalStateException expected) {
+            // 预期
+        }
+
+        trace.event(ChromeTraceWriter.PHASE_INSTANT, "a", "c", 0, 1, 1).end();
+        try {
+            trace.end();
+            fail("end() twice");
+        } catch (IllegalStateException expected) {
+            // 预期
+        }
+    }
+
+    @Test
+    public void openingEventBeforeEndIsRejected() throws IOException {
+        StringWriter out = new StringWriter();
+        ChromeTraceWriter trace = new ChromeTraceWriter(out);
+        trace.begin();
+        trace.event(ChromeTraceWriter.PHASE_INSTANT, "a", "c", 0, 1, 1);
+        try {
+            trace.event(ChromeTraceWriter.PHASE_INSTANT, "b", "c", 0, 1, 1);
+            fail("nested event");
+        } catch (IllegalStateException expected) {
+            // 预期
+        }
+        try {
+            trace.threadName(1, 1, "t");
+            fail("metadata inside event");
+        } catch (IllegalStateException expected) {
+            // 预期
+        }
+
+        // 结束后照常继续，输出仍是合法 JSON
+        trace.end();
+        trace.event(ChromeTraceWriter.PHASE_INSTANT, "b", "c", 1, 1, 1).end();
+        trace.finish();
+        assertEquals(2, traceEvents(out.toString()).size());
+    }
+}
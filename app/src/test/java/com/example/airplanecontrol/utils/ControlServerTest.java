@@ -0,0 +1,223 @@
+package com.example.airplanecontrol.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class ControlServerTest {
+
+    private static final String TOKEN = "test-token";
+
+    /**
+     * 假后端：echo 同步回复，async 在工作线程上分多条回复，其他命令按未知命令处理
+     */
+    private static final class FakeBackend implements ControlServer.Backend {
+        final ExecutorService worker = Executors.newSingleThreadExecutor();
+
+        @Override
+        public void handle(Map<String, String> request, ControlServer.Reply reply) {
+            String cmd = request.get("cmd");
+            if ("echo".equals(cmd)) {
+                reply.send(reply.create().put("ok", true).put("value", request.get("value")));
+            } else if ("async".equals(cmd)) {
+                final int count = Integer.parseInt(request.get("count"));
+                worker.execute(() -> {
+                    for (int i = 0; i < count; i++) {
+                        reply.send(reply.create().put("seq", i).put("thread", Thread.currentThread().getName()));
+                    }
+                });
+            } else if ("boom".equals(cmd)) {
+                throw new IllegalStateException("boom");
+            } else {
+                reply.send(reply.create().put("ok", false).put("error", "unknown cmd: " + cmd));
+            }
+        }
+
+        @Override
+        public String status() {
+            return "{\"scheduled\":false}";
+        }
+    }
+
+    private FakeBackend backend;
+    private ControlServer server;
+    private Socket socket;
+    private OutputStream out;
+    private BufferedReader in;
+
+    @Before
+    public void setUp() throws IOException {
+        backend = new FakeBackend();
+        server = new ControlServer(0, TOKEN, backend);
+        server.start();
+        socket = new Socket(InetAddress.getLoopbackAddress(), server.port());
+        socket.setSoTimeout(5000);
+        out = socket.getOutputStream();
+        in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        socket.close();
+        server.stop();
+        backend.worker.shutdownNow();
+    }
+
+    private void send(String line) throws IOException {
+        out.write((line + "\n").getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    private Map<String, String> read() throws IOException {
+        String line = in.readLine();
+        if (line == null) fail("connection closed");
+        return ControlServer.parseObject(line);
+    }
+
+    private Map<String, String> call(String line) throws IOException {
+        send(line);
+        return read();
+    }
+
+    @Test
+    public void parseObjectReadsFlatFields() {
+        Map<String, String> m = ControlServer.parseObject(
+                " { \"a\" : \"x\\\"y\\u0041\\n\" , \"n\":-12, \"b\":true, \"z\":null } ");
+        assertEquals("x\"yA\n", m.get("a"));
+        assertEquals("-12", m.get("n"));
+        assertEquals("true", m.get("b"));
+        assertTrue(m.containsKey("z"));
+        assertNull(m.get("z"));
+        assertTrue(ControlServer.parseObject("{}").isEmpty());
+    }
+
+    @Test
+    public void parseObjectRejectsMalformedInput() {
+        String[] bad = {
+                "",
+                "[1]",
+                "{\"a\":1",
+                "{\"a\":\"open}",
+                "{\"a\" 1}",
+                "{\"a\":{\"b\":1}}",
+                "{\"a\":[1]}",
+                "{\"a\":}",
+                "{a:1}",
+                "{\"a\":\"\\u00\"}",
+        };
+        for (String json : bad) {
+            try {
+                ControlServer.parseObject(json);
+                fail("accepted " + json);
+            } catch (IllegalArgumentException expected) {
+                // 预期
+            }
+        }
+    }
+
+    @Test
+    public void quoteRoundTripsThroughParseObject() {
+        String value = "tab\tquote\"back\\slash\u0001end";
+        Map<String, String> m = ControlServer.parseObject("{\"v\":" + ControlServer.quote(value) + "}");
+        assertEquals(value, m.get("v"));
+    }
+
+    @Test
+    public void badJsonGetsErrorReplyAndConnectionStaysOpen() throws IOException {
+        Map<String, String> r = call("{\"cmd\":");
+        assertEquals("false", r.get("ok"));
+        assertTrue(r.get("error"), r.get("error").startsWith("bad json: "));
+
+        assertEquals("true", call("{\"cmd\":\"ping\"}").get("ok"));
+    }
+
+    @Test
+    public void repliesEchoRequestId() throws IOException {
+        Map<String, String> r = call("{\"cmd\":\"echo\",\"value\":\"hi\",\"token\":\"" + TOKEN
+                + "\",\"id\":\"req-7\"}");
+        assertEquals("req-7", r.get("id"));
+        assertEquals("hi", r.get("value"));
+
+        // 数字 id 按原文带回；没有 id 时回复中也没有
+        assertEquals("42", call("{\"cmd\":\"ping\",\"id\":42}").get("id"));
+        assertTrue(!call("{\"cmd\":\"ping\"}").containsKey("id"));
+    }
+
+    @Test
+    public void requestsWithoutTokenAreRejectedExceptPing() throws IOException {
+        assertEquals("true", call("{\"cmd\":\"ping\",\"id\":\"p\"}").get("ok"));
+
+        Map<String, String> missing = call("{\"cmd\":\"status\",\"id\":\"s\"}");
+        assertEquals("s", missing.get("id"));
+        assertEquals("false", missing.get("ok"));
+        assertEquals("unauthorized", missing.get("error"));
+        assertEquals("unauthorized", call("{\"cmd\":\"echo\",\"token\":\"wrong\"}").get("error"));
+        assertEquals("unauthorized", call("{\"token\":\"" + TOKEN + "x\"}").get("error"));
+
+        // status 的快照是嵌套对象，parseObject 不支持，直接比较原文
+        send("{\"cmd\":\"status\",\"token\":\"" + TOKEN + "\"}");
+        assertEquals("{\"ok\":true,\"status\":{\"scheduled\":false}}", in.readLine());
+    }
+
+    @Test
+    public void unknownAndMissingCommandsAreReported() throws IOException {
+        Map<String, String> unknown = call("{\"cmd\":\"nope\",\"token\":\"" + TOKEN + "\",\"id\":\"u\"}");
+        assertEquals("u", unknown.get("id"));
+        assertEquals("false", unknown.get("ok"));
+        assertEquals("unknown cmd: nope", unknown.get("error"));
+
+        assertEquals("missing cmd", call("{\"token\":\"" + TOKEN + "\"}").get("error"));
+
+        // 后端抛出异常时回复错误，而不是断开连接
+        Map<String, String> boom = call("{\"cmd\":\"boom\",\"token\":\"" + TOKEN + "\",\"id\":\"b\"}");
+        assertEquals("b", boom.get("id"));
+        assertEquals("boom", boom.get("error"));
+    }
+
+    @Test
+    public void overlongLineIsRejectedOnceAndNextLineIsServed() throws IOException {
+        StringBuilder sb = new StringBuilder("{\"cmd\":\"echo\",\"value\":\"");
+        for (int i = 0; i < 10_000; i++) {
+            sb.append('x');
+        }
+        sb.append("\"}");
+        send(sb.toString());
+        send("{\"cmd\":\"ping\",\"id\":\"after\"}");
+
+        Map<String, String> tooLong = read();
+        assertEquals("false", tooLong.get("ok"));
+        assertEquals("line too long", tooLong.get("error"));
+        // 超长行的剩余部分被丢弃，不产生第二条错误
+        assertEquals("after", read().get("id"));
+    }
+
+    @Test
+    public void asyncRepliesFromAnotherThreadArriveInOrder() throws IOException {
+        send("{\"cmd\":\"async\",\"count\":\"5\",\"token\":\"" + TOKEN + "\",\"id\":\"a\"}");
+        for (int i = 0; i < 5; i++) {
+            Map<String, String> r = read();
+            assertEquals("a", r.get("id"));
+            assertEquals(Integer.toString(i), r.get("seq"));
+            assertTrue(r.get("thread"), !"control-server".equals(r.get("thread")));
+        }
+
+        // 异步回复之后同一连接上的同步请求照常
+        assertEquals("true", call("{\"cmd\":\"ping\"}").get("ok"));
+    }
+}
@@ -0,0 +1,248 @@
+package com.example.airplanecontrol.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.example.airplanecontrol.utils.CycleHistoryStore.Bucket;
+import com.example.airplanecontrol.utils.CycleHistoryStore.Outcome;
+import com.example.airplanecontrol.utils.CycleHistoryStore.Record;
+import com.example.airplanecontrol.utils.CycleHistoryStore.Resolution;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+public class CycleHistoryStoreTest {
+
+    private static final int RAW = 8;
+    private static final int MINUTES = 10;
+    private static final int HOURS = 4;
+    private static final long MINUTE = Resolution.MINUTE.bucketMs;
+    private static final long HOUR = Resolution.HOUR.bucketMs;
+    /** 整点开始，便于对齐分钟 / 小时桶 */
+    private static final long T0 = 1_700_000_000_000L / HOUR * HOUR;
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private CycleHistoryStore open(File file) throws IOException {
+        return new CycleHistoryStore(file, RAW, MINUTES, HOURS);
+    }
+
+    private static Record record(long startMs, Outcome outcome, int retries, int totalMs) {
+        return new Record(startMs, true, false, outcome, retries, totalMs, 100, 200, 300, -1, true, false);
+    }
+
+    private static Record done(long startMs, int totalMs) {
+        return record(startMs, Outcome.DONE, 0, totalMs);
+    }
+
+    @Test
+    public void recordRoundTripsAllFields() throws IOException {
+        CycleHistoryStore store = open(tmp.newFile());
+        store.append(new Record(T0, false, true, Outcome.CANCELLED, 3, 1234, 10, 20, 30, 40, false, true));
+
+        Record r = store.latest(1).get(0);
+        assertEquals(T0, r.startWallMs);
+        assertEquals(false, r.secure);
+        assertEquals(true, r.adaptive);
+        assertEquals(Outcome.CANCELLED, r.outcome);
+        assertEquals(3, r.retries);
+        assertEquals(1234, r.totalMs);
+        assertEquals(10, r.enableMs);
+        assertEquals(20, r.holdMs);
+        assertEquals(30, r.disableMs);
+        assertEquals(40, r.recoverMs);
+        assertEquals(false, r.radioOff);
+        assertEquals(true, r.networkValidated);
+    }
+
+    @Test
+    public void rawRingOverwritesOldest() throws IOException {
+        CycleHistoryStore store = open(tmp.newFile());
+        for (int i = 0; i < RAW + 3; i++) {
+            store.append(done(T0 + i * 1000L, i));
+        }
+
+        assertEquals(RAW, store.size());
+        List<Record> latest = store.latest(RAW + 5);
+        assertEquals(RAW, latest.size());
+        assertEquals(RAW + 2, latest.get(0).totalMs);
+        assertEquals(3, latest.get(RAW - 1).totalMs);
+    }
+
+    @Test
+    public void rawRingSurvivesReopen() throws IOException {
+        File file = tmp.newFile();
+        CycleHistoryStore store = open(file);
+        for (int i = 0; i < RAW + 1; i++) {
+            store.append(done(T0 + i * 1000L, i));
+        }
+
+        CycleHistoryStore reopened = open(file);
+        assertEquals(RAW, reopened.size());
+        assertEquals(RAW, reopened.latest(1).get(0).totalMs);
+        assertEquals(1, reopened.queryRollup(Resolution.MINUTE, T0, T0).size());
+    }
+
+    @Test
+    public void queryRawStopsAtRetentionBoundary() throws IOException {
+        CycleHistoryStore store = open(tmp.newFile());
+        for (int i = 0; i < RAW * 2; i++) {
+            store.append(done(T0 + i * 1000L, i));
+        }
+
+        // 前 RAW 条已被覆盖，范围查询只返回仍保留的部分
+        List<Record> all = store.queryRaw(T0, T0 + RAW * 2 * 1000L, 100);
+        assertEquals(RAW, all.size());
+        assertEquals(RAW, all.get(0).totalMs);
+        assertEquals(RAW * 2 - 1, all.get(RAW - 1).totalMs);
+
+        List<Record> window = store.queryRaw(T0 + (RAW + 2) * 1000L, T0 + (RAW + 4) * 1000L, 100);
+        assertEquals(3, window.size());
+        assertEquals(RAW + 2, window.get(0).totalMs);
+
+        assertEquals(2, store.queryRaw(T0, Long.MAX_VALUE, 2).size());
+        assertTrue(store.queryRaw(T0, T0 + (RAW - 1) * 1000L, 100).isEmpty());
+    }
+
+    @Test
+    public void minuteAndHourRollupsKeepTotalsAfterRawOverwrite() throws IOException {
+        CycleHistoryStore store = open(tmp.newFile());
+        int expectedCount = 0;
+        int expectedDone = 0;
+        int expectedFailed = 0;
+        int expectedRetries = 0;
+        long expectedSum = 0;
+        int expectedMax = 0;
+        // 3 分钟内共 30 条记录，远超原始记录容量
+        for (int i = 0; i < 30; i++) {
+            Outcome outcome = i % 5 == 0 ? Outcome.FAILED : i % 7 == 0 ? Outcome.CANCELLED : Outcome.DONE;
+            int total = 1000 + i * 10;
+            store.append(record(T0 + i * 6000L, outcome, i % 3, total));
+            expectedCount++;
+            expectedDone += outcome == Outcome.DONE ? 1 : 0;
+            expectedFailed += outcome == Outcome.FAILED ? 1 : 0;
+            expectedRetries += i % 3;
+            expectedSum += total;
+            expectedMax = Math.max(expectedMax, total);
+        }
+
+        List<Bucket> minutes = store.queryRollup(Resolution.MINUTE, T0, T0 + 3 * MINUTE - 1);
+        assertEquals(3, minutes.size());
+        int minuteCount = 0;
+        long minuteSum = 0;
+        for (int i = 0; i < minutes.size(); i++) {
+            assertEquals(T0 + i * MINUTE, minutes.get(i).startMs);
+            assertEquals(10, minutes.get(i).count);
+            minuteCount += minutes.get(i).count;
+            minuteSum += minutes.get(i).sumTotalMs;
+        }
+        assertEquals(expectedCount, minuteCount);
+        assertEquals(expectedSum, minuteSum);
+
+        List<Bucket> hours = store.queryRollup(Resolution.HOUR, T0, T0 + HOUR - 1);
+        assertEquals(1, hours.size());
+        Bucket hour = hours.get(0);
+        assertEquals(T0, hour.startMs);
+        assertEquals(expectedCount, hour.count);
+        assertEquals(expectedDone, hour.done);
+        assertEquals(expectedFailed, hour.failed);
+        assertEquals(expectedRetries, hour.retries);
+        assertEquals(expectedSum, hour.sumTotalMs);
+        assertEquals(expectedMax, hour.maxTotalMs);
+        assertEquals(expectedSum / expectedCount, hour.meanTotalMs());
+    }
+
+    @Test
+    public void rollupQueryIsLimitedToRetentionWindow() throws IOException {
+        CycleHistoryStore store = open(tmp.newFile());
+        // 每分钟一条，共 MINUTES + 5 分钟：最早的 5 个分钟桶已被复用
+        for (int i = 0; i < MINUTES + 5; i++) {
+            store.append(done(T0 + i * MINUTE, 500));
+        }
+
+        long to = T0 + (MINUTES + 5) * MINUTE - 1;
+        List<Bucket> minutes = store.queryRollup(Resolution.MINUTE, T0, to);
+        assertEquals(MINUTES, minutes.size());
+        assertEquals(T0 + 5 * MINUTE, minutes.get(0).startMs);
+        assertEquals(T0 + (MINUTES + 4) * MINUTE, minutes.get(MINUTES - 1).startMs);
+        // 超出保留窗口的范围为空，而不是返回被复用槽位中的新数据
+        assertTrue(store.queryRollup(Resolution.MINUTE, T0, T0 + 4 * MINUTE).isEmpty());
+
+        // 小时聚合仍覆盖全部记录
+        List<Bucket> hours = store.queryRollup(Resolution.HOUR, T0, to);
+        assertEquals(1, hours.size());
+        assertEquals(MINUTES + 5, hours.get(0).count);
+    }
+
+    @Test
+    public void lateRecordForReusedBucketIsDropped() throws IOException {
+        CycleHistoryStore store = open(tmp.newFile());
+        store.append(done(T0 + MINUTES * MINUTE, 500));
+        // 与上一条落在同一槽位但更早（时钟回拨），不能覆盖较新的桶
+        store.append(done(T0, 700));
+
+        List<Bucket> minutes = store.queryRollup(Resolution.MINUTE, T0 + MINUTES * MINUTE, T0 + MINUTES * MINUTE);
+        assertEquals(1, minutes.size());
+        assertEquals(1, minutes.get(0).count);
+        assertEquals(500, minutes.get(0).maxTotalMs);
+    }
+
+    @Test
+    public void forEachRecentVisitsOldestFirstAcrossBatches() throws IOException {
+        CycleHistoryStore store = new CycleHistoryStore(tmp.newFile(), 200, MINUTES, HOURS);
+        for (int i = 0; i < 250; i++) {
+            store.append(done(T0 + i * 1000L, i));
+        }
+
+        List<Integer> seen = new ArrayList<>();
+        assertEquals(150, store.forEachRecent(150, r -> seen.add(r.totalMs)));
+        assertEquals(150, seen.size());
+        for (int i = 0; i < seen.size(); i++) {
+            assertEquals(100 + i, (int) seen.get(i));
+        }
+
+        // 请求数超过保留的原始记录时只访问保留的部分
+        List<Integer> all = new ArrayList<>();
+        assertEquals(200, store.forEachRecent(1000, r -> all.add(r.totalMs)));
+        assertEquals(50, (int) all.get(0));
+        assertEquals(249, (int) all.get(199));
+    }
+
+    @Test
+    public void forEachRecentExcludesRecordsAppendedDuringVisit() throws IOException {
+        CycleHistoryStore store = new CycleHistoryStore(tmp.newFile(), 200, MINUTES, HOURS);
+        for (int i = 0; i < 100; i++) {
+            store.append(done(T0 + i * 1000L, i));
+        }
+
+        int[] visited = {0};
+        int count = store.forEachRecent(100, r -> {
+            visited[0]++;
+            store.append(done(T0 + 1_000_000L, -1));
+        });
+        assertEquals(100, count);
+        assertEquals(100, visited[0]);
+        assertEquals(200, store.size());
+    }
+
+    @Test
+    public void forEachRecentStopsAfterClear() throws IOException {
+        CycleHistoryStore store = open(tmp.newFile());
+        for (int i = 0; i < RAW; i++) {
+            store.append(done(T0 + i * 1000L, i));
+        }
+        assertEquals(0, store.forEachRecent(0, r -> { }));
+
+        store.clear();
+        assertEquals(0, store.size());
+        assertEquals(0, store.forEachRecent(RAW, r -> { }));
+        assertTrue(store.queryRollup(Resolution.HOUR, T0, T0 + HOUR).isEmpty());
+    }
+}
@@ -0,0 +1,193 @@
+package com.example.airplanecontrol.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class CycleTraceExporterTest {
+
+    private static final long SECOND = 1_000_000_000L;
+    /** 周期间隔，远大于窗口偏差 */
+    private static final long SPACING = 10 * SECOND;
+    /** elapsedRealtimeNanos 到墙上时间（纳秒）的偏移 */
+    private static final long WALL_OFFSET = 1_700_000_000_000L * 1_000_000L;
+    private static final int CYCLES = 5;
+
+    private static long cycleStart(long cycleId) {
+        return cycleId * SPACING;
+    }
+
+    /**
+     * 按 Tracer 的记录方式写入 CYCLES 个完整周期，每个周期前 2 秒有一次与周期无关的调度事件
+     */
+    private static TraceRing seededRing() {
+        TraceRing ring = new TraceRing(Tracer.RING_CAPACITY);
+        for (long id = 1; id <= CYCLES; id++) {
+            long t = cycleStart(id);
+            ring.record(t - 2 * SECOND, Tracer.Event.SCHEDULE_TICK.ordinal(), 0, 1);
+            ring.record(t, Tracer.Event.CYCLE_BEGIN.ordinal(), id, CycleMetrics.Path.WSS.ordinal());
+            ring.record(t + 1_000_000L, Tracer.Event.CYCLE_STATE.ordinal(), id, ToggleCycle.State.ENABLING.ordinal());
+            ring.record(t + 2_000_000L, Tracer.Event.SETTINGS_WRITE.ordinal(), id, 1);
+            ring.record(t + 3_000_000L, Tracer.Event.CYCLE_STATE.ordinal(), id, ToggleCycle.State.HELD.ordinal());
+            ring.record(t + 5 * SECOND, Tracer.Event.CYCLE_END.ordinal(), id, ToggleCycle.State.DONE.ordinal());
+        }
+        return ring;
+    }
+
+    /**
+     * 历史中最早导出周期的开始时间（墙上毫秒）；历史记录比缓冲区中的周期开始晚 200 毫秒
+     */
+    private static long historyStartWallMs(long cycleId) {
+        return (cycleStart(cycleId) + 200_000_000L + WALL_OFFSET) / 1_000_000L;
+    }
+
+    private static List<Map<String, Object>> export(TraceRing ring, long windowStartNanos, long nowNanos)
+            throws IOException {
+        StringWriter out = new StringWriter();
+        ChromeTraceWriter trace = new ChromeTraceWriter(out);
+        trace.begin();
+        CycleTraceExporter.writeRing(trace, ring, WALL_OFFSET, windowStartNanos, nowNanos);
+        trace.finish();
+        List<Map<String, Object>> events = new ArrayList<>();
+        for (Object e : TestJson.array(TestJson.object(TestJson.parse(out.toString())).get("traceEvents"))) {
+            events.add(TestJson.object(e));
+        }
+        assertEquals(trace.events(), events.size());
+        return events;
+    }
+
+    /** 导出的周期区段的周期号 */
+    private static List<Long> cycleIds(List<Map<String, Object>> events) {
+        List<Long> ids = new ArrayList<>();
+        for (Map<String, Object> e : events) {
+            if ("cycle".equals(e.get("name")) && "b".equals(e.get("ph"))) {
+                ids.add((Long) e.get("id"));
+            }
+        }
+        return ids;
+    }
+
+    private static int count(List<Map<String, Object>> events, String name) {
+        int n = 0;
+        for (Map<String, Object> e : events) {
+            if (name.equals(e.get("name"))) n++;
+        }
+        return n;
+    }
+
+    /** 每个异步开始都有同名、同 id 的结束，且不早于开始 */
+    private static void assertAsyncPaired(List<Map<String, Object>> events) {
+        Map<String, Long> open = new HashMap<>();
+        for (Map<String, Object> e : events) {
+            String key = e.get("name") + "#" + e.get("id");
+            if ("b".equals(e.get("ph"))) {
+                assertEquals(key, null, open.put(key, (Long) e.get("ts")));
+            } else if ("e".equals(e.get("ph"))) {
+                Long begin = open.remove(key);
+                assertTrue("unpaired end " + key, begin != null);
+                assertTrue(key, (Long) e.get("ts") >= begin);
+            }
+        }
+        assertTrue("unpaired begin " + open, open.isEmpty());
+    }
+
+    @Test
+    public void windowStartCoversRequestedCyclesOnly() {
+        long oldest = historyStartWallMs(3);
+        assertEquals(oldest * 1_000_000L - WALL_OFFSET, CycleTraceExporter.windowStart(3, 3, oldest, WALL_OFFSET));
+        // 历史不足请求数：缓冲区全部导出
+        assertEquals(Long.MIN_VALUE, CycleTraceExporter.windowStart(10, 3, oldest, WALL_OFFSET));
+        // 不导出周期时也不导出缓冲区事件
+        assertEquals(Long.MAX_VALUE, CycleTraceExporter.windowStart(0, 0, -1, WALL_OFFSET));
+    }
+
+    @Test
+    public void firstCycleFromAllowsSlackBeforeHistoryStart() {
+        TraceRing ring = seededRing();
+        long windowStart = CycleTraceExporter.windowStart(3, 3, historyStartWallMs(3), WALL_OFFSET);
+
+        // 周期 3 在缓冲区中比历史记录早开始，仍在偏差内
+        assertTrue(cycleStart(3) < windowStart);
+        assertEquals(3, CycleTraceExporter.firstCycleFrom(ring, windowStart));
+        assertEquals(0, CycleTraceExporter.firstCycleFrom(ring, Long.MIN_VALUE));
+        assertEquals(0, CycleTraceExporter.firstCycleFrom(ring, Long.MAX_VALUE));
+        // 窗口之后没有周期开始
+        assertEquals(0, CycleTraceExporter.firstCycleFrom(ring, cycleStart(CYCLES) + 2 * SECOND));
+    }
+
+    @Test
+    public void exportsOnlyTheLastNCycles() throws IOException {
+        TraceRing ring = seededRing();
+        long windowStart = CycleTraceExporter.windowStart(3, 3, historyStartWallMs(3), WALL_OFFSET);
+        List<Map<String, Object>> events = export(ring, windowStart, cycleStart(CYCLES + 1));
+
+        assertEquals(Arrays.asList(3L, 4L, 5L), cycleIds(events));
+        for (Map<String, Object> e : events) {
+            Object args = e.get("args");
+            Object cycle = args != null ? TestJson.object(args).get("cycle") : null;
+            if (cycle != null && (Long) cycle != 0) {
+                assertTrue(e.toString(), (Long) cycle >= 3);
+            }
+            Object id = e.get("id");
+            if (id != null) {
+                assertTrue(e.toString(), (Long) id >= 3);
+            }
+        }
+        // 与周期无关的事件按时间：周期 3 之前的调度事件早于窗口
+        assertEquals(2, count(events, Tracer.Event.SCHEDULE_TICK.label));
+        assertEquals(3, count(events, Tracer.Event.SETTINGS_WRITE.label));
+        // 每个 HELD 区段一个开始、一个结束
+        assertEquals(6, count(events, "HELD"));
+        assertAsyncPaired(events);
+
+        // 时间换算为墙上时间（微秒）
+        Map<String, Object> first = events.get(0);
+        assertEquals((cycleStart(3) + WALL_OFFSET) / 1000L, first.get("ts"));
+    }
+
+    @Test
+    public void exportsWholeRingWhenHistoryIsShort() throws IOException {
+        long windowStart = CycleTraceExporter.windowStart(10, 3, historyStartWallMs(3), WALL_OFFSET);
+        List<Map<String, Object>> events = export(seededRing(), windowStart, cycleStart(CYCLES + 1));
+
+        assertEquals(Arrays.asList(1L, 2L, 3L, 4L, 5L), cycleIds(events));
+        assertEquals(CYCLES, count(events, Tracer.Event.SCHEDULE_TICK.label));
+        assertAsyncPaired(events);
+    }
+
+    @Test
+    public void exportsNothingFromRingForZeroCycles() throws IOException {
+        long windowStart = CycleTraceExporter.windowStart(0, 0, -1, WALL_OFFSET);
+        assertTrue(export(seededRing(), windowStart, cycleStart(CYCLES + 1)).isEmpty());
+    }
+
+    @Test
+    public void stateStillOpenIsClosedAtExportTime() throws IOException {
+        TraceRing ring = seededRing();
+        long id = CYCLES + 1;
+        long t = cycleStart(id);
+        ring.record(t, Tracer.Event.CYCLE_BEGIN.ordinal(), id, CycleMetrics.Path.ASSISTANT.ordinal());
+        ring.record(t + 1_000_000L, Tracer.Event.CYCLE_STATE.ordinal(), id, ToggleCycle.State.HELD.ordinal());
+        long now = t + SECOND;
+
+        long windowStart = CycleTraceExporter.windowStart(1, 1, (t + WALL_OFFSET) / 1_000_000L, WALL_OFFSET);
+        List<Map<String, Object>> events = export(ring, windowStart, now);
+
+        assertEquals(Arrays.asList(id), cycleIds(events));
+        Map<String, Object> last = events.get(events.size() - 1);
+        assertEquals("HELD", last.get("name"));
+        assertEquals("e", last.get("ph"));
+        assertEquals(id, last.get("id"));
+        assertEquals((now + WALL_OFFSET) / 1000L, last.get("ts"));
+        assertEquals("ASSISTANT", TestJson.object(events.get(0).get("args")).get("path"));
+    }
+}
@@ -0,0 +1,156 @@
+package com.example.airplanecontrol.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.example.airplanecontrol.utils.FixedRateSchedule.MissedRunPolicy;
+
+import org.junit.Test;
+
+public class FixedRateScheduleTest {
+
+    private static final long ANCHOR = 1_000_000L;
+    private static final long PERIOD = 60_000L;
+
+    @Test
+    public void fireTimesDoNotDriftWithLateTimers() {
+        FixedRateSchedule schedule = new FixedRateSchedule(ANCHOR, PERIOD, MissedRunPolicy.COALESCE);
+        for (long k = 0; k < 1000; k++) {
+            assertEquals(ANCHOR + k * PERIOD, schedule.fireTimeOf(k));
+        }
+        // 每次迟到 1 秒触发，下一次时间点仍固定在 anchor + k * period
+        for (long k = 0; k < 100; k++) {
+            assertEquals(ANCHOR + k * PERIOD, schedule.nextFireTime());
+            assertEquals(1, schedule.onFire(schedule.nextFireTime() + 1000));
+        }
+        assertEquals(ANCHOR + 100 * PERIOD, schedule.nextFireTime());
+    }
+
+    @Test
+    public void offsetShiftsEverySlotAndWrapsModuloPeriod() {
+        FixedRateSchedule schedule = new FixedRateSchedule(ANCHOR, PERIOD, MissedRunPolicy.COALESCE,
+                PERIOD + 5_000, 0, 0);
+        assertEquals(5_000, schedule.offsetMs());
+        assertEquals(ANCHOR + 5_000, schedule.fireTimeOf(0));
+        assertEquals(ANCHOR + 5_000 + 7 * PERIOD, schedule.fireTimeOf(7));
+    }
+
+    @Test
+    public void earlyFireIsIgnored() {
+        FixedRateSchedule schedule = new FixedRateSchedule(ANCHOR, PERIOD, MissedRunPolicy.COALESCE);
+        assertEquals(0, schedule.onFire(ANCHOR - 1));
+        assertEquals(ANCHOR, schedule.nextFireTime());
+        assertEquals(1, schedule.onFire(ANCHOR));
+        // 同一时间点的重复唤醒
+        assertEquals(0, schedule.onFire(ANCHOR + 10));
+        assertEquals(PERIOD - 10, schedule.delayUntilNext(ANCHOR + 10));
+    }
+
+    @Test
+    public void jitterIsBoundedDeterministicAndNonZero() {
+        long jitter = 5_000;
+        FixedRateSchedule a = new FixedRateSchedule(ANCHOR, PERIOD, MissedRunPolicy.COALESCE, 0, jitter, 7);
+        FixedRateSchedule b = new FixedRateSchedule(ANCHOR, PERIOD, MissedRunPolicy.COALESCE, 0, jitter, 7);
+        FixedRateSchedule other = new FixedRateSchedule(ANCHOR, PERIOD, MissedRunPolicy.COALESCE, 0, jitter, 8);
+        boolean anyJitter = false;
+        boolean differs = false;
+        for (long k = 0; k < 1000; k++) {
+            long deviation = a.fireTimeOf(k) - (ANCHOR + k * PERIOD);
+            assertTrue("slot " + k + ": " + deviation, Math.abs(deviation) <= jitter);
+            assertEquals(a.fireTimeOf(k), b.fireTimeOf(k));
+            anyJitter |= deviation != 0;
+            differs |= a.fireTimeOf(k) != other.fireTimeOf(k);
+        }
+        assertTrue(anyJitter);
+        assertTrue(differs);
+    }
+
+    @Test
+    public void jitterIsCappedAtQuarterPeriodSoSlotsStayOrdered() {
+        FixedRateSchedule schedule = new FixedRateSchedule(ANCHOR, PERIOD, MissedRunPolicy.COALESCE,
+                0, PERIOD, 3);
+        assertEquals(PERIOD / FixedRateSchedule.MAX_JITTER_DIVISOR, schedule.jitterMs());
+        for (long k = 0; k < 1000; k++) {
+            assertTrue(schedule.fireTimeOf(k + 1) - schedule.fireTimeOf(k) >= PERIOD / 2);
+        }
+    }
+
+    @Test
+    public void jitteredScheduleFiresOncePerSlot() {
+        FixedRateSchedule schedule = new FixedRateSchedule(ANCHOR, PERIOD, MissedRunPolicy.SKIP,
+                0, PERIOD / 4, 11);
+        for (long k = 0; k < 200; k++) {
+            long due = schedule.nextFireTime();
+            assertEquals(schedule.fireTimeOf(k), due);
+            assertEquals(1, schedule.onFire(due));
+        }
+    }
+
+    @Test
+    public void skipDropsMissedSlotsAfterLongSleep() {
+        FixedRateSchedule schedule = new FixedRateSchedule(ANCHOR, PERIOD, MissedRunPolicy.SKIP);
+        assertEquals(1, schedule.onFire(ANCHOR));
+        // 休眠 10 个周期后在两个时间点之间醒来
+        long wake = ANCHOR + 10 * PERIOD + PERIOD / 2;
+        assertEquals(0, schedule.onFire(wake));
+        assertEquals(ANCHOR + 11 * PERIOD, schedule.nextFireTime());
+        assertEquals(1, schedule.onFire(ANCHOR + 11 * PERIOD));
+    }
+
+    @Test
+    public void coalesceRunsOnceAfterLongSleep() {
+        FixedRateSchedule schedule = new FixedRateSchedule(ANCHOR, PERIOD, MissedRunPolicy.COALESCE);
+        assertEquals(1, schedule.onFire(ANCHOR));
+        long wake = ANCHOR + 10 * PERIOD + PERIOD / 2;
+        assertEquals(1, schedule.onFire(wake));
+        assertEquals(ANCHOR + 11 * PERIOD, schedule.nextFireTime());
+        assertEquals(0, schedule.onFire(wake + 1));
+    }
+
+    @Test
+    public void catchUpRunsMissedSlotsUpToLimit() {
+        FixedRateSchedule schedule = new FixedRateSchedule(ANCHOR, PERIOD, MissedRunPolicy.CATCH_UP);
+        assertEquals(1, schedule.onFire(ANCHOR));
+        // 错过 1 个时间点：补跑 1 次加本次
+        assertEquals(2, schedule.onFire(ANCHOR + 2 * PERIOD + 1));
+        assertEquals(ANCHOR + 3 * PERIOD, schedule.nextFireTime());
+        // 长时间休眠：补跑次数有上限
+        long wake = ANCHOR + 20 * PERIOD + PERIOD / 2;
+        assertEquals(FixedRateSchedule.MAX_CATCH_UP_RUNS, schedule.onFire(wake));
+        assertEquals(ANCHOR + 21 * PERIOD, schedule.nextFireTime());
+    }
+
+    @Test
+    public void skipToStartsAtFirstSlotNotBeforeNow() {
+        FixedRateSchedule schedule = new FixedRateSchedule(ANCHOR, PERIOD, MissedRunPolicy.COALESCE);
+        schedule.skipTo(ANCHOR + 3 * PERIOD + 1);
+        assertEquals(ANCHOR + 4 * PERIOD, schedule.nextFireTime());
+
+        FixedRateSchedule exact = new FixedRateSchedule(ANCHOR, PERIOD, MissedRunPolicy.COALESCE);
+        exact.skipTo(ANCHOR + 3 * PERIOD);
+        assertEquals(ANCHOR + 3 * PERIOD, exact.nextFireTime());
+    }
+
+    @Test
+    public void skipToNeverMovesBackwards() {
+        FixedRateSchedule schedule = new FixedRateSchedule(ANCHOR, PERIOD, MissedRunPolicy.COALESCE);
+        schedule.skipTo(ANCHOR + 5 * PERIOD + 1);
+        schedule.skipTo(ANCHOR + PERIOD + 1);
+        assertEquals(ANCHOR + 6 * PERIOD, schedule.nextFireTime());
+    }
+
+    @Test
+    public void parsePolicyFallsBackToCoalesce() {
+        assertEquals(MissedRunPolicy.SKIP, FixedRateSchedule.parsePolicy("skip"));
+        assertEquals(MissedRunPolicy.CATCH_UP, FixedRateSchedule.parsePolicy("CATCH_UP"));
+        assertEquals(MissedRunPolicy.COALESCE, FixedRateSchedule.parsePolicy("bogus"));
+        assertEquals(MissedRunPolicy.COALESCE, FixedRateSchedule.parsePolicy(null));
+        assertNotEquals(MissedRunPolicy.SKIP, FixedRateSchedule.parsePolicy(""));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void nonPositivePeriodIsRejected() {
+        new FixedRateSchedule(ANCHOR, 0, MissedRunPolicy.COALESCE);
+    }
+}
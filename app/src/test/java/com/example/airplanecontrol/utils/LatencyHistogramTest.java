@@ -0,0 +1,121 @@
+package com.example.airplanecontrol.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+public class LatencyHistogramTest {
+
+    /** 每个 2 的幂区间 16 个子桶：桶上界最多比实际值大 1/16 */
+    private static final double MAX_RELATIVE_ERROR = 1.0 / 16;
+
+    private static final double[] PERCENTILES = {0, 1, 10, 25, 50, 75, 90, 95, 99, 99.9, 100};
+
+    @Test
+    public void smallValuesHaveExactBuckets() {
+        for (int v = 0; v < 16; v++) {
+            assertEquals(v, LatencyHistogram.indexOf(v));
+            assertEquals(v, LatencyHistogram.highestEquivalentValue(v));
+        }
+        // 16..31 仍为宽度 1 的子桶
+        assertEquals(16, LatencyHistogram.indexOf(16));
+        assertEquals(31, LatencyHistogram.indexOf(31));
+        assertEquals(31, LatencyHistogram.highestEquivalentValue(31));
+    }
+
+    @Test
+    public void bucketBoundariesAreContiguous() {
+        long previousHigh = -1;
+        for (int index = 0; index < LatencyHistogram.indexOf((1L << 31) - 1); index++) {
+            long high = LatencyHistogram.highestEquivalentValue(index);
+            long low = previousHigh + 1;
+            assertEquals("low of bucket " + index, index, LatencyHistogram.indexOf(low));
+            assertEquals("high of bucket " + index, index, LatencyHistogram.indexOf(high));
+            assertTrue(high >= low);
+            previousHigh = high;
+        }
+    }
+
+    @Test
+    public void bucketWidthStaysWithinRelativeError() {
+        long[] samples = {16, 17, 100, 1000, 1023, 1024, 65_535, 1_000_000, (1L << 31) - 1};
+        for (long v : samples) {
+            long high = LatencyHistogram.highestEquivalentValue(LatencyHistogram.indexOf(v));
+            assertTrue(v + " -> " + high, high >= v);
+            assertTrue(v + " -> " + high, high - v <= v * MAX_RELATIVE_ERROR);
+        }
+    }
+
+    @Test
+    public void percentilesMatchSortedSampleWithinError() {
+        Random random = new Random(42);
+        long[] values = new long[10_000];
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < values.length; i++) {
+            // 对数正态分布，接近真实的周期延迟
+            values[i] = (long) Math.exp(6 + random.nextGaussian());
+            histogram.record(values[i]);
+        }
+        Arrays.sort(values);
+
+        assertEquals(values.length, histogram.count());
+        assertEquals(values[0], histogram.min());
+        assertEquals(values[values.length - 1], histogram.max());
+        for (double p : PERCENTILES) {
+            long exact = exactPercentile(values, p);
+            long estimate = histogram.percentile(p);
+            assertTrue("p" + p + ": " + estimate + " < " + exact, estimate >= exact);
+            assertTrue("p" + p + ": " + estimate + " vs " + exact, estimate - exact <= exact * MAX_RELATIVE_ERROR);
+        }
+        assertEquals(values[values.length - 1], histogram.percentile(100));
+    }
+
+    @Test
+    public void smallSampleIsExact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        long[] values = {3, 1, 4, 1, 5, 9, 2, 6};
+        for (long v : values) {
+            histogram.record(v);
+        }
+        Arrays.sort(values);
+        for (double p : PERCENTILES) {
+            assertEquals("p" + p, exactPercentile(values, p), histogram.percentile(p));
+        }
+        assertEquals(31.0 / 8, histogram.mean(), 1e-9);
+    }
+
+    @Test
+    public void outOfRangeValuesAreClamped() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+        histogram.record(Long.MAX_VALUE);
+
+        assertEquals(0, histogram.min());
+        assertEquals((1L << 31) - 1, histogram.max());
+        assertEquals(0, histogram.percentile(50));
+        assertEquals((1L << 31) - 1, histogram.percentile(100));
+    }
+
+    @Test
+    public void resetClearsState() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(100);
+        histogram.reset();
+
+        assertEquals(0, histogram.count());
+        assertEquals(0, histogram.percentile(50));
+        assertEquals("n=0", histogram.summary());
+    }
+
+    /**
+     * 与 {@link LatencyHistogram#percentile} 相同的排名定义：第 ceil(p% * n) 个值（至少第 1 个）
+     */
+    private static long exactPercentile(long[] sorted, double p) {
+        long rank = Math.max(1, (long) Math.ceil(p / 100.0 * sorted.length));
+        return sorted[(int) rank - 1];
+    }
+}
@@ -0,0 +1,153 @@
+package com.example.airplanecontrol.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+public class OperationLogStoreTest {
+
+    private static final int SLOT_SIZE = 64;
+    private static final int SLOT_COUNT = 8;
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private OperationLogStore open(File file) throws IOException {
+        return new OperationLogStore(file, SLOT_SIZE, SLOT_COUNT);
+    }
+
+    private static void appendRange(OperationLogStore store, int from, int to) {
+        for (int i = from; i < to; i++) {
+            store.append(1000L + i, "msg " + i);
+        }
+    }
+
+    private static void assertMessages(List<OperationLogStore.Entry> page, int... expected) {
+        assertEquals(expected.length, page.size());
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals("msg " + expected[i], page.get(i).message);
+            assertEquals(1000L + expected[i], page.get(i).timestampMs);
+        }
+    }
+
+    @Test
+    public void readPageIsNewestFirstBeforeWrap() throws IOException {
+        OperationLogStore store = open(tmp.newFile());
+        appendRange(store, 0, 5);
+
+        assertEquals(5, store.size());
+        assertMessages(store.readPage(0, 3), 4, 3, 2);
+        assertMessages(store.readPage(1, 3), 1, 0);
+        assertTrue(store.readPage(2, 3).isEmpty());
+    }
+
+    @Test
+    public void wraparoundOverwritesOldest() throws IOException {
+        OperationLogStore store = open(tmp.newFile());
+        appendRange(store, 0, SLOT_COUNT + 3);
+
+        // 容量固定，最旧的 3 条被覆盖
+        assertEquals(SLOT_COUNT, store.size());
+        assertMessages(store.readPage(0, SLOT_COUNT), 10, 9, 8, 7, 6, 5, 4, 3);
+    }
+
+    @Test
+    public void readPageAcrossWrapBoundary() throws IOException {
+        OperationLogStore store = open(tmp.newFile());
+        appendRange(store, 0, SLOT_COUNT + 3);
+
+        // 第二页从槽位 6 跨过文件末尾回到槽位 1
+        assertMessages(store.readPage(0, 3), 10, 9, 8);
+        assertMessages(store.readPage(1, 3), 7, 6, 5);
+        assertMessages(store.readPage(2, 3), 4, 3);
+        assertTrue(store.readPage(3, 3).isEmpty());
+    }
+
+    @Test
+    public void contentSurvivesReopenAfterWrap() throws IOException {
+        File file = tmp.newFile();
+        appendRange(open(file), 0, SLOT_COUNT * 2 + 1);
+
+        OperationLogStore reopened = open(file);
+        assertEquals(SLOT_COUNT, reopened.size());
+        assertMessages(reopened.readPage(0, 2), 16, 15);
+
+        reopened.append(2000L, "after reopen");
+        assertEquals("after reopen", reopened.readPage(0, 1).get(0).message);
+        assertEquals("msg 16", reopened.readPage(0, 2).get(1).message);
+    }
+
+    @Test
+    public void mismatchedGeometryResetsFile() throws IOException {
+        File file = tmp.newFile();
+        appendRange(open(file), 0, 3);
+
+        OperationLogStore resized = new OperationLogStore(file, SLOT_SIZE, SLOT_COUNT * 2);
+        assertEquals(0, resized.size());
+    }
+
+    @Test
+    public void longMessageIsTruncatedOnCharacterBoundary() throws IOException {
+        OperationLogStore store = open(tmp.newFile());
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < SLOT_SIZE; i++) {
+            sb.append('飞');
+        }
+        store.append(1L, sb.toString());
+
+        String stored = store.readPage(0, 1).get(0).message;
+        assertTrue(stored.length() > 0 && stored.length() < sb.length());
+        assertEquals(sb.substring(0, stored.length()), stored);
+    }
+
+    @Test
+    public void clearDropsAllEntries() throws IOException {
+        OperationLogStore store = open(tmp.newFile());
+        appendRange(store, 0, SLOT_COUNT + 1);
+        store.clear();
+
+        assertEquals(0, store.size());
+        assertTrue(store.readPage(0, 10).isEmpty());
+        store.append(5L, "fresh");
+        assertEquals(1, store.size());
+        assertEquals("fresh", store.readPage(0, 1).get(0).message);
+    }
+
+    @Test
+    public void legacyLogsAreImportedOldestFirst() throws IOException {
+        OperationLogStore store = open(tmp.newFile());
+        // 旧格式：最新在前，时间已在文本中，可能带空行
+        String legacy = "2024-01-03 10:00: third\n\n2024-01-02 10:00: second\n2024-01-01 10:00: first";
+
+        assertEquals(3, OperationLogStore.importLegacy(store, legacy));
+
+        List<OperationLogStore.Entry> page = store.readPage(0, 10);
+        assertEquals(3, page.size());
+        assertEquals("2024-01-03 10:00: third", page.get(0).message);
+        assertEquals("2024-01-02 10:00: second", page.get(1).message);
+        assertEquals("2024-01-01 10:00: first", page.get(2).message);
+        assertEquals(0L, page.get(0).timestampMs);
+        assertEquals("2024-01-01 10:00: first", page.get(2).toString());
+    }
+
+    @Test
+    public void legacyImportLargerThanRingKeepsNewest() throws IOException {
+        OperationLogStore store = open(tmp.newFile());
+        StringBuilder legacy = new StringBuilder();
+        for (int i = SLOT_COUNT + 2; i >= 0; i--) {
+            legacy.append("old ").append(i).append('\n');
+        }
+
+        assertEquals(SLOT_COUNT + 3, OperationLogStore.importLegacy(store, legacy.toString()));
+        assertEquals(SLOT_COUNT, store.size());
+        assertEquals("old " + (SLOT_COUNT + 2), store.readPage(0, 1).get(0).message);
+        assertEquals("old 3", store.readPage(0, SLOT_COUNT).get(SLOT_COUNT - 1).message);
+    }
+}
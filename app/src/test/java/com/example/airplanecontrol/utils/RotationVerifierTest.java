@@ -0,0 +1,113 @@
+package com.example.airplanecontrol.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.example.airplanecontrol.utils.RotationVerifier.Verdict;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+public class RotationVerifierTest {
+
+    private static final long RETENTION = RotationVerifier.RANGE_RETENTION_MS;
+
+    private static Set<String> set(String... addresses) {
+        return new HashSet<>(Arrays.asList(addresses));
+    }
+
+    @Test
+    public void classifyRotatedWhenEveryAddressIsNew() {
+        assertEquals(Verdict.ROTATED, RotationVerifier.classify(set("10.1.2.3"), set("10.9.8.7")));
+        assertEquals(Verdict.ROTATED, RotationVerifier.classify(
+                set("10.1.2.3", "2001:db8:1:2::10"), set("10.1.2.4", "2001:db8:1:3::10")));
+        // 周期前没有地址（例如开始时已离线）
+        assertEquals(Verdict.ROTATED, RotationVerifier.classify(Collections.emptySet(), set("10.1.2.3")));
+    }
+
+    @Test
+    public void classifyUnchangedWhenAnyAddressSurvives() {
+        assertEquals(Verdict.UNCHANGED, RotationVerifier.classify(set("10.1.2.3"), set("10.1.2.3")));
+        assertEquals(Verdict.UNCHANGED, RotationVerifier.classify(
+                set("10.1.2.3", "2001:db8:1:2::10"), set("10.7.7.7", "2001:db8:1:2::10")));
+    }
+
+    @Test
+    public void classifyNoAddressWhenNothingCameBack() {
+        assertEquals(Verdict.NO_ADDRESS, RotationVerifier.classify(set("10.1.2.3"), Collections.emptySet()));
+        assertEquals(Verdict.NO_ADDRESS, RotationVerifier.classify(Collections.emptySet(), Collections.emptySet()));
+    }
+
+    @Test
+    public void ipv6TemporaryAddressChurnIsNotRotation() {
+        // 稳定地址不变，只有隐私扩展的临时地址更换
+        Set<String> before = set("2001:db8:abcd:12::1", "2001:db8:abcd:12:9a3c:5e01:7f2b:44d1");
+        Set<String> after = set("2001:db8:abcd:12::1", "2001:db8:abcd:12:1b77:c0de:2a90:8e3f");
+        assertEquals(Verdict.UNCHANGED, RotationVerifier.classify(before, after));
+
+        // 新的临时地址仍在同一个 /64 中
+        assertEquals(RotationVerifier.rangeOf("2001:db8:abcd:12:9a3c:5e01:7f2b:44d1"),
+                RotationVerifier.rangeOf("2001:db8:abcd:12:1b77:c0de:2a90:8e3f"));
+    }
+
+    @Test
+    public void rangeOfIpv4IsSlash24() {
+        assertEquals("10.1.2.0/24", RotationVerifier.rangeOf("10.1.2.3"));
+        assertEquals("10.1.2.0/24", RotationVerifier.rangeOf("10.1.2.254"));
+        assertEquals("10.1.3.0/24", RotationVerifier.rangeOf("10.1.3.1"));
+    }
+
+    @Test
+    public void rangeOfIpv6IsCanonicalSlash64() {
+        assertEquals("2001:db8:0:12::/64", RotationVerifier.rangeOf("2001:0db8:0000:0012:0000:0000:0000:0001"));
+        assertEquals("2001:db8:0:12::/64", RotationVerifier.rangeOf("2001:db8::12:0:0:0:ff"));
+        assertEquals("2001:db8:0:13::/64", RotationVerifier.rangeOf("2001:db8:0:13::1"));
+    }
+
+    @Test
+    public void rangeOfUnparseableIpv6FallsBackToAddress() {
+        assertEquals("zz::not:an:address", RotationVerifier.rangeOf("zz::not:an:address"));
+    }
+
+    @Test
+    public void hasUnusedRangeHonoursWindow() {
+        long now = 10 * RETENTION;
+        RotationVerifier.noteInUse(set("172.16.1.5", "2001:db8:aa:1::5"), now);
+
+        // 同一网段的新地址不算未使用
+        assertFalse(RotationVerifier.hasUnusedRange(set("172.16.1.77"), RETENTION, now + 1000));
+        assertFalse(RotationVerifier.hasUnusedRange(set("2001:db8:aa:1::99"), RETENTION, now + 1000));
+        // 任一地址落在新网段即可
+        assertTrue(RotationVerifier.hasUnusedRange(set("172.16.1.77", "172.16.2.1"), RETENTION, now + 1000));
+        // 窗口边界：正好在窗口内仍算使用过，超出一毫秒即算未使用
+        assertFalse(RotationVerifier.hasUnusedRange(set("172.16.1.77"), 5000, now + 5000));
+        assertTrue(RotationVerifier.hasUnusedRange(set("172.16.1.77"), 5000, now + 5001));
+    }
+
+    @Test
+    public void rangesOlderThanRetentionArePruned() {
+        long now = 20 * RETENTION;
+        RotationVerifier.noteInUse(set("172.17.1.5"), now);
+        assertFalse(RotationVerifier.hasUnusedRange(set("172.17.1.6"), Long.MAX_VALUE / 2, now + RETENTION));
+
+        // 下一次记录时清除超过保留时间的网段，之后即使窗口更长也算未使用
+        RotationVerifier.noteInUse(set("172.17.2.5"), now + RETENTION + 1);
+        assertTrue(RotationVerifier.hasUnusedRange(set("172.17.1.6"), Long.MAX_VALUE / 2, now + RETENTION + 1));
+        assertFalse(RotationVerifier.hasUnusedRange(set("172.17.2.6"), RETENTION, now + RETENTION + 1));
+    }
+
+    @Test
+    public void noteInUseRefreshesLastSeen() {
+        long now = 30 * RETENTION;
+        RotationVerifier.noteInUse(set("172.18.1.5"), now);
+        RotationVerifier.noteInUse(set("172.18.1.9"), now + RETENTION);
+
+        assertFalse(RotationVerifier.hasUnusedRange(set("172.18.1.1"), 1000, now + RETENTION + 1000));
+        assertTrue(RotationVerifier.hasUnusedRange(set("172.18.1.1"), 1000, now + RETENTION + 1001));
+    }
+}
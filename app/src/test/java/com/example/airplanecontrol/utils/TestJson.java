@@ -0,0 +1,165 @@
+package com.example.airplanecontrol.utils;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 测试用的严格 JSON 解析（单元测试中 android.jar 的 org.json 不可用）。
+ * 对象为 Map，数组为 List，数字为 Long 或 Double；不合法时抛出 IllegalArgumentException
+ */
+final class TestJson {
+
+    private final String s;
+    private int pos;
+
+    private TestJson(String s) {
+        this.s = s;
+    }
+
+    static Object parse(String json) {
+        TestJson p = new TestJson(json);
+        Object value = p.value();
+        p.skipSpace();
+        if (p.pos != json.length()) throw p.error("trailing content");
+        return value;
+    }
+
+    @SuppressWarnings("unchecked")
+    static Map<String, Object> object(Object value) {
+        return (Map<String, Object>) value;
+    }
+
+    @SuppressWarnings("unchecked")
+    static List<Object> array(Object value) {
+        return (List<Object>) value;
+    }
+
+    private Object value() {
+        skipSpace();
+        if (pos >= s.length()) throw error("unexpected end");
+        char c = s.charAt(pos);
+        switch (c) {
+            case '{': return objectValue();
+            case '[': return arrayValue();
+            case '"': return string();
+            case 't': return literal("true", Boolean.TRUE);
+            case 'f': return literal("false", Boolean.FALSE);
+            case 'n': return literal("null", null);
+            default: return number();
+        }
+    }
+
+    private Map<String, Object> objectValue() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        pos++;
+        skipSpace();
+        if (peek() == '}') {
+            pos++;
+            return map;
+        }
+        while (true) {
+            skipSpace();
+            if (peek() != '"') throw error("expected key");
+            String key = string();
+            skipSpace();
+            expect(':');
+            if (map.put(key, value()) != null) throw error("duplicate key " + key);
+            skipSpace();
+            char c = next();
+            if (c == '}') return map;
+            if (c != ',') throw error("expected , or }");
+        }
+    }
+
+    private List<Object> arrayValue() {
+        List<Object> list = new ArrayList<>();
+        pos++;
+        skipSpace();
+        if (peek() == ']') {
+            pos++;
+            return list;
+        }
+        while (true) {
+            list.add(value());
+            skipSpace();
+            char c = next();
+            if (c == ']') return list;
+            if (c != ',') throw error("expected , or ]");
+        }
+    }
+
+    private String string() {
+        expect('"');
+        StringBuilder sb = new StringBuilder();
+        while (true) {
+            char c = next();
+            if (c == '"') return sb.toString();
+            if (c < 0x20) throw error("unescaped control character");
+            if (c != '\\') {
+                sb.append(c);
+                continue;
+            }
+            char e = next();
+            switch (e) {
+                case '"': case '\\': case '/': sb.append(e); break;
+                case 'b': sb.append('\b'); break;
+                case 'f': sb.append('\f'); break;
+                case 'n': sb.append('\n'); break;
+                case 'r': sb.append('\r'); break;
+                case 't': sb.append('\t'); break;
+                case 'u':
+                    if (pos + 4 > s.length()) throw error("bad \\u escape");
+                    sb.append((char) Integer.parseInt(s.substring(pos, pos + 4), 16));
+                    pos += 4;
+                    break;
+                default: throw error("bad escape \\" + e);
+            }
+        }
+    }
+
+    private Object number() {
+        int start = pos;
+        if (peek() == '-') pos++;
+        while (pos < s.length() && "0123456789.eE+-".indexOf(s.charAt(pos)) >= 0) pos++;
+        String text = s.substring(start, pos);
+        if (text.isEmpty() || text.equals("-")) throw error("unexpected character");
+        try {
+            if (text.matches("-?(0|[1-9][0-9]*)")) return Long.parseLong(text);
+            if (text.matches("-?(0|[1-9][0-9]*)(\\.[0-9]+)?([eE][+-]?[0-9]+)?")) return Double.parseDouble(text);
+        } catch (NumberFormatException ignored) {
+            // 落到下面的错误
+        }
+        throw error("bad number " + text);
+    }
+
+    private Object literal(String word, Object value) {
+        if (!s.startsWith(word, pos)) throw error("unexpected character");
+        pos += word.length();
+        return value;
+    }
+
+    private void expect(char c) {
+        if (next() != c) throw error("expected " + c);
+    }
+
+    private char peek() {
+        if (pos >= s.length()) throw error("unexpected end");
+        return s.charAt(pos);
+    }
+
+    private char next() {
+        char c = peek();
+        pos++;
+        return c;
+    }
+
+    private void skipSpace() {
+        while (pos < s.length() && " \t\r\n".indexOf(s.charAt(pos)) >= 0) pos++;
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException(message + " at " + pos);
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.airplanecontrol.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class TraceRingTest {
+
+    private static final int CAPACITY = 8;
+
+    private static void recordRange(TraceRing ring, int from, int to) {
+        for (int i = from; i < to; i++) {
+            ring.record(1000L + i, i % 5, i, -i);
+        }
+    }
+
+    /** 按访问顺序收集事件序号，并校验各列属于同一次记录 */
+    private static List<Long> seqs(TraceRing ring, int max) {
+        List<Long> seqs = new ArrayList<>();
+        int visited = ring.forEach(max, (seq, time, event, a0, a1) -> {
+            assertEquals(1000L + seq, time);
+            assertEquals((int) (seq % 5), event);
+            assertEquals(seq, a0);
+            assertEquals(-seq, a1);
+            seqs.add(seq);
+        });
+        assertEquals(seqs.size(), visited);
+        return seqs;
+    }
+
+    private static void assertSeqs(List<Long> actual, long from, long to) {
+        assertEquals(to - from, actual.size());
+        for (int i = 0; i < actual.size(); i++) {
+            assertEquals(from + i, (long) actual.get(i));
+        }
+    }
+
+    @Test
+    public void capacityRoundsUpToPowerOfTwo() {
+        assertEquals(8, new TraceRing(8).capacity());
+        assertEquals(8, new TraceRing(5).capacity());
+        assertEquals(1, new TraceRing(1).capacity());
+        assertEquals(4096, new TraceRing(4000).capacity());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void zeroCapacityIsRejected() {
+        new TraceRing(0);
+    }
+
+    @Test
+    public void forEachVisitsOldestFirstBeforeWrap() {
+        TraceRing ring = new TraceRing(CAPACITY);
+        recordRange(ring, 0, 5);
+
+        assertEquals(5, ring.written());
+        assertSeqs(seqs(ring, 100), 0, 5);
+    }
+
+    @Test
+    public void wrapAroundOverwritesOldest() {
+        TraceRing ring = new TraceRing(CAPACITY);
+        recordRange(ring, 0, CAPACITY * 2 + 3);
+
+        // 写入总数含被覆盖的事件，缓冲区中只剩最近 CAPACITY 个
+        assertEquals(CAPACITY * 2 + 3, ring.written());
+        assertSeqs(seqs(ring, Integer.MAX_VALUE), CAPACITY + 3, CAPACITY * 2 + 3);
+    }
+
+    @Test
+    public void forEachWithMaxReturnsNewestEvents() {
+        TraceRing ring = new TraceRing(CAPACITY);
+        recordRange(ring, 0, CAPACITY + 3);
+
+        assertSeqs(seqs(ring, 3), CAPACITY, CAPACITY + 3);
+        assertSeqs(seqs(ring, 1), CAPACITY + 2, CAPACITY + 3);
+        assertEquals(0, ring.forEach(0, (seq, time, event, a0, a1) -> { }));
+    }
+
+    @Test
+    public void clearDropsEventsButKeepsRecording() {
+        TraceRing ring = new TraceRing(CAPACITY);
+        recordRange(ring, 0, CAPACITY + 3);
+        ring.clear();
+
+        assertTrue(seqs(ring, CAPACITY).isEmpty());
+        // 清空后序号继续递增，新事件照常可见
+        recordRange(ring, CAPACITY + 3, CAPACITY + 5);
+        assertSeqs(seqs(ring, CAPACITY), CAPACITY + 3, CAPACITY + 5);
+    }
+}
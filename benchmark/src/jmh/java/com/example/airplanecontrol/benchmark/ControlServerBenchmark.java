@@ -0,0 +1,120 @@
+package com.example.airplanecontrol.benchmark;
+
+import com.example.airplanecontrol.utils.ControlServer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 本机控制服务器：本地客户端经回环连接往返，切换后端为假实现（在另一线程立即完成票据）。
+ * 多线程 status 轮询衡量服务器线程在并发连接下的吞吐。
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ControlServerBenchmark {
+
+    static final String TOKEN = "benchmark-token";
+
+    /**
+     * 假后端：toggle 在工作线程上完成，status 返回固定快照
+     */
+    static final class FakeToggleBackend implements ControlServer.Backend {
+        private final ExecutorService worker = Executors.newSingleThreadExecutor();
+        private final AtomicLong tickets = new AtomicLong();
+
+        @Override
+        public void handle(Map<String, String> request, ControlServer.Reply reply) {
+            if (!"toggle".equals(request.get("cmd"))) {
+                reply.send(reply.create().put("ok", false).put("error", "unsupported"));
+                return;
+            }
+            final String kind = request.get("kind");
+            worker.execute(() -> reply.send(reply.create().put("ok", true)
+                    .put("ticket", tickets.incrementAndGet()).put("status", "DONE").put("detail", kind)));
+        }
+
+        @Override
+        public String status() {
+            return "{\"scheduled\":true,\"queue_busy\":false,\"cycle_state\":\"DONE\"}";
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Server {
+        ControlServer server;
+        FakeToggleBackend backend;
+
+        @Setup(Level.Trial)
+        public void start() throws IOException {
+            backend = new FakeToggleBackend();
+            server = new ControlServer(0, TOKEN, backend);
+            server.start();
+        }
+
+        @TearDown(Level.Trial)
+        public void stop() {
+            server.stop();
+            backend.worker.shutdownNow();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Client {
+        Socket socket;
+        OutputStream out;
+        BufferedReader in;
+        long id;
+
+        @Setup(Level.Trial)
+        public void connect(Server server) throws IOException {
+            socket = new Socket(InetAddress.getLoopbackAddress(), server.server.port());
+            socket.setTcpNoDelay(true);
+            out = socket.getOutputStream();
+            in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+        }
+
+        @TearDown(Level.Trial)
+        public void close() throws IOException {
+            socket.close();
+        }
+
+        String call(String json) throws IOException {
+            out.write((json + "\n").getBytes(StandardCharsets.UTF_8));
+            out.flush();
+            return in.readLine();
+        }
+    }
+
+    @Benchmark
+    @Threads(8)
+    public String statusPoll(Client client) throws IOException {
+        return client.call("{\"cmd\":\"status\",\"token\":\"" + TOKEN + "\",\"id\":" + (client.id++) + "}");
+    }
+
+    @Benchmark
+    public String toggleRoundTrip(Client client) throws IOException {
+        return client.call("{\"cmd\":\"toggle\",\"kind\":\"timed_toggle\",\"token\":\"" + TOKEN
+                + "\",\"id\":" + (client.id++) + "}");
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.airplanecontrol.benchmark;
+
+import com.example.airplanecontrol.utils.CycleHistoryStore;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 周期历史存储：追加（含分钟 / 小时聚合）与范围查询
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CycleHistoryBenchmark {
+
+    /** 10 秒一个周期 */
+    private static final long SPACING_MS = 10_000L;
+    private static final long BASE_MS = 1_700_000_000_000L;
+
+    private File file;
+    private CycleHistoryStore store;
+    private long now;
+
+    @Setup
+    public void setUp() throws IOException {
+        file = File.createTempFile("cycle_history", ".ts");
+        store = new CycleHistoryStore(file, CycleHistoryStore.DEFAULT_RAW_CAPACITY,
+                CycleHistoryStore.DEFAULT_MINUTE_CAPACITY, CycleHistoryStore.DEFAULT_HOUR_CAPACITY);
+        // 预先写满原始记录环，查询与追加都在稳定（覆盖）状态下测量
+        now = BASE_MS;
+        for (int i = 0; i < CycleHistoryStore.DEFAULT_RAW_CAPACITY; i++) {
+            store.append(record(now));
+            now += SPACING_MS;
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        file.delete();
+    }
+
+    private static CycleHistoryStore.Record record(long startWallMs) {
+        return new CycleHistoryStore.Record(startWallMs, true, false, CycleHistoryStore.Outcome.DONE, 0,
+                4200, 600, 2000, 700, 900, false, false);
+    }
+
+    @Benchmark
+    public void append() {
+        store.append(record(now));
+        now += SPACING_MS;
+    }
+
+    @Benchmark
+    public List<CycleHistoryStore.Record> queryLastTenMinutesRaw() {
+        return store.queryRaw(now - 600_000L, now, 100);
+    }
+
+    @Benchmark
+    public List<CycleHistoryStore.Bucket> queryLastDayHourly() {
+        return store.queryRollup(CycleHistoryStore.Resolution.HOUR, now - 86_400_000L, now);
+    }
+}
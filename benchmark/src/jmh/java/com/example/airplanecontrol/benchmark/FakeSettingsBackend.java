@@ -0,0 +1,32 @@
+package com.example.airplanecontrol.benchmark;
+
+import com.example.airplanecontrol.utils.AirplaneModeWriter;
+
+/**
+ * 假的设置与广播层：只在内存中记录状态与广播次数，
+ * 使基准只衡量应用自身的写入/扇出开销。
+ */
+final class FakeSettingsBackend implements AirplaneModeWriter.Backend {
+
+    private volatile int airplaneModeOn;
+    private long broadcastCount;
+
+    @Override
+    public boolean putAirplaneMode(boolean enable) {
+        airplaneModeOn = enable ? 1 : 0;
+        return true;
+    }
+
+    @Override
+    public void sendBroadcast(String action, boolean state) {
+        broadcastCount++;
+    }
+
+    boolean isAirplaneModeOn() {
+        return airplaneModeOn == 1;
+    }
+
+    long broadcastCount() {
+        return broadcastCount;
+    }
+}
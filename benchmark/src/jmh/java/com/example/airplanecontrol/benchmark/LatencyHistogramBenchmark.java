@@ -0,0 +1,44 @@
+package com.example.airplanecontrol.benchmark;
+
+import com.example.airplanecontrol.utils.LatencyHistogram;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 每个周期都会记录的阶段延迟直方图
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class LatencyHistogramBenchmark {
+
+    private LatencyHistogram histogram;
+    private long value;
+
+    @Setup
+    public void setUp() {
+        histogram = new LatencyHistogram();
+        for (int i = 0; i < 10_000; i++) {
+            histogram.record(i * 7L % 30_000);
+        }
+    }
+
+    @Benchmark
+    public void record() {
+        value = (value + 317) % 30_000;
+        histogram.record(value);
+    }
+
+    @Benchmark
+    public long p99() {
+        return histogram.percentile(99);
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.airplanecontrol.benchmark;
+
+import com.example.airplanecontrol.utils.OperationLogStore;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 操作日志环形缓冲区：追加与分页读取
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class OperationLogBenchmark {
+
+    private File file;
+    private OperationLogStore store;
+    private long counter;
+
+    @Setup
+    public void setUp() throws IOException {
+        file = File.createTempFile("operation_log", ".ring");
+        store = new OperationLogStore(file, OperationLogStore.DEFAULT_SLOT_SIZE, OperationLogStore.DEFAULT_SLOT_COUNT);
+        // 预先写满，读取与追加都在稳定（覆盖）状态下测量
+        for (int i = 0; i < OperationLogStore.DEFAULT_SLOT_COUNT; i++) {
+            store.append("自动定时切换, 模式=SECURE #" + i);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Benchmark
+    public void append() {
+        store.append(1_700_000_000_000L + counter++, "Secure定时切换完成, 开启=CONFIRMED, 关闭=CONFIRMED");
+    }
+
+    @Benchmark
+    public List<OperationLogStore.Entry> readFirstPage() {
+        return store.readPage(0, 50);
+    }
+}
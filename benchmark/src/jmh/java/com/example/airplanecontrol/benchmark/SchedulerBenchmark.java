@@ -0,0 +1,74 @@
+package com.example.airplanecontrol.benchmark;
+
+import com.example.airplanecontrol.utils.FixedRateSchedule;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 调度引擎每次唤醒的派发开销：判定到期、按漏跑策略计算执行次数并推进下一个时间点。
+ * jitterMs 不为 0 时附加相位偏移与抖动，对比错峰时间表的额外开销。
+ * 只覆盖时间表本身：顺延执行的排队（RotationScheduler 的 pendingRuns）与 ToggleCommandQueue 的命令合并
+ * 依赖主线程 Handler，不在纯 JVM 基准中
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SchedulerBenchmark {
+
+    private static final long PERIOD_MS = 1000L;
+
+    @Param({"SKIP", "COALESCE", "CATCH_UP"})
+    public String policy;
+
+    @Param({"0", "100"})
+    public long jitterMs;
+
+    private FixedRateSchedule schedule;
+    private long now;
+    private long lateness;
+
+    @Setup
+    public void setUp() {
+        schedule = new FixedRateSchedule(0L, PERIOD_MS, FixedRateSchedule.parsePolicy(policy),
+                jitterMs > 0 ? 337L : 0L, jitterMs, 42L);
+        now = 0L;
+    }
+
+    /**
+     * 准时唤醒：每次恰好在时间点上
+     */
+    @Benchmark
+    public int onTime() {
+        int runs = schedule.onFire(now);
+        now = schedule.nextFireTime();
+        return runs;
+    }
+
+    /**
+     * 迟到唤醒：迟到 0~4 个周期不等，覆盖漏跑分支
+     */
+    @Benchmark
+    public int late() {
+        lateness = (lateness + 1) % 5;
+        now = schedule.nextFireTime() + lateness * PERIOD_MS + 7;
+        return schedule.onFire(now);
+    }
+
+    /**
+     * 重复唤醒：Handler 与闹钟先后到达，第二次应被时间表过滤
+     */
+    @Benchmark
+    public int duplicate() {
+        now = schedule.nextFireTime();
+        return schedule.onFire(now) + schedule.onFire(now);
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.airplanecontrol.benchmark;
+
+import com.example.airplanecontrol.utils.AirplaneModeWriter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 切换热路径：写入设置 + 广播扇出（setAirplaneModeAsync / sendAirplaneModeBroadcasts 的核心部分）
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ToggleBenchmark {
+
+    private FakeSettingsBackend backend;
+    private AirplaneModeWriter writer;
+
+    @Setup
+    public void setUp() {
+        backend = new FakeSettingsBackend();
+        writer = new AirplaneModeWriter(backend);
+    }
+
+    /**
+     * 单次写入并发送全部广播
+     */
+    @Benchmark
+    public int setAndBroadcast() {
+        writer.putState(true);
+        return writer.sendBroadcasts(true);
+    }
+
+    /**
+     * 完整周期：开启（写入+广播）→ 关闭（写入+广播）
+     */
+    @Benchmark
+    public int fullCycle() {
+        writer.putState(true);
+        int sent = writer.sendBroadcasts(true);
+        writer.putState(false);
+        return sent + writer.sendBroadcasts(false);
+    }
+
+    /**
+     * 仅广播扇出
+     */
+    @Benchmark
+    public int broadcastsOnly() {
+        return writer.sendBroadcasts(backend.isAirplaneModeOn());
+    }
+}
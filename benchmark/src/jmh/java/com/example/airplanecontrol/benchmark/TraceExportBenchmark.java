@@ -0,0 +1,104 @@
+package com.example.airplanecontrol.benchmark;
+
+import com.example.airplanecontrol.utils.ChromeTraceWriter;
+import com.example.airplanecontrol.utils.CycleHistoryStore;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 周期历史流式导出为 Chrome trace JSON（与 CycleTraceExporter 的历史轨道相同的事件）。
+ * 配合 -prof gc：每个周期的分配量应与 cycles 无关，导出不随历史长度占用内存
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TraceExportBenchmark {
+
+    private static final long SPACING_MS = 10_000L;
+    private static final long BASE_MS = 1_700_000_000_000L;
+
+    @Param({"100", "8192"})
+    public int cycles;
+
+    private File file;
+    private CycleHistoryStore store;
+    private CountingWriter sink;
+
+    @Setup
+    public void setUp() throws IOException {
+        file = File.createTempFile("cycle_history", ".ts");
+        store = new CycleHistoryStore(file, CycleHistoryStore.DEFAULT_RAW_CAPACITY,
+                CycleHistoryStore.DEFAULT_MINUTE_CAPACITY, CycleHistoryStore.DEFAULT_HOUR_CAPACITY);
+        long now = BASE_MS;
+        for (int i = 0; i < CycleHistoryStore.DEFAULT_RAW_CAPACITY; i++) {
+            store.append(new CycleHistoryStore.Record(now, i % 2 == 0, false, CycleHistoryStore.Outcome.DONE, 0,
+                    4200, 600, 2000, 700, 900, true, true));
+            now += SPACING_MS;
+        }
+        sink = new CountingWriter();
+    }
+
+    @TearDown
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Benchmark
+    public long export() throws IOException {
+        sink.count = 0;
+        Writer out = new BufferedWriter(sink, 16 * 1024);
+        ChromeTraceWriter trace = new ChromeTraceWriter(out);
+        trace.begin();
+        store.forEachRecent(cycles, r -> {
+            long ts = r.startWallMs * 1000L;
+            trace.event(ChromeTraceWriter.PHASE_COMPLETE, r.secure ? "cycle (secure)" : "cycle (assistant)",
+                            "history", ts, 1, 1)
+                    .dur(r.totalMs * 1000L)
+                    .arg("outcome", r.outcome.name())
+                    .arg("retries", r.retries)
+                    .end();
+            trace.event(ChromeTraceWriter.PHASE_COMPLETE, "enable", "history", ts, 1, 1)
+                    .dur(r.enableMs * 1000L)
+                    .end();
+            trace.event(ChromeTraceWriter.PHASE_COMPLETE, "hold", "history", ts + r.enableMs * 1000L, 1, 1)
+                    .dur(r.holdMs * 1000L)
+                    .end();
+        });
+        trace.finish();
+        return sink.count;
+    }
+
+    /**
+     * 只计数的 Writer，排除磁盘 I/O 的影响
+     */
+    private static final class CountingWriter extends Writer {
+        long count;
+
+        @Override
+        public void write(char[] buf, int off, int len) {
+            count += len;
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.airplanecontrol.benchmark;
+
+import com.example.airplanecontrol.utils.TraceRing;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 周期路径上每个事件都会写入的追踪环形缓冲区；配合 -prof gc 确认记录时不分配内存
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TraceRingBenchmark {
+
+    private TraceRing ring;
+    private long sum;
+    private long time;
+    private final TraceRing.Visitor visitor = (seq, timeNanos, event, arg0, arg1) -> sum += timeNanos + arg1;
+
+    @Setup
+    public void setUp() {
+        ring = new TraceRing(4096);
+        for (int i = 0; i < 4096; i++) {
+            ring.record(i, i % 12, i / 16, i);
+        }
+    }
+
+    @Benchmark
+    public void record() {
+        time += 1000;
+        ring.record(time, 4, 1, 1);
+    }
+
+    @Benchmark
+    public long forEachCycle() {
+        // 导出一个周期量级的事件（约 32 个）
+        sum = 0;
+        ring.forEach(32, visitor);
+        return sum;
+    }
+}